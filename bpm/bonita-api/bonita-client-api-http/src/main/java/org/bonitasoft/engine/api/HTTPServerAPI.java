@@ -18,6 +18,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -25,22 +26,35 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.bonitasoft.engine.api.internal.BinaryAPIProtocol;
 import org.bonitasoft.engine.api.internal.ServerAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.bpm.bar.BusinessArchive;
@@ -80,15 +94,93 @@ public class HTTPServerAPI implements ServerAPI {
 
     private static final String APPLICATION_NAME = "application.name";
 
+    private static final String PROTOCOL = "http.protocol";
+
+    private static final String XSTREAM_PROTOCOL = "xstream";
+
+    private static final String MAX_CONNECTIONS = "http.max.connections";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
     private static final Logger LOGGER = Logger.getLogger(HTTPServerAPI.class.getName());
 
+    private static final XStream XSTREAM = new XStream();
+
+    private static final BinaryAPIProtocol BINARY_PROTOCOL = new BinaryAPIProtocol(HTTPServerAPI.class.getClassLoader(),
+            BinaryAPIProtocol.DEFAULT_GZIP_THRESHOLD);
+
+    /**
+     * Returned instead of the result when the server rejects the binary protocol
+     */
+    private static final Object BINARY_PROTOCOL_NOT_SUPPORTED = new Object();
+
+    /**
+     * URLs of the servers that rejected the binary protocol: they are called with XStream from then on
+     */
+    private static final ConcurrentMap<String, Boolean> XSTREAM_SERVERS = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * The clients by max number of connections: the HTTPServerAPIs having the same configuration share their connections
+     */
+    private static final Map<Integer, DefaultHttpClient> HTTP_CLIENTS = new HashMap<Integer, DefaultHttpClient>();
+
     private String serverUrl = null;
 
     private String applicationName = null;
 
+    private boolean binaryProtocol = true;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    /**
+     * The parameters are the server.url and the application.name of the server, and optionally:
+     * <ul>
+     * <li>http.protocol: xstream to always send XML, otherwise the binary protocol is used once the server answered with it</li>
+     * <li>http.max.connections: number of persistent connections kept open, shared by the HTTPServerAPIs having the same value</li>
+     * </ul>
+     * A server of a previous version does not know the binary protocol: set http.protocol to xstream to call it.
+     */
     public HTTPServerAPI(final Map<String, String> parameters) throws ServerAPIException {
         serverUrl = parameters.get(SERVER_URL);
         applicationName = parameters.get(APPLICATION_NAME);
+        binaryProtocol = !XSTREAM_PROTOCOL.equalsIgnoreCase(parameters.get(PROTOCOL));
+        final String maxConnectionsParameter = parameters.get(MAX_CONNECTIONS);
+        if (maxConnectionsParameter != null) {
+            try {
+                maxConnections = Integer.parseInt(maxConnectionsParameter.trim());
+            } catch (final NumberFormatException e) {
+                throw new ServerAPIException(new IllegalArgumentException(MAX_CONNECTIONS + " must be a number: " + maxConnectionsParameter, e));
+            }
+        }
+    }
+
+    /**
+     * One client per configuration, so that the connections are pooled and kept alive between two calls
+     */
+    private DefaultHttpClient getHttpClient() {
+        synchronized (HTTP_CLIENTS) {
+            DefaultHttpClient client = HTTP_CLIENTS.get(maxConnections);
+            if (client == null) {
+                final ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager();
+                connectionManager.setMaxTotal(maxConnections);
+                connectionManager.setDefaultMaxPerRoute(maxConnections);
+                client = new DefaultHttpClient(connectionManager);
+                HTTP_CLIENTS.put(maxConnections, client);
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Close the connections kept open to the servers, e.g. when the application using the client API stops. The next calls open new connections.
+     */
+    public static void shutdown() {
+        synchronized (HTTP_CLIENTS) {
+            for (final DefaultHttpClient client : HTTP_CLIENTS.values()) {
+                client.getConnectionManager().shutdown();
+            }
+            HTTP_CLIENTS.clear();
+        }
     }
 
     @Override
@@ -96,7 +188,13 @@ public class HTTPServerAPI implements ServerAPI {
             final List<String> classNameParameters, final Object[] parametersValues) throws ServerWrappedException, RemoteException {
         String response = null;
         try {
-            final XStream xstream = new XStream();
+            if (useBinaryProtocol()) {
+                final Object result = executeBinaryHttpPost(options, apiInterfaceName, methodName, classNameParameters, parametersValues);
+                if (result != BINARY_PROTOCOL_NOT_SUPPORTED) {
+                    return checkInvokeMethodReturn(result);
+                }
+            }
+            final XStream xstream = XSTREAM;
             response = executeHttpPost(options, apiInterfaceName, methodName, classNameParameters, parametersValues, xstream);
             return checkInvokeMethodReturn(response, xstream);
         } catch (final UndeclaredThrowableException e) {
@@ -109,6 +207,67 @@ public class HTTPServerAPI implements ServerAPI {
         }
     }
 
+    private boolean useBinaryProtocol() {
+        return binaryProtocol && !XSTREAM_SERVERS.containsKey(serverUrl);
+    }
+
+    private Object checkInvokeMethodReturn(final Object invokeMethodReturn) throws Throwable {
+        if (invokeMethodReturn instanceof Throwable) {
+            throw (Throwable) invokeMethodReturn;
+        }
+        return invokeMethodReturn;
+    }
+
+    /**
+     * Stream the call to the server with the {@link BinaryAPIProtocol}
+     *
+     * @return the object returned or thrown by the server, {@link #BINARY_PROTOCOL_NOT_SUPPORTED} if the server rejected the binary protocol without
+     *         executing the call
+     */
+    private Object executeBinaryHttpPost(final Map<String, Serializable> options, final String apiInterfaceName, final String methodName,
+            final List<String> classNameParameters, final Object[] parametersValues) throws IOException, ClassNotFoundException {
+        final HttpPost httpost = new HttpPost(getURL(apiInterfaceName, methodName));
+        httpost.setHeader(BinaryAPIProtocol.PROTOCOL_HEADER, BinaryAPIProtocol.BINARY);
+        final EntityTemplate entity = new EntityTemplate(new ContentProducer() {
+
+            @Override
+            public void writeTo(final OutputStream outputStream) throws IOException {
+                BINARY_PROTOCOL.writeCall(outputStream, options, classNameParameters, parametersValues);
+            }
+
+        });
+        entity.setContentType(BinaryAPIProtocol.CONTENT_TYPE);
+        entity.setChunked(true);
+        httpost.setEntity(entity);
+        final HttpResponse response = getHttpClient().execute(httpost);
+        final HttpEntity responseEntity = response.getEntity();
+        try {
+            final StatusLine statusLine = response.getStatusLine();
+            final Header protocol = response.getFirstHeader(BinaryAPIProtocol.PROTOCOL_HEADER);
+            if (statusLine.getStatusCode() == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE && protocol != null
+                    && BinaryAPIProtocol.UNSUPPORTED.equals(protocol.getValue())) {
+                // the server executed nothing: the call can safely be sent again with XStream
+                XSTREAM_SERVERS.put(serverUrl, Boolean.TRUE);
+                if (LOGGER.isLoggable(Level.INFO)) {
+                    LOGGER.log(Level.INFO, "The server " + serverUrl + " does not support the binary protocol, XStream is used");
+                }
+                return BINARY_PROTOCOL_NOT_SUPPORTED;
+            }
+            if (statusLine.getStatusCode() >= 300) {
+                throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+            }
+            if (protocol == null || !BinaryAPIProtocol.BINARY.equals(protocol.getValue())) {
+                // the server may have executed the call: it is not sent again
+                throw new IOException("The server " + serverUrl + " did not answer with the binary protocol, set " + PROTOCOL + " to " + XSTREAM_PROTOCOL
+                        + " to call a server of a previous version");
+            }
+            return BINARY_PROTOCOL.readResult(responseEntity.getContent());
+        } finally {
+            // release the connection to the pool
+            EntityUtils.consume(responseEntity);
+        }
+    }
+
     private Object checkInvokeMethodReturn(String response, final XStream xstream) throws Throwable {
         Object invokeMethodReturn = null;
         if (response != null && !response.isEmpty() && !response.equals("null")) {
@@ -125,20 +284,23 @@ public class HTTPServerAPI implements ServerAPI {
             ClientProtocolException {
         final HttpPost httpost = createHttpPost(options, apiInterfaceName, methodName, classNameParameters, parametersValues, xstream);
         final ResponseHandler<String> responseHandler = new BonitaResponseHandler();
-        final DefaultHttpClient httpclient = new DefaultHttpClient();
-        return httpclient.execute(httpost, responseHandler);
+        return getHttpClient().execute(httpost, responseHandler);
     }
 
     private HttpPost createHttpPost(final Map<String, Serializable> options, final String apiInterfaceName, final String methodName,
             final List<String> classNameParameters, final Object[] parametersValues, final XStream xstream) throws UnsupportedEncodingException, IOException {
         final HttpEntity httpEntity = buildEntity(options, classNameParameters, parametersValues, xstream);
-        final StringBuilder sBuilder = new StringBuilder(serverUrl);
-        sBuilder.append(SLASH).append(applicationName).append(SERVER_API).append(apiInterfaceName).append(SLASH).append(methodName);
-        final HttpPost httpost = new HttpPost(sBuilder.toString());
+        final HttpPost httpost = new HttpPost(getURL(apiInterfaceName, methodName));
         httpost.setEntity(httpEntity);
         return httpost;
     }
 
+    private String getURL(final String apiInterfaceName, final String methodName) {
+        final StringBuilder sBuilder = new StringBuilder(serverUrl);
+        sBuilder.append(SLASH).append(applicationName).append(SERVER_API).append(apiInterfaceName).append(SLASH).append(methodName);
+        return sBuilder.toString();
+    }
+
     private HttpEntity buildEntity(final Map<String, Serializable> options, final List<String> classNameParameters, final Object[] parametersValues,
             final XStream xstream) throws UnsupportedEncodingException, IOException {
         final HttpEntity httpEntity;
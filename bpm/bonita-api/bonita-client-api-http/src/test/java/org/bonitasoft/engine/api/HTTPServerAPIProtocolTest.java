@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.api.internal.BinaryAPIProtocol;
+import org.bonitasoft.engine.api.internal.ServerWrappedException;
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Calls a local HTTP server answering like a server with or without the binary protocol
+ */
+public class HTTPServerAPIProtocolTest {
+
+    private static final BinaryAPIProtocol PROTOCOL = new BinaryAPIProtocol(HTTPServerAPIProtocolTest.class.getClassLoader(),
+            BinaryAPIProtocol.DEFAULT_GZIP_THRESHOLD);
+
+    private HttpServer server;
+
+    /**
+     * the protocol header of each request received by the server, "none" when absent
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+        HTTPServerAPI.shutdown();
+    }
+
+    private HTTPServerAPI startServer(final HttpHandler handler) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                final String protocol = exchange.getRequestHeaders().getFirst(BinaryAPIProtocol.PROTOCOL_HEADER);
+                requests.add(protocol == null ? "none" : protocol);
+                try {
+                    handler.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+
+        });
+        server.start();
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("server.url", "http://localhost:" + server.getAddress().getPort());
+        parameters.put("application.name", "bonita");
+        return new HTTPServerAPI(parameters);
+    }
+
+    private Object call(final HTTPServerAPI serverAPI) throws Exception {
+        return serverAPI.invokeMethod(new HashMap<String, Serializable>(), "org.bonitasoft.engine.api.LoginAPI", "logout", new ArrayList<String>(),
+                new Object[0]);
+    }
+
+    private static void drain(final InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[1024];
+        while (inputStream.read(buffer) != -1) {
+            // nothing to do
+        }
+    }
+
+    private static void answerWithXStream(final HttpExchange exchange, final Object result) throws IOException {
+        drain(exchange.getRequestBody());
+        exchange.sendResponseHeaders(200, 0);
+        final ObjectOutputStream out = new XStream().createObjectOutputStream(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"));
+        out.writeObject(result);
+        out.close();
+    }
+
+    @Test
+    public void readsTheBinaryAnswer() throws Exception {
+        final HTTPServerAPI serverAPI = startServer(new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    PROTOCOL.readCall(exchange.getRequestBody());
+                } catch (final ClassNotFoundException e) {
+                    throw new IOException(e.getMessage());
+                }
+                exchange.getResponseHeaders().set(BinaryAPIProtocol.PROTOCOL_HEADER, BinaryAPIProtocol.BINARY);
+                exchange.sendResponseHeaders(200, 0);
+                final OutputStream outputStream = exchange.getResponseBody();
+                PROTOCOL.writeResult(outputStream, "binary result");
+                outputStream.close();
+            }
+
+        });
+
+        assertEquals("binary result", call(serverAPI));
+        HTTPServerAPI.shutdown();
+        assertEquals("binary result", call(serverAPI));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void sendsTheCallAgainWithXStreamWhenTheServerRejectsTheBinaryProtocol() throws Exception {
+        final HTTPServerAPI serverAPI = startServer(new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                if (exchange.getRequestHeaders().containsKey(BinaryAPIProtocol.PROTOCOL_HEADER)) {
+                    drain(exchange.getRequestBody());
+                    exchange.getResponseHeaders().set(BinaryAPIProtocol.PROTOCOL_HEADER, BinaryAPIProtocol.UNSUPPORTED);
+                    exchange.sendResponseHeaders(415, -1);
+                } else {
+                    answerWithXStream(exchange, "xstream result");
+                }
+            }
+
+        });
+
+        assertEquals("xstream result", call(serverAPI));
+        // the server is then called with XStream directly
+        assertEquals("xstream result", call(serverAPI));
+        assertEquals(3, requests.size());
+        assertEquals(BinaryAPIProtocol.BINARY, requests.get(0));
+        assertEquals("none", requests.get(1));
+        assertEquals("none", requests.get(2));
+    }
+
+    @Test
+    public void doesNotSendTheCallAgainWhenTheServerAnswersWithoutTheBinaryProtocol() throws Exception {
+        // like a server of a previous version, which may have executed the call
+        final HTTPServerAPI serverAPI = startServer(new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                answerWithXStream(exchange, "xstream result");
+            }
+
+        });
+
+        try {
+            call(serverAPI);
+            fail("the answer must be rejected");
+        } catch (final ServerWrappedException e) {
+            assertEquals(1, requests.size());
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A call to a method of an API, executed in a batch by the {@link BatchAPI}.
+ *
+ * <pre>
+ * new APICall(ProcessAPI.class, &quot;getProcessInstance&quot;, new Class&lt;?&gt;[] { long.class }, processInstanceId)
+ * </pre>
+ *
+ * @since 6.1
+ */
+public class APICall implements Serializable {
+
+    private static final long serialVersionUID = 4615483712698364823L;
+
+    private final String apiInterfaceName;
+
+    private final String methodName;
+
+    private final List<String> classNameParameters;
+
+    private final Object[] parametersValues;
+
+    /**
+     * @param apiInterface
+     *            the API declaring the method, e.g. {@link ProcessAPI}
+     * @param methodName
+     *            the name of the method
+     * @param parameterTypes
+     *            the types of the parameters of the method, to choose between methods having the same name
+     * @param parametersValues
+     *            the values of the parameters, they must be serializable
+     */
+    public APICall(final Class<?> apiInterface, final String methodName, final Class<?>[] parameterTypes, final Object... parametersValues) {
+        apiInterfaceName = apiInterface.getName();
+        this.methodName = methodName;
+        classNameParameters = new ArrayList<String>(parameterTypes.length);
+        for (final Class<?> parameterType : parameterTypes) {
+            classNameParameters.add(parameterType.getName());
+        }
+        this.parametersValues = parametersValues;
+    }
+
+    public String getApiInterfaceName() {
+        return apiInterfaceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public List<String> getClassNameParameters() {
+        return classNameParameters;
+    }
+
+    public Object[] getParametersValues() {
+        return parametersValues;
+    }
+
+    @Override
+    public String toString() {
+        return apiInterfaceName + "." + methodName + classNameParameters;
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of an {@link APICall}: either the object returned by the method or the exception it threw.
+ *
+ * @since 6.1
+ */
+public class APICallResult implements Serializable {
+
+    private static final long serialVersionUID = -3150412447826485096L;
+
+    private final Object result;
+
+    private final Throwable exception;
+
+    public APICallResult(final Object result, final Throwable exception) {
+        this.result = result;
+        this.exception = exception;
+    }
+
+    /**
+     * @return the object returned by the method, null if it threw an exception
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the exception thrown by the method, null if it succeeded
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+}
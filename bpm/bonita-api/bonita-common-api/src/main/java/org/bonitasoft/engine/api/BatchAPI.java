@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import java.util.List;
+
+import org.bonitasoft.engine.session.InvalidSessionException;
+
+/**
+ * Execute several API calls in one request to the server: the session is checked once and, with a remote API, the calls cost a single round trip.
+ *
+ * @since 6.1
+ */
+public interface BatchAPI {
+
+    /**
+     * Execute the calls in the given order with the session of this API. A call failing does not prevent the next ones from being executed.
+     *
+     * @param calls
+     *            the calls to execute, not to the BatchAPI itself
+     * @param readOnlyTransaction
+     *            true to execute the calls in one transaction that is rolled back at the end, so that they read a consistent state and nothing they
+     *            change is kept: a failing call rolls this transaction back and the next calls run in a new one, so the state is only consistent
+     *            between two failing calls; false to let each call use its own transactions
+     * @return the result of each call, in the order of the calls
+     * @throws InvalidSessionException
+     *             If the session is invalid (expired, unknown, ...)
+     * @since 6.1
+     */
+    List<APICallResult> executeBatch(List<APICall> calls, boolean readOnlyTransaction);
+
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary encoding of the calls to a {@link ServerAPI} over HTTP, used instead of the XStream form fields when the client and the server both send the
+ * {@link #PROTOCOL_HEADER} header with the value {@link #BINARY}.
+ * The request body holds the options, the class names of the parameters and the parameter values, the response body holds the returned object or the
+ * thrown exception, all of them written with Java serialization: the class descriptors are written once per body and the classes they name are resolved
+ * through a cache. The bodies are streamed; one starts with a flag telling whether it is compressed, which it is when it is bigger than the gzip
+ * threshold.
+ *
+ * @since 6.1
+ */
+public class BinaryAPIProtocol {
+
+    public static final String PROTOCOL_HEADER = "X-Bonita-API-Protocol";
+
+    public static final String BINARY = "binary";
+
+    /**
+     * Value of the {@link #PROTOCOL_HEADER} header in the 415 response of a server that rejects the requested protocol without executing the call: the
+     * client may then send the same call again with XStream
+     */
+    public static final String UNSUPPORTED = "unsupported";
+
+    public static final String CONTENT_TYPE = "application/x-bonita-api";
+
+    public static final int DEFAULT_GZIP_THRESHOLD = 8192;
+
+    private static final int PLAIN = 0;
+
+    private static final int GZIP = 1;
+
+    private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+    private final ClassLoader classLoader;
+
+    private final int gzipThreshold;
+
+    /**
+     * @param classLoader
+     *            the class loader of the classes read
+     * @param gzipThreshold
+     *            size in bytes from which a body is compressed
+     */
+    public BinaryAPIProtocol(final ClassLoader classLoader, final int gzipThreshold) {
+        this.classLoader = classLoader;
+        this.gzipThreshold = gzipThreshold;
+    }
+
+    public void writeCall(final OutputStream outputStream, final Map<String, Serializable> options, final List<String> classNameParameters,
+            final Object[] parametersValues) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(new ThresholdGZIPOutputStream(outputStream, gzipThreshold));
+        out.writeObject(options);
+        out.writeObject(classNameParameters);
+        out.writeObject(parametersValues);
+        out.close();
+    }
+
+    /**
+     * @return the options, the class names of the parameters and the parameter values, in that order
+     */
+    public Object[] readCall(final InputStream inputStream) throws IOException, ClassNotFoundException {
+        final ObjectInputStream in = newObjectInputStream(inputStream);
+        try {
+            return new Object[] { in.readObject(), in.readObject(), in.readObject() };
+        } finally {
+            in.close();
+        }
+    }
+
+    public void writeResult(final OutputStream outputStream, final Object result) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(new ThresholdGZIPOutputStream(outputStream, gzipThreshold));
+        out.writeObject(result);
+        out.close();
+    }
+
+    public Object readResult(final InputStream inputStream) throws IOException, ClassNotFoundException {
+        final ObjectInputStream in = newObjectInputStream(inputStream);
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private ObjectInputStream newObjectInputStream(final InputStream inputStream) throws IOException {
+        final int compression = inputStream.read();
+        final InputStream in;
+        switch (compression) {
+            case PLAIN:
+                in = inputStream;
+                break;
+            case GZIP:
+                in = new GZIPInputStream(inputStream);
+                break;
+            case -1:
+                throw new EOFException("Empty body");
+            default:
+                throw new IOException("Unknown compression: " + compression);
+        }
+        return new ObjectInputStream(in) {
+
+            @Override
+            protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                final String name = desc.getName();
+                Class<?> clazz = classes.get(name);
+                if (clazz == null) {
+                    try {
+                        clazz = Class.forName(name, false, classLoader);
+                    } catch (final ClassNotFoundException e) {
+                        // primitive types
+                        return super.resolveClass(desc);
+                    }
+                    classes.putIfAbsent(name, clazz);
+                }
+                return clazz;
+            }
+
+        };
+    }
+
+    /**
+     * Keep the first bytes in memory and write them uncompressed if the stream is closed before the threshold, compress everything otherwise.
+     * Closing it does not close the underlying stream.
+     */
+    private static final class ThresholdGZIPOutputStream extends FilterOutputStream {
+
+        private final int threshold;
+
+        private ByteArrayOutputStream buffer;
+
+        private GZIPOutputStream gzip;
+
+        ThresholdGZIPOutputStream(final OutputStream out, final int threshold) {
+            super(out);
+            this.threshold = threshold;
+            buffer = new ByteArrayOutputStream(Math.min(threshold, 1024));
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+            } else if (buffer.size() + len <= threshold) {
+                buffer.write(b, off, len);
+            } else {
+                out.write(GZIP);
+                gzip = new GZIPOutputStream(out, 8192);
+                buffer.writeTo(gzip);
+                buffer = null;
+                gzip.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // the buffered bytes are only written at the end or once the threshold is reached
+            if (gzip != null) {
+                gzip.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+            } else if (buffer != null) {
+                out.write(PLAIN);
+                buffer.writeTo(out);
+                buffer = null;
+            }
+            out.flush();
+        }
+
+    }
+
+}
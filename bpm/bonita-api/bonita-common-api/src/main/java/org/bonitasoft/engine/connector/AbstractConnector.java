@@ -87,6 +87,17 @@ public abstract class AbstractConnector implements Connector {
 
     protected abstract void executeBusinessLogic() throws ConnectorException;
 
+    /**
+     * Forget the input and output parameters, the API accessor and the execution context, e.g. in the {@link ReusableConnector#reset()} of a
+     * subclass
+     */
+    protected void clearExecutionState() {
+        inputParameters.clear();
+        outputParameters.clear();
+        apiAccessor = null;
+        executionContext = null;
+    }
+
     public void setAPIAccessor(final APIAccessor apiAccessor) {
         this.apiAccessor = apiAccessor;
     }
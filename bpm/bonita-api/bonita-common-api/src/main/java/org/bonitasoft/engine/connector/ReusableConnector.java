@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.connector;
+
+/**
+ * A connector whose instances can be executed several times, one execution at a time: the engine keeps the instances in a pool instead of
+ * creating one per execution.
+ * An instance is given back to the pool after its {@link #disconnect()}, and {@link #reset()} is called before it is reused.
+ *
+ * @since 6.1
+ */
+public interface ReusableConnector extends Connector {
+
+    /**
+     * Forget the input parameters, the outputs and any state of the previous execution. If this method throws an exception, the instance is not reused.
+     */
+    void reset();
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class APICallTest {
+
+    @Test
+    public void callKeepsTheNamesOfTheParameterTypes() {
+        final APICall call = new APICall(ProcessAPI.class, "getProcessInstance", new Class<?>[] { long.class, String.class }, 12L, "john");
+
+        assertEquals(ProcessAPI.class.getName(), call.getApiInterfaceName());
+        assertEquals("getProcessInstance", call.getMethodName());
+        assertEquals(Arrays.asList("long", String.class.getName()), call.getClassNameParameters());
+        assertArrayEquals(new Object[] { 12L, "john" }, call.getParametersValues());
+    }
+
+}
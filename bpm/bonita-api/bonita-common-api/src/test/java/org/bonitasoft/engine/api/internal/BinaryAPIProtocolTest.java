@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.bonitasoft.engine.exception.BonitaException;
+import org.junit.Test;
+
+public class BinaryAPIProtocolTest {
+
+    private final BinaryAPIProtocol protocol = new BinaryAPIProtocol(BinaryAPIProtocolTest.class.getClassLoader(), 1024);
+
+    @Test
+    public void writeAndReadASmallCallUncompressed() throws Exception {
+        final Map<String, Serializable> options = new TreeMap<String, Serializable>();
+        options.put("session", "mySession");
+        final List<String> classNameParameters = Arrays.asList(long.class.getName(), String.class.getName());
+        final Object[] parametersValues = new Object[] { 12L, "john" };
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        protocol.writeCall(out, options, classNameParameters, parametersValues);
+
+        final byte[] body = out.toByteArray();
+        assertEquals(0, body[0]);
+        final Object[] call = protocol.readCall(new ByteArrayInputStream(body));
+        assertEquals(options, call[0]);
+        assertEquals(classNameParameters, call[1]);
+        assertArrayEquals(parametersValues, (Object[]) call[2]);
+    }
+
+    @Test
+    public void writeAndReadABigResultCompressed() throws Exception {
+        final byte[] content = new byte[100000];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        protocol.writeResult(out, content);
+
+        final byte[] body = out.toByteArray();
+        assertEquals(1, body[0]);
+        assertTrue(body.length < content.length);
+        assertArrayEquals(content, (byte[]) protocol.readResult(new ByteArrayInputStream(body)));
+    }
+
+    @Test
+    public void writeAndReadAnException() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        protocol.writeResult(out, new BonitaException("failure"));
+
+        final Object result = protocol.readResult(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("failure", ((BonitaException) result).getMessage());
+    }
+
+}
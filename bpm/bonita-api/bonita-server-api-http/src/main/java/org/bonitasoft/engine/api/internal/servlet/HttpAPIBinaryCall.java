@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.internal.servlet;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bonitasoft.engine.api.impl.ServerAPIImpl;
+import org.bonitasoft.engine.api.internal.BinaryAPIProtocol;
+import org.bonitasoft.engine.api.internal.ServerWrappedException;
+import org.bonitasoft.engine.exception.BonitaRuntimeException;
+
+/**
+ * Call of the server API using the {@link BinaryAPIProtocol}: the call is read from the request body and the result, or the exception, is streamed in
+ * the response body.
+ *
+ * @since 6.1
+ */
+public class HttpAPIBinaryCall {
+
+    private static final String SLASH = "/";
+
+    private static final BinaryAPIProtocol PROTOCOL = new BinaryAPIProtocol(HttpAPIBinaryCall.class.getClassLoader(),
+            BinaryAPIProtocol.DEFAULT_GZIP_THRESHOLD);
+
+    private final HttpServletRequest request;
+
+    private final HttpServletResponse response;
+
+    public HttpAPIBinaryCall(final HttpServletRequest request, final HttpServletResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void doPost() throws IOException {
+        Object result;
+        try {
+            String apiInterfaceName = null;
+            String methodName = null;
+            final String[] pathParams = request.getRequestURL().toString().split(SLASH);
+            if (pathParams != null && pathParams.length >= 2) {
+                apiInterfaceName = pathParams[pathParams.length - 2];
+                methodName = pathParams[pathParams.length - 1];
+            }
+            final Object[] call = PROTOCOL.readCall(request.getInputStream());
+            Map<String, Serializable> options = (Map<String, Serializable>) call[0];
+            if (options == null) {
+                options = new TreeMap<String, Serializable>();
+            }
+            List<String> classNameParameters = (List<String>) call[1];
+            if (classNameParameters == null) {
+                classNameParameters = new ArrayList<String>();
+            }
+            Object[] parametersValues = (Object[]) call[2];
+            if (parametersValues == null) {
+                parametersValues = new Object[0];
+            }
+            result = new ServerAPIImpl().invokeMethod(options, apiInterfaceName, methodName, classNameParameters, parametersValues);
+        } catch (final ServerWrappedException e) {
+            result = e.getCause();
+        } catch (final Exception e) {
+            result = e;
+        }
+        // like with XStream, the client recognizes an exception by its type and not by the status
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(BinaryAPIProtocol.CONTENT_TYPE);
+        response.setHeader(BinaryAPIProtocol.PROTOCOL_HEADER, BinaryAPIProtocol.BINARY);
+        try {
+            PROTOCOL.writeResult(response.getOutputStream(), result);
+        } catch (final NotSerializableException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.resetBuffer();
+            PROTOCOL.writeResult(response.getOutputStream(), new BonitaRuntimeException("Unable to serialize the result", e));
+        }
+    }
+
+}
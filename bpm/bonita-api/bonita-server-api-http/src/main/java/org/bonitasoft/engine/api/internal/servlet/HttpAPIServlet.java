@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileUploadException;
+import org.bonitasoft.engine.api.internal.BinaryAPIProtocol;
 
 /**
  * @author Julien Mege
@@ -29,8 +30,31 @@ public class HttpAPIServlet extends HttpServlet {
 
     private static final long serialVersionUID = 4936475894513095747L;
 
+    /**
+     * init parameter, false to make the clients call this server with XStream
+     */
+    private static final String BINARY_PROTOCOL = "binaryProtocol";
+
+    private boolean binaryProtocol = true;
+
+    @Override
+    public void init() throws ServletException {
+        binaryProtocol = !"false".equalsIgnoreCase(getInitParameter(BINARY_PROTOCOL));
+    }
+
     @Override
     protected void doPost(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        final String protocol = req.getHeader(BinaryAPIProtocol.PROTOCOL_HEADER);
+        if (protocol != null) {
+            if (binaryProtocol && BinaryAPIProtocol.BINARY.equals(protocol)) {
+                new HttpAPIBinaryCall(req, resp).doPost();
+            } else {
+                // nothing was executed: tell the client it can send the call again with XStream
+                resp.setHeader(BinaryAPIProtocol.PROTOCOL_HEADER, BinaryAPIProtocol.UNSUPPORTED);
+                resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported API protocol: " + protocol);
+            }
+            return;
+        }
         try {
             new HttpAPIServletCall(req, resp).doPost();
         } catch (final FileUploadException e) {
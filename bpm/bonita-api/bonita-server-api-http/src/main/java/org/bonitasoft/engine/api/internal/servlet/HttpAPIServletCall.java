@@ -53,6 +53,19 @@ public class HttpAPIServletCall extends ServletCall {
 
     private static final String OPTIONS = "options";
 
+    /**
+     * Configured once and shared by all the calls: creating an XStream costs more than using it
+     */
+    private static final XStream XSTREAM = new XStream();
+
+    private static final XStream EXCEPTION_XSTREAM = new XStream();
+
+    static {
+        // ignore fields suppressedExceptions and stackTrance causing exceptions in some cases
+        EXCEPTION_XSTREAM.omitField(Throwable.class, "suppressedExceptions");
+        EXCEPTION_XSTREAM.omitField(Throwable.class, "stackTrace");
+    }
+
     public HttpAPIServletCall(final HttpServletRequest request, final HttpServletResponse response) throws FileUploadException, IOException {
         super(request, response);
     }
@@ -76,7 +89,7 @@ public class HttpAPIServletCall extends ServletCall {
             final String options = this.getParameter(OPTIONS);
             final String parametersValues = this.getParameter(PARAMETERS_VALUES);
             final String parametersClasses = this.getParameter(CLASS_NAME_PARAMETERS);
-            final XStream xstream = new XStream();
+            final XStream xstream = XSTREAM;
 
             TreeMap<String, Serializable> myOptions = new TreeMap<String, Serializable>();
             if (options != null && !options.isEmpty()) {
@@ -149,17 +162,13 @@ public class HttpAPIServletCall extends ServletCall {
     }
 
     private String toResponse(final Exception exception) {
-        final XStream xstream = new XStream();
         Throwable result = null;
         if (exception instanceof ServerWrappedException) {
             result = exception.getCause();
         } else {
             result = exception;
         }
-        // ignore fields suppressedExceptions and stackTrance causing exceptions in some cases
-        xstream.omitField(Throwable.class, "suppressedExceptions");
-        xstream.omitField(Throwable.class, "stackTrace");
-        return toXML(result, xstream);
+        return toXML(result, EXCEPTION_XSTREAM);
     }
 
     private String toXML(final Object object, final XStream xstream) {
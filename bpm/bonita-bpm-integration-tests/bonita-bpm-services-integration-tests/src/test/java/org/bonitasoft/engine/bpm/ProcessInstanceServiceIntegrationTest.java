@@ -4,10 +4,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.bonitasoft.engine.bpm.process.ProcessInstanceState;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.process.document.api.ProcessDocumentService;
+import org.bonitasoft.engine.core.process.document.api.SProcessDocumentContentNotFoundException;
+import org.bonitasoft.engine.core.process.document.model.SProcessDocument;
+import org.bonitasoft.engine.core.process.document.model.builder.SProcessDocumentBuilder;
 import org.bonitasoft.engine.core.process.instance.api.ProcessInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SActivityReadException;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeNotFoundException;
@@ -27,6 +33,7 @@ import org.bonitasoft.engine.data.instance.model.SDataInstance;
 import org.bonitasoft.engine.data.instance.model.builder.SDataInstanceBuilder;
 import org.bonitasoft.engine.events.model.FireEventException;
 import org.bonitasoft.engine.persistence.OrderByType;
+import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.SBonitaSearchException;
 import org.bonitasoft.engine.transaction.SBadTransactionStateException;
 import org.bonitasoft.engine.transaction.STransactionCommitException;
@@ -53,11 +60,14 @@ public class ProcessInstanceServiceIntegrationTest extends CommonBPMServicesTest
 
     private static DataInstanceService dataInstanceService;
 
+    private static ProcessDocumentService processDocumentService;
+
     static {
         bpmServicesBuilder = new BPMServicesBuilder();
         processInstanceService = getProcessInstanceService();
         transactionService = bpmServicesBuilder.getTransactionService();
         dataInstanceService = bpmServicesBuilder.getDataInstanceService();
+        processDocumentService = bpmServicesBuilder.getProcessDocumentService();
     }
 
     static ProcessInstanceService getProcessInstanceService() {
@@ -308,6 +318,51 @@ public class ProcessInstanceServiceIntegrationTest extends CommonBPMServicesTest
 
     }
 
+    @Test
+    public void purgeArchivedProcessInstancesDeletesTheArchivesAndTheContentsOfTheirDocuments() throws Exception {
+        final long processDefinitionId = 456456456L;
+        final List<Integer> completed = Arrays.asList(ProcessInstanceState.COMPLETED.getId());
+        final SProcessInstance processInstance = createProcessInstanceInTransaction(processDefinitionId, "purgedProcInst");
+
+        // the document is archived then the process instance completes: it is archived once in its initial state and once completed
+        transactionService.begin();
+        final SProcessDocumentBuilder documentBuilder = bpmServicesBuilder.getProcessDocumentBuilder().createNewInstance();
+        documentBuilder.setName("purgedDocument").setProcessInstanceId(processInstance.getId()).setAuthor(1).setCreationDate(System.currentTimeMillis())
+                .setFileName("purged.txt").setContentMimeType("text/plain").setHasContent(true);
+        final SProcessDocument document = processDocumentService.attachDocumentToProcessInstance(documentBuilder.done(), "content".getBytes());
+        processDocumentService.removeCurrentVersion(processInstance.getId(), "purgedDocument");
+        final SProcessInstance sProcessInstance = processInstanceService.getProcessInstance(processInstance.getId());
+        processInstanceService.setState(sProcessInstance, ProcessInstanceState.COMPLETED);
+        processInstanceService.setState(sProcessInstance, ProcessInstanceState.COMPLETED);
+        transactionService.complete();
+        deleteSProcessInstance(processInstance);
+
+        transactionService.begin();
+        final List<Long> finished = processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(processDefinitionId, completed,
+                Long.MAX_VALUE, new QueryOptions(0, 10));
+        final List<Long> archivedLater = processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(processDefinitionId, completed,
+                System.currentTimeMillis() - 3600000, new QueryOptions(0, 10));
+        transactionService.complete();
+        assertEquals(Arrays.asList(processInstance.getId()), finished);
+        assertEquals(Collections.emptyList(), archivedLater);
+
+        transactionService.begin();
+        processInstanceService.purgeArchivedProcessInstances(finished);
+        transactionService.complete();
+
+        transactionService.begin();
+        try {
+            assertEquals(Collections.emptyList(), processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(processDefinitionId,
+                    completed, Long.MAX_VALUE, new QueryOptions(0, 10)));
+            processDocumentService.getDocumentContent(document.getContentStorageId());
+            fail("the content of the purged document was not deleted");
+        } catch (final SProcessDocumentContentNotFoundException e) {
+            // ok
+        } finally {
+            transactionService.complete();
+        }
+    }
+
     private void checkDataDoesNotExist(final SDataInstance dataInstance) throws SBonitaException {
         try {
             getDataInstanceInTransaction(dataInstance.getId());
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bonitasoft.engine.core.connector.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bonitasoft.engine.connector.Connector;
+import org.bonitasoft.engine.connector.ReusableConnector;
+import org.bonitasoft.engine.core.connector.exception.SConnectorException;
+import org.bonitasoft.engine.core.connector.parser.SConnectorImplementationDescriptor;
+
+/**
+ * Keeps, for each connector implementation of a process definition, the resolved class and its constructor so that executing a connector does not
+ * load the class by name each time, and a pool of instances when the class is a {@link ReusableConnector}.
+ * An implementation is only valid for the class loader it was resolved with: a new class loader of the process resolves it again. The implementations
+ * keep the class loader of their process until they are invalidated, which must be done when the process is disabled or deleted.
+ *
+ * @since 6.1
+ */
+public class ConnectorImplementationRegistry {
+
+    private final int poolSize;
+
+    private final ConcurrentMap<String, ConnectorImplementation> implementations = new ConcurrentHashMap<String, ConnectorImplementation>();
+
+    /**
+     * reusable connectors being executed, to give them back to the pool of their implementation
+     */
+    private final Map<Connector, ConnectorImplementation> borrowedConnectors = Collections
+            .synchronizedMap(new WeakHashMap<Connector, ConnectorImplementation>());
+
+    /**
+     * @param poolSize
+     *            maximum number of idle instances kept for each reusable implementation, 0 to never reuse instances
+     */
+    public ConnectorImplementationRegistry(final int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return the implementation registered with the given key for this class loader, null if there is none
+     */
+    public ConnectorImplementation get(final String key, final ClassLoader classLoader) {
+        final ConnectorImplementation implementation = implementations.get(key);
+        if (implementation == null) {
+            return null;
+        }
+        if (implementation.classLoader != classLoader) {
+            // the class loader of the process was refreshed
+            implementations.remove(key, implementation);
+            return null;
+        }
+        return implementation;
+    }
+
+    /**
+     * Resolve the implementation class of the descriptor in the class loader and register it with the given key
+     */
+    public ConnectorImplementation register(final String key, final SConnectorImplementationDescriptor descriptor, final ClassLoader classLoader)
+            throws SConnectorException {
+        final String implementationClassName = descriptor.getImplementationClassName();
+        final Class<? extends Connector> implementationClass;
+        try {
+            implementationClass = Class.forName(implementationClassName, true, classLoader).asSubclass(Connector.class);
+        } catch (final ClassNotFoundException e) {
+            throw new SConnectorException(implementationClassName + " can not be found.", e);
+        } catch (final ClassCastException e) {
+            throw new SConnectorException(implementationClassName + " is not a connector.", e);
+        }
+        final Constructor<? extends Connector> constructor;
+        try {
+            constructor = implementationClass.getConstructor();
+        } catch (final NoSuchMethodException e) {
+            throw new SConnectorException(implementationClassName + " can not be instantiated.", e);
+        }
+        BlockingQueue<Connector> pool = null;
+        if (poolSize > 0 && ReusableConnector.class.isAssignableFrom(implementationClass)) {
+            pool = new ArrayBlockingQueue<Connector>(poolSize);
+        }
+        final ConnectorImplementation implementation = new ConnectorImplementation(descriptor, classLoader, constructor, pool);
+        implementations.put(key, implementation);
+        return implementation;
+    }
+
+    /**
+     * @return an idle instance of the implementation if it is reusable, a new instance otherwise
+     */
+    public Connector newInstance(final ConnectorImplementation implementation) throws SConnectorException {
+        if (implementation.pool == null) {
+            return implementation.newInstance();
+        }
+        Connector connector = implementation.pool.poll();
+        if (connector == null) {
+            connector = implementation.newInstance();
+        }
+        borrowedConnectors.put(connector, implementation);
+        return connector;
+    }
+
+    /**
+     * Give back a connector that was executed and disconnected: a reusable one is reset and kept for a next execution unless its implementation was
+     * invalidated meanwhile.
+     */
+    public void release(final Connector connector) {
+        final ConnectorImplementation implementation = borrowedConnectors.remove(connector);
+        if (implementation == null || implementation.invalidated) {
+            return;
+        }
+        try {
+            ((ReusableConnector) connector).reset();
+        } catch (final RuntimeException e) {
+            // the state of the instance is unknown: do not reuse it
+            return;
+        }
+        implementation.pool.offer(connector);
+    }
+
+    /**
+     * Forget the implementation registered with the given key and the idle instances of it, e.g. because it was replaced
+     */
+    public void invalidate(final String key) {
+        final ConnectorImplementation implementation = implementations.remove(key);
+        if (implementation != null) {
+            implementation.invalidate();
+        }
+    }
+
+    /**
+     * Forget the implementations registered with a key starting with the given prefix, e.g. all the ones of a process definition
+     */
+    public void invalidateAll(final String keyPrefix) {
+        for (final String key : implementations.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                invalidate(key);
+            }
+        }
+    }
+
+    public static final class ConnectorImplementation {
+
+        private final SConnectorImplementationDescriptor descriptor;
+
+        private final ClassLoader classLoader;
+
+        private final Constructor<? extends Connector> constructor;
+
+        private final BlockingQueue<Connector> pool;
+
+        private volatile boolean invalidated;
+
+        ConnectorImplementation(final SConnectorImplementationDescriptor descriptor, final ClassLoader classLoader,
+                final Constructor<? extends Connector> constructor, final BlockingQueue<Connector> pool) {
+            this.descriptor = descriptor;
+            this.classLoader = classLoader;
+            this.constructor = constructor;
+            this.pool = pool;
+        }
+
+        public SConnectorImplementationDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        public boolean isReusable() {
+            return pool != null;
+        }
+
+        private Connector newInstance() throws SConnectorException {
+            try {
+                return constructor.newInstance();
+            } catch (final InstantiationException e) {
+                throw new SConnectorException(constructor.getDeclaringClass().getName() + " can not be instantiated.", e);
+            } catch (final IllegalAccessException e) {
+                throw new SConnectorException(e);
+            } catch (final InvocationTargetException e) {
+                throw new SConnectorException(constructor.getDeclaringClass().getName() + " can not be instantiated.", e);
+            }
+        }
+
+        private void invalidate() {
+            invalidated = true;
+            if (pool != null) {
+                pool.clear();
+            }
+        }
+
+    }
+
+}
@@ -40,6 +40,7 @@ import org.bonitasoft.engine.core.connector.ConnectorResult;
 import org.bonitasoft.engine.core.connector.ConnectorService;
 import org.bonitasoft.engine.core.connector.exception.SConnectorException;
 import org.bonitasoft.engine.core.connector.exception.SInvalidConnectorImplementationException;
+import org.bonitasoft.engine.core.connector.impl.ConnectorImplementationRegistry.ConnectorImplementation;
 import org.bonitasoft.engine.core.connector.parser.ConnectorImplementationBinding;
 import org.bonitasoft.engine.core.connector.parser.JarDependenciesBinding;
 import org.bonitasoft.engine.core.connector.parser.SConnectorImplementationDescriptor;
@@ -89,6 +90,8 @@ public class ConnectorServiceImpl implements ConnectorService {
 
     private static final String CLASSPATH_FOLDER = "classpath";
 
+    private static final int DEFAULT_CONNECTOR_POOL_SIZE = 10;
+
     private final Parser parser;
 
     private final CacheService cacheService;
@@ -107,9 +110,23 @@ public class ConnectorServiceImpl implements ConnectorService {
 
     private final TechnicalLoggerService logger;
 
+    private final ConnectorImplementationRegistry implementationRegistry;
+
     public ConnectorServiceImpl(final CacheService cacheService, final ConnectorExecutor connectorExecutor, final ParserFactory parserFactory,
             final ReadSessionAccessor sessionAccessor, final ExpressionResolverService expressionResolverService, final OperationService operationService,
             final DependencyBuilderAccessor dependencyBuilderAccessor, final DependencyService dependencyService, final TechnicalLoggerService logger) {
+        this(cacheService, connectorExecutor, parserFactory, sessionAccessor, expressionResolverService, operationService, dependencyBuilderAccessor,
+                dependencyService, logger, DEFAULT_CONNECTOR_POOL_SIZE);
+    }
+
+    /**
+     * @param connectorPoolSize
+     *            maximum number of idle instances kept for each implementation of a {@link org.bonitasoft.engine.connector.ReusableConnector}
+     */
+    public ConnectorServiceImpl(final CacheService cacheService, final ConnectorExecutor connectorExecutor, final ParserFactory parserFactory,
+            final ReadSessionAccessor sessionAccessor, final ExpressionResolverService expressionResolverService, final OperationService operationService,
+            final DependencyBuilderAccessor dependencyBuilderAccessor, final DependencyService dependencyService, final TechnicalLoggerService logger,
+            final int connectorPoolSize) {
         this.cacheService = cacheService;
         this.connectorExecutor = connectorExecutor;
         this.sessionAccessor = sessionAccessor;
@@ -122,6 +139,7 @@ public class ConnectorServiceImpl implements ConnectorService {
         this.dependencyService = dependencyService;
         this.dependencyBuilderAccessor = dependencyBuilderAccessor;
         this.logger = logger;
+        implementationRegistry = new ConnectorImplementationRegistry(connectorPoolSize);
     }
 
     @Override
@@ -129,19 +147,27 @@ public class ConnectorServiceImpl implements ConnectorService {
             final Map<String, Object> inputParameters) throws SConnectorException {
         final ConnectorResult connectorResult;
         try {
-            final String tenantId = String.valueOf(sessionAccessor.getTenantId());
-            SConnectorImplementationDescriptor descriptor = getImplementation(rootDefinitionId, tenantId, sConnectorInstance.getConnectorId(),
+            final String implementationKey = getConnectorImplementationNameInCache(rootDefinitionId, sConnectorInstance.getConnectorId(),
                     sConnectorInstance.getVersion());
-            if (descriptor == null) {
-                loadConnectors(rootDefinitionId, Integer.valueOf(tenantId));
-                descriptor = getImplementation(rootDefinitionId, tenantId, sConnectorInstance.getConnectorId(), sConnectorInstance.getVersion());
+            ConnectorImplementation implementation = implementationRegistry.get(implementationKey, classLoader);
+            if (implementation == null) {
+                final String tenantId = String.valueOf(sessionAccessor.getTenantId());
+                SConnectorImplementationDescriptor descriptor = getImplementation(rootDefinitionId, tenantId, sConnectorInstance.getConnectorId(),
+                        sConnectorInstance.getVersion());
                 if (descriptor == null) {
-                    throw new SConnectorException("There is no implementation found for the connector " + sConnectorInstance.getConnectorId()
-                            + " with version " + sConnectorInstance.getVersion());
+                    loadConnectors(rootDefinitionId, Integer.valueOf(tenantId));
+                    descriptor = getImplementation(rootDefinitionId, tenantId, sConnectorInstance.getConnectorId(), sConnectorInstance.getVersion());
+                    if (descriptor == null) {
+                        throw new SConnectorException("There is no implementation found for the connector " + sConnectorInstance.getConnectorId()
+                                + " with version " + sConnectorInstance.getVersion());
+                    }
                 }
+                implementation = registerImplementation(implementationKey, descriptor, classLoader);
             }
-            final String implementationClassName = descriptor.getImplementationClassName();
-            connectorResult = executeConnectorInClassloader(implementationClassName, classLoader, inputParameters);
+            final SConnectorImplementationDescriptor descriptor = implementation.getDescriptor();
+            // executed out of any transaction: use the threads and the limits of the connector executor
+            final String connectorDefinitionKey = descriptor.getDefinitionId() + "-" + descriptor.getDefinitionVersion();
+            connectorResult = executeConnectorInClassloader(implementation, classLoader, inputParameters, connectorDefinitionKey);
         } catch (final CacheException e) {
             throw new SConnectorException(e);
         } catch (final TenantIdNotSetException e) {
@@ -176,6 +202,7 @@ public class ConnectorServiceImpl implements ConnectorService {
         } catch (final org.bonitasoft.engine.connector.exception.SConnectorException e) {
             throw new SConnectorException(e);
         }
+        implementationRegistry.release(result.getConnector());
     }
 
     private SConnectorImplementationDescriptor getImplementation(final long rootDefinitionId, final String tenantId, final String connectorId,
@@ -215,21 +242,28 @@ public class ConnectorServiceImpl implements ConnectorService {
         return builder.toString();
     }
 
+    @Override
+    public void clearConnectorImplementations(final long processDefinitionId) {
+        implementationRegistry.invalidateAll(processDefinitionId + ":");
+    }
+
     @Override
     public ConnectorResult executeMutipleEvaluation(final long processDefinitionId, final String connectorDefinitionId,
             final String connectorDefinitionVersion, final Map<String, SExpression> connectorInputParameters,
             final Map<String, Map<String, Serializable>> inputValues, final ClassLoader classLoader, final SExpressionContext sexpContext)
             throws SConnectorException {
-        String implementationClassName;
-        final SConnectorImplementationDescriptor implementation;
+        final String implementationKey = getConnectorImplementationNameInCache(processDefinitionId, connectorDefinitionId, connectorDefinitionVersion);
+        ConnectorImplementation connectorImplementation = implementationRegistry.get(implementationKey, classLoader);
         try {
-            implementation = getImplementation(processDefinitionId, String.valueOf(sessionAccessor.getTenantId()), connectorDefinitionId,
-                    connectorDefinitionVersion);
-            if (implementation == null) {
-                throw new SConnectorException("Can not find implementation for connector(definitionId = " + connectorDefinitionId + ", definitionVersion = "
-                        + connectorDefinitionVersion + ") for process:" + processDefinitionId);
+            if (connectorImplementation == null) {
+                final SConnectorImplementationDescriptor descriptor = getImplementation(processDefinitionId, String.valueOf(sessionAccessor.getTenantId()),
+                        connectorDefinitionId, connectorDefinitionVersion);
+                if (descriptor == null) {
+                    throw new SConnectorException("Can not find implementation for connector(definitionId = " + connectorDefinitionId
+                            + ", definitionVersion = " + connectorDefinitionVersion + ") for process:" + processDefinitionId);
+                }
+                connectorImplementation = registerImplementation(implementationKey, descriptor, classLoader);
             }
-            implementationClassName = implementation.getImplementationClassName();
         } catch (final CacheException e) {
             throw new SConnectorException(e);
         } catch (final TenantIdNotSetException e) {
@@ -240,11 +274,12 @@ public class ConnectorServiceImpl implements ConnectorService {
         final ConnectorResult connectorResult;
         try {
             inputParameters = evaluateInputParameters(connectorInputParameters, sexpContext, inputValues);
-            connectorResult = executeConnectorInClassloader(implementationClassName, classLoader, inputParameters);
+            connectorResult = executeConnectorInClassloader(connectorImplementation, classLoader, inputParameters, null);
         } catch (final SBonitaException e) {
             throw new SConnectorException(e);
         }
 
+        final SConnectorImplementationDescriptor implementation = connectorImplementation.getDescriptor();
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
             logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Executed connector <" + implementation.getImplementationClassName()
                     + "> with definition id <" + implementation.getDefinitionId() + ">, version <" + implementation.getDefinitionVersion() + ">, and inputs :");
@@ -258,21 +293,28 @@ public class ConnectorServiceImpl implements ConnectorService {
         return connectorResult;
     }
 
-    private ConnectorResult executeConnectorInClassloader(final String implementationClassName, final ClassLoader classLoader,
-            final Map<String, Object> inputParameters) throws SConnectorException {
+    /**
+     * @param connectorDefinitionKey
+     *            key of the definition of the connector to execute it in the threads of the connector executor, null to execute it in the current thread
+     */
+    private ConnectorResult executeConnectorInClassloader(final ConnectorImplementation implementation, final ClassLoader classLoader,
+            final Map<String, Object> inputParameters, final String connectorDefinitionKey) throws SConnectorException {
         final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(classLoader);
-            final Connector connector = (Connector) Class.forName(implementationClassName, true, classLoader).newInstance();
+            final Connector connector = implementationRegistry.newInstance(implementation);
             final SConnectorAdapter sConnectorAdapter = new SConnectorAdapter(connector);
-            return new ConnectorResult(connector, connectorExecutor.execute(sConnectorAdapter, inputParameters));
-
-        } catch (final ClassNotFoundException e) {
-            throw new SConnectorException(implementationClassName + " can not be found.", e);
-        } catch (final InstantiationException e) {
-            throw new SConnectorException(implementationClassName + " can not be instantiated.", e);
-        } catch (final IllegalAccessException e) {
-            throw new SConnectorException(e);
+            Map<String, Object> result;
+            if (connectorDefinitionKey == null) {
+                result = connectorExecutor.execute(sConnectorAdapter, inputParameters);
+            } else {
+                result = connectorExecutor.execute(sConnectorAdapter, inputParameters, connectorDefinitionKey);
+            }
+            if (implementation.isReusable()) {
+                // the outputs of the instance are reset when it is given back to the pool
+                result = new HashMap<String, Object>(result);
+            }
+            return new ConnectorResult(connector, result);
         } catch (final org.bonitasoft.engine.connector.exception.SConnectorException e) {
             throw new SConnectorException(e);
         } finally {
@@ -280,6 +322,18 @@ public class ConnectorServiceImpl implements ConnectorService {
         }
     }
 
+    private ConnectorImplementation registerImplementation(final String implementationKey, final SConnectorImplementationDescriptor descriptor,
+            final ClassLoader classLoader) throws SConnectorException {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            // the class is initialized when it is resolved
+            Thread.currentThread().setContextClassLoader(classLoader);
+            return implementationRegistry.register(implementationKey, descriptor, classLoader);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
     @Override
     public Map<String, Object> evaluateInputParameters(final Map<String, SExpression> parameters, final SExpressionContext sExpressionContext,
             final Map<String, Map<String, Serializable>> inputValues) throws SExpressionTypeUnknownException, SExpressionEvaluationException,
@@ -355,6 +409,7 @@ public class ConnectorServiceImpl implements ConnectorService {
     private void replaceConnectorImpl(final SProcessDefinition sDefinition, final long tenantId, final byte[] connectorImplementationArchive,
             final String connectorId, final String connectorVersion) throws SConnectorException, SInvalidConnectorImplementationException {
         checkConnectorImplementationIsValid(connectorImplementationArchive, connectorId, connectorVersion);
+        implementationRegistry.invalidate(getConnectorImplementationNameInCache(sDefinition.getId(), connectorId, connectorVersion));
         unzipNewImplementation(sDefinition, tenantId, connectorImplementationArchive, connectorId, connectorVersion);
         try {
             deployNewDependencies(sDefinition.getId(), tenantId);
@@ -557,6 +612,7 @@ public class ConnectorServiceImpl implements ConnectorService {
         final String connectorKey = getConnectorImplementationNameInCache(sProcessDefinition.getId(), connectorId, connectorVersion);
         try {
             cacheService.remove(CONNECTOR_CACHE_NAME, connectorKey);
+            implementationRegistry.invalidate(connectorKey);
             // re_load connectors
             loadConnectors(sProcessDefinition, tenantId);
         } catch (final CacheException e) {
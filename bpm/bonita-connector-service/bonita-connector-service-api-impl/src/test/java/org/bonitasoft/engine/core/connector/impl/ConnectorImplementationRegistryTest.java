@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.connector.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.bonitasoft.engine.connector.AbstractConnector;
+import org.bonitasoft.engine.connector.Connector;
+import org.bonitasoft.engine.connector.ConnectorValidationException;
+import org.bonitasoft.engine.connector.ReusableConnector;
+import org.bonitasoft.engine.core.connector.impl.ConnectorImplementationRegistry.ConnectorImplementation;
+import org.bonitasoft.engine.core.connector.parser.SConnectorImplementationDescriptor;
+import org.junit.Test;
+
+public class ConnectorImplementationRegistryTest {
+
+    private final ConnectorImplementationRegistry registry = new ConnectorImplementationRegistry(2);
+
+    private final ClassLoader classLoader = ConnectorImplementationRegistryTest.class.getClassLoader();
+
+    @Test
+    public void reusableConnectorIsResetAndReused() throws Exception {
+        final ConnectorImplementation implementation = registry.register("1:connector-1.0", descriptor(MyReusableConnector.class), classLoader);
+        assertTrue(implementation.isReusable());
+        final MyReusableConnector connector = (MyReusableConnector) registry.newInstance(implementation);
+        connector.setInputParameters(Collections.<String, Object> singletonMap("input", "value"));
+        assertEquals("value", connector.execute().get("output"));
+
+        registry.release(connector);
+
+        final Connector reused = registry.newInstance(implementation);
+        assertSame(connector, reused);
+        assertNull(reused.execute().get("output"));
+    }
+
+    @Test
+    public void connectorNotReusableIsNeverReused() throws Exception {
+        final ConnectorImplementation implementation = registry.register("1:connector-1.0", descriptor(MyConnector.class), classLoader);
+        assertFalse(implementation.isReusable());
+        final Connector connector = registry.newInstance(implementation);
+
+        registry.release(connector);
+
+        assertNotSame(connector, registry.newInstance(implementation));
+    }
+
+    @Test
+    public void invalidatedImplementationIsForgotten() throws Exception {
+        final ConnectorImplementation implementation = registry.register("1:connector-1.0", descriptor(MyReusableConnector.class), classLoader);
+        final Connector connector = registry.newInstance(implementation);
+        assertSame(implementation, registry.get("1:connector-1.0", classLoader));
+
+        registry.invalidate("1:connector-1.0");
+        registry.release(connector);
+
+        assertNull(registry.get("1:connector-1.0", classLoader));
+        assertNotSame(connector, registry.newInstance(implementation));
+    }
+
+    @Test
+    public void implementationsOfAProcessDefinitionAreInvalidatedTogether() throws Exception {
+        final ConnectorImplementation implementation = registry.register("1:connector-1.0", descriptor(MyReusableConnector.class), classLoader);
+        registry.register("1:other-1.0", descriptor(MyConnector.class), classLoader);
+        registry.register("12:connector-1.0", descriptor(MyConnector.class), classLoader);
+        final Connector connector = registry.newInstance(implementation);
+        registry.release(connector);
+
+        registry.invalidateAll("1:");
+
+        assertNull(registry.get("1:connector-1.0", classLoader));
+        assertNull(registry.get("1:other-1.0", classLoader));
+        assertNotNull(registry.get("12:connector-1.0", classLoader));
+        assertNotSame(connector, registry.newInstance(implementation));
+    }
+
+    @Test
+    public void implementationIsResolvedAgainWithAnotherClassLoader() throws Exception {
+        registry.register("1:connector-1.0", descriptor(MyConnector.class), classLoader);
+
+        assertNull(registry.get("1:connector-1.0", new ClassLoader(classLoader) {
+        }));
+        assertNull(registry.get("1:connector-1.0", classLoader));
+    }
+
+    private SConnectorImplementationDescriptor descriptor(final Class<? extends Connector> implementationClass) {
+        return new SConnectorImplementationDescriptor(implementationClass.getName(), "connector-impl", "1.0", "connector", "1.0", null);
+    }
+
+    public static class MyConnector extends AbstractConnector {
+
+        @Override
+        public void validateInputParameters() throws ConnectorValidationException {
+        }
+
+        @Override
+        protected void executeBusinessLogic() {
+            setOutputParameter("output", getInputParameter("input"));
+        }
+
+    }
+
+    public static class MyReusableConnector extends MyConnector implements ReusableConnector {
+
+        @Override
+        public void reset() {
+            clearExecutionState();
+        }
+
+    }
+
+}
@@ -198,4 +198,14 @@ public interface ConnectorService {
      */
     Long getNumberOfConnectorImplementations(long processDefinitionId, long tenantId) throws SConnectorException;
 
+    /**
+     * Forget the connector implementations resolved in the class loader of the process definition and their idle instances, so that they do not keep
+     * this class loader once the process definition is disabled or deleted
+     * 
+     * @param processDefinitionId
+     *            Identifier of process definition
+     * @since 6.1
+     */
+    void clearConnectorImplementations(long processDefinitionId);
+
 }
@@ -15,13 +15,10 @@ package org.bonitasoft.engine.core.data.instance.impl;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.bonitasoft.engine.cache.CacheException;
-import org.bonitasoft.engine.cache.CacheService;
 import org.bonitasoft.engine.commons.ClassReflector;
 import org.bonitasoft.engine.commons.ReflectException;
 import org.bonitasoft.engine.commons.StringUtil;
@@ -34,15 +31,20 @@ import org.bonitasoft.engine.data.instance.exception.SDataInstanceNotFoundExcept
 import org.bonitasoft.engine.data.instance.exception.SUpdateDataInstanceException;
 import org.bonitasoft.engine.data.instance.model.SDataInstance;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
 
 /**
  * @author Elias Ricken de Medeiros
  */
 public class TransientDataInstanceDataSource implements DataInstanceDataSource {
 
-    private static final String TRANSIENT_DATA_CACHE_NAME = "transient_data";
+    private TransientDataStore dataStore;
 
-    private CacheService cacheService;
+    private TransactionService transactionService;
 
     @Override
     public void setParameters(final Map<String, String> dataSourceParameters) {
@@ -57,7 +59,8 @@ public class TransientDataInstanceDataSource implements DataInstanceDataSource {
     @Override
     public void configure(final DataSourceConfiguration dataSourceConfiguration) throws SDataSourceInitializationException {
         final Map<String, Object> resources = dataSourceConfiguration.getResources();
-        cacheService = getResource(resources, CacheService.class, TransientDataInstanceDataSourceConfiguration.CACHE_SERVICE_KEY);
+        dataStore = getResource(resources, TransientDataStore.class, TransientDataInstanceDataSourceConfiguration.DATA_STORE_KEY);
+        transactionService = getResource(resources, TransactionService.class, TransientDataInstanceDataSourceConfiguration.TRANSACTION_SERVICE_KEY);
     }
 
     private <T> T getResource(final Map<String, Object> resources, final Class<T> clazz, final String key) throws SDataSourceInitializationException {
@@ -70,26 +73,16 @@ public class TransientDataInstanceDataSource implements DataInstanceDataSource {
         throw new SDataSourceInitializationException("Unable to get resource '" + key + "' of class '" + clazz.getName() + "'. ");
     }
 
-    private String getKey(final String dataInstanceName, final long containerId, final String containerType) {
-        return dataInstanceName + ":" + containerId + ":" + containerType;
-    }
-
-    private String getKey(final SDataInstance dataInstance) {
-        return getKey(dataInstance.getName(), dataInstance.getContainerId(), dataInstance.getContainerType());
-    }
-
     @Override
     public void createDataInstance(final SDataInstance dataInstance) throws SDataInstanceException {
         try {
-            final String dataInstanceKey = getKey(dataInstance);
-            if (checkDataAlreadyExists(TRANSIENT_DATA_CACHE_NAME, dataInstanceKey)) {
-                handleDataAlreadyExists(dataInstance);
-            }
             setId(dataInstance);
-            cacheService.store(TRANSIENT_DATA_CACHE_NAME, dataInstanceKey, dataInstance);
         } catch (final Exception e) {
             throw new SDataInstanceException("Impossible to store transient data", e);
         }
+        if (!dataStore.add(dataInstance)) {
+            handleDataAlreadyExists(dataInstance);
+        }
     }
 
     private void setId(final SDataInstance dataInstance) throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException,
@@ -109,80 +102,62 @@ public class TransientDataInstanceDataSource implements DataInstanceDataSource {
         throw new SCreateDataInstanceException(stb.toString());
     }
 
-    private boolean checkDataAlreadyExists(final String cacheName, final String dataInstanceKey) throws CacheException, SDataInstanceException {
-        final List<?> keys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-        return keys.contains(dataInstanceKey);
-    }
-
     @Override
     public void updateDataInstance(final SDataInstance dataInstance, final EntityUpdateDescriptor descriptor) throws SDataInstanceException {
-        try {
-            final String key = getKey(dataInstance);
-
-            for (final Map.Entry<String, Object> field : descriptor.getFields().entrySet()) {
-                try {
-                    final String setterName = "set" + StringUtil.firstCharToUpperCase(field.getKey());
-                    ClassReflector.invokeMethodByName(dataInstance, setterName, field.getValue());
-                } catch (final Exception e) {
-                    throw new SUpdateDataInstanceException("Problem while updating entity: " + dataInstance + " with id: " + dataInstance.getId()
-                            + " in TransientDataInstanceDataSource.", e);
-                }
+        for (final Map.Entry<String, Object> field : descriptor.getFields().entrySet()) {
+            try {
+                final String setterName = "set" + StringUtil.firstCharToUpperCase(field.getKey());
+                ClassReflector.invokeMethodByName(dataInstance, setterName, field.getValue());
+            } catch (final Exception e) {
+                throw new SUpdateDataInstanceException("Problem while updating entity: " + dataInstance + " with id: " + dataInstance.getId()
+                        + " in TransientDataInstanceDataSource.", e);
             }
-
-            cacheService.store(TRANSIENT_DATA_CACHE_NAME, key, dataInstance);
-        } catch (final CacheException e) {
-            throw new SDataInstanceException("Impossible to update transient data", e);
         }
+        dataStore.update(dataInstance);
     }
 
     @Override
-    public void deleteDataInstance(final SDataInstance dataInstance) throws SDataInstanceException {
-        try {
-            final String key = getKey(dataInstance);
-            cacheService.remove(TRANSIENT_DATA_CACHE_NAME, key);
-        } catch (final CacheException e) {
-            throw new SDataInstanceException("Impossible to delete transient data", e);
-        }
+    public void deleteDataInstance(final SDataInstance dataInstance) {
+        dataStore.remove(dataInstance);
     }
 
+    /**
+     * The data instances of the container are removed when the transaction deleting it commits, and kept if it rolls back
+     */
     @Override
-    public SDataInstance getDataInstance(final long dataInstanceId) throws SDataInstanceException {
+    public void deleteDataInstances(final long containerId, final String containerType) throws SDataInstanceException {
         try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            for (final Object key : cacheKeys) {
-                final SDataInstance dataInstance = (SDataInstance) cacheService.get(TRANSIENT_DATA_CACHE_NAME, key);
-                if (dataInstance != null && dataInstance.getId() == dataInstanceId) {
-                    return dataInstance;
-                }
+            if (transactionService.isRollbackOnly()) {
+                return;
             }
-        } catch (final CacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
+            if (transactionService.isTransactionActive()) {
+                transactionService.registerBonitaSynchronization(new RemoveContainerSynchronization(containerId, containerType));
+                return;
+            }
+        } catch (final STransactionException e) {
+            throw new SDataInstanceException("Unable to remove the transient data of container " + containerId, e);
+        } catch (final STransactionNotFoundException e) {
+            throw new SDataInstanceException("Unable to remove the transient data of container " + containerId, e);
         }
-        throw new SDataInstanceNotFoundException("No data found. Id: " + dataInstanceId);
+        dataStore.removeContainer(containerId, containerType);
     }
 
     @Override
-    public SDataInstance getDataInstance(final String dataName, final long containerId, final String containerType) throws SDataInstanceException {
-        try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            final String key = getKey(dataName, containerId, containerType);
-
-            if (!cacheKeys.contains(key)) {
-                handleDataInstanceNotFound(dataName, containerId, containerType);
-            }
-
-            return (SDataInstance) cacheService.get(TRANSIENT_DATA_CACHE_NAME, key);
-        } catch (final CacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
+    public SDataInstance getDataInstance(final long dataInstanceId) throws SDataInstanceException {
+        final SDataInstance dataInstance = dataStore.get(dataInstanceId);
+        if (dataInstance == null) {
+            throw new SDataInstanceNotFoundException("No data found. Id: " + dataInstanceId);
         }
+        return dataInstance;
     }
 
-    private List<?> getCacheKeys(final String cacheName) throws CacheException {
-        List<?> cacheKeys = Collections.emptyList();
-        if (cacheService.getCachesNames().contains(cacheName)) {
-            cacheKeys = cacheService.getKeys(cacheName);
+    @Override
+    public SDataInstance getDataInstance(final String dataName, final long containerId, final String containerType) throws SDataInstanceException {
+        final SDataInstance dataInstance = dataStore.get(dataName, containerId, containerType);
+        if (dataInstance == null) {
+            handleDataInstanceNotFound(dataName, containerId, containerType);
         }
-        return cacheKeys;
+        return dataInstance;
     }
 
     private void handleDataInstanceNotFound(final String dataName, final long containerId, final String containerType) throws SDataInstanceNotFoundException {
@@ -196,43 +171,45 @@ public class TransientDataInstanceDataSource implements DataInstanceDataSource {
     }
 
     @Override
-    public List<SDataInstance> getDataInstances(final long containerId, final String containerType, final int fromIndex, final int numberOfResults)
-            throws SDataInstanceException {
-        final String matchingKey = containerId + ":" + containerType;
-        final List<SDataInstance> dataInstances = new ArrayList<SDataInstance>();
-        try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            for (int i = fromIndex; i < cacheKeys.size() && i < numberOfResults; i++) {
-                final Object key = cacheKeys.get(i);
-                if (((String) key).contains(matchingKey)) {
-                    final SDataInstance dataInstance = getDataInstance(((String) key).substring(0, ((String) key).indexOf(":")), containerId, containerType);
-                    if (dataInstance != null) {
-                        dataInstances.add(dataInstance);
-                    }
-                }
-            }
-
-            if (!dataInstances.isEmpty()) {
-                return dataInstances;
-            } else {
-                return Collections.emptyList();
-                // throw new SDataInstanceException("No data instance found for container type " + containerType + " and container id " + containerId);
-            }
-        } catch (final CacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
-        }
+    public List<SDataInstance> getDataInstances(final long containerId, final String containerType, final int fromIndex, final int numberOfResults) {
+        return dataStore.getDataInstances(containerId, containerType, fromIndex, numberOfResults);
     }
 
     @Override
-    public List<SDataInstance> getDataInstances(final List<Long> dataInstanceIds) throws SDataInstanceException {
+    public List<SDataInstance> getDataInstances(final List<Long> dataInstanceIds) {
         final List<SDataInstance> results = new ArrayList<SDataInstance>(dataInstanceIds.size());
         for (final Long dataInstanceId : dataInstanceIds) {
-            try {
-                results.add(getDataInstance(dataInstanceId));
-            } catch (final SDataInstanceException e) {
+            final SDataInstance dataInstance = dataStore.get(dataInstanceId);
+            if (dataInstance != null) {
+                results.add(dataInstance);
             }
         }
         return results;
     }
 
+    private final class RemoveContainerSynchronization implements BonitaTransactionSynchronization {
+
+        private final long containerId;
+
+        private final String containerType;
+
+        RemoveContainerSynchronization(final long containerId, final String containerType) {
+            this.containerId = containerId;
+            this.containerType = containerType;
+        }
+
+        @Override
+        public void beforeCommit() {
+            // nothing to do
+        }
+
+        @Override
+        public void afterCompletion(final TransactionState txState) {
+            if (TransactionState.COMMITTED == txState) {
+                dataStore.removeContainer(containerId, containerType);
+            }
+        }
+
+    }
+
 }
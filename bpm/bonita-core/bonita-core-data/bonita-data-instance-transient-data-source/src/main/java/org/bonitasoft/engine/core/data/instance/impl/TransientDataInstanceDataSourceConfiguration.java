@@ -16,9 +16,9 @@ package org.bonitasoft.engine.core.data.instance.impl;
 import java.util.Hashtable;
 import java.util.Map;
 
-import org.bonitasoft.engine.cache.CacheService;
 import org.bonitasoft.engine.data.DataSourceConfiguration;
 import org.bonitasoft.engine.services.QueriableLoggerService;
+import org.bonitasoft.engine.transaction.TransactionService;
 
 /**
  * @author Elias Ricken de Medeiros
@@ -27,17 +27,26 @@ public class TransientDataInstanceDataSourceConfiguration implements DataSourceC
 
     public static final String SESSION_ACCESSOR_KEY = "sessionAccessor";
 
-    public static final String CACHE_SERVICE_KEY = "cacheService";
+    public static final String DATA_STORE_KEY = "dataStore";
+
+    public static final String TRANSACTION_SERVICE_KEY = "transactionService";
 
     private static final String QUERIABLE_LOGGER_SERVICE = "queriableLoggerService";
 
     private final Map<String, Object> resources;
 
-    public TransientDataInstanceDataSourceConfiguration(final CacheService cacheService,
-            final QueriableLoggerService queriableLoggerService) {
+    /**
+     * @param transactionService
+     *            the transaction service whose commits remove the transient data of the deleted containers
+     * @param maxDataInstances
+     *            maximum number of transient data instances kept in memory, the ones of the least recently used containers are evicted beyond
+     */
+    public TransientDataInstanceDataSourceConfiguration(final QueriableLoggerService queriableLoggerService, final TransactionService transactionService,
+            final int maxDataInstances) {
         resources = new Hashtable<String, Object>();
-        resources.put(CACHE_SERVICE_KEY, cacheService);
+        resources.put(DATA_STORE_KEY, new TransientDataStore(maxDataInstances));
         resources.put(QUERIABLE_LOGGER_SERVICE, queriableLoggerService);
+        resources.put(TRANSACTION_SERVICE_KEY, transactionService);
     }
 
     @Override
@@ -45,4 +54,11 @@ public class TransientDataInstanceDataSourceConfiguration implements DataSourceC
         return resources;
     }
 
+    /**
+     * @return the store shared by the transient data sources, to read its size and eviction counts
+     */
+    public TransientDataStore getDataStore() {
+        return (TransientDataStore) resources.get(DATA_STORE_KEY);
+    }
+
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.data.instance.exception.SCreateDataInstanceException;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+
+/**
+ * In memory store of the transient data instances, indexed by id and by container so that reading, writing and deleting a data instance or all the data
+ * instances of a container do not depend on the number of data instances stored.
+ * The number of data instances is bounded: when it is reached, the data instances of the least recently used container are evicted.
+ *
+ * @since 6.1
+ */
+public class TransientDataStore {
+
+    private final int maxDataInstances;
+
+    private final Map<Long, SDataInstance> dataInstancesById = new HashMap<Long, SDataInstance>();
+
+    /**
+     * data instances by name for each container, in access order: the first container is the least recently used one
+     */
+    private final LinkedHashMap<String, Map<String, SDataInstance>> containers = new LinkedHashMap<String, Map<String, SDataInstance>>(16, 0.75f, true);
+
+    private long numberOfEvictedContainers;
+
+    private long numberOfEvictedDataInstances;
+
+    /**
+     * @param maxDataInstances
+     *            maximum number of data instances kept in the store
+     */
+    public TransientDataStore(final int maxDataInstances) {
+        if (maxDataInstances < 1) {
+            throw new IllegalArgumentException("The maximum number of transient data instances must be positive: " + maxDataInstances);
+        }
+        this.maxDataInstances = maxDataInstances;
+    }
+
+    private static String getContainerKey(final long containerId, final String containerType) {
+        return containerId + ":" + containerType;
+    }
+
+    private static String getContainerKey(final SDataInstance dataInstance) {
+        return getContainerKey(dataInstance.getContainerId(), dataInstance.getContainerType());
+    }
+
+    /**
+     * Store a new data instance, evicting the data instances of the least recently used containers if the store is full
+     *
+     * @return false if a data instance having the same name already exists in the container of the given one, which is then not stored
+     * @throws SCreateDataInstanceException
+     *             if the store is full of data instances of the container of the given one
+     */
+    public synchronized boolean add(final SDataInstance dataInstance) throws SCreateDataInstanceException {
+        final String containerKey = getContainerKey(dataInstance);
+        final Map<String, SDataInstance> existingDataInstances = containers.get(containerKey);
+        if (existingDataInstances != null && existingDataInstances.containsKey(dataInstance.getName())) {
+            return false;
+        }
+        final Iterator<Map.Entry<String, Map<String, SDataInstance>>> leastRecentlyUsed = containers.entrySet().iterator();
+        while (dataInstancesById.size() >= maxDataInstances && leastRecentlyUsed.hasNext()) {
+            final Map.Entry<String, Map<String, SDataInstance>> container = leastRecentlyUsed.next();
+            if (!container.getKey().equals(containerKey)) {
+                leastRecentlyUsed.remove();
+                removeFromIdIndex(container.getValue());
+                numberOfEvictedContainers++;
+                numberOfEvictedDataInstances += container.getValue().size();
+            }
+        }
+        if (dataInstancesById.size() >= maxDataInstances) {
+            throw new SCreateDataInstanceException("Unable to store transient data " + dataInstance.getName() + ": the maximum of " + maxDataInstances
+                    + " transient data instances is reached by container " + containerKey);
+        }
+        Map<String, SDataInstance> containerDataInstances = containers.get(containerKey);
+        if (containerDataInstances == null) {
+            containerDataInstances = new HashMap<String, SDataInstance>();
+            containers.put(containerKey, containerDataInstances);
+        }
+        containerDataInstances.put(dataInstance.getName(), dataInstance);
+        dataInstancesById.put(dataInstance.getId(), dataInstance);
+        return true;
+    }
+
+    /**
+     * Store the new state of a data instance, replacing the one having the same id
+     */
+    public synchronized void update(final SDataInstance dataInstance) {
+        final SDataInstance previous = dataInstancesById.get(dataInstance.getId());
+        if (previous != null && previous != dataInstance) {
+            removeFromContainer(previous);
+        }
+        Map<String, SDataInstance> containerDataInstances = containers.get(getContainerKey(dataInstance));
+        if (containerDataInstances == null) {
+            containerDataInstances = new HashMap<String, SDataInstance>();
+            containers.put(getContainerKey(dataInstance), containerDataInstances);
+        }
+        containerDataInstances.put(dataInstance.getName(), dataInstance);
+        dataInstancesById.put(dataInstance.getId(), dataInstance);
+    }
+
+    /**
+     * @return the removed data instance, null if it was not stored
+     */
+    public synchronized SDataInstance remove(final SDataInstance dataInstance) {
+        final Map<String, SDataInstance> containerDataInstances = containers.get(getContainerKey(dataInstance));
+        if (containerDataInstances == null) {
+            return null;
+        }
+        final SDataInstance removed = containerDataInstances.remove(dataInstance.getName());
+        if (removed != null) {
+            dataInstancesById.remove(removed.getId());
+        }
+        if (containerDataInstances.isEmpty()) {
+            containers.remove(getContainerKey(dataInstance));
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the data instances of a container
+     *
+     * @return the number of removed data instances
+     */
+    public synchronized int removeContainer(final long containerId, final String containerType) {
+        final Map<String, SDataInstance> containerDataInstances = containers.remove(getContainerKey(containerId, containerType));
+        if (containerDataInstances == null) {
+            return 0;
+        }
+        removeFromIdIndex(containerDataInstances);
+        return containerDataInstances.size();
+    }
+
+    /**
+     * @return the data instance having the given id, null if there is none
+     */
+    public synchronized SDataInstance get(final long dataInstanceId) {
+        final SDataInstance dataInstance = dataInstancesById.get(dataInstanceId);
+        if (dataInstance != null) {
+            // mark the container as used
+            containers.get(getContainerKey(dataInstance));
+        }
+        return dataInstance;
+    }
+
+    /**
+     * @return the data instance having the given name in the container, null if there is none
+     */
+    public synchronized SDataInstance get(final String dataName, final long containerId, final String containerType) {
+        final Map<String, SDataInstance> containerDataInstances = containers.get(getContainerKey(containerId, containerType));
+        if (containerDataInstances == null) {
+            return null;
+        }
+        return containerDataInstances.get(dataName);
+    }
+
+    /**
+     * @return a page of the data instances of the container
+     */
+    public synchronized List<SDataInstance> getDataInstances(final long containerId, final String containerType, final int fromIndex,
+            final int numberOfResults) {
+        final Map<String, SDataInstance> containerDataInstances = containers.get(getContainerKey(containerId, containerType));
+        if (containerDataInstances == null || fromIndex >= containerDataInstances.size() || numberOfResults <= 0) {
+            return Collections.emptyList();
+        }
+        final List<SDataInstance> dataInstances = new ArrayList<SDataInstance>(containerDataInstances.values());
+        return new ArrayList<SDataInstance>(dataInstances.subList(fromIndex, Math.min(dataInstances.size(), fromIndex + numberOfResults)));
+    }
+
+    private void removeFromContainer(final SDataInstance dataInstance) {
+        final String containerKey = getContainerKey(dataInstance);
+        final Map<String, SDataInstance> containerDataInstances = containers.get(containerKey);
+        if (containerDataInstances != null && containerDataInstances.get(dataInstance.getName()) == dataInstance) {
+            containerDataInstances.remove(dataInstance.getName());
+            if (containerDataInstances.isEmpty()) {
+                containers.remove(containerKey);
+            }
+        }
+    }
+
+    private void removeFromIdIndex(final Map<String, SDataInstance> containerDataInstances) {
+        for (final SDataInstance dataInstance : containerDataInstances.values()) {
+            dataInstancesById.remove(dataInstance.getId());
+        }
+    }
+
+    public int getMaxDataInstances() {
+        return maxDataInstances;
+    }
+
+    public synchronized int getNumberOfDataInstances() {
+        return dataInstancesById.size();
+    }
+
+    public synchronized int getNumberOfContainers() {
+        return containers.size();
+    }
+
+    /**
+     * @return the number of containers whose data instances were evicted to make room for new ones
+     */
+    public synchronized long getNumberOfEvictedContainers() {
+        return numberOfEvictedContainers;
+    }
+
+    /**
+     * @return the number of data instances evicted to make room for new ones
+     */
+    public synchronized long getNumberOfEvictedDataInstances() {
+        return numberOfEvictedDataInstances;
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.services.QueriableLoggerService;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TransientDataInstanceDataSourceTest {
+
+    private static final String TASK = "ACTIVITY_INSTANCE";
+
+    private TransactionService transactionService;
+
+    private TransientDataStore dataStore;
+
+    private TransientDataInstanceDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        transactionService = mock(TransactionService.class);
+        final TransientDataInstanceDataSourceConfiguration configuration = new TransientDataInstanceDataSourceConfiguration(
+                mock(QueriableLoggerService.class), transactionService, 10);
+        dataStore = configuration.getDataStore();
+        dataSource = new TransientDataInstanceDataSource();
+        dataSource.configure(configuration);
+        final SDataInstance dataInstance = mock(SDataInstance.class);
+        when(dataInstance.getId()).thenReturn(5L);
+        when(dataInstance.getName()).thenReturn("amount");
+        when(dataInstance.getContainerId()).thenReturn(1L);
+        when(dataInstance.getContainerType()).thenReturn(TASK);
+        dataStore.add(dataInstance);
+    }
+
+    @Test
+    public void dataOfAContainerDeletedInATransactionAreRemovedOnCommit() throws Exception {
+        when(transactionService.isTransactionActive()).thenReturn(true);
+
+        dataSource.deleteDataInstances(1, TASK);
+
+        assertNotNull(dataStore.get(5L));
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(TransactionState.COMMITTED);
+        assertNull(dataStore.get(5L));
+    }
+
+    @Test
+    public void dataOfAContainerDeletedInARolledBackTransactionAreKept() throws Exception {
+        when(transactionService.isTransactionActive()).thenReturn(true);
+
+        dataSource.deleteDataInstances(1, TASK);
+
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(TransactionState.ROLLEDBACK);
+        assertNotNull(dataStore.get(5L));
+    }
+
+    @Test
+    public void dataOfAContainerDeletedInATransactionMarkedForRollbackAreKept() throws Exception {
+        when(transactionService.isRollbackOnly()).thenReturn(true);
+
+        dataSource.deleteDataInstances(1, TASK);
+
+        assertNotNull(dataStore.get(5L));
+        verify(transactionService, never()).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+    }
+
+    @Test
+    public void dataOfAContainerDeletedOutsideOfATransactionAreRemovedAtOnce() throws Exception {
+        dataSource.deleteDataInstances(1, TASK);
+
+        assertNull(dataStore.get(5L));
+        assertEquals(0, dataStore.getNumberOfDataInstances());
+    }
+
+}
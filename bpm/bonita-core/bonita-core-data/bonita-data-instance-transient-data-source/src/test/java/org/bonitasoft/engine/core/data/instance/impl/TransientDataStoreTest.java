@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bonitasoft.engine.data.instance.exception.SCreateDataInstanceException;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.junit.Test;
+
+public class TransientDataStoreTest {
+
+    private static final String TASK = "ACTIVITY_INSTANCE";
+
+    private long nextId = 1;
+
+    @Test
+    public void dataInstanceIsFoundByIdAndByNameInItsContainer() throws Exception {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance data = dataInstance("amount", 1);
+        store.add(data);
+
+        assertSame(data, store.get(data.getId()));
+        assertSame(data, store.get("amount", 1, TASK));
+        assertNull(store.get("amount", 2, TASK));
+        assertNull(store.get("amount", 1, "PROCESS_INSTANCE"));
+    }
+
+    @Test
+    public void dataInstanceHavingTheNameOfAnotherOneOfItsContainerIsNotAdded() throws Exception {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance data = dataInstance("amount", 1);
+        store.add(data);
+
+        assertFalse(store.add(dataInstance("amount", 1)));
+        assertTrue(store.add(dataInstance("amount", 2)));
+        assertSame(data, store.get("amount", 1, TASK));
+        assertEquals(2, store.getNumberOfDataInstances());
+    }
+
+    @Test
+    public void removedContainerLeavesNoDataInstance() throws Exception {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance data = dataInstance("amount", 1);
+        store.add(data);
+        store.add(dataInstance("customer", 1));
+        store.add(dataInstance("amount", 2));
+
+        assertEquals(2, store.removeContainer(1, TASK));
+
+        assertNull(store.get(data.getId()));
+        assertNull(store.get("customer", 1, TASK));
+        assertEquals(1, store.getNumberOfDataInstances());
+        assertEquals(1, store.getNumberOfContainers());
+    }
+
+    @Test
+    public void updatedDataInstanceReplacesTheOneHavingItsId() throws Exception {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance data = dataInstance("amount", 1);
+        store.add(data);
+        final long id = data.getId();
+        final SDataInstance renamed = mock(SDataInstance.class);
+        when(renamed.getId()).thenReturn(id);
+        when(renamed.getName()).thenReturn("total");
+        when(renamed.getContainerId()).thenReturn(1L);
+        when(renamed.getContainerType()).thenReturn(TASK);
+
+        store.update(renamed);
+
+        assertSame(renamed, store.get(id));
+        assertSame(renamed, store.get("total", 1, TASK));
+        assertNull(store.get("amount", 1, TASK));
+        assertEquals(1, store.getNumberOfDataInstances());
+    }
+
+    @Test
+    public void dataInstancesOfAContainerArePaginated() throws Exception {
+        final TransientDataStore store = new TransientDataStore(10);
+        store.add(dataInstance("a", 1));
+        store.add(dataInstance("b", 1));
+        store.add(dataInstance("c", 1));
+
+        final List<SDataInstance> firstPage = store.getDataInstances(1, TASK, 0, 2);
+        final List<SDataInstance> secondPage = store.getDataInstances(1, TASK, 2, 2);
+
+        assertEquals(2, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertTrue(store.getDataInstances(1, TASK, 3, 2).isEmpty());
+        assertTrue(store.getDataInstances(2, TASK, 0, 2).isEmpty());
+    }
+
+    @Test
+    public void leastRecentlyUsedContainerIsEvictedWhenTheStoreIsFull() throws Exception {
+        final TransientDataStore store = new TransientDataStore(3);
+        final SDataInstance first = dataInstance("amount", 1);
+        store.add(first);
+        store.add(dataInstance("amount", 2));
+        store.add(dataInstance("amount", 3));
+        // container 1 is used again, container 2 becomes the least recently used
+        store.get(first.getId());
+
+        store.add(dataInstance("amount", 4));
+
+        assertSame(first, store.get("amount", 1, TASK));
+        assertNull(store.get("amount", 2, TASK));
+        assertEquals(3, store.getNumberOfDataInstances());
+        assertEquals(1, store.getNumberOfEvictedContainers());
+        assertEquals(1, store.getNumberOfEvictedDataInstances());
+    }
+
+    @Test
+    public void containerFillingTheStoreIsNotEvictedForItsOwnData() throws Exception {
+        final TransientDataStore store = new TransientDataStore(2);
+        store.add(dataInstance("a", 1));
+        store.add(dataInstance("b", 1));
+
+        try {
+            store.add(dataInstance("c", 1));
+            fail("the store is full of the data of the container");
+        } catch (final SCreateDataInstanceException e) {
+            // expected
+        }
+        assertEquals(2, store.getNumberOfDataInstances());
+        assertEquals(0, store.getNumberOfEvictedContainers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void storeMustHoldAtLeastOneDataInstance() {
+        new TransientDataStore(0);
+    }
+
+    private SDataInstance dataInstance(final String name, final long containerId) {
+        final SDataInstance dataInstance = mock(SDataInstance.class);
+        when(dataInstance.getId()).thenReturn(nextId++);
+        when(dataInstance.getName()).thenReturn(name);
+        when(dataInstance.getContainerId()).thenReturn(containerId);
+        when(dataInstance.getContainerType()).thenReturn(TASK);
+        return dataInstance;
+    }
+
+}
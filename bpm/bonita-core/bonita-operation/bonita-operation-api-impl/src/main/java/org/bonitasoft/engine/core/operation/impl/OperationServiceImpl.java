@@ -17,9 +17,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.core.expression.control.api.ExpressionResolverService;
@@ -90,12 +92,23 @@ public class OperationServiceImpl implements OperationService {
         execute(Arrays.asList(operation), dataContainerId, dataContainerType, expressionContext);
     }
 
-    protected Object getOperationValue(final SOperation operation, final SExpressionContext expressionContext, final SExpression sExpression)
+    /**
+     * Evaluate the right operands of operations in a single pass of the expression resolver
+     */
+    protected List<Object> getOperationValues(final List<SOperation> operations, final SExpressionContext expressionContext)
             throws SOperationExecutionException {
+        final List<SExpression> rightOperands = new ArrayList<SExpression>(operations.size());
+        for (final SOperation operation : operations) {
+            rightOperands.add(operation.getRightOperand());
+        }
         try {
-            return expressionResolverService.evaluate(sExpression, expressionContext);
+            return expressionResolverService.evaluate(rightOperands, expressionContext);
         } catch (final ClassCastException e) {
-            throw new SOperationExecutionException("Trying to set variable " + operation.getLeftOperand().getName() + " a value which is not Serializable", e);
+            final List<String> leftOperandNames = new ArrayList<String>(operations.size());
+            for (final SOperation operation : operations) {
+                leftOperandNames.add(operation.getLeftOperand().getName());
+            }
+            throw new SOperationExecutionException("Trying to set one of the variables " + leftOperandNames + " a value which is not Serializable", e);
         } catch (final SBonitaException e) {
             throw new SOperationExecutionException(e);
         }
@@ -110,30 +123,124 @@ public class OperationServiceImpl implements OperationService {
     public void execute(final List<SOperation> operations, final long dataContainerId, final String dataContainerType,
             final SExpressionContext expressionContext) throws SOperationExecutionException {
         retrieveDataInstancesToSetAndPutItInExpressionContextIfNotIn(operations, expressionContext);
-        final Map<SLeftOperand, OperationExecutorStrategy> updates = new HashMap<SLeftOperand, OperationExecutorStrategy>();
-        for (final SOperation operation : operations) {
-            final Object operationValue = getOperationValue(operation, expressionContext, operation.getRightOperand());
-            final OperationExecutorStrategy operationExecutorStrategy = getOperationExecutorStrategy(operation);
-            final Object value = operationExecutorStrategy.getValue(operation, operationValue, dataContainerId, dataContainerType, expressionContext);
-            if (!operationExecutorStrategy.doUpdateData()) {
-                operationExecutorStrategy.update(operation.getLeftOperand(), value, dataContainerId, dataContainerType);
+        final Map<SLeftOperand, OperationExecutorStrategy> updates = new LinkedHashMap<SLeftOperand, OperationExecutorStrategy>();
+        for (final List<SOperation> batch : getIndependentBatches(operations)) {
+            final List<Object> operationValues = getOperationValues(batch, expressionContext);
+            for (int i = 0; i < batch.size(); i++) {
+                executeOperation(batch.get(i), operationValues.get(i), dataContainerId, dataContainerType, expressionContext, updates);
+            }
+        }
+        updateData(updates, dataContainerId, dataContainerType, expressionContext);
+    }
+
+    private void executeOperation(final SOperation operation, final Object operationValue, final long dataContainerId, final String dataContainerType,
+            final SExpressionContext expressionContext, final Map<SLeftOperand, OperationExecutorStrategy> updates) throws SOperationExecutionException {
+        final OperationExecutorStrategy operationExecutorStrategy = getOperationExecutorStrategy(operation);
+        final Object value = operationExecutorStrategy.getValue(operation, operationValue, dataContainerId, dataContainerType, expressionContext);
+        if (!operationExecutorStrategy.doUpdateData()) {
+            operationExecutorStrategy.update(operation.getLeftOperand(), value, dataContainerId, dataContainerType);
+        } else {
+            expressionContext.getInputValues().put(operation.getLeftOperand().getName(), value);
+            updates.put(operation.getLeftOperand(), operationExecutorStrategy);
+        }
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
+            if (dataContainerType != null) {
+                logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Executed operation on " + dataContainerType + " <" + dataContainerId + "> : "
+                        + operation.getLeftOperand().getName() + " " + operation.getOperator() + " " + operationValue);
             } else {
-                expressionContext.getInputValues().put(operation.getLeftOperand().getName(), value);
-                updates.put(operation.getLeftOperand(), operationExecutorStrategy);
+                logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Executed operation " + " <" + dataContainerId + "> : "
+                        + operation.getLeftOperand().getName() + " " + operation.getOperator() + " " + operationValue);
             }
-            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
-                if (dataContainerType != null) {
-                    logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Executed operation on " + dataContainerType + " <" + dataContainerId + "> : "
-                            + operation.getLeftOperand().getName() + " " + operation.getOperator() + " " + operationValue);
-                } else {
-                    logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Executed operation " + " <" + dataContainerId + "> : "
-                            + operation.getLeftOperand().getName() + " " + operation.getOperator() + " " + operationValue);
+        }
+    }
+
+    private void updateData(final Map<SLeftOperand, OperationExecutorStrategy> updates, final long dataContainerId, final String dataContainerType,
+            final SExpressionContext expressionContext) throws SOperationExecutionException {
+        // data updated by the same strategy are retrieved together
+        final Map<UpdateOperationExecutorStrategy, Map<SLeftOperand, Object>> updatesByStrategy = new LinkedHashMap<UpdateOperationExecutorStrategy, Map<SLeftOperand, Object>>(
+                updates.size());
+        for (final Entry<SLeftOperand, OperationExecutorStrategy> update : updates.entrySet()) {
+            final Object newValue = expressionContext.getInputValues().get(update.getKey().getName());
+            if (update.getValue() instanceof UpdateOperationExecutorStrategy) {
+                final UpdateOperationExecutorStrategy strategy = (UpdateOperationExecutorStrategy) update.getValue();
+                Map<SLeftOperand, Object> strategyUpdates = updatesByStrategy.get(strategy);
+                if (strategyUpdates == null) {
+                    strategyUpdates = new LinkedHashMap<SLeftOperand, Object>();
+                    updatesByStrategy.put(strategy, strategyUpdates);
                 }
+                strategyUpdates.put(update.getKey(), newValue);
+            } else {
+                update.getValue().update(update.getKey(), newValue, dataContainerId, dataContainerType);
             }
         }
-        for (final Entry<SLeftOperand, OperationExecutorStrategy> update : updates.entrySet()) {
-            update.getValue().update(update.getKey(), expressionContext.getInputValues().get(update.getKey().getName()), dataContainerId, dataContainerType);
+        for (final Entry<UpdateOperationExecutorStrategy, Map<SLeftOperand, Object>> strategyUpdates : updatesByStrategy.entrySet()) {
+            strategyUpdates.getKey().update(strategyUpdates.getValue(), dataContainerId, dataContainerType);
+        }
+    }
+
+    /**
+     * Split the operations in batches whose right operands can be evaluated together: an operation starts a new batch when its right operand may read
+     * a data set by a previous operation of the current batch.
+     */
+    private List<List<SOperation>> getIndependentBatches(final List<SOperation> operations) {
+        final List<List<SOperation>> batches = new ArrayList<List<SOperation>>();
+        List<SOperation> batch = new ArrayList<SOperation>(operations.size());
+        final Set<String> dataSetInBatch = new HashSet<String>();
+        for (final SOperation operation : operations) {
+            if (!batch.isEmpty() && mayRead(operation.getRightOperand(), dataSetInBatch)) {
+                batches.add(batch);
+                batch = new ArrayList<SOperation>(operations.size());
+                dataSetInBatch.clear();
+            }
+            batch.add(operation);
+            dataSetInBatch.add(operation.getLeftOperand().getName());
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Scripts can read any data of the context: an expression or one of its dependencies whose content contains the name of a data as an identifier is
+     * considered to read it.
+     */
+    private boolean mayRead(final SExpression expression, final Set<String> dataNames) {
+        if (expression == null) {
+            return false;
+        }
+        final String content = expression.getContent();
+        if (content != null) {
+            for (final String dataName : dataNames) {
+                if (containsIdentifier(content, dataName)) {
+                    return true;
+                }
+            }
+        }
+        if (expression.getDependencies() != null) {
+            for (final SExpression dependency : expression.getDependencies()) {
+                if (mayRead(dependency, dataNames)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean containsIdentifier(final String content, final String identifier) {
+        if (identifier.length() == 0) {
+            return false;
+        }
+        int index = content.indexOf(identifier);
+        while (index >= 0) {
+            final int end = index + identifier.length();
+            if ((index == 0 || !Character.isJavaIdentifierPart(content.charAt(index - 1)))
+                    && (end == content.length() || !Character.isJavaIdentifierPart(content.charAt(end)))) {
+                return true;
+            }
+            index = content.indexOf(identifier, index + 1);
         }
+        return false;
     }
 
     private void retrieveDataInstancesToSetAndPutItInExpressionContextIfNotIn(final List<SOperation> operations, final SExpressionContext expressionContext)
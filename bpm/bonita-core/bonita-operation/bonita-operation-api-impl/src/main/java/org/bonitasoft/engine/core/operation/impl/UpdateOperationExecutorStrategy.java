@@ -13,6 +13,12 @@
  **/
 package org.bonitasoft.engine.core.operation.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.bonitasoft.engine.core.operation.OperationExecutorStrategy;
 import org.bonitasoft.engine.core.operation.exception.SOperationExecutionException;
 import org.bonitasoft.engine.core.operation.model.SLeftOperand;
@@ -58,6 +64,45 @@ public abstract class UpdateOperationExecutorStrategy implements OperationExecut
         }
     }
 
+    /**
+     * Update several data of the same container: the data instances are retrieved with a single call to the data instance service
+     *
+     * @param updates
+     *            the new value of each left operand
+     */
+    public void update(final Map<SLeftOperand, Object> updates, final long containerId, final String containerType) throws SOperationExecutionException {
+        final List<String> dataInstanceNames = new ArrayList<String>(updates.size());
+        for (final SLeftOperand leftOperand : updates.keySet()) {
+            // external data are already updated in the input values map
+            if (!leftOperand.isExternal()) {
+                dataInstanceNames.add(leftOperand.getName());
+            }
+        }
+        if (dataInstanceNames.isEmpty()) {
+            return;
+        }
+        try {
+            final List<SDataInstance> dataInstances = dataInstanceService.getDataInstances(dataInstanceNames, containerId, containerType);
+            final Map<String, SDataInstance> dataInstancesByName = new HashMap<String, SDataInstance>(dataInstances.size());
+            for (final SDataInstance dataInstance : dataInstances) {
+                dataInstancesByName.put(dataInstance.getName(), dataInstance);
+            }
+            for (final Entry<SLeftOperand, Object> update : updates.entrySet()) {
+                final SLeftOperand leftOperand = update.getKey();
+                if (!leftOperand.isExternal()) {
+                    SDataInstance sDataInstance = dataInstancesByName.get(leftOperand.getName());
+                    if (sDataInstance == null) {
+                        // let the data instance service report the missing data
+                        sDataInstance = getDataInstance(leftOperand.getName(), containerId, containerType);
+                    }
+                    update(sDataInstance, update.getValue());
+                }
+            }
+        } catch (final SDataInstanceException e) {
+            throw new SOperationExecutionException(e);
+        }
+    }
+
     @Override
     public boolean doUpdateData() {
         return true;
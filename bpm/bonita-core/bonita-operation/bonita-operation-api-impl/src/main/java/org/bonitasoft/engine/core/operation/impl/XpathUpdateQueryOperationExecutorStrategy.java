@@ -15,19 +15,15 @@ package org.bonitasoft.engine.core.operation.impl;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
+import org.bonitasoft.engine.commons.XMLCache;
 import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
 import org.bonitasoft.engine.core.operation.OperationExecutorStrategy;
 import org.bonitasoft.engine.core.operation.exception.SOperationExecutionException;
@@ -44,7 +40,6 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -93,17 +88,15 @@ public class XpathUpdateQueryOperationExecutorStrategy extends UpdateOperationEx
             sExpressionContext.setInputValues(expressionContext.getInputValues());
             final Object variableValue = value;
 
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            final Document document = builder.parse(new InputSource(new StringReader(dataValue)));
-            final XPath xpath = XPathFactory.newInstance().newXPath();
+            // reuse the document parsed by the XPath reads of the same value, it is modified so it is taken out of the cache
+            final Document document = XMLCache.takeDocument(dataValue);
             final String xpathExpression = operation.getOperator();
-            final Node node = (Node) xpath.compile(xpathExpression).evaluate(document, XPathConstants.NODE);
+            final Node node = (Node) XMLCache.compile(xpathExpression).evaluate(document, XPathConstants.NODE);
             if (isSetAttribute(xpathExpression, variableValue)) {
                 if (node == null) { // Create the attribute
                     final String parentPath = xpathExpression.substring(0, xpathExpression.lastIndexOf('/'));
                     final String attributeName = xpathExpression.substring(xpathExpression.lastIndexOf('/') + 2); // +1 for @
-                    final Node parentNode = (Node) xpath.compile(parentPath).evaluate(document, XPathConstants.NODE);
+                    final Node parentNode = (Node) XMLCache.compile(parentPath).evaluate(document, XPathConstants.NODE);
                     if (parentNode instanceof Element) {
                         final Element element = (Element) parentNode;
                         if (variableValue instanceof String) {
@@ -141,7 +134,7 @@ public class XpathUpdateQueryOperationExecutorStrategy extends UpdateOperationEx
                 // }
             } else if (node == null && xpathExpression.endsWith("/text()") && variableValue instanceof String) {
                 final String parentPath = xpathExpression.substring(0, xpathExpression.lastIndexOf('/'));
-                final Node parentNode = (Node) xpath.compile(parentPath).evaluate(document, XPathConstants.NODE);
+                final Node parentNode = (Node) XMLCache.compile(parentPath).evaluate(document, XPathConstants.NODE);
                 parentNode.appendChild(document.createTextNode(getStringValue(variableValue)));
             }
             return DocumentManager.getDocumentContent(document);
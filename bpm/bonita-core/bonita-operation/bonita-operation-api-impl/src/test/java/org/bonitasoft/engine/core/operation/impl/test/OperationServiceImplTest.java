@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.operation.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.core.expression.control.api.ExpressionResolverService;
+import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
+import org.bonitasoft.engine.core.operation.OperationExecutorStrategy;
+import org.bonitasoft.engine.core.operation.OperationExecutorStrategyProvider;
+import org.bonitasoft.engine.core.operation.impl.AssignmentOperationExecutorStrategy;
+import org.bonitasoft.engine.core.operation.impl.OperationServiceImpl;
+import org.bonitasoft.engine.core.operation.model.SLeftOperand;
+import org.bonitasoft.engine.core.operation.model.SOperation;
+import org.bonitasoft.engine.core.operation.model.SOperatorType;
+import org.bonitasoft.engine.data.instance.api.DataInstanceService;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.data.instance.model.builder.SDataInstanceBuilders;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class OperationServiceImplTest {
+
+    private ExpressionResolverService expressionResolverService;
+
+    private DataInstanceService dataInstanceService;
+
+    private OperationServiceImpl operationService;
+
+    private SExpressionContext expressionContext;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void before() throws Exception {
+        expressionResolverService = mock(ExpressionResolverService.class);
+        dataInstanceService = mock(DataInstanceService.class);
+        final OperationExecutorStrategyProvider strategyProvider = mock(OperationExecutorStrategyProvider.class);
+        when(strategyProvider.getOperationExecutors()).thenReturn(
+                Collections.<OperationExecutorStrategy> singletonList(new AssignmentOperationExecutorStrategy(dataInstanceService, mock(
+                        SDataInstanceBuilders.class, RETURNS_DEEP_STUBS))));
+        operationService = new OperationServiceImpl(strategyProvider, expressionResolverService, mock(TechnicalLoggerService.class), dataInstanceService);
+        expressionContext = new SExpressionContext(12L, "PROCESS_INSTANCE", 1L);
+        // the value of an expression is its content
+        when(expressionResolverService.evaluate(anyListOf(SExpression.class), any(SExpressionContext.class))).thenAnswer(new Answer<List<Object>>() {
+
+            @Override
+            public List<Object> answer(final InvocationOnMock invocation) {
+                final List<Object> values = new ArrayList<Object>();
+                for (final SExpression expression : (List<SExpression>) invocation.getArguments()[0]) {
+                    values.add(expression.getContent());
+                }
+                return values;
+            }
+        });
+        when(dataInstanceService.getDataInstances(anyListOf(String.class), anyLong(), anyString())).thenAnswer(new Answer<List<SDataInstance>>() {
+
+            @Override
+            public List<SDataInstance> answer(final InvocationOnMock invocation) {
+                final List<SDataInstance> dataInstances = new ArrayList<SDataInstance>();
+                for (final String name : (List<String>) invocation.getArguments()[0]) {
+                    final SDataInstance dataInstance = mock(SDataInstance.class);
+                    when(dataInstance.getName()).thenReturn(name);
+                    dataInstances.add(dataInstance);
+                }
+                return dataInstances;
+            }
+        });
+    }
+
+    @Test
+    public void evaluateIndependentOperationsTogetherAndUpdateDataTogether() throws Exception {
+        final List<SOperation> operations = Arrays.asList(assignment("a", "value1"), assignment("b", "value2"), assignment("c", "value3"));
+
+        operationService.execute(operations, expressionContext);
+
+        verify(expressionResolverService, times(1)).evaluate(anyListOf(SExpression.class), eq(expressionContext));
+        verify(expressionResolverService, never()).evaluate(any(SExpression.class), any(SExpressionContext.class));
+        // once to put the data in the context and once to update them
+        verify(dataInstanceService, times(2)).getDataInstances(Arrays.asList("a", "b", "c"), 12L, "PROCESS_INSTANCE");
+        verify(dataInstanceService, never()).getDataInstance(anyString(), anyLong(), anyString());
+        verify(dataInstanceService, times(3)).updateDataInstance(any(SDataInstance.class), any(EntityUpdateDescriptor.class));
+        assertEquals("value1", expressionContext.getInputValues().get("a"));
+        assertEquals("value3", expressionContext.getInputValues().get("c"));
+    }
+
+    @Test
+    public void evaluateOperationReadingADataSetBeforeAfterIt() throws Exception {
+        final SOperation setA = assignment("a", "value1");
+        final SOperation setB = assignment("b", "value2");
+        final SOperation setCWithA = assignment("c", "a");
+        final SOperation setD = assignment("d", "value4");
+
+        operationService.execute(Arrays.asList(setA, setB, setCWithA, setD), expressionContext);
+
+        verify(expressionResolverService).evaluate(Arrays.asList(setA.getRightOperand(), setB.getRightOperand()), expressionContext);
+        verify(expressionResolverService).evaluate(Arrays.asList(setCWithA.getRightOperand(), setD.getRightOperand()), expressionContext);
+    }
+
+    private SOperation assignment(final String dataName, final String rightOperandContent) {
+        final SOperation operation = mock(SOperation.class);
+        final SLeftOperand leftOperand = mock(SLeftOperand.class);
+        when(leftOperand.getName()).thenReturn(dataName);
+        final SExpression rightOperand = mock(SExpression.class);
+        when(rightOperand.getContent()).thenReturn(rightOperandContent);
+        when(rightOperand.getDependencies()).thenReturn(Collections.<SExpression> emptyList());
+        when(operation.getType()).thenReturn(SOperatorType.ASSIGNMENT);
+        when(operation.getLeftOperand()).thenReturn(leftOperand);
+        when(operation.getRightOperand()).thenReturn(rightOperand);
+        when(operation.getOperator()).thenReturn("=");
+        return operation;
+    }
+
+}
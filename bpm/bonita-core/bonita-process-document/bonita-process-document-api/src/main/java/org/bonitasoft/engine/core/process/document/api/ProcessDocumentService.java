@@ -315,4 +315,14 @@ public interface ProcessDocumentService {
      */
     void deleteArchivedDocuments(long instanceId, ReadPersistenceService persistenceService) throws SDocumentMappingDeletionException;
 
+    /**
+     * Delete document contents that are not referenced by any document anymore, the contents already deleted are ignored
+     * 
+     * @param contentStorageIds
+     *            the storage ids of the contents
+     * @throws SProcessDocumentDeletionException
+     * @since 6.1
+     */
+    void deleteContents(List<String> contentStorageIds) throws SProcessDocumentDeletionException;
+
 }
@@ -37,6 +37,7 @@ import org.bonitasoft.engine.core.process.document.model.SProcessDocument;
 import org.bonitasoft.engine.core.process.document.model.builder.SAProcessDocumentBuilder;
 import org.bonitasoft.engine.core.process.document.model.builder.SProcessDocumentBuilder;
 import org.bonitasoft.engine.document.DocumentService;
+import org.bonitasoft.engine.document.SDocumentContentNotFoundException;
 import org.bonitasoft.engine.document.SDocumentException;
 import org.bonitasoft.engine.document.SDocumentNotFoundException;
 import org.bonitasoft.engine.document.model.SDocument;
@@ -458,4 +459,19 @@ public class ProcessDocumentServiceImpl implements ProcessDocumentService {
         }
     }
 
+    @Override
+    public void deleteContents(final List<String> contentStorageIds) throws SProcessDocumentDeletionException {
+        for (final String contentStorageId : contentStorageIds) {
+            try {
+                documentService.deleteDocumentContent(contentStorageId);
+            } catch (final SDocumentContentNotFoundException e) {
+                // already deleted with the document it belonged to
+            } catch (final SDocumentNotFoundException e) {
+                // already deleted with the document it belonged to
+            } catch (final SDocumentException e) {
+                throw new SProcessDocumentDeletionException(e.getMessage(), e);
+            }
+        }
+    }
+
 }
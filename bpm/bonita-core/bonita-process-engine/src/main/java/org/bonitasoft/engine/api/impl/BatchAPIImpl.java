@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bonitasoft.engine.api.APICall;
+import org.bonitasoft.engine.api.APICallResult;
+import org.bonitasoft.engine.api.BatchAPI;
+import org.bonitasoft.engine.api.internal.ServerWrappedException;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.exception.BonitaRuntimeException;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.service.TenantServiceSingleton;
+import org.bonitasoft.engine.service.impl.ServiceAccessorFactory;
+import org.bonitasoft.engine.session.InvalidSessionException;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.bonitasoft.engine.transaction.TransactionService;
+
+/**
+ * The session has already been checked and set on the current thread by the {@link ServerAPIImpl} when the batch is received: the calls are invoked
+ * directly on the API implementations, with this session. In a read-only batch, the transaction opened here is joined by the transactions of the APIs.
+ * A failing call marks this transaction as rollback only: it is then rolled back and the next calls run in a new one.
+ *
+ * @since 6.1
+ */
+public class BatchAPIImpl implements BatchAPI {
+
+    protected SessionAccessor getSessionAccessor() {
+        try {
+            return ServiceAccessorFactory.getInstance().createSessionAccessor();
+        } catch (final Exception e) {
+            throw new BonitaRuntimeException(e);
+        }
+    }
+
+    protected TenantServiceAccessor getTenantAccessor() {
+        try {
+            final long tenantId = getSessionAccessor().getTenantId();
+            return TenantServiceSingleton.getInstance(tenantId);
+        } catch (final Exception e) {
+            throw new BonitaRuntimeException(e);
+        }
+    }
+
+    protected ServerAPIImpl getServerAPI() {
+        return new ServerAPIImpl();
+    }
+
+    @Override
+    public List<APICallResult> executeBatch(final List<APICall> calls, final boolean readOnlyTransaction) {
+        try {
+            getSessionAccessor().getSessionId();
+        } catch (final SessionIdNotSetException e) {
+            throw new InvalidSessionException("A batch must be executed with a session");
+        }
+        final ServerAPIImpl serverAPI = getServerAPI();
+        if (!readOnlyTransaction) {
+            final List<APICallResult> results = new ArrayList<APICallResult>(calls.size());
+            for (final APICall call : calls) {
+                results.add(executeCall(serverAPI, call));
+            }
+            return results;
+        }
+        try {
+            return executeCallsInReadOnlyTransaction(serverAPI, calls, getTenantAccessor().getTransactionService());
+        } catch (final SBonitaException e) {
+            throw new BonitaRuntimeException(e);
+        }
+    }
+
+    private List<APICallResult> executeCallsInReadOnlyTransaction(final ServerAPIImpl serverAPI, final List<APICall> calls,
+            final TransactionService transactionService) throws SBonitaException {
+        final List<APICallResult> results = new ArrayList<APICallResult>(calls.size());
+        transactionService.begin();
+        try {
+            for (final APICall call : calls) {
+                if (transactionService.isRollbackOnly()) {
+                    // the APIs cannot join a transaction marked by a failing call
+                    transactionService.complete();
+                    transactionService.begin();
+                }
+                results.add(executeCall(serverAPI, call));
+            }
+            return results;
+        } finally {
+            if (!transactionService.isRollbackOnly()) {
+                transactionService.setRollbackOnly();
+            }
+            transactionService.complete();
+        }
+    }
+
+    private APICallResult executeCall(final ServerAPIImpl serverAPI, final APICall call) {
+        if (BatchAPI.class.getName().equals(call.getApiInterfaceName())) {
+            return new APICallResult(null, new BonitaRuntimeException("A batch cannot contain a call to the BatchAPI: " + call));
+        }
+        try {
+            return new APICallResult(serverAPI.invokeCall(call), null);
+        } catch (final ServerWrappedException e) {
+            return new APICallResult(null, e.getCause());
+        } catch (final RuntimeException e) {
+            return new APICallResult(null, e);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ package org.bonitasoft.engine.api.impl;
 import java.util.List;
 
 import org.bonitasoft.engine.commons.RestartHandler;
+import org.bonitasoft.engine.jobs.ArchiveRetentionPolicy;
 import org.bonitasoft.engine.restart.TenantRestartHandler;
 import org.bonitasoft.engine.scheduler.JobRegister;
 
@@ -73,4 +74,42 @@ public interface NodeConfiguration {
      */
     String getCleanInvalidSessionsJobCron();
 
+    /**
+     * Specify how often the archived process instances are purged according to the archive retention policies
+     * 
+     * @return a String representing a Unix Cron, "none" to never purge them
+     * @since 6.1
+     */
+    String getArchiveRetentionJobCron();
+
+    /**
+     * @return the archive retention policies, the one having no process name applies to all processes having no policy of their own
+     * @since 6.1
+     */
+    List<ArchiveRetentionPolicy> getArchiveRetentionPolicies();
+
+    /**
+     * @return the number of archived root process instances purged in one transaction
+     * @since 6.1
+     */
+    int getArchivePurgeChunkSize();
+
+    /**
+     * @return the max number of archived root process instances purged by one execution of the archive retention job
+     * @since 6.1
+     */
+    int getArchivePurgeMaxProcessInstancesPerRun();
+
+    /**
+     * @return the pause in milliseconds between the purge of two chunks, to leave room to the other transactions
+     * @since 6.1
+     */
+    long getArchivePurgePauseBetweenChunks();
+
+    /**
+     * @return the time in milliseconds an API call trusts that a tenant is activated without reading it again, 0 to read it on each call
+     * @since 6.1
+     */
+    long getTenantStatusTimeToLive();
+
 }
@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.bonitasoft.engine.commons.RestartHandler;
+import org.bonitasoft.engine.jobs.ArchiveRetentionPolicy;
 import org.bonitasoft.engine.restart.TenantRestartHandler;
 import org.bonitasoft.engine.scheduler.JobRegister;
 
@@ -42,6 +43,18 @@ public class NodeConfigurationImpl implements NodeConfiguration {
 
     private List<JobRegister> jobsToRegister;
 
+    private String archiveRetentionJobCron = "none";
+
+    private List<ArchiveRetentionPolicy> archiveRetentionPolicies;
+
+    private int archivePurgeChunkSize = 100;
+
+    private int archivePurgeMaxProcessInstancesPerRun = 10000;
+
+    private long archivePurgePauseBetweenChunks = 100;
+
+    private long tenantStatusTimeToLive = 10000;
+
     @Override
     public boolean shouldStartScheduler() {
         return shouldStartScheduler;
@@ -132,4 +145,59 @@ public class NodeConfigurationImpl implements NodeConfiguration {
         this.cleanInvalidSessionsJobCron = cleanInvalidSessionsJobCron;
     }
 
+    @Override
+    public String getArchiveRetentionJobCron() {
+        return archiveRetentionJobCron;
+    }
+
+    public void setArchiveRetentionJobCron(final String archiveRetentionJobCron) {
+        this.archiveRetentionJobCron = archiveRetentionJobCron;
+    }
+
+    @Override
+    public List<ArchiveRetentionPolicy> getArchiveRetentionPolicies() {
+        final List<ArchiveRetentionPolicy> emptyList = Collections.emptyList();
+        return archiveRetentionPolicies == null ? emptyList : archiveRetentionPolicies;
+    }
+
+    public void setArchiveRetentionPolicies(final List<ArchiveRetentionPolicy> archiveRetentionPolicies) {
+        this.archiveRetentionPolicies = archiveRetentionPolicies;
+    }
+
+    @Override
+    public int getArchivePurgeChunkSize() {
+        return archivePurgeChunkSize;
+    }
+
+    public void setArchivePurgeChunkSize(final int archivePurgeChunkSize) {
+        this.archivePurgeChunkSize = archivePurgeChunkSize;
+    }
+
+    @Override
+    public int getArchivePurgeMaxProcessInstancesPerRun() {
+        return archivePurgeMaxProcessInstancesPerRun;
+    }
+
+    public void setArchivePurgeMaxProcessInstancesPerRun(final int archivePurgeMaxProcessInstancesPerRun) {
+        this.archivePurgeMaxProcessInstancesPerRun = archivePurgeMaxProcessInstancesPerRun;
+    }
+
+    @Override
+    public long getArchivePurgePauseBetweenChunks() {
+        return archivePurgePauseBetweenChunks;
+    }
+
+    public void setArchivePurgePauseBetweenChunks(final long archivePurgePauseBetweenChunks) {
+        this.archivePurgePauseBetweenChunks = archivePurgePauseBetweenChunks;
+    }
+
+    @Override
+    public long getTenantStatusTimeToLive() {
+        return tenantStatusTimeToLive;
+    }
+
+    public void setTenantStatusTimeToLive(final long tenantStatusTimeToLive) {
+        this.tenantStatusTimeToLive = tenantStatusTimeToLive;
+    }
+
 }
@@ -355,6 +355,7 @@ public class PlatformAPIImpl implements PlatformAPI {
             deactiveTenant(tenant.getId());
             transactionExecutor.execute(clean);
             transactionExecutor.execute(deleteAll);
+            PlatformStateCache.platformChanged();
         } catch (final SBonitaException e) {
             throw new DeletionException(e);
         }
@@ -381,6 +382,7 @@ public class PlatformAPIImpl implements PlatformAPI {
                 }
             };
             transactionExecutor.execute(deletePlatformContent);
+            PlatformStateCache.platformChanged();
             transactionExecutor.execute(deleteTenantTables);
             final TransactionContent deletePlatformTableContent = new DeletePlatformTableContent(platformService);
             transactionExecutor.execute(deletePlatformTableContent);
@@ -531,6 +533,7 @@ public class PlatformAPIImpl implements PlatformAPI {
             // delete tenant in database
             final TransactionContent transactionContentForTenant = new DeleteTenant(tenantId, platformService);
             transactionExecutor.execute(transactionContentForTenant);
+            PlatformStateCache.tenantChanged(tenantId);
 
             // delete tenant folder
             final String targetDir = BonitaHomeServer.getInstance().getTenantsFolder() + File.separator + tenantId;
@@ -640,6 +643,7 @@ public class PlatformAPIImpl implements PlatformAPI {
             final long sessionId = createSessionAndMakeItActive(tenantId, sessionAccessor, sessionService, transactionExecutor);
             final TransactionContent transactionContent = new DeactivateTenant(tenantId, platformService, schedulerService, workService);
             transactionExecutor.execute(transactionContent);
+            PlatformStateCache.tenantChanged(tenantId);
             sessionService.deleteSession(sessionId);
         } catch (final STenantDeactivationException stde) {
             log(platformAccessor, stde);
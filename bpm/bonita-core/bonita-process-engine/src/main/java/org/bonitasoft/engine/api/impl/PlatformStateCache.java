@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of the platform and of the tenants as last read from the database by this node, used by {@link ServerAPIImpl} to check a session without
+ * opening a transaction.
+ * Only the positive answers are kept: a tenant is known as activated until the given date, the platform is known as created until it is deleted. The
+ * {@link PlatformAPIImpl} forgets them when it deactivates or deletes a tenant or the platform; a change made by another node is seen once the date is
+ * reached.
+ * A value read before a change but stored after it is ignored, so that the cache never outlives a change made on this node.
+ *
+ * @since 6.1
+ */
+final class PlatformStateCache {
+
+    private static final ConcurrentMap<Long, Long> activatedTenants = new ConcurrentHashMap<Long, Long>();
+
+    private static final AtomicLong version = new AtomicLong();
+
+    private static volatile boolean platformCreated = false;
+
+    private PlatformStateCache() {
+    }
+
+    /**
+     * @return the version to give to {@link #tenantActivated(long, long, long)} or {@link #platformCreated(long)} for a state read from now on
+     */
+    static long getVersion() {
+        return version.get();
+    }
+
+    static boolean isTenantActivated(final long tenantId) {
+        final Long activatedUntil = activatedTenants.get(tenantId);
+        if (activatedUntil == null) {
+            return false;
+        }
+        if (activatedUntil > System.currentTimeMillis()) {
+            return true;
+        }
+        activatedTenants.remove(tenantId, activatedUntil);
+        return false;
+    }
+
+    static void tenantActivated(final long tenantId, final long timeToLive, final long readVersion) {
+        if (timeToLive > 0) {
+            activatedTenants.put(tenantId, System.currentTimeMillis() + timeToLive);
+            if (version.get() != readVersion) {
+                activatedTenants.remove(tenantId);
+            }
+        }
+    }
+
+    static void tenantChanged(final long tenantId) {
+        version.incrementAndGet();
+        activatedTenants.remove(tenantId);
+    }
+
+    static boolean isPlatformCreated() {
+        return platformCreated;
+    }
+
+    static void platformCreated(final long readVersion) {
+        platformCreated = true;
+        if (version.get() != readVersion) {
+            platformCreated = false;
+        }
+    }
+
+    static void platformChanged() {
+        version.incrementAndGet();
+        platformCreated = false;
+        activatedTenants.clear();
+    }
+
+}
@@ -326,6 +326,7 @@ import org.bonitasoft.engine.execution.event.EventsHandler;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
 import org.bonitasoft.engine.expression.Expression;
 import org.bonitasoft.engine.expression.ExpressionEvaluationException;
+import org.bonitasoft.engine.expression.ProcessExpressionsCompiler;
 import org.bonitasoft.engine.expression.model.SExpression;
 import org.bonitasoft.engine.expression.model.builder.SExpressionBuilders;
 import org.bonitasoft.engine.home.BonitaHomeServer;
@@ -440,6 +441,9 @@ public class ProcessAPIImpl implements ProcessAPI {
 
     private static final String CONTAINER_TYPE_ACTIVITY_INSTANCE = "ACTIVITY_INSTANCE";
 
+    private static final List<Integer> FINAL_PROCESS_INSTANCE_STATE_IDS = Arrays.asList(ProcessInstanceState.COMPLETED.getId(),
+            ProcessInstanceState.ABORTED.getId(), ProcessInstanceState.CANCELLED.getId(), ProcessInstanceState.ERROR.getId());
+
     protected static TenantServiceAccessor getTenantAccessor() {
         try {
             final SessionAccessor sessionAccessor = ServiceAccessorFactory.getInstance().createSessionAccessor();
@@ -505,6 +509,8 @@ public class ProcessAPIImpl implements ProcessAPI {
 
                 final File processFolder = new File(file, String.valueOf(processDefinitionId));
                 IOUtil.deleteDir(processFolder);
+                tenantAccessor.getExpressionService().setClassesFolder(processDefinitionId, null);
+                tenantAccessor.getConnectorService().clearConnectorImplementations(processDefinitionId);
             } catch (final BonitaHomeNotSetException e) {
                 transactionExecutor.setTransactionRollback();
                 throw new DeletionException(e);
@@ -718,6 +724,7 @@ public class ProcessAPIImpl implements ProcessAPI {
         final SProcessDefinition sProcessDefinition = bpmDefinitionBuilders.getProcessDefinitionBuilder()
                 .createNewInstance(designProcessDefinition, sExpressionBuilders, sDataDefinitionBuilders, sOperationBuilders).done();
 
+        boolean isResolved;
         try {
             final boolean txOpened = transactionExecutor.openTransaction();
             try {
@@ -731,8 +738,7 @@ public class ProcessAPIImpl implements ProcessAPI {
                 processDefinitionService.store(sProcessDefinition, designProcessDefinition.getDisplayName(), designProcessDefinition.getDisplayDescription());
                 unzipBar(businessArchive, sProcessDefinition, tenantAccessor.getTenantId());// TODO first unzip in temp folder
                 // TODO refactor this to avoid using transaction executor inside
-                final boolean isResolved = tenantAccessor.getDependencyResolver()
-                        .resolveDependencies(this, businessArchive, tenantAccessor, sProcessDefinition);
+                isResolved = tenantAccessor.getDependencyResolver().resolveDependencies(this, businessArchive, tenantAccessor, sProcessDefinition);
                 if (isResolved) {
                     tenantAccessor.getDependencyResolver().resolveAndCreateDependencies(businessArchive, processDefinitionService, dependencyService,
                             dependencyBuilderAccessor, sProcessDefinition);
@@ -755,6 +761,10 @@ public class ProcessAPIImpl implements ProcessAPI {
 
         final ProcessDefinition processDefinition = ModelConvertor.toProcessDefinition(sProcessDefinition);
         final TechnicalLoggerService logger = tenantAccessor.getTechnicalLoggerService();
+        if (isResolved) {
+            // outside of the transaction: the classloader of the process is ready and the scripts do not need the database
+            ProcessExpressionsCompiler.compileQuietly(sProcessDefinition, tenantAccessor);
+        }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
             logger.log(this.getClass(), TechnicalLogSeverity.INFO, "The user <" + getUserNameFromSession() + "> has installed process <" +
                     sProcessDefinition.getName() + "> in version <" + sProcessDefinition.getVersion() + ">");
@@ -848,6 +858,8 @@ public class ProcessAPIImpl implements ProcessAPI {
         } catch (final SBonitaException e) {
             throw new ProcessActivationException(e);
         }
+        // the connectors of the remaining instances resolve their implementations again
+        tenantAccessor.getConnectorService().clearConnectorImplementations(processId);
     }
 
     @Override
@@ -3652,8 +3664,33 @@ public class ProcessAPIImpl implements ProcessAPI {
     @Override
     public long deleteArchivedProcessInstances(final long processDefinitionId, final int startIndex, final int maxResults,
             final ProcessInstanceCriterion criterion) throws DeletionException {
-        // TODO Auto-generated method stub
-        return 0;
+        return deleteArchivedProcessInstances(getTenantAccessor(), processDefinitionId, startIndex, maxResults, criterion);
+    }
+
+    long deleteArchivedProcessInstances(final TenantServiceAccessor tenantAccessor, final long processDefinitionId, final int startIndex,
+            final int maxResults, final ProcessInstanceCriterion criterion) throws DeletionException {
+        final ProcessInstanceService processInstanceService = tenantAccessor.getProcessInstanceService();
+        final SAProcessInstanceBuilder modelBuilder = tenantAccessor.getBPMInstanceBuilders().getSAProcessInstanceBuilder();
+        final TransactionExecutor transactionExecutor = tenantAccessor.getTransactionExecutor();
+        final OrderAndField orderAndField = OrderAndFields.getOrderAndFieldForProcessInstance(criterion, modelBuilder);
+        final OrderByOption order = new OrderByOption(SAProcessInstance.class, orderAndField.getField(), orderAndField.getOrder());
+        final QueryOptions queryOptions = new QueryOptions(startIndex, maxResults, Collections.singletonList(order));
+        try {
+            final boolean txOpened = transactionExecutor.openTransaction();
+            try {
+                final List<Long> processInstanceIds = processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(processDefinitionId,
+                        FINAL_PROCESS_INSTANCE_STATE_IDS, Long.MAX_VALUE, queryOptions);
+                processInstanceService.purgeArchivedProcessInstances(processInstanceIds);
+                return processInstanceIds.size();
+            } catch (final SBonitaException e) {
+                transactionExecutor.setTransactionRollback();
+                throw new DeletionException(e);
+            } finally {
+                transactionExecutor.completeTransaction(txOpened);
+            }
+        } catch (final STransactionException e) {
+            throw new DeletionException(e);
+        }
     }
 
     private List<Long> createLockProcessInstances(final LockService lockService, final String objectType, final List<SProcessInstance> sProcessInstances)
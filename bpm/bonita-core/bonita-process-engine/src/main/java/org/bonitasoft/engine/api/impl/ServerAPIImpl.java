@@ -18,11 +18,15 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.bonitasoft.engine.api.APICall;
 import org.bonitasoft.engine.api.internal.ServerAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.commons.ClassReflector;
+import org.bonitasoft.engine.commons.XMLCache;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.core.login.LoginService;
 import org.bonitasoft.engine.core.platform.login.PlatformLoginService;
 import org.bonitasoft.engine.exception.APIImplementationNotFoundException;
@@ -30,7 +34,6 @@ import org.bonitasoft.engine.exception.BonitaRuntimeException;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.platform.PlatformService;
-import org.bonitasoft.engine.platform.model.STenant;
 import org.bonitasoft.engine.platform.session.PlatformSessionService;
 import org.bonitasoft.engine.scheduler.SchedulerService;
 import org.bonitasoft.engine.service.APIAccessResolver;
@@ -44,7 +47,6 @@ import org.bonitasoft.engine.session.PlatformSession;
 import org.bonitasoft.engine.session.Session;
 import org.bonitasoft.engine.session.SessionService;
 import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
-import org.bonitasoft.engine.transaction.STransactionException;
 import org.bonitasoft.engine.transaction.TransactionService;
 
 /**
@@ -56,6 +58,8 @@ public class ServerAPIImpl implements ServerAPI {
 
     private static final long serialVersionUID = -161775388604256321L;
 
+    private static final ServerAPIMetrics metrics = new ServerAPIMetrics();
+
     private final APIAccessResolver accessResolver;
 
     private TechnicalLoggerService technicalLogger;
@@ -76,14 +80,24 @@ public class ServerAPIImpl implements ServerAPI {
         technicalLogger = technicalLoggerService;
     }
 
+    /**
+     * @return the latency of the calls received by this node
+     */
+    public static ServerAPIMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public Object invokeMethod(final Map<String, Serializable> options, final String apiInterfaceName, final String methodName,
             final List<String> classNameParameters, final Object[] parametersValues) throws ServerWrappedException {
         final ClassLoader baseClassLoader = Thread.currentThread().getContextClassLoader();
 
         SessionAccessor sessionAccessor = null;
+        final long start = System.nanoTime();
+        long invocationStart = 0;
         try {
             sessionAccessor = beforeInvokeMethod(options, apiInterfaceName);
+            invocationStart = System.nanoTime();
             return invokeAPI(apiInterfaceName, methodName, classNameParameters, parametersValues);
         } catch (final UndeclaredThrowableException e) {
             if (technicalLogger != null && technicalLogger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
@@ -101,18 +115,32 @@ public class ServerAPIImpl implements ServerAPI {
             }
             // reset class loader
             Thread.currentThread().setContextClassLoader(baseClassLoader);
+            XMLCache.clearDocuments();
+            recordCall(apiInterfaceName, methodName, start, invocationStart, System.nanoTime());
         }
     }
 
-    private SessionAccessor beforeInvokeMethod(final Map<String, Serializable> options, final String apiInterfaceName) throws ServerWrappedException {
-        // boolean hasSetSessionAccessor = false;
-        TransactionService txService = null;
+    private void recordCall(final String apiInterfaceName, final String methodName, final long start, final long invocationStart, final long end) {
+        if (invocationStart == 0) {
+            metrics.callRejected(end - start);
+            return;
+        }
+        metrics.callValidated(invocationStart - start, end - invocationStart);
+        if (technicalLogger != null && technicalLogger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+            technicalLogger.log(this.getClass(), TechnicalLogSeverity.DEBUG, apiInterfaceName + "." + methodName + ": session validated in "
+                    + TimeUnit.NANOSECONDS.toMicros(invocationStart - start) + " \u00b5s, method executed in " + TimeUnit.NANOSECONDS.toMicros(end - invocationStart)
+                    + " \u00b5s");
+        }
+    }
 
+    /**
+     * Check the session and set it on the current thread, without opening a transaction: the sessions are kept in memory and the status of the tenant
+     * is read from the database only when it is not known by the {@link PlatformStateCache}.
+     */
+    private SessionAccessor beforeInvokeMethod(final Map<String, Serializable> options, final String apiInterfaceName) throws ServerWrappedException {
         try {
             final ServiceAccessorFactory serviceAccessorFactory = ServiceAccessorFactory.getInstance();
             final PlatformServiceAccessor platformServiceAccessor = serviceAccessorFactory.createPlatformServiceAccessor();
-            txService = platformServiceAccessor.getTransactionService();
-            txService.begin();
 
             final SessionAccessor sessionAccessor = serviceAccessorFactory.createSessionAccessor();
             final Session session = getSession(options);
@@ -154,14 +182,6 @@ public class ServerAPIImpl implements ServerAPI {
             throw swe;
         } catch (final Exception e) {
             throw new ServerWrappedException(e);
-        } finally {
-            try {
-                if (txService != null && txService.isTransactionActive()) {
-                    txService.complete();
-                }
-            } catch (final STransactionException e) {
-                throw new ServerWrappedException(e);
-            }
         }
     }
 
@@ -179,6 +199,13 @@ public class ServerAPIImpl implements ServerAPI {
         return sessionType;
     }
 
+    /**
+     * Invoke one call of a batch: the session of the batch has already been checked and set on the current thread.
+     */
+    Object invokeCall(final APICall call) throws ServerWrappedException {
+        return invokeAPI(call.getApiInterfaceName(), call.getMethodName(), call.getClassNameParameters(), call.getParametersValues());
+    }
+
     private Object invokeAPI(final String apiInterfaceName, final String methodName, final List<String> classNameParameters, final Object[] parametersValues)
             throws ServerWrappedException {
         try {
@@ -229,8 +256,7 @@ public class ServerAPIImpl implements ServerAPI {
                 logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "The scheduler is not started!");
             }
             final APISession apiSession = (APISession) session;
-            final STenant tenant = platformServiceAccessor.getPlatformService().getTenant(apiSession.getTenantId());
-            if (!PlatformService.ACTIVATED.equals(tenant.getStatus())) {
+            if (!isTenantActivated(platformServiceAccessor, apiSession.getTenantId())) {
                 throw new ServerWrappedException(new InvalidSessionException("The tenantd is not activated"));
             }
             final TenantServiceAccessor tenantAccessor = platformServiceAccessor.getTenantServiceAccessor(apiSession.getTenantId());
@@ -245,6 +271,47 @@ public class ServerAPIImpl implements ServerAPI {
         }
     }
 
+    private boolean isTenantActivated(final PlatformServiceAccessor platformServiceAccessor, final long tenantId) throws SBonitaException {
+        if (PlatformStateCache.isTenantActivated(tenantId)) {
+            return true;
+        }
+        metrics.stateRead();
+        final long version = PlatformStateCache.getVersion();
+        final PlatformService platformService = platformServiceAccessor.getPlatformService();
+        final TransactionService txService = platformServiceAccessor.getTransactionService();
+        final boolean activated;
+        txService.begin();
+        try {
+            activated = platformService.isTenantActivated(platformService.getTenant(tenantId));
+        } finally {
+            txService.complete();
+        }
+        if (activated) {
+            PlatformStateCache.tenantActivated(tenantId, platformServiceAccessor.getPlaformConfiguration().getTenantStatusTimeToLive(), version);
+        }
+        return activated;
+    }
+
+    private boolean isPlatformCreated(final PlatformServiceAccessor platformServiceAccessor) throws SBonitaException {
+        if (PlatformStateCache.isPlatformCreated()) {
+            return true;
+        }
+        metrics.stateRead();
+        final long version = PlatformStateCache.getVersion();
+        final TransactionService txService = platformServiceAccessor.getTransactionService();
+        final boolean created;
+        txService.begin();
+        try {
+            created = platformServiceAccessor.getPlatformService().isPlatformCreated();
+        } finally {
+            txService.complete();
+        }
+        if (created) {
+            PlatformStateCache.platformCreated(version);
+        }
+        return created;
+    }
+
     private ClassLoader getTenantClassLoader(final PlatformServiceAccessor platformServiceAccessor, final Session session) throws ServerWrappedException {
         final APISession apiSession = (APISession) session;
         try {
@@ -259,8 +326,7 @@ public class ServerAPIImpl implements ServerAPI {
     private ClassLoader getPlatformClassLoader(final PlatformServiceAccessor platformServiceAccessor) throws ServerWrappedException {
         ClassLoader classLoader = null;
         try {
-            final PlatformService platformService = platformServiceAccessor.getPlatformService();
-            if (platformService.isPlatformCreated()) {
+            if (isPlatformCreated(platformServiceAccessor)) {
                 final ClassLoaderService classLoaderService = platformServiceAccessor.getClassLoaderService();
                 classLoader = classLoaderService.getGlobalClassLoader();
             }
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the calls received by the {@link ServerAPIImpl} of this node, split between the validation of the session and the invocation of the API
+ * method. All durations are in nanoseconds.
+ *
+ * @since 6.1
+ */
+public class ServerAPIMetrics {
+
+    private final AtomicLong numberOfCalls = new AtomicLong();
+
+    private final AtomicLong numberOfRejectedCalls = new AtomicLong();
+
+    private final AtomicLong validationTime = new AtomicLong();
+
+    private final AtomicLong invocationTime = new AtomicLong();
+
+    private final AtomicLong maxValidationTime = new AtomicLong();
+
+    private final AtomicLong numberOfStateReads = new AtomicLong();
+
+    void callValidated(final long validationDuration, final long invocationDuration) {
+        numberOfCalls.incrementAndGet();
+        addValidationTime(validationDuration);
+        invocationTime.addAndGet(invocationDuration);
+    }
+
+    void callRejected(final long validationDuration) {
+        numberOfRejectedCalls.incrementAndGet();
+        addValidationTime(validationDuration);
+    }
+
+    void stateRead() {
+        numberOfStateReads.incrementAndGet();
+    }
+
+    private void addValidationTime(final long validationDuration) {
+        validationTime.addAndGet(validationDuration);
+        long max = maxValidationTime.get();
+        while (validationDuration > max && !maxValidationTime.compareAndSet(max, validationDuration)) {
+            max = maxValidationTime.get();
+        }
+    }
+
+    /**
+     * @return the number of calls having a valid session, whether the API method succeeded or not
+     */
+    public long getNumberOfCalls() {
+        return numberOfCalls.get();
+    }
+
+    /**
+     * @return the number of calls refused before invoking the API method, e.g. because of an invalid session
+     */
+    public long getNumberOfRejectedCalls() {
+        return numberOfRejectedCalls.get();
+    }
+
+    /**
+     * @return the time spent validating the sessions of all calls, rejected ones included
+     */
+    public long getTotalValidationTime() {
+        return validationTime.get();
+    }
+
+    /**
+     * @return the time spent in the API methods
+     */
+    public long getTotalInvocationTime() {
+        return invocationTime.get();
+    }
+
+    public long getMaxValidationTime() {
+        return maxValidationTime.get();
+    }
+
+    public long getAverageValidationTime() {
+        final long calls = numberOfCalls.get() + numberOfRejectedCalls.get();
+        return calls == 0 ? 0 : validationTime.get() / calls;
+    }
+
+    public long getAverageInvocationTime() {
+        final long calls = numberOfCalls.get();
+        return calls == 0 ? 0 : invocationTime.get() / calls;
+    }
+
+    /**
+     * @return the number of times the state of a tenant or of the platform was not known in memory and was read in a transaction
+     */
+    public long getNumberOfStateReads() {
+        return numberOfStateReads.get();
+    }
+
+    public void reset() {
+        numberOfCalls.set(0);
+        numberOfRejectedCalls.set(0);
+        validationTime.set(0);
+        invocationTime.set(0);
+        maxValidationTime.set(0);
+        numberOfStateReads.set(0);
+    }
+
+}
@@ -42,6 +42,7 @@ import org.bonitasoft.engine.dependency.model.builder.DependencyBuilderAccessor;
 import org.bonitasoft.engine.exception.BonitaException;
 import org.bonitasoft.engine.exception.BonitaHomeNotSetException;
 import org.bonitasoft.engine.exception.BonitaRuntimeException;
+import org.bonitasoft.engine.expression.ProcessExpressionsCompiler;
 import org.bonitasoft.engine.home.BonitaHomeServer;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -96,15 +97,20 @@ public class DependencyResolver {
         final ProcessDefinitionService processDefinitionService = tenantAccessor.getProcessDefinitionService();
         final DependencyService dependencyService = tenantAccessor.getDependencyService();
         final DependencyBuilderAccessor dependencyBuilderAccessor = tenantAccessor.getDependencyBuilderAccessor();
+        SProcessDefinition newlyResolvedProcess = null;
         try {
             final boolean txOpened = transactionExecutor.openTransaction();
             try {
                 boolean resolved = true;
+                SProcessDefinition processDefinition = null;
                 for (final ProcessDependencyResolver dependencyResolver : resolvers) {
-                    final SProcessDefinition processDefinition = processDefinitionService.getProcessDefinition(processDefinitionId);
+                    processDefinition = processDefinitionService.getProcessDefinition(processDefinitionId);
                     resolved &= dependencyResolver.checkResolution(tenantAccessor, processDefinition).isEmpty();
                 }
-                changeResolutionStatus(processDefinitionId, tenantAccessor, processDefinitionService, dependencyService, dependencyBuilderAccessor, resolved);
+                if (changeResolutionStatus(processDefinitionId, tenantAccessor, processDefinitionService, dependencyService, dependencyBuilderAccessor,
+                        resolved)) {
+                    newlyResolvedProcess = processDefinition;
+                }
             } catch (final SBonitaException e) {
                 transactionExecutor.setTransactionRollback();
                 loggerService.log(DependencyResolver.class, TechnicalLogSeverity.DEBUG, e);
@@ -119,10 +125,18 @@ public class DependencyResolver {
             loggerService.log(DependencyResolver.class, TechnicalLogSeverity.DEBUG, e);
             loggerService.log(DependencyResolver.class, TechnicalLogSeverity.WARNING,
                     "Unable to resolve dependencies after they were modified. Please retry it manually");
+            newlyResolvedProcess = null;
+        }
+        if (newlyResolvedProcess != null) {
+            // as at deployment, outside of the transaction
+            ProcessExpressionsCompiler.compileQuietly(newlyResolvedProcess, tenantAccessor);
         }
     }
 
-    private void changeResolutionStatus(final long processDefinitionId, final TenantServiceAccessor tenantAccessor,
+    /**
+     * @return true if the process became resolved
+     */
+    private boolean changeResolutionStatus(final long processDefinitionId, final TenantServiceAccessor tenantAccessor,
             final ProcessDefinitionService processDefinitionService, final DependencyService dependencyService,
             final DependencyBuilderAccessor dependencyBuilderAccessor, final boolean resolved) throws SBonitaException, BonitaHomeNotSetException {
         final SProcessDefinitionDeployInfo processDefinitionDeployInfo = processDefinitionService.getProcessDeploymentInfo(processDefinitionId);
@@ -131,6 +145,7 @@ public class DependencyResolver {
                 resolveAndCreateDependencies(
                         new File(new File(BonitaHomeServer.getInstance().getProcessesFolder(tenantAccessor.getTenantId())), String.valueOf(processDefinitionId)),
                         processDefinitionService, dependencyService, dependencyBuilderAccessor, processDefinitionId);
+                return true;
             }
         } else {
             if (ConfigurationState.RESOLVED.name().equals(processDefinitionDeployInfo.getConfigurationState())) {
@@ -139,6 +154,7 @@ public class DependencyResolver {
                 processDefinitionService.updateProcessDefinitionDeployInfo(processDefinitionId, updateDescriptor);
             }
         }
+        return false;
     }
 
     /**
@@ -29,15 +29,33 @@ public class GetMessageEventCouples implements TransactionContentWithResult<List
 
     private final EventInstanceService eventInstanceService;
 
+    private final String correlationKey;
+
+    private final int fromIndex;
+
+    private final int maxResults;
+
     private List<SMessageEventCouple> messageEventCouples;
 
-    public GetMessageEventCouples(final EventInstanceService eventInstanceService) {
+    public GetMessageEventCouples(final EventInstanceService eventInstanceService, final int fromIndex, final int maxResults) {
+        this(eventInstanceService, null, fromIndex, maxResults);
+    }
+
+    public GetMessageEventCouples(final EventInstanceService eventInstanceService, final String correlationKey, final int fromIndex,
+            final int maxResults) {
         this.eventInstanceService = eventInstanceService;
+        this.correlationKey = correlationKey;
+        this.fromIndex = fromIndex;
+        this.maxResults = maxResults;
     }
 
     @Override
     public void execute() throws SBonitaException {
-        messageEventCouples = eventInstanceService.getMessageEventCouples();
+        if (correlationKey == null) {
+            messageEventCouples = eventInstanceService.getMessageEventCouples(fromIndex, maxResults);
+        } else {
+            messageEventCouples = eventInstanceService.getMessageEventCouples(correlationKey, fromIndex, maxResults);
+        }
     }
 
     @Override
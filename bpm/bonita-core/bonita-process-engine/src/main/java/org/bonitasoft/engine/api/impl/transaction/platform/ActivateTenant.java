@@ -25,6 +25,7 @@ import org.bonitasoft.engine.commons.transaction.TransactionContent;
 import org.bonitasoft.engine.events.model.FireEventException;
 import org.bonitasoft.engine.jobs.BPMEventHandlingJob;
 import org.bonitasoft.engine.jobs.CleanInvalidSessionsJob;
+import org.bonitasoft.engine.jobs.PurgeArchivedProcessInstancesJob;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.platform.PlatformService;
@@ -47,6 +48,8 @@ public final class ActivateTenant implements TransactionContent {
 
     public static final String BPM_EVENT_HANDLING = "BPMEventHandling";
 
+    public static final String ARCHIVE_RETENTION = "ArchiveRetention";
+
     private final long tenantId;
 
     private final PlatformService platformService;
@@ -78,6 +81,7 @@ public final class ActivateTenant implements TransactionContent {
             workService.start(tenantId);
             startEventHandling();
             startCleanInvalidSessionsJob();
+            startArchiveRetentionJob();
             final List<JobRegister> jobsToRegister = plaformConfiguration.getJobsToRegister();
             for (final JobRegister jobRegister : jobsToRegister) {
                 jobRegister.registerJobIfNotRegistered();
@@ -121,4 +125,23 @@ public final class ActivateTenant implements TransactionContent {
         }
     }
 
+    private void startArchiveRetentionJob() throws SSchedulerException, FireEventException {
+        final String jobClassName = PurgeArchivedProcessInstancesJob.class.getName();
+        final String cron = plaformConfiguration.getArchiveRetentionJobCron();
+        if (cron.equalsIgnoreCase("none")) {
+            return;
+        }
+        if (schedulerService.isStarted()) {
+            final SJobDescriptor jobDescriptor = schedulerService.getJobDescriptorBuilder().createNewInstance(jobClassName, ARCHIVE_RETENTION).done();
+            final ArrayList<SJobParameter> jobParameters = new ArrayList<SJobParameter>();
+            final Trigger trigger = new UnixCronTrigger("UnixCronTrigger" + UUID.randomUUID().getLeastSignificantBits(), new Date(), cron);
+            logger.log(ProcessAPI.class, TechnicalLogSeverity.INFO, "Starting archive retention job with frequency: " + cron);
+            schedulerService.schedule(jobDescriptor, jobParameters, trigger);
+        } else {
+            if (logger.isLoggable(ActivateTenant.class, TechnicalLogSeverity.WARNING)) {
+                logger.log(ActivateTenant.class, TechnicalLogSeverity.WARNING, "The scheduler is not started: impossible to schedule job " + jobClassName);
+            }
+        }
+    }
+
 }
@@ -131,4 +131,9 @@ public class ConnectorServiceDecorator implements ConnectorService {
     public Long getNumberOfConnectorImplementations(final long processDefinitionId, final long tenantId) throws SConnectorException {
         return connectorService.getNumberOfConnectorImplementations(processDefinitionId, tenantId);
     }
+
+    @Override
+    public void clearConnectorImplementations(final long processDefinitionId) {
+        connectorService.clearConnectorImplementations(processDefinitionId);
+    }
 }
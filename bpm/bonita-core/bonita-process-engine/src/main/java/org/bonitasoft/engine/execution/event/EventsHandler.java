@@ -119,6 +119,8 @@ public class EventsHandler {
 
     private final BPMDefinitionBuilders bpmDefinitionBuilders;
 
+    private final MessageEventCouplesHandler messageEventCouplesHandler;
+
     public EventsHandler(final SchedulerService schedulerService, final ExpressionResolverService expressionResolverService,
             final SDataInstanceBuilders sDataInstanceBuilders, final BPMInstanceBuilders instanceBuilders, final BPMDefinitionBuilders bpmDefinitionBuilders,
             final EventInstanceService eventInstanceService, final BPMInstancesCreator bpmInstancesCreator, final DataInstanceService dataInstanceService,
@@ -136,10 +138,12 @@ public class EventsHandler {
         this.lockService = lockService;
         this.tokenService = tokenService;
         this.logger = logger;
+        messageEventCouplesHandler = new MessageEventCouplesHandler(eventInstanceService, instanceBuilders, this, transactionExecutor, workService,
+                lockService, logger);
         handlers = new HashMap<SEventTriggerType, EventHandlerStrategy>(4);
         handlers.put(SEventTriggerType.TIMER, new TimerEventHandlerStrategy(expressionResolverService, schedulerService, logger));
         handlers.put(SEventTriggerType.MESSAGE, new MessageEventHandlerStrategy(expressionResolverService, instanceBuilders, eventInstanceService,
-                bpmInstancesCreator, dataInstanceService, sDataInstanceBuilders, processDefinitionService));
+                bpmInstancesCreator, dataInstanceService, sDataInstanceBuilders, processDefinitionService, messageEventCouplesHandler));
         handlers.put(SEventTriggerType.SIGNAL, new SignalEventHandlerStrategy(this, instanceBuilders, eventInstanceService));
         handlers.put(SEventTriggerType.TERMINATE, new TerminateEventHandlerStrategy(instanceBuilders, processInstanceService, eventInstanceService,
                 containerRegistry, lockService, logger));
@@ -256,7 +260,7 @@ public class EventsHandler {
 
     public void handleThrowMessage(final SProcessDefinition processDefinition, final SSendTaskDefinition sendTaskDefinition,
             final SSendTaskInstance sendTaskInstance) throws SEventTriggerInstanceCreationException, SMessageInstanceCreationException, SDataInstanceException,
-            SExpressionException {
+            SExpressionException, WorkRegisterException {
         final SThrowMessageEventTriggerDefinition eventTrigger = sendTaskDefinition.getMessageTrigger();
         final MessageEventHandlerStrategy messageEventHandlerStrategy = (MessageEventHandlerStrategy) handlers.get(SEventTriggerType.MESSAGE);
         messageEventHandlerStrategy.handleThrowEvent(processDefinition, sendTaskDefinition, sendTaskInstance, eventTrigger);
@@ -437,4 +441,8 @@ public class EventsHandler {
         return handlers.get(triggerType);
     }
 
+    public MessageEventCouplesHandler getMessageEventCouplesHandler() {
+        return messageEventCouplesHandler;
+    }
+
 }
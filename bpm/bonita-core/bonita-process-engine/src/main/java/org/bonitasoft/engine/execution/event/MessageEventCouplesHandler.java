@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.event;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.bonitasoft.engine.api.impl.transaction.event.GetMessageEventCouples;
+import org.bonitasoft.engine.api.impl.transaction.event.HandleMessageEventCouple;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.transaction.TransactionContent;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.builder.BPMInstanceBuilders;
+import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SMessageInstanceBuilder;
+import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SWaitingMessageEventBuilder;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
+import org.bonitasoft.engine.execution.work.HandleMessageEventCouplesWork;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.work.WorkRegisterException;
+import org.bonitasoft.engine.work.WorkService;
+
+/**
+ * Match the message instances with the waiting message events having the same correlation key.
+ * The couples of one correlation key are handled under an exclusive lock on that key: the works registered when a message or a waiting message event is
+ * created and the BPMEventHandlingJob can't consume the same message or the same waiting message event twice.
+ *
+ * @since 6.1
+ */
+public class MessageEventCouplesHandler {
+
+    public static final String LOCK_TYPE = "MESSAGE_CORRELATION";
+
+    /**
+     * Max number of couples handled at once for one correlation key, if there are more another work is registered
+     */
+    static final int MAX_COUPLES_PER_KEY = 100;
+
+    private final EventInstanceService eventInstanceService;
+
+    private final BPMInstanceBuilders instanceBuilders;
+
+    private final EventsHandler eventsHandler;
+
+    private final TransactionExecutor transactionExecutor;
+
+    private final WorkService workService;
+
+    private final LockService lockService;
+
+    private final TechnicalLoggerService logger;
+
+    public MessageEventCouplesHandler(final EventInstanceService eventInstanceService, final BPMInstanceBuilders instanceBuilders,
+            final EventsHandler eventsHandler, final TransactionExecutor transactionExecutor, final WorkService workService, final LockService lockService,
+            final TechnicalLoggerService logger) {
+        this.eventInstanceService = eventInstanceService;
+        this.instanceBuilders = instanceBuilders;
+        this.eventsHandler = eventsHandler;
+        this.transactionExecutor = transactionExecutor;
+        this.workService = workService;
+        this.lockService = lockService;
+        this.logger = logger;
+    }
+
+    /**
+     * Register a work matching the messages and the waiting message events of the given correlation key, once the current transaction is committed
+     *
+     * @param correlationKey
+     *            the correlation key of a message instance or of a waiting message event, nothing is done if it is null
+     * @throws WorkRegisterException
+     */
+    public void registerHandlingOf(final String correlationKey) throws WorkRegisterException {
+        if (correlationKey != null) {
+            workService.registerWork(new HandleMessageEventCouplesWork(this, correlationKey));
+        }
+    }
+
+    /**
+     * Handle the couples of the given correlation key, must be called outside of any transaction
+     *
+     * @param correlationKey
+     *            the correlation key of the messages and of the waiting message events to match
+     * @throws SBonitaException
+     */
+    public void handle(final String correlationKey) throws SBonitaException {
+        final long lockId = toLockId(correlationKey);
+        lockService.createExclusiveLockAccess(lockId, LOCK_TYPE);
+        final int nbCouples;
+        try {
+            // read under the lock: what was handled by a previous holder of the lock is not returned
+            final GetMessageEventCouples getMessageEventCouples = new GetMessageEventCouples(eventInstanceService, correlationKey, 0, MAX_COUPLES_PER_KEY);
+            transactionExecutor.execute(getMessageEventCouples);
+            final List<SMessageEventCouple> couples = getMessageEventCouples.getResult();
+            nbCouples = couples.size();
+            for (final Entry<SMessageInstance, List<SWaitingMessageEvent>> entry : groupByMessage(couples).entrySet()) {
+                final HandleMessageEventCouple handleMessageEventCouple = new HandleMessageEventCouple(entry.getKey(), entry.getValue(),
+                        eventInstanceService, instanceBuilders, eventsHandler, logger);
+                transactionExecutor.execute(handleMessageEventCouple);
+            }
+        } finally {
+            lockService.releaseExclusiveLockAccess(lockId, LOCK_TYPE);
+        }
+        if (nbCouples == MAX_COUPLES_PER_KEY) {
+            registerHandlingOf(correlationKey);
+        }
+    }
+
+    /**
+     * Handle the couples of the correlation keys of the given page of couples, must be called outside of any transaction
+     *
+     * @param fromIndex
+     *            index of the first couple to read
+     * @param maxResults
+     *            max number of couples to read
+     * @return the number of couples read
+     * @throws SBonitaException
+     */
+    public int handle(final int fromIndex, final int maxResults) throws SBonitaException {
+        final GetMessageEventCouples getMessageEventCouples = new GetMessageEventCouples(eventInstanceService, fromIndex, maxResults);
+        transactionExecutor.execute(getMessageEventCouples);
+        final List<SMessageEventCouple> couples = getMessageEventCouples.getResult();
+        final Set<String> correlationKeys = new LinkedHashSet<String>();
+        for (final SMessageEventCouple couple : couples) {
+            correlationKeys.add(couple.getMessageInstance().getCorrelationKey());
+        }
+        for (final String correlationKey : correlationKeys) {
+            handle(correlationKey);
+        }
+        return couples.size();
+    }
+
+    /**
+     * Fill the correlation key of the message instances and of the waiting message events created before it was introduced, which are otherwise never
+     * matched, and register the handling of their keys. Must be called outside of any transaction
+     * 
+     * @param maxResults
+     *            max number of message instances and of waiting message events to update
+     * @return the number of message instances and of waiting message events updated
+     * @throws SBonitaException
+     */
+    public int fillMissingCorrelationKeys(final int maxResults) throws SBonitaException {
+        final int[] nbUpdated = new int[1];
+        transactionExecutor.execute(new TransactionContent() {
+
+            @Override
+            public void execute() throws SBonitaException {
+                final Set<String> correlationKeys = new LinkedHashSet<String>();
+                for (final SMessageInstance messageInstance : eventInstanceService.getMessageInstancesWithoutCorrelationKey(maxResults)) {
+                    final SMessageInstanceBuilder builder = instanceBuilders.getSMessageInstanceBuilder().createNewInstance(messageInstance);
+                    builder.setCorrelation(1, messageInstance.getCorrelation1());
+                    builder.setCorrelation(2, messageInstance.getCorrelation2());
+                    builder.setCorrelation(3, messageInstance.getCorrelation3());
+                    builder.setCorrelation(4, messageInstance.getCorrelation4());
+                    builder.setCorrelation(5, messageInstance.getCorrelation5());
+                    final String correlationKey = builder.done().getCorrelationKey();
+                    if (correlationKey != null) {
+                        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
+                        descriptor.addField(builder.getCorrelationKeyKey(), correlationKey);
+                        eventInstanceService.updateMessageInstance(messageInstance, descriptor);
+                        correlationKeys.add(correlationKey);
+                        nbUpdated[0]++;
+                    }
+                }
+                for (final SWaitingMessageEvent waitingMessage : eventInstanceService.getWaitingMessageEventsWithoutCorrelationKey(maxResults)) {
+                    final SWaitingMessageEventBuilder builder = instanceBuilders.getSWaitingMessageEventBuilder().createNewInstance(waitingMessage);
+                    builder.setCorrelation(1, waitingMessage.getCorrelation1());
+                    builder.setCorrelation(2, waitingMessage.getCorrelation2());
+                    builder.setCorrelation(3, waitingMessage.getCorrelation3());
+                    builder.setCorrelation(4, waitingMessage.getCorrelation4());
+                    builder.setCorrelation(5, waitingMessage.getCorrelation5());
+                    final String correlationKey = builder.done().getCorrelationKey();
+                    if (correlationKey != null) {
+                        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
+                        descriptor.addField(builder.getCorrelationKeyKey(), correlationKey);
+                        eventInstanceService.updateWaitingMessage(waitingMessage, descriptor);
+                        correlationKeys.add(correlationKey);
+                        nbUpdated[0]++;
+                    }
+                }
+                for (final String correlationKey : correlationKeys) {
+                    registerHandlingOf(correlationKey);
+                }
+            }
+        });
+        return nbUpdated[0];
+    }
+
+    private Map<SMessageInstance, List<SWaitingMessageEvent>> groupByMessage(final List<SMessageEventCouple> couples) {
+        // keep the order of the messages: the oldest is consumed first
+        final Map<SMessageInstance, List<SWaitingMessageEvent>> messageMapping = new LinkedHashMap<SMessageInstance, List<SWaitingMessageEvent>>();
+        for (final SMessageEventCouple couple : couples) {
+            final SMessageInstance messageInstance = couple.getMessageInstance();
+            List<SWaitingMessageEvent> waitingMessages = messageMapping.get(messageInstance);
+            if (waitingMessages == null) {
+                waitingMessages = new ArrayList<SWaitingMessageEvent>();
+                messageMapping.put(messageInstance, waitingMessages);
+            }
+            waitingMessages.add(couple.getWaitingMessage());
+        }
+        return messageMapping;
+    }
+
+    /**
+     * @return a positive long identifying the correlation key, used as lock id and as work affinity key
+     */
+    public static long toLockId(final String correlationKey) {
+        // the key is an hexadecimal SHA-1: its first 15 digits are enough to spread the keys
+        return Long.parseLong(correlationKey.substring(0, 15), 16);
+    }
+
+}
@@ -65,6 +65,7 @@ import org.bonitasoft.engine.expression.exception.SExpressionException;
 import org.bonitasoft.engine.expression.exception.SExpressionTypeUnknownException;
 import org.bonitasoft.engine.expression.exception.SInvalidExpressionException;
 import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.work.WorkRegisterException;
 
 /**
  * @author Baptiste Mesta
@@ -85,15 +86,19 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
 
     private final ProcessDefinitionService processDefinitionService;
 
+    private final MessageEventCouplesHandler messageEventCouplesHandler;
+
     public MessageEventHandlerStrategy(final ExpressionResolverService expressionResolverService, final BPMInstanceBuilders instanceBuilders,
             final EventInstanceService eventInstanceService, final BPMInstancesCreator bpmInstancesCreator, final DataInstanceService dataInstanceService,
-            final SDataInstanceBuilders sDataInstanceBuilders, final ProcessDefinitionService processDefinitionService) {
+            final SDataInstanceBuilders sDataInstanceBuilders, final ProcessDefinitionService processDefinitionService,
+            final MessageEventCouplesHandler messageEventCouplesHandler) {
         super(instanceBuilders, eventInstanceService);
         this.expressionResolverService = expressionResolverService;
         this.bpmInstancesCreator = bpmInstancesCreator;
         this.dataInstanceService = dataInstanceService;
         this.sDataInstanceBuilders = sDataInstanceBuilders;
         this.processDefinitionService = processDefinitionService;
+        this.messageEventCouplesHandler = messageEventCouplesHandler;
     }
 
     @Override
@@ -129,7 +134,7 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
                 throw new SWaitingEventCreationException(eventDefinition.getType() + " is not a catch event.");
         }
         fillCorrelation(builder, messageTrigger.getCorrelations(), expressionContext);
-        getEventInstanceService().createWaitingEvent(builder.done());
+        createWaitingEvent(builder.done());
 
     }
 
@@ -148,7 +153,7 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
                 processDefinition.getId());
 
         fillCorrelation(builder, messageTrigger.getCorrelations(), expressionContext);
-        getEventInstanceService().createWaitingEvent(builder.done());
+        createWaitingEvent(builder.done());
 
     }
 
@@ -167,7 +172,7 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
 
     public void handleThrowEvent(final SProcessDefinition processDefinition, final SSendTaskDefinition sendTaskDefinition,
             final SSendTaskInstance sendTaskInstance, final SThrowMessageEventTriggerDefinition messageTrigger) throws SEventTriggerInstanceCreationException,
-            SMessageInstanceCreationException, SDataInstanceException, SExpressionException {
+            SMessageInstanceCreationException, SDataInstanceException, SExpressionException, WorkRegisterException {
         final long eventInstanceId = sendTaskInstance.getId();
         final String eventInstanceName = sendTaskInstance.getName();
         final long parentContainerId = sendTaskInstance.getParentContainerId();
@@ -180,7 +185,7 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
 
     private void handleThrowMessage(final SEventTriggerDefinition sEventTriggerDefinition, final long eventInstanceId, final String eventInstanceName,
             final Long processDefinitionId, final SExpressionContext expressionContext) throws SEventTriggerInstanceCreationException,
-            SMessageInstanceCreationException, SDataInstanceException, SExpressionException {
+            SMessageInstanceCreationException, SDataInstanceException, SExpressionException, WorkRegisterException {
         final SThrowMessageEventTriggerDefinition messageTrigger = (SThrowMessageEventTriggerDefinition) sEventTriggerDefinition;
         final String messageName = messageTrigger.getMessageName();
         final SExpression targetProcess = messageTrigger.getTargetProcess();
@@ -210,6 +215,7 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
 
             dataInstanceService.createDataContainer(messageInstance.getId(), DataInstanceContainer.MESSAGE_INSTANCE.name());
         }
+        messageEventCouplesHandler.registerHandlingOf(messageInstance.getCorrelationKey());
     }
 
     private void fillCorrelation(final SCorrelationContainerBuilder builder, final List<SCorrelationDefinition> correlations,
@@ -286,8 +292,12 @@ public class MessageEventHandlerStrategy extends CoupleEventHandlerStrategy {
         final SExpressionContext expressionContext = new SExpressionContext(parentProcessInstance.getId(), DataInstanceContainer.PROCESS_INSTANCE.name(),
                 processDefinition.getId());
         fillCorrelation(builder, messageEventTriggerDefinition.getCorrelations(), expressionContext);
-        final SWaitingMessageEvent event = builder.done();
-        getEventInstanceService().createWaitingEvent(event);
+        createWaitingEvent(builder.done());
+    }
+
+    private void createWaitingEvent(final SWaitingMessageEvent waitingMessageEvent) throws SBonitaException {
+        getEventInstanceService().createWaitingEvent(waitingMessageEvent);
+        messageEventCouplesHandler.registerHandlingOf(waitingMessageEvent.getCorrelationKey());
     }
 
     @Override
@@ -185,4 +185,9 @@ public class ExecuteConnectorOfActivity extends ExecuteConnectorWork {
             transactionExecutor.completeTransaction(txOpened);
         }
     }
+
+    @Override
+    public long getAffinityKey() {
+        return flowNodeInstance.getParentProcessInstanceId();
+    }
 }
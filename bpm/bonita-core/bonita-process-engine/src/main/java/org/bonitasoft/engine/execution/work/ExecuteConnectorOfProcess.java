@@ -148,4 +148,8 @@ public class ExecuteConnectorOfProcess extends ExecuteConnectorWork {
         throw originalException;
     }
 
+    @Override
+    public long getAffinityKey() {
+        return sProcessInstance.getId();
+    }
 }
@@ -20,12 +20,19 @@ import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
 import org.bonitasoft.engine.core.operation.model.SOperation;
 import org.bonitasoft.engine.execution.ContainerExecutor;
 import org.bonitasoft.engine.work.BonitaWork;
+import org.bonitasoft.engine.work.WorkDescriptor;
 
 /**
  * @author Baptiste Mesta
  */
 public class ExecuteFlowNodeWork extends BonitaWork {
 
+    public static final String TYPE = "EXECUTE_FLOW_NODE";
+
+    public static final String FLOW_NODE_INSTANCE_ID = "flowNodeInstanceId";
+
+    public static final String PROCESS_INSTANCE_ID = "processInstanceId";
+
     private final ContainerExecutor containerExecutor;
 
     private final long flowNodeInstanceId;
@@ -49,4 +56,17 @@ public class ExecuteFlowNodeWork extends BonitaWork {
     protected void work() throws SBonitaException {
         containerExecutor.executeFlowNode(flowNodeInstanceId, contextDependency, operations, processInstanceId);
     }
+
+    /**
+     * Operations and context are not part of the descriptor: a replayed flow node is executed without them, as on restart.
+     */
+    @Override
+    public WorkDescriptor getDescriptor() {
+        return new WorkDescriptor(TYPE).addParameter(FLOW_NODE_INSTANCE_ID, flowNodeInstanceId).addParameter(PROCESS_INSTANCE_ID, processInstanceId);
+    }
+
+    @Override
+    public long getAffinityKey() {
+        return processInstanceId != null ? processInstanceId : -1;
+    }
 }
@@ -18,12 +18,19 @@ import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
 import org.bonitasoft.engine.core.process.instance.model.STransitionInstance;
 import org.bonitasoft.engine.execution.ContainerExecutor;
 import org.bonitasoft.engine.work.BonitaWork;
+import org.bonitasoft.engine.work.WorkDescriptor;
 
 /**
  * @author Baptiste Mesta
  */
 public class ExecuteTransitionWork extends BonitaWork {
 
+    public static final String TYPE = "EXECUTE_TRANSITION";
+
+    public static final String PROCESS_DEFINITION_ID = "processDefinitionId";
+
+    public static final String TRANSITION_INSTANCE_ID = "transitionInstanceId";
+
     private final SProcessDefinition sDefinition;
 
     private final STransitionInstance sTransitionInstance;
@@ -44,4 +51,15 @@ public class ExecuteTransitionWork extends BonitaWork {
     protected void work() throws SBonitaException {
         containerExecutor.executeTransition(sDefinition, sTransitionInstance);
     }
+
+    @Override
+    public WorkDescriptor getDescriptor() {
+        return new WorkDescriptor(TYPE).addParameter(PROCESS_DEFINITION_ID, sDefinition.getId()).addParameter(TRANSITION_INSTANCE_ID,
+                sTransitionInstance.getId());
+    }
+
+    @Override
+    public long getAffinityKey() {
+        return sTransitionInstance.getParentProcessInstanceId();
+    }
 }
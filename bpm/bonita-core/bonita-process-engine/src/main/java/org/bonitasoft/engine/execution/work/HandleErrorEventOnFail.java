@@ -31,4 +31,9 @@ public class HandleErrorEventOnFail extends BonitaWork {
     protected void work() throws SBonitaException {
         executeConnectorOfActivity.handleErrorEventOnFail();
     }
+
+    @Override
+    public long getAffinityKey() {
+        return executeConnectorOfActivity.getAffinityKey();
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.execution.event.MessageEventCouplesHandler;
+import org.bonitasoft.engine.work.BonitaWork;
+import org.bonitasoft.engine.work.WorkDescriptor;
+
+/**
+ * Match the message instances and the waiting message events of one correlation key
+ *
+ * @since 6.1
+ */
+public class HandleMessageEventCouplesWork extends BonitaWork {
+
+    public static final String TYPE = "HANDLE_MESSAGE_EVENT_COUPLES";
+
+    public static final String CORRELATION_KEY = "correlationKey";
+
+    private final MessageEventCouplesHandler messageEventCouplesHandler;
+
+    private final String correlationKey;
+
+    public HandleMessageEventCouplesWork(final MessageEventCouplesHandler messageEventCouplesHandler, final String correlationKey) {
+        this.messageEventCouplesHandler = messageEventCouplesHandler;
+        this.correlationKey = correlationKey;
+    }
+
+    @Override
+    protected void work() throws SBonitaException {
+        messageEventCouplesHandler.handle(correlationKey);
+    }
+
+    @Override
+    public WorkDescriptor getDescriptor() {
+        return new WorkDescriptor(TYPE).addParameter(CORRELATION_KEY, correlationKey);
+    }
+
+    @Override
+    public long getAffinityKey() {
+        return MessageEventCouplesHandler.toLockId(correlationKey);
+    }
+
+}
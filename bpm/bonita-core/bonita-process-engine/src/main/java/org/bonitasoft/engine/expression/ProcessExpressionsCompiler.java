@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.operation.model.SOperation;
+import org.bonitasoft.engine.core.process.definition.model.SActivityDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SCallActivityDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SConnectorDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SFlowElementContainerDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SFlowNodeDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SHumanTaskDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SLoopCharacteristics;
+import org.bonitasoft.engine.core.process.definition.model.SMultiInstanceLoopCharacteristics;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SStandardLoopCharacteristics;
+import org.bonitasoft.engine.core.process.definition.model.SSubProcessDefinition;
+import org.bonitasoft.engine.core.process.definition.model.STransitionDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SUserFilterDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.SBoundaryEventDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.SCatchEventDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.SThrowEventDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.trigger.SCatchMessageEventTriggerDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.trigger.SCorrelationDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.trigger.SThrowMessageEventTriggerDefinition;
+import org.bonitasoft.engine.core.process.definition.model.event.trigger.STimerEventTriggerDefinition;
+import org.bonitasoft.engine.data.definition.model.SDataDefinition;
+import org.bonitasoft.engine.exception.BonitaHomeNotSetException;
+import org.bonitasoft.engine.exception.BonitaRuntimeException;
+import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.home.BonitaHomeServer;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+
+/**
+ * Compiles ahead of time the expressions of a process definition, e.g. its Groovy scripts, so that the first instances of the process do not pay the
+ * compilation. The compiled classes are stored in the process folder, which is deleted with the process, to be reloaded after a restart.
+ * Processes are compiled when they become resolved, at deployment or later when their dependencies are set.
+ */
+public class ProcessExpressionsCompiler {
+
+    private static final String COMPILED_EXPRESSIONS_FOLDER = "compiled-expressions";
+
+    private static final int NUMBER_OF_STRING_INDEXES = 5;
+
+    private final List<SExpression> expressions = new ArrayList<SExpression>();
+
+    private ProcessExpressionsCompiler() {
+    }
+
+    public static void compile(final SProcessDefinition processDefinition, final TenantServiceAccessor tenantAccessor) throws BonitaHomeNotSetException,
+            SExpressionEvaluationException {
+        tenantAccessor.getExpressionService().compile(getExpressions(processDefinition), processDefinition.getId(),
+                getClassesFolder(processDefinition.getId(), tenantAccessor));
+    }
+
+    /**
+     * Same as {@link #compile(SProcessDefinition, TenantServiceAccessor)} but only logs a warning on failure: the expressions will then be compiled when
+     * they are first evaluated.
+     */
+    public static void compileQuietly(final SProcessDefinition processDefinition, final TenantServiceAccessor tenantAccessor) {
+        try {
+            compile(processDefinition, tenantAccessor);
+        } catch (final SBonitaException e) {
+            final TechnicalLoggerService logger = tenantAccessor.getTechnicalLoggerService();
+            if (logger.isLoggable(ProcessExpressionsCompiler.class, TechnicalLogSeverity.WARNING)) {
+                logger.log(ProcessExpressionsCompiler.class, TechnicalLogSeverity.WARNING, "Unable to compile the expressions of process <"
+                        + processDefinition.getName() + "> in version <" + processDefinition.getVersion() + ">: " + e.getMessage());
+            }
+        } catch (final BonitaHomeNotSetException e) {
+            throw new BonitaRuntimeException(e);
+        }
+    }
+
+    public static File getClassesFolder(final long processDefinitionId, final TenantServiceAccessor tenantAccessor) throws BonitaHomeNotSetException {
+        final String processFolder = BonitaHomeServer.getInstance().getProcessFolder(tenantAccessor.getTenantId(), processDefinitionId);
+        return new File(processFolder, COMPILED_EXPRESSIONS_FOLDER);
+    }
+
+    /**
+     * Walks the process definition to get all the expressions it contains: conditions, operations, connector inputs, data default values, event
+     * triggers... Dependencies of the expressions are not added, they are reachable from the returned expressions.
+     */
+    public static List<SExpression> getExpressions(final SProcessDefinition processDefinition) {
+        final ProcessExpressionsCompiler collector = new ProcessExpressionsCompiler();
+        for (int i = 1; i <= NUMBER_OF_STRING_INDEXES; i++) {
+            collector.add(processDefinition.getStringIndexValue(i));
+        }
+        collector.addContainer(processDefinition.getProcessContainer());
+        return collector.expressions;
+    }
+
+    private void add(final SExpression expression) {
+        if (expression != null) {
+            expressions.add(expression);
+        }
+    }
+
+    private void addAll(final Collection<SExpression> toAdd) {
+        for (final SExpression expression : toAdd) {
+            add(expression);
+        }
+    }
+
+    private void addContainer(final SFlowElementContainerDefinition container) {
+        if (container == null) {
+            return;
+        }
+        addDataDefinitions(container.getDataDefinitions());
+        addConnectors(container.getConnectors());
+        for (final STransitionDefinition transition : container.getTransitions()) {
+            add(transition.getCondition());
+        }
+        for (final SFlowNodeDefinition flowNode : container.getFlowNodes()) {
+            addFlowNode(flowNode);
+        }
+        for (final SBoundaryEventDefinition boundaryEvent : container.getBoundaryEvents()) {
+            addFlowNode(boundaryEvent);
+        }
+    }
+
+    private void addFlowNode(final SFlowNodeDefinition flowNode) {
+        add(flowNode.getDisplayName());
+        add(flowNode.getDisplayDescription());
+        add(flowNode.getDisplayDescriptionAfterCompletion());
+        addConnectors(flowNode.getConnectors());
+        if (flowNode instanceof SActivityDefinition) {
+            final SActivityDefinition activity = (SActivityDefinition) flowNode;
+            addLoopCharacteristics(activity.getLoopCharacteristics());
+            addDataDefinitions(activity.getSDataDefinitions());
+            addOperations(activity.getSOperations());
+        }
+        if (flowNode instanceof SHumanTaskDefinition) {
+            final SUserFilterDefinition userFilter = ((SHumanTaskDefinition) flowNode).getSUserFilterDefinition();
+            if (userFilter != null) {
+                addAll(userFilter.getInputs().values());
+            }
+        }
+        if (flowNode instanceof SCallActivityDefinition) {
+            final SCallActivityDefinition callActivity = (SCallActivityDefinition) flowNode;
+            add(callActivity.getCallableElement());
+            add(callActivity.getCallableElementVersion());
+            addOperations(callActivity.getDataInputOperations());
+            addOperations(callActivity.getDataOutputOperations());
+        }
+        if (flowNode instanceof SSubProcessDefinition) {
+            addContainer(((SSubProcessDefinition) flowNode).getSubProcessContainer());
+        }
+        if (flowNode instanceof SCatchEventDefinition) {
+            addCatchEvent((SCatchEventDefinition) flowNode);
+        }
+        if (flowNode instanceof SThrowEventDefinition) {
+            for (final SThrowMessageEventTriggerDefinition messageTrigger : ((SThrowEventDefinition) flowNode).getMessageEventTriggerDefinitions()) {
+                add(messageTrigger.getTargetProcess());
+                add(messageTrigger.getTargetFlowNode());
+                addCorrelations(messageTrigger.getCorrelations());
+                addDataDefinitions(messageTrigger.getDataDefinitions());
+            }
+        }
+    }
+
+    private void addCatchEvent(final SCatchEventDefinition catchEvent) {
+        for (final STimerEventTriggerDefinition timerTrigger : catchEvent.getTimerEventTriggerDefinitions()) {
+            add(timerTrigger.getTimerExpression());
+        }
+        for (final SCatchMessageEventTriggerDefinition messageTrigger : catchEvent.getMessageEventTriggerDefinitions()) {
+            addCorrelations(messageTrigger.getCorrelations());
+            addOperations(messageTrigger.getOperations());
+        }
+    }
+
+    private void addLoopCharacteristics(final SLoopCharacteristics loopCharacteristics) {
+        if (loopCharacteristics instanceof SStandardLoopCharacteristics) {
+            final SStandardLoopCharacteristics standardLoop = (SStandardLoopCharacteristics) loopCharacteristics;
+            add(standardLoop.getLoopCondition());
+            add(standardLoop.getLoopMax());
+        } else if (loopCharacteristics instanceof SMultiInstanceLoopCharacteristics) {
+            final SMultiInstanceLoopCharacteristics multiInstance = (SMultiInstanceLoopCharacteristics) loopCharacteristics;
+            add(multiInstance.getLoopCardinality());
+            add(multiInstance.getCompletionCondition());
+        }
+    }
+
+    private void addConnectors(final List<SConnectorDefinition> connectors) {
+        for (final SConnectorDefinition connector : connectors) {
+            addAll(connector.getInputs().values());
+            addOperations(connector.getOutputs());
+        }
+    }
+
+    private void addOperations(final List<SOperation> operations) {
+        if (operations == null) {
+            return;
+        }
+        for (final SOperation operation : operations) {
+            add(operation.getRightOperand());
+        }
+    }
+
+    private void addDataDefinitions(final List<SDataDefinition> dataDefinitions) {
+        if (dataDefinitions == null) {
+            return;
+        }
+        for (final SDataDefinition dataDefinition : dataDefinitions) {
+            add(dataDefinition.getDefaultValueExpression());
+        }
+    }
+
+    private void addCorrelations(final List<SCorrelationDefinition> correlations) {
+        if (correlations == null) {
+            return;
+        }
+        for (final SCorrelationDefinition correlation : correlations) {
+            add(correlation.getKey());
+            add(correlation.getValue());
+        }
+    }
+
+}
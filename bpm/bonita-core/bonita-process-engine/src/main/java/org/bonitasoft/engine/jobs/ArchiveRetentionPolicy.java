@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.jobs;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bonitasoft.engine.bpm.process.ProcessInstanceState;
+
+/**
+ * How long the archives of the finished process instances of a process are kept. An archived root process instance, with all its archived elements and
+ * sub process instances, is purged by the {@link PurgeArchivedProcessInstancesJob} when it finished in one of the states of the policy and either it was
+ * archived more than maxAgeInDays days ago or more than maxNumberOfProcessInstances process instances of the same process definition finished after it.
+ *
+ * @since 6.1
+ */
+public class ArchiveRetentionPolicy implements Serializable {
+
+    private static final long serialVersionUID = -2546129580326516489L;
+
+    private String processName;
+
+    private int maxAgeInDays = 0;
+
+    private int maxNumberOfProcessInstances = 0;
+
+    private List<String> states = Arrays.asList(ProcessInstanceState.COMPLETED.name(), ProcessInstanceState.ABORTED.name(),
+            ProcessInstanceState.CANCELLED.name(), ProcessInstanceState.ERROR.name());
+
+    /**
+     * @return the name of the processes the policy applies to, null if the policy applies to the processes having no policy of their own
+     */
+    public String getProcessName() {
+        return processName;
+    }
+
+    public void setProcessName(final String processName) {
+        this.processName = processName;
+    }
+
+    /**
+     * @return the number of days the archives are kept, 0 to keep them whatever their age
+     */
+    public int getMaxAgeInDays() {
+        return maxAgeInDays;
+    }
+
+    public void setMaxAgeInDays(final int maxAgeInDays) {
+        this.maxAgeInDays = maxAgeInDays;
+    }
+
+    /**
+     * @return the number of finished process instances kept per process definition, 0 to keep them whatever their number
+     */
+    public int getMaxNumberOfProcessInstances() {
+        return maxNumberOfProcessInstances;
+    }
+
+    public void setMaxNumberOfProcessInstances(final int maxNumberOfProcessInstances) {
+        this.maxNumberOfProcessInstances = maxNumberOfProcessInstances;
+    }
+
+    /**
+     * @return the names of the {@link ProcessInstanceState}s in which the purged process instances finished
+     */
+    public List<String> getStates() {
+        return states;
+    }
+
+    public void setStates(final List<String> states) {
+        this.states = states;
+    }
+
+    List<Integer> getStateIds() {
+        final List<Integer> stateIds = new ArrayList<Integer>(states.size());
+        for (final String state : states) {
+            stateIds.add(ProcessInstanceState.valueOf(state.trim().toUpperCase()).getId());
+        }
+        return stateIds;
+    }
+
+}
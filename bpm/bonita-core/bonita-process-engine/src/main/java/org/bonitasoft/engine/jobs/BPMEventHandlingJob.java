@@ -14,24 +14,13 @@
 package org.bonitasoft.engine.jobs;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
-import org.bonitasoft.engine.api.impl.transaction.event.GetMessageEventCouples;
-import org.bonitasoft.engine.api.impl.transaction.event.HandleMessageEventCouple;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
-import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
-import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
-import org.bonitasoft.engine.core.process.instance.model.builder.BPMInstanceBuilders;
-import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
-import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
-import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
 import org.bonitasoft.engine.events.model.FireEventException;
-import org.bonitasoft.engine.execution.event.EventsHandler;
-import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.execution.event.MessageEventCouplesHandler;
+import org.bonitasoft.engine.lock.LockService;
 import org.bonitasoft.engine.scheduler.JobExecutionException;
 import org.bonitasoft.engine.scheduler.SJobConfigurationException;
 
@@ -43,18 +32,18 @@ public class BPMEventHandlingJob extends InternalJob {
 
     private static final long serialVersionUID = 5095357357278143665L;
 
-    private transient EventInstanceService eventInstanceService;
+    private static final String LOCK_TYPE = "BPM_EVENT_HANDLING_JOB";
 
-    private transient TransactionExecutor transactionExecutor;
+    /**
+     * Messages are matched by the works registered when they are sent: this job only catches up what they missed, a bounded number of couples at a time
+     */
+    private static final int MAX_COUPLES = 1000;
 
-    // FIXME improve lock mechanism by tenant map<tenant, lock>
-    private static transient Object lock = new Object();
+    private transient MessageEventCouplesHandler messageEventCouplesHandler;
 
-    private transient BPMInstanceBuilders instanceBuilders;
+    private transient LockService lockService;
 
-    private EventsHandler enventsHandler;
-
-    private TechnicalLoggerService logger;
+    private long tenantId;
 
     @Override
     public String getName() {
@@ -68,40 +57,28 @@ public class BPMEventHandlingJob extends InternalJob {
 
     @Override
     public void execute() throws JobExecutionException, FireEventException {
-        synchronized (lock) {
+        try {
+            // one execution at a time per tenant, the next one will handle what is left
+            if (!lockService.tryExclusiveLockAccess(tenantId, LOCK_TYPE, 0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
             try {
-                final GetMessageEventCouples getMessageEventCouplesTransaction = new GetMessageEventCouples(eventInstanceService);
-                transactionExecutor.execute(getMessageEventCouplesTransaction);
-                final List<SMessageEventCouple> messageCouples = getMessageEventCouplesTransaction.getResult();
-
-                final Map<SMessageInstance, List<SWaitingMessageEvent>> messageMapping = new HashMap<SMessageInstance, List<SWaitingMessageEvent>>();
-                for (final SMessageEventCouple sMessageEventCouple : messageCouples) {
-                    final SWaitingMessageEvent waitingMessage = sMessageEventCouple.getWaitingMessage();
-                    final SMessageInstance messageInstance = sMessageEventCouple.getMessageInstance();
-                    if (!messageMapping.keySet().contains(messageInstance)) {
-                        messageMapping.put(messageInstance, new ArrayList<SWaitingMessageEvent>());
-                    }
-                    messageMapping.get(messageInstance).add(waitingMessage);
-                }
-                for (final Entry<SMessageInstance, List<SWaitingMessageEvent>> entry : messageMapping.entrySet()) {
-                    final HandleMessageEventCouple handleMessageEventCouple = new HandleMessageEventCouple(entry.getKey(), entry.getValue(),
-                            eventInstanceService, instanceBuilders, enventsHandler, logger);
-                    transactionExecutor.execute(handleMessageEventCouple);
-                }
-                // TODO unlock message instances and waiting messages
-            } catch (final SBonitaException e) {
-                throw new JobExecutionException(e);
+                // rows created before the correlation key was introduced are matched once their key is filled
+                messageEventCouplesHandler.fillMissingCorrelationKeys(MAX_COUPLES);
+                messageEventCouplesHandler.handle(0, MAX_COUPLES);
+            } finally {
+                lockService.releaseExclusiveLockAccess(tenantId, LOCK_TYPE);
             }
+        } catch (final SBonitaException e) {
+            throw new JobExecutionException(e);
         }
     }
 
     @Override
     public void setAttributes(final Map<String, Serializable> attributes) throws SJobConfigurationException {
-        eventInstanceService = getTenantServiceAccessor().getEventInstanceService();
-        transactionExecutor = getTenantServiceAccessor().getTransactionExecutor();
-        instanceBuilders = getTenantServiceAccessor().getBPMInstanceBuilders();
-        enventsHandler = getTenantServiceAccessor().getEventsHandler();
-        logger = getTenantServiceAccessor().getTechnicalLoggerService();
+        messageEventCouplesHandler = getTenantServiceAccessor().getEventsHandler().getMessageEventCouplesHandler();
+        lockService = getTenantServiceAccessor().getLockService();
+        tenantId = getTenantServiceAccessor().getTenantId();
     }
 
 }
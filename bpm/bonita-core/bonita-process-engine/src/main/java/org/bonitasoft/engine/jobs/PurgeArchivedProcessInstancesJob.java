@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.jobs;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.api.impl.NodeConfiguration;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinitionDeployInfo;
+import org.bonitasoft.engine.core.process.instance.api.ProcessInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.archive.SAProcessInstance;
+import org.bonitasoft.engine.events.model.FireEventException;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.OrderByType;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.scheduler.JobExecutionException;
+import org.bonitasoft.engine.scheduler.SJobConfigurationException;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.service.impl.ServiceAccessorFactory;
+
+/**
+ * Purge the archived process instances according to the {@link ArchiveRetentionPolicy}s of the {@link NodeConfiguration}.
+ * Each chunk of process instances is purged in its own short transaction that only reads and deletes archive tables, the job pauses between two chunks
+ * and stops after a maximum number of process instances: what is left is purged by the next execution.
+ *
+ * @since 6.1
+ */
+public class PurgeArchivedProcessInstancesJob extends InternalJob {
+
+    private static final long serialVersionUID = 1718372619546125374L;
+
+    private static final String LOCK_TYPE = "PURGE_ARCHIVED_PROCESS_INSTANCES_JOB";
+
+    private static final int PROCESS_DEFINITION_PAGE_SIZE = 100;
+
+    private static final String ARCHIVE_DATE = "archiveDate";
+
+    private transient ProcessDefinitionService processDefinitionService;
+
+    private transient ProcessInstanceService processInstanceService;
+
+    private transient TransactionExecutor transactionExecutor;
+
+    private transient LockService lockService;
+
+    private transient TechnicalLoggerService logger;
+
+    private transient Map<String, ArchiveRetentionPolicy> policies;
+
+    private transient ArchiveRetentionPolicy defaultPolicy;
+
+    private long tenantId;
+
+    private int chunkSize;
+
+    private int maxProcessInstancesPerRun;
+
+    private long pauseBetweenChunks;
+
+    @Override
+    public String getName() {
+        return "PurgeArchivedProcessInstancesJob";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Purge the archived process instances according to the retention policies";
+    }
+
+    @Override
+    public void execute() throws JobExecutionException, FireEventException {
+        if (policies.isEmpty() && defaultPolicy == null) {
+            return;
+        }
+        try {
+            // one execution at a time per tenant, the next one will purge what is left
+            if (!lockService.tryExclusiveLockAccess(tenantId, LOCK_TYPE, 0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            try {
+                final long start = System.currentTimeMillis();
+                final int purged = purgeProcessDefinitions();
+                if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
+                    logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Purged " + purged + " archived process instances of tenant " + tenantId + " in "
+                            + (System.currentTimeMillis() - start) + " ms");
+                }
+            } finally {
+                lockService.releaseExclusiveLockAccess(tenantId, LOCK_TYPE);
+            }
+        } catch (final SBonitaException e) {
+            throw new JobExecutionException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int purgeProcessDefinitions() throws SBonitaException, InterruptedException {
+        int purged = 0;
+        int fromIndex = 0;
+        List<SProcessDefinitionDeployInfo> processDefinitions;
+        do {
+            processDefinitions = getProcessDefinitions(fromIndex);
+            for (final SProcessDefinitionDeployInfo processDefinition : processDefinitions) {
+                ArchiveRetentionPolicy policy = policies.get(processDefinition.getName());
+                if (policy == null) {
+                    policy = defaultPolicy;
+                }
+                if (policy != null) {
+                    final int purgedOfProcessDefinition = purgeProcessDefinition(processDefinition.getProcessId(), policy, maxProcessInstancesPerRun - purged);
+                    if (purgedOfProcessDefinition > 0 && logger.isLoggable(this.getClass(), TechnicalLogSeverity.INFO)) {
+                        logger.log(this.getClass(), TechnicalLogSeverity.INFO, "Purged " + purgedOfProcessDefinition + " archived process instances of process "
+                                + processDefinition.getName() + " (" + processDefinition.getVersion() + ")");
+                    }
+                    purged += purgedOfProcessDefinition;
+                    if (purged >= maxProcessInstancesPerRun) {
+                        return purged;
+                    }
+                }
+            }
+            fromIndex += PROCESS_DEFINITION_PAGE_SIZE;
+        } while (processDefinitions.size() == PROCESS_DEFINITION_PAGE_SIZE);
+        return purged;
+    }
+
+    private int purgeProcessDefinition(final long processDefinitionId, final ArchiveRetentionPolicy policy, final int max) throws SBonitaException,
+            InterruptedException {
+        final List<Integer> stateIds = policy.getStateIds();
+        int purged = 0;
+        if (policy.getMaxAgeInDays() > 0) {
+            final long archivedBefore = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(policy.getMaxAgeInDays());
+            purged += purgeChunks(processDefinitionId, stateIds, archivedBefore, 0, OrderByType.ASC, max);
+        }
+        if (policy.getMaxNumberOfProcessInstances() > 0 && purged < max) {
+            // keep the most recent ones: always skip them as the older ones are deleted
+            purged += purgeChunks(processDefinitionId, stateIds, Long.MAX_VALUE, policy.getMaxNumberOfProcessInstances(), OrderByType.DESC, max - purged);
+        }
+        return purged;
+    }
+
+    private int purgeChunks(final long processDefinitionId, final List<Integer> stateIds, final long archivedBefore, final int fromIndex,
+            final OrderByType order, final int max) throws SBonitaException, InterruptedException {
+        int purged = 0;
+        int chunk;
+        do {
+            final QueryOptions queryOptions = new QueryOptions(fromIndex, Math.min(chunkSize, max - purged), SAProcessInstance.class, ARCHIVE_DATE, order);
+            chunk = purgeChunk(processDefinitionId, stateIds, archivedBefore, queryOptions);
+            purged += chunk;
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "Purged " + chunk + " archived process instances of process definition "
+                        + processDefinitionId);
+            }
+            if (chunk > 0 && pauseBetweenChunks > 0) {
+                Thread.sleep(pauseBetweenChunks);
+            }
+        } while (chunk > 0 && purged < max);
+        return purged;
+    }
+
+    private int purgeChunk(final long processDefinitionId, final List<Integer> stateIds, final long archivedBefore, final QueryOptions queryOptions)
+            throws SBonitaException {
+        final boolean txOpened = transactionExecutor.openTransaction();
+        try {
+            final List<Long> processInstanceIds = processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(processDefinitionId,
+                    stateIds, archivedBefore, queryOptions);
+            processInstanceService.purgeArchivedProcessInstances(processInstanceIds);
+            return processInstanceIds.size();
+        } catch (final SBonitaException e) {
+            transactionExecutor.setTransactionRollback();
+            throw e;
+        } finally {
+            transactionExecutor.completeTransaction(txOpened);
+        }
+    }
+
+    private List<SProcessDefinitionDeployInfo> getProcessDefinitions(final int fromIndex) throws SBonitaException {
+        final boolean txOpened = transactionExecutor.openTransaction();
+        try {
+            return processDefinitionService.getProcessDeploymentInfos(new QueryOptions(fromIndex, PROCESS_DEFINITION_PAGE_SIZE,
+                    SProcessDefinitionDeployInfo.class, "id", OrderByType.ASC));
+        } catch (final SBonitaException e) {
+            transactionExecutor.setTransactionRollback();
+            throw e;
+        } finally {
+            transactionExecutor.completeTransaction(txOpened);
+        }
+    }
+
+    @Override
+    public void setAttributes(final Map<String, Serializable> attributes) throws SJobConfigurationException {
+        final NodeConfiguration nodeConfiguration;
+        try {
+            nodeConfiguration = ServiceAccessorFactory.getInstance().createPlatformServiceAccessor().getPlaformConfiguration();
+        } catch (final Exception e) {
+            throw new SJobConfigurationException(e);
+        }
+        configure(getTenantServiceAccessor(), nodeConfiguration);
+    }
+
+    void configure(final TenantServiceAccessor tenantServiceAccessor, final NodeConfiguration nodeConfiguration) {
+        processDefinitionService = tenantServiceAccessor.getProcessDefinitionService();
+        processInstanceService = tenantServiceAccessor.getProcessInstanceService();
+        transactionExecutor = tenantServiceAccessor.getTransactionExecutor();
+        lockService = tenantServiceAccessor.getLockService();
+        logger = tenantServiceAccessor.getTechnicalLoggerService();
+        tenantId = tenantServiceAccessor.getTenantId();
+        chunkSize = nodeConfiguration.getArchivePurgeChunkSize();
+        maxProcessInstancesPerRun = nodeConfiguration.getArchivePurgeMaxProcessInstancesPerRun();
+        pauseBetweenChunks = nodeConfiguration.getArchivePurgePauseBetweenChunks();
+        policies = new HashMap<String, ArchiveRetentionPolicy>();
+        defaultPolicy = null;
+        for (final ArchiveRetentionPolicy policy : nodeConfiguration.getArchiveRetentionPolicies()) {
+            if (policy.getProcessName() == null) {
+                defaultPolicy = policy;
+            } else {
+                policies.put(policy.getProcessName(), policy);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.restart;
+
+import java.util.List;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinitionDeployInfo;
+import org.bonitasoft.engine.exception.BonitaHomeNotSetException;
+import org.bonitasoft.engine.expression.ExpressionService;
+import org.bonitasoft.engine.expression.ProcessExpressionsCompiler;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.service.PlatformServiceAccessor;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.transaction.STransactionException;
+
+/**
+ * Tell the expression service where the expressions compiled when the processes were deployed are stored. Nothing is compiled nor read here: the
+ * compiled classes of a script are read when it is first evaluated, so that the first instances started after the restart do not compile it again.
+ */
+public class RestartExpressionsHandler implements TenantRestartHandler {
+
+    @Override
+    public void handleRestart(final PlatformServiceAccessor platformServiceAccessor, final TenantServiceAccessor tenantServiceAccessor) throws RestartException {
+        final TransactionExecutor transactionExecutor = tenantServiceAccessor.getTransactionExecutor();
+        final ProcessDefinitionService processDefinitionService = tenantServiceAccessor.getProcessDefinitionService();
+        final ExpressionService expressionService = tenantServiceAccessor.getExpressionService();
+        try {
+            final boolean txOpened = transactionExecutor.openTransaction();
+            try {
+                QueryOptions queryOptions = QueryOptions.defaultQueryOptions();
+                List<SProcessDefinitionDeployInfo> deployInfos;
+                do {
+                    deployInfos = processDefinitionService.getProcessDeploymentInfos(queryOptions);
+                    queryOptions = QueryOptions.getNextPage(queryOptions);
+                    for (final SProcessDefinitionDeployInfo deployInfo : deployInfos) {
+                        final long processDefinitionId = deployInfo.getProcessId();
+                        expressionService.setClassesFolder(processDefinitionId,
+                                ProcessExpressionsCompiler.getClassesFolder(processDefinitionId, tenantServiceAccessor));
+                    }
+                } while (deployInfos.size() == queryOptions.getNumberOfResults());
+            } catch (final SBonitaException e) {
+                transactionExecutor.setTransactionRollback();
+                throw new RestartException("Unable to set the folders of the compiled expressions: can't read process definitions", e);
+            } catch (final BonitaHomeNotSetException e) {
+                transactionExecutor.setTransactionRollback();
+                throw new RestartException("Unable to set the folders of the compiled expressions", e);
+            } finally {
+                transactionExecutor.completeTransaction(txOpened);
+            }
+        } catch (final STransactionException e) {
+            throw new RestartException("Unable to set the folders of the compiled expressions: issue with transaction", e);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.restart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
+import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
+import org.bonitasoft.engine.core.process.instance.api.TransitionService;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeNotFoundException;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.STransitionInstanceNotFoundException;
+import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
+import org.bonitasoft.engine.core.process.instance.model.STransitionInstance;
+import org.bonitasoft.engine.execution.ProcessExecutor;
+import org.bonitasoft.engine.execution.work.ExecuteFlowNodeWork;
+import org.bonitasoft.engine.execution.work.ExecuteTransitionWork;
+import org.bonitasoft.engine.execution.work.HandleMessageEventCouplesWork;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.service.PlatformServiceAccessor;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.work.WorkDescriptor;
+import org.bonitasoft.engine.work.WorkService;
+
+/**
+ * Replay the works that were registered but not executed before the engine stopped.
+ * Only works stored by a durable {@link WorkService} are replayed: this handler replaces {@link RestartTransitionsHandler} and
+ * {@link RestartFlowsNodeHandler} that scan all transitions and flow nodes of the tenant. If the work service is not durable, it falls back on them.
+ */
+public class RestartWorksHandler implements TenantRestartHandler {
+
+    @Override
+    public void handleRestart(final PlatformServiceAccessor platformServiceAccessor, final TenantServiceAccessor tenantServiceAccessor) throws RestartException {
+        final WorkService workService = platformServiceAccessor.getWorkService();
+        if (!workService.isDurable()) {
+            // works were not stored: all transitions and flow nodes must be scanned
+            new RestartTransitionsHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+            new RestartFlowsNodeHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+            return;
+        }
+        final TransactionExecutor transactionExecutor = tenantServiceAccessor.getTransactionExecutor();
+        final long tenantId = tenantServiceAccessor.getTenantId();
+        try {
+            final boolean txOpened = transactionExecutor.openTransaction();
+            try {
+                final List<WorkDescriptor> descriptors = getUnacknowledgedWorks(workService, tenantId);
+                for (final WorkDescriptor descriptor : descriptors) {
+                    replay(descriptor, workService, tenantServiceAccessor);
+                    // the replayed work is stored again when this transaction commits
+                    workService.acknowledge(tenantId, descriptor.getId());
+                }
+            } catch (final SBonitaException e) {
+                transactionExecutor.setTransactionRollback();
+                throw new RestartException("Unable to restart works", e);
+            } finally {
+                transactionExecutor.completeTransaction(txOpened);
+            }
+        } catch (final STransactionException e) {
+            throw new RestartException("Unable to restart works: issue with transaction", e);
+        }
+    }
+
+    private List<WorkDescriptor> getUnacknowledgedWorks(final WorkService workService, final long tenantId) throws SBonitaException {
+        final List<WorkDescriptor> descriptors = new ArrayList<WorkDescriptor>();
+        QueryOptions queryOptions = QueryOptions.defaultQueryOptions();
+        List<WorkDescriptor> page;
+        do {
+            page = workService.getUnacknowledgedWorks(tenantId, queryOptions.getFromIndex(), queryOptions.getNumberOfResults());
+            descriptors.addAll(page);
+            queryOptions = QueryOptions.getNextPage(queryOptions);
+        } while (page.size() == queryOptions.getNumberOfResults());
+        return descriptors;
+    }
+
+    private void replay(final WorkDescriptor descriptor, final WorkService workService, final TenantServiceAccessor tenantServiceAccessor)
+            throws SBonitaException {
+        final ProcessExecutor processExecutor = tenantServiceAccessor.getProcessExecutor();
+        if (ExecuteFlowNodeWork.TYPE.equals(descriptor.getType())) {
+            final long flowNodeInstanceId = (Long) descriptor.getParameter(ExecuteFlowNodeWork.FLOW_NODE_INSTANCE_ID);
+            final ActivityInstanceService activityInstanceService = tenantServiceAccessor.getActivityInstanceService();
+            final SFlowNodeInstance flowNodeInstance;
+            try {
+                flowNodeInstance = activityInstanceService.getFlowNodeInstance(flowNodeInstanceId);
+            } catch (final SFlowNodeNotFoundException e) {
+                // already executed and archived
+                return;
+            }
+            if (!flowNodeInstance.isStateExecuting() && flowNodeInstance.isStable()) {
+                // same filter as RestartFlowsNodeHandler: the flow node waits for something else, e.g. a user task waiting to be executed
+                return;
+            }
+            workService.registerWork(new ExecuteFlowNodeWork(processExecutor, flowNodeInstanceId, null, null, (Long) descriptor
+                    .getParameter(ExecuteFlowNodeWork.PROCESS_INSTANCE_ID)));
+        } else if (ExecuteTransitionWork.TYPE.equals(descriptor.getType())) {
+            final TransitionService transitionService = tenantServiceAccessor.getTransitionInstanceService();
+            final ProcessDefinitionService processDefinitionService = tenantServiceAccessor.getProcessDefinitionService();
+            final STransitionInstance transitionInstance;
+            try {
+                transitionInstance = transitionService.get((Long) descriptor.getParameter(ExecuteTransitionWork.TRANSITION_INSTANCE_ID));
+            } catch (final STransitionInstanceNotFoundException e) {
+                // already executed
+                return;
+            }
+            final SProcessDefinition processDefinition = processDefinitionService.getProcessDefinition((Long) descriptor
+                    .getParameter(ExecuteTransitionWork.PROCESS_DEFINITION_ID));
+            workService.registerWork(new ExecuteTransitionWork(processExecutor, processDefinition, transitionInstance));
+        } else if (HandleMessageEventCouplesWork.TYPE.equals(descriptor.getType())) {
+            tenantServiceAccessor.getEventsHandler().getMessageEventCouplesHandler()
+                    .registerHandlingOf((String) descriptor.getParameter(HandleMessageEventCouplesWork.CORRELATION_KEY));
+        }
+    }
+
+}
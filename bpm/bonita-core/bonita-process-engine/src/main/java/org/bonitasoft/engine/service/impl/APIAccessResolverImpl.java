@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.bonitasoft.engine.api.BatchAPI;
 import org.bonitasoft.engine.api.CommandAPI;
 import org.bonitasoft.engine.api.IdentityAPI;
 import org.bonitasoft.engine.api.LoginAPI;
@@ -26,6 +27,7 @@ import org.bonitasoft.engine.api.PlatformCommandAPI;
 import org.bonitasoft.engine.api.PlatformLoginAPI;
 import org.bonitasoft.engine.api.ProcessAPI;
 import org.bonitasoft.engine.api.ProfileAPI;
+import org.bonitasoft.engine.api.impl.BatchAPIImpl;
 import org.bonitasoft.engine.api.impl.CommandAPIImpl;
 import org.bonitasoft.engine.api.impl.IdentityAPIImpl;
 import org.bonitasoft.engine.api.impl.LoginAPIImpl;
@@ -55,6 +57,7 @@ public class APIAccessResolverImpl implements APIAccessResolver {
         apis.put(ProcessAPI.class.getName(), new ProcessAPIImpl());
         apis.put(CommandAPI.class.getName(), new CommandAPIImpl());
         apis.put(ProfileAPI.class.getName(), new ProfileAPIImpl());
+        apis.put(BatchAPI.class.getName(), new BatchAPIImpl());
     }
 
     @Override
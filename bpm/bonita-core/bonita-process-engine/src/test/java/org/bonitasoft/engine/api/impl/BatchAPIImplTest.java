@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bonitasoft.engine.api.APICall;
+import org.bonitasoft.engine.api.APICallResult;
+import org.bonitasoft.engine.api.BatchAPI;
+import org.bonitasoft.engine.api.ProcessAPI;
+import org.bonitasoft.engine.api.internal.ServerWrappedException;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.session.InvalidSessionException;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BatchAPIImplTest {
+
+    private final APICall countCall = new APICall(ProcessAPI.class, "getNumberOfProcessDeploymentInfos", new Class<?>[0]);
+
+    private final APICall failingCall = new APICall(ProcessAPI.class, "getProcessDefinition", new Class<?>[] { long.class }, 12L);
+
+    private SessionAccessor sessionAccessor;
+
+    private TransactionService transactionService;
+
+    private ServerAPIImpl serverAPI;
+
+    private BatchAPIImpl batchAPI;
+
+    /** the transaction of the mock is marked by the failing call, as the transaction executor of the APIs does */
+    private boolean rollbackOnly;
+
+    @Before
+    public void setUp() throws Exception {
+        sessionAccessor = mock(SessionAccessor.class);
+        when(sessionAccessor.getSessionId()).thenReturn(5L);
+        transactionService = mock(TransactionService.class);
+        final TenantServiceAccessor tenantAccessor = mock(TenantServiceAccessor.class);
+        when(tenantAccessor.getTransactionService()).thenReturn(transactionService);
+        serverAPI = mock(ServerAPIImpl.class);
+        rollbackOnly = false;
+        when(serverAPI.invokeCall(countCall)).thenReturn(3L);
+        when(serverAPI.invokeCall(failingCall)).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                rollbackOnly = true;
+                throw new ServerWrappedException(new IllegalStateException("not found"));
+            }
+        });
+        when(transactionService.isRollbackOnly()).thenAnswer(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                return rollbackOnly;
+            }
+        });
+        final Answer<Void> clearRollbackOnly = new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                rollbackOnly = false;
+                return null;
+            }
+        };
+        doAnswer(clearRollbackOnly).when(transactionService).complete();
+        batchAPI = new BatchAPIImpl() {
+
+            @Override
+            protected SessionAccessor getSessionAccessor() {
+                return sessionAccessor;
+            }
+
+            @Override
+            protected TenantServiceAccessor getTenantAccessor() {
+                return tenantAccessor;
+            }
+
+            @Override
+            protected ServerAPIImpl getServerAPI() {
+                return serverAPI;
+            }
+        };
+    }
+
+    @Test
+    public void readOnlyBatchIsExecutedInATransactionThatIsRolledBack() throws Exception {
+        final List<APICallResult> results = batchAPI.executeBatch(Arrays.asList(countCall, countCall), true);
+
+        assertEquals(2, results.size());
+        assertEquals(3L, results.get(0).getResult());
+        assertEquals(3L, results.get(1).getResult());
+        final InOrder inOrder = inOrder(transactionService, serverAPI);
+        inOrder.verify(transactionService).begin();
+        inOrder.verify(serverAPI, times(2)).invokeCall(countCall);
+        inOrder.verify(transactionService).setRollbackOnly();
+        inOrder.verify(transactionService).complete();
+    }
+
+    @Test
+    public void batchOutOfTransactionLetsTheCallsOpenTheirOwnTransactions() throws Exception {
+        final List<APICallResult> results = batchAPI.executeBatch(Arrays.asList(countCall), false);
+
+        assertEquals(3L, results.get(0).getResult());
+        verifyZeroInteractions(transactionService);
+    }
+
+    @Test
+    public void failingCallDoesNotPreventTheNextOnes() throws Exception {
+        final List<APICallResult> results = batchAPI.executeBatch(Arrays.asList(failingCall, countCall), false);
+
+        assertFalse(results.get(0).isSuccessful());
+        assertTrue(results.get(0).getException() instanceof IllegalStateException);
+        assertTrue(results.get(1).isSuccessful());
+        assertEquals(3L, results.get(1).getResult());
+    }
+
+    @Test
+    public void failingCallOfReadOnlyBatchRollsBackAndTheNextCallsRunInANewTransaction() throws Exception {
+        final List<APICallResult> results = batchAPI.executeBatch(Arrays.asList(countCall, failingCall, countCall), true);
+
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertTrue(results.get(2).isSuccessful());
+        final InOrder inOrder = inOrder(transactionService, serverAPI);
+        inOrder.verify(transactionService).begin();
+        inOrder.verify(serverAPI).invokeCall(countCall);
+        inOrder.verify(serverAPI).invokeCall(failingCall);
+        inOrder.verify(transactionService).complete();
+        inOrder.verify(transactionService).begin();
+        inOrder.verify(serverAPI).invokeCall(countCall);
+        inOrder.verify(transactionService).setRollbackOnly();
+        inOrder.verify(transactionService).complete();
+    }
+
+    @Test
+    public void batchCannotCallTheBatchAPI() throws Exception {
+        final APICall nestedBatch = new APICall(BatchAPI.class, "executeBatch", new Class<?>[] { List.class, boolean.class }, Arrays.asList(countCall),
+                false);
+
+        final List<APICallResult> results = batchAPI.executeBatch(Arrays.asList(nestedBatch, countCall), false);
+
+        assertFalse(results.get(0).isSuccessful());
+        assertTrue(results.get(1).isSuccessful());
+        verify(serverAPI, never()).invokeCall(nestedBatch);
+        verify(serverAPI, times(1)).invokeCall(any(APICall.class));
+    }
+
+    @Test(expected = InvalidSessionException.class)
+    public void batchWithoutSessionIsRejected() throws Exception {
+        when(sessionAccessor.getSessionId()).thenThrow(new SessionIdNotSetException("no session"));
+        try {
+            batchAPI.executeBatch(Arrays.asList(countCall), true);
+        } finally {
+            verify(serverAPI, never()).invokeCall(eq(countCall));
+            verifyZeroInteractions(transactionService);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlatformStateCacheTest {
+
+    @Before
+    public void setUp() {
+        PlatformStateCache.platformChanged();
+    }
+
+    @Test
+    public void tenantIsActivatedUntilItChanges() {
+        PlatformStateCache.tenantActivated(1L, 60000, PlatformStateCache.getVersion());
+        assertTrue(PlatformStateCache.isTenantActivated(1L));
+        assertFalse(PlatformStateCache.isTenantActivated(2L));
+
+        PlatformStateCache.tenantChanged(1L);
+        assertFalse(PlatformStateCache.isTenantActivated(1L));
+    }
+
+    @Test
+    public void tenantIsNotActivatedAfterTimeToLive() throws Exception {
+        PlatformStateCache.tenantActivated(1L, 1, PlatformStateCache.getVersion());
+        Thread.sleep(5);
+        assertFalse(PlatformStateCache.isTenantActivated(1L));
+    }
+
+    @Test
+    public void stateReadBeforeAChangeIsIgnored() {
+        final long version = PlatformStateCache.getVersion();
+        PlatformStateCache.tenantChanged(1L);
+        PlatformStateCache.tenantActivated(1L, 60000, version);
+        PlatformStateCache.platformCreated(version);
+
+        assertFalse(PlatformStateCache.isTenantActivated(1L));
+        assertFalse(PlatformStateCache.isPlatformCreated());
+    }
+
+}
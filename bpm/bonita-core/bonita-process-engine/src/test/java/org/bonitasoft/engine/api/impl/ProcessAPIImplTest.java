@@ -13,9 +13,33 @@
  **/
 package org.bonitasoft.engine.api.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bonitasoft.engine.bpm.process.ProcessInstanceCriterion;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.instance.api.ProcessInstanceService;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.SProcessInstanceModificationException;
+import org.bonitasoft.engine.core.process.instance.model.archive.builder.SAProcessInstanceBuilder;
+import org.bonitasoft.engine.core.process.instance.model.builder.BPMInstanceBuilders;
+import org.bonitasoft.engine.exception.DeletionException;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 /**
@@ -28,6 +52,12 @@ public class ProcessAPIImplTest {
     @InjectMocks
     private ProcessAPIImpl processAPIImpl;
 
+    @Mock
+    private ProcessInstanceService processInstanceService;
+
+    @Mock
+    private TransactionExecutor transactionExecutor;
+
     /**
      * Test method for {@link org.bonitasoft.engine.api.impl.ProcessAPIImpl#searchHumanTaskInstances(org.bonitasoft.engine.search.SearchOptions)}.
      */
@@ -2004,4 +2034,48 @@ public class ProcessAPIImplTest {
         // TODO : Not yet implemented
     }
 
+    @Test
+    public void deleteArchivedProcessInstancesPurgesTheFinishedRootInstancesOfThePage() throws Exception {
+        final List<Long> processInstanceIds = Arrays.asList(4L, 5L);
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(12L), anyListOf(Integer.class), eq(Long.MAX_VALUE),
+                any(QueryOptions.class))).thenReturn(processInstanceIds);
+
+        final long deleted = processAPIImpl.deleteArchivedProcessInstances(mockTenantAccessor(), 12L, 0, 10, ProcessInstanceCriterion.DEFAULT);
+
+        assertEquals(2, deleted);
+        verify(processInstanceService).purgeArchivedProcessInstances(processInstanceIds);
+        verify(transactionExecutor).completeTransaction(true);
+        verify(transactionExecutor, never()).setTransactionRollback();
+    }
+
+    @Test
+    public void deleteArchivedProcessInstancesRollsBackWhenThePurgeFails() throws Exception {
+        final List<Long> processInstanceIds = Arrays.asList(4L);
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(12L), anyListOf(Integer.class), eq(Long.MAX_VALUE),
+                any(QueryOptions.class))).thenReturn(processInstanceIds);
+        doThrow(new SProcessInstanceModificationException(new Exception("purge failed"))).when(processInstanceService).purgeArchivedProcessInstances(
+                processInstanceIds);
+
+        try {
+            processAPIImpl.deleteArchivedProcessInstances(mockTenantAccessor(), 12L, 0, 10, ProcessInstanceCriterion.DEFAULT);
+            fail("the purge failure must be reported");
+        } catch (final DeletionException e) {
+            verify(transactionExecutor).setTransactionRollback();
+            verify(transactionExecutor).completeTransaction(true);
+        }
+    }
+
+    private TenantServiceAccessor mockTenantAccessor() throws Exception {
+        final TenantServiceAccessor tenantAccessor = mock(TenantServiceAccessor.class);
+        final BPMInstanceBuilders bpmInstanceBuilders = mock(BPMInstanceBuilders.class);
+        final SAProcessInstanceBuilder saProcessInstanceBuilder = mock(SAProcessInstanceBuilder.class);
+        when(tenantAccessor.getProcessInstanceService()).thenReturn(processInstanceService);
+        when(tenantAccessor.getTransactionExecutor()).thenReturn(transactionExecutor);
+        when(tenantAccessor.getBPMInstanceBuilders()).thenReturn(bpmInstanceBuilders);
+        when(bpmInstanceBuilders.getSAProcessInstanceBuilder()).thenReturn(saProcessInstanceBuilder);
+        when(saProcessInstanceBuilder.getStartDateKey()).thenReturn("startDate");
+        when(transactionExecutor.openTransaction()).thenReturn(true);
+        return tenantAccessor;
+    }
+
 }
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.api.impl.transaction.event.GetMessageEventCouples;
+import org.bonitasoft.engine.api.impl.transaction.event.HandleMessageEventCouple;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.transaction.TransactionContent;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SEventTriggerInstanceReadException;
+import org.bonitasoft.engine.core.process.instance.model.builder.BPMInstanceBuilders;
+import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SMessageInstanceBuilder;
+import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SWaitingMessageEventBuilder;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
+import org.bonitasoft.engine.execution.work.HandleMessageEventCouplesWork;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.work.BonitaWork;
+import org.bonitasoft.engine.work.WorkService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class MessageEventCouplesHandlerTest {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef01234567";
+
+    private static final String OTHER_KEY = "fedcba9876543210fedcba9876543210fedcba98";
+
+    private EventInstanceService eventInstanceService;
+
+    private BPMInstanceBuilders instanceBuilders;
+
+    private TransactionExecutor transactionExecutor;
+
+    private WorkService workService;
+
+    private LockService lockService;
+
+    private MessageEventCouplesHandler handler;
+
+    /**
+     * Couples handled, one list of waiting messages per message
+     */
+    private final List<HandleMessageEventCouple> handledCouples = new ArrayList<HandleMessageEventCouple>();
+
+    @Before
+    public void setUp() throws Exception {
+        eventInstanceService = mock(EventInstanceService.class);
+        instanceBuilders = mock(BPMInstanceBuilders.class);
+        transactionExecutor = mock(TransactionExecutor.class);
+        workService = mock(WorkService.class);
+        lockService = mock(LockService.class);
+        // reads and fills are executed, the handling of the couples is only recorded
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final TransactionContent content = (TransactionContent) invocation.getArguments()[0];
+                if (content instanceof HandleMessageEventCouple) {
+                    handledCouples.add((HandleMessageEventCouple) content);
+                } else {
+                    content.execute();
+                }
+                return null;
+            }
+        }).when(transactionExecutor).execute(any(TransactionContent.class));
+        handler = new MessageEventCouplesHandler(eventInstanceService, instanceBuilders, mock(EventsHandler.class), transactionExecutor, workService,
+                lockService, mock(TechnicalLoggerService.class));
+    }
+
+    private static SMessageEventCouple couple(final SMessageInstance messageInstance, final SWaitingMessageEvent waitingMessage) {
+        final SMessageEventCouple couple = mock(SMessageEventCouple.class);
+        when(couple.getMessageInstance()).thenReturn(messageInstance);
+        when(couple.getWaitingMessage()).thenReturn(waitingMessage);
+        return couple;
+    }
+
+    private static SMessageInstance message(final String correlationKey) {
+        final SMessageInstance messageInstance = mock(SMessageInstance.class);
+        when(messageInstance.getCorrelationKey()).thenReturn(correlationKey);
+        return messageInstance;
+    }
+
+    @Test
+    public void couplesOfAKeyAreHandledUnderTheLockOfTheKey() throws Exception {
+        final SMessageInstance message1 = message(KEY);
+        final SMessageInstance message2 = message(KEY);
+        final List<SMessageEventCouple> couples = Arrays.asList(couple(message1, mock(SWaitingMessageEvent.class)),
+                couple(message1, mock(SWaitingMessageEvent.class)), couple(message2, mock(SWaitingMessageEvent.class)));
+        when(eventInstanceService.getMessageEventCouples(KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY)).thenReturn(couples);
+
+        handler.handle(KEY);
+
+        // one transaction per message
+        assertEquals(2, handledCouples.size());
+        final long lockId = MessageEventCouplesHandler.toLockId(KEY);
+        final InOrder inOrder = inOrder(lockService, eventInstanceService);
+        inOrder.verify(lockService).createExclusiveLockAccess(lockId, MessageEventCouplesHandler.LOCK_TYPE);
+        inOrder.verify(eventInstanceService).getMessageEventCouples(KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY);
+        inOrder.verify(lockService).releaseExclusiveLockAccess(lockId, MessageEventCouplesHandler.LOCK_TYPE);
+        verify(workService, never()).registerWork(any(BonitaWork.class));
+    }
+
+    @Test
+    public void lockIsReleasedWhenTheCouplesCantBeRead() throws Exception {
+        when(eventInstanceService.getMessageEventCouples(KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY)).thenThrow(
+                new SEventTriggerInstanceReadException(new Exception("db down")));
+
+        try {
+            handler.handle(KEY);
+            fail("the read failed");
+        } catch (final SBonitaException e) {
+            // ok
+        }
+        verify(lockService).releaseExclusiveLockAccess(MessageEventCouplesHandler.toLockId(KEY), MessageEventCouplesHandler.LOCK_TYPE);
+    }
+
+    @Test
+    public void fullPageOfCouplesRegistersAnotherWork() throws Exception {
+        final List<SMessageEventCouple> couples = new ArrayList<SMessageEventCouple>();
+        for (int i = 0; i < MessageEventCouplesHandler.MAX_COUPLES_PER_KEY; i++) {
+            couples.add(couple(message(KEY), mock(SWaitingMessageEvent.class)));
+        }
+        when(eventInstanceService.getMessageEventCouples(KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY)).thenReturn(couples);
+
+        handler.handle(KEY);
+
+        verify(workService).registerWork(any(HandleMessageEventCouplesWork.class));
+    }
+
+    @Test
+    public void pageOfCouplesIsHandledOnceByKey() throws Exception {
+        final List<SMessageEventCouple> couples = Arrays.asList(couple(message(KEY), mock(SWaitingMessageEvent.class)),
+                couple(message(OTHER_KEY), mock(SWaitingMessageEvent.class)), couple(message(KEY), mock(SWaitingMessageEvent.class)));
+        when(eventInstanceService.getMessageEventCouples(0, 10)).thenReturn(couples);
+        when(eventInstanceService.getMessageEventCouples(anyString(), anyInt(), anyInt())).thenReturn(Collections.<SMessageEventCouple> emptyList());
+
+        assertEquals(3, handler.handle(0, 10));
+
+        verify(eventInstanceService).getMessageEventCouples(KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY);
+        verify(eventInstanceService).getMessageEventCouples(OTHER_KEY, 0, MessageEventCouplesHandler.MAX_COUPLES_PER_KEY);
+        verify(lockService).createExclusiveLockAccess(MessageEventCouplesHandler.toLockId(KEY), MessageEventCouplesHandler.LOCK_TYPE);
+        verify(lockService).createExclusiveLockAccess(MessageEventCouplesHandler.toLockId(OTHER_KEY), MessageEventCouplesHandler.LOCK_TYPE);
+    }
+
+    @Test
+    public void missingCorrelationKeysAreFilledAndHandled() throws Exception {
+        final SMessageInstance oldMessage = message(null);
+        when(eventInstanceService.getMessageInstancesWithoutCorrelationKey(10)).thenReturn(Collections.singletonList(oldMessage));
+        final SWaitingMessageEvent oldWaitingMessage = mock(SWaitingMessageEvent.class);
+        when(eventInstanceService.getWaitingMessageEventsWithoutCorrelationKey(10)).thenReturn(Collections.singletonList(oldWaitingMessage));
+        final SMessageInstanceBuilder messageBuilder = mock(SMessageInstanceBuilder.class);
+        when(instanceBuilders.getSMessageInstanceBuilder()).thenReturn(messageBuilder);
+        when(messageBuilder.createNewInstance(oldMessage)).thenReturn(messageBuilder);
+        final SMessageInstance computedMessage = message(KEY);
+        when(messageBuilder.done()).thenReturn(computedMessage);
+        when(messageBuilder.getCorrelationKeyKey()).thenReturn("correlationKey");
+        final SWaitingMessageEventBuilder waitingMessageBuilder = mock(SWaitingMessageEventBuilder.class);
+        when(instanceBuilders.getSWaitingMessageEventBuilder()).thenReturn(waitingMessageBuilder);
+        when(waitingMessageBuilder.createNewInstance(oldWaitingMessage)).thenReturn(waitingMessageBuilder);
+        final SWaitingMessageEvent computedWaitingMessage = mock(SWaitingMessageEvent.class);
+        when(computedWaitingMessage.getCorrelationKey()).thenReturn(KEY);
+        when(waitingMessageBuilder.done()).thenReturn(computedWaitingMessage);
+        when(waitingMessageBuilder.getCorrelationKeyKey()).thenReturn("correlationKey");
+
+        assertEquals(2, handler.fillMissingCorrelationKeys(10));
+
+        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
+        descriptor.addField("correlationKey", KEY);
+        verify(eventInstanceService).updateMessageInstance(oldMessage, descriptor);
+        verify(eventInstanceService).updateWaitingMessage(oldWaitingMessage, descriptor);
+        // both have the same key
+        verify(workService, times(1)).registerWork(any(HandleMessageEventCouplesWork.class));
+    }
+
+    @Test
+    public void rowsWhoseKeyCantBeComputedAreLeftUnchanged() throws Exception {
+        final SMessageInstance oldMessage = message(null);
+        when(eventInstanceService.getMessageInstancesWithoutCorrelationKey(10)).thenReturn(Collections.singletonList(oldMessage));
+        final SMessageInstanceBuilder messageBuilder = mock(SMessageInstanceBuilder.class);
+        when(instanceBuilders.getSMessageInstanceBuilder()).thenReturn(messageBuilder);
+        when(messageBuilder.createNewInstance(oldMessage)).thenReturn(messageBuilder);
+        final SMessageInstance computedMessage = message(null);
+        when(messageBuilder.done()).thenReturn(computedMessage);
+
+        assertEquals(0, handler.fillMissingCorrelationKeys(10));
+
+        verify(eventInstanceService, never()).updateMessageInstance(eq(oldMessage), any(EntityUpdateDescriptor.class));
+        verify(workService, never()).registerWork(any(BonitaWork.class));
+    }
+
+}
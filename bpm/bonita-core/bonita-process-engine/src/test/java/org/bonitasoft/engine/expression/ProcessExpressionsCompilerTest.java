@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.bonitasoft.engine.core.operation.model.SOperation;
+import org.bonitasoft.engine.core.process.definition.model.SConnectorDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SFlowElementContainerDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SFlowNodeDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SMultiInstanceLoopCharacteristics;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SSubProcessDefinition;
+import org.bonitasoft.engine.core.process.definition.model.STransitionDefinition;
+import org.bonitasoft.engine.core.process.definition.model.SUserTaskDefinition;
+import org.bonitasoft.engine.data.definition.model.SDataDefinition;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.junit.Test;
+
+public class ProcessExpressionsCompilerTest {
+
+    private static SFlowElementContainerDefinition container(final SFlowNodeDefinition... flowNodes) {
+        final SFlowElementContainerDefinition container = mock(SFlowElementContainerDefinition.class);
+        when(container.getFlowNodes()).thenReturn(new HashSet<SFlowNodeDefinition>(Arrays.asList(flowNodes)));
+        return container;
+    }
+
+    @Test
+    public void expressionsOfTheProcessAreCollected() {
+        final SExpression stringIndex = mock(SExpression.class);
+        final SExpression condition = mock(SExpression.class);
+        final SExpression defaultValue = mock(SExpression.class);
+        final SProcessDefinition processDefinition = mock(SProcessDefinition.class);
+        when(processDefinition.getStringIndexValue(2)).thenReturn(stringIndex);
+        final SFlowElementContainerDefinition container = container();
+        final STransitionDefinition transition = mock(STransitionDefinition.class);
+        when(transition.getCondition()).thenReturn(condition);
+        when(container.getTransitions()).thenReturn(Collections.singleton(transition));
+        final SDataDefinition dataDefinition = mock(SDataDefinition.class);
+        when(dataDefinition.getDefaultValueExpression()).thenReturn(defaultValue);
+        when(container.getDataDefinitions()).thenReturn(Collections.singletonList(dataDefinition));
+        when(processDefinition.getProcessContainer()).thenReturn(container);
+
+        assertEquals(Arrays.asList(stringIndex, defaultValue, condition), ProcessExpressionsCompiler.getExpressions(processDefinition));
+    }
+
+    @Test
+    public void expressionsOfTheActivitiesOfSubProcessesAreCollected() {
+        final SExpression displayName = mock(SExpression.class);
+        final SExpression connectorInput = mock(SExpression.class);
+        final SExpression operation = mock(SExpression.class);
+        final SExpression cardinality = mock(SExpression.class);
+        final SUserTaskDefinition task = mock(SUserTaskDefinition.class);
+        when(task.getDisplayName()).thenReturn(displayName);
+        final SConnectorDefinition connector = mock(SConnectorDefinition.class);
+        when(connector.getInputs()).thenReturn(Collections.singletonMap("input", connectorInput));
+        when(task.getConnectors()).thenReturn(Collections.singletonList(connector));
+        final SOperation sOperation = mock(SOperation.class);
+        when(sOperation.getRightOperand()).thenReturn(operation);
+        when(task.getSOperations()).thenReturn(Collections.singletonList(sOperation));
+        final SMultiInstanceLoopCharacteristics loop = mock(SMultiInstanceLoopCharacteristics.class);
+        when(loop.getLoopCardinality()).thenReturn(cardinality);
+        when(task.getLoopCharacteristics()).thenReturn(loop);
+        final SSubProcessDefinition subProcess = mock(SSubProcessDefinition.class);
+        final SFlowElementContainerDefinition subProcessContainer = container(task);
+        when(subProcess.getSubProcessContainer()).thenReturn(subProcessContainer);
+        final SProcessDefinition processDefinition = mock(SProcessDefinition.class);
+        final SFlowElementContainerDefinition processContainer = container(subProcess);
+        when(processDefinition.getProcessContainer()).thenReturn(processContainer);
+
+        final List<SExpression> expressions = ProcessExpressionsCompiler.getExpressions(processDefinition);
+
+        assertEquals(4, expressions.size());
+        assertTrue(expressions.containsAll(Arrays.asList(displayName, connectorInput, operation, cardinality)));
+    }
+
+    @Test
+    public void processWithoutExpressionHasNone() {
+        final SProcessDefinition processDefinition = mock(SProcessDefinition.class);
+        final SFlowElementContainerDefinition container = container();
+        when(processDefinition.getProcessContainer()).thenReturn(container);
+
+        assertTrue(ProcessExpressionsCompiler.getExpressions(processDefinition).isEmpty());
+    }
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.api.impl.NodeConfiguration;
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinitionDeployInfo;
+import org.bonitasoft.engine.core.process.instance.api.ProcessInstanceService;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.SProcessInstanceModificationException;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.scheduler.JobExecutionException;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class PurgeArchivedProcessInstancesJobTest {
+
+    private static final long TENANT_ID = 7L;
+
+    private ProcessDefinitionService processDefinitionService;
+
+    private ProcessInstanceService processInstanceService;
+
+    private TransactionExecutor transactionExecutor;
+
+    private LockService lockService;
+
+    private NodeConfiguration nodeConfiguration;
+
+    private TenantServiceAccessor tenantServiceAccessor;
+
+    private final List<ArchiveRetentionPolicy> policies = new ArrayList<ArchiveRetentionPolicy>();
+
+    @Before
+    public void setUp() throws Exception {
+        processDefinitionService = mock(ProcessDefinitionService.class);
+        processInstanceService = mock(ProcessInstanceService.class);
+        transactionExecutor = mock(TransactionExecutor.class);
+        lockService = mock(LockService.class);
+        final TechnicalLoggerService logger = mock(TechnicalLoggerService.class);
+        tenantServiceAccessor = mock(TenantServiceAccessor.class);
+        when(tenantServiceAccessor.getProcessDefinitionService()).thenReturn(processDefinitionService);
+        when(tenantServiceAccessor.getProcessInstanceService()).thenReturn(processInstanceService);
+        when(tenantServiceAccessor.getTransactionExecutor()).thenReturn(transactionExecutor);
+        when(tenantServiceAccessor.getLockService()).thenReturn(lockService);
+        when(tenantServiceAccessor.getTechnicalLoggerService()).thenReturn(logger);
+        when(tenantServiceAccessor.getTenantId()).thenReturn(TENANT_ID);
+        nodeConfiguration = mock(NodeConfiguration.class);
+        when(nodeConfiguration.getArchivePurgeChunkSize()).thenReturn(2);
+        when(nodeConfiguration.getArchivePurgeMaxProcessInstancesPerRun()).thenReturn(100);
+        when(nodeConfiguration.getArchivePurgePauseBetweenChunks()).thenReturn(0L);
+        when(nodeConfiguration.getArchiveRetentionPolicies()).thenReturn(policies);
+        when(transactionExecutor.openTransaction()).thenReturn(true);
+        when(lockService.tryExclusiveLockAccess(eq(TENANT_ID), any(String.class), eq(0L), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+        final SProcessDefinitionDeployInfo invoice = processDefinition(1L, "Invoice");
+        final SProcessDefinitionDeployInfo leave = processDefinition(2L, "Leave");
+        when(processDefinitionService.getProcessDeploymentInfos(any(QueryOptions.class))).thenReturn(Arrays.asList(invoice, leave));
+    }
+
+    private SProcessDefinitionDeployInfo processDefinition(final long processId, final String name) {
+        final SProcessDefinitionDeployInfo processDefinition = mock(SProcessDefinitionDeployInfo.class);
+        when(processDefinition.getProcessId()).thenReturn(processId);
+        when(processDefinition.getName()).thenReturn(name);
+        when(processDefinition.getVersion()).thenReturn("1.0");
+        return processDefinition;
+    }
+
+    private PurgeArchivedProcessInstancesJob createJob() {
+        final PurgeArchivedProcessInstancesJob job = new PurgeArchivedProcessInstancesJob();
+        job.configure(tenantServiceAccessor, nodeConfiguration);
+        return job;
+    }
+
+    private void addPolicy(final String processName, final int maxAgeInDays) {
+        final ArchiveRetentionPolicy policy = new ArchiveRetentionPolicy();
+        policy.setProcessName(processName);
+        policy.setMaxAgeInDays(maxAgeInDays);
+        policies.add(policy);
+    }
+
+    @Test
+    public void doesNothingWithoutPolicy() throws Exception {
+        createJob().execute();
+
+        verify(lockService, never()).tryExclusiveLockAccess(anyLong(), any(String.class), anyLong(), any(TimeUnit.class));
+        verify(processInstanceService, never()).purgeArchivedProcessInstances(anyListOf(Long.class));
+    }
+
+    @Test
+    public void skipsTheRunWhenAnotherOneHoldsTheLock() throws Exception {
+        addPolicy("Invoice", 30);
+        when(lockService.tryExclusiveLockAccess(eq(TENANT_ID), any(String.class), eq(0L), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+
+        createJob().execute();
+
+        verify(processInstanceService, never()).purgeArchivedProcessInstances(anyListOf(Long.class));
+        verify(lockService, never()).releaseExclusiveLockAccess(anyLong(), any(String.class));
+    }
+
+    @Test
+    public void purgesChunksUntilNoneIsLeftAndReleasesTheLock() throws Exception {
+        addPolicy("Invoice", 30);
+        final List<Long> firstChunk = Arrays.asList(1L, 2L);
+        final List<Long> secondChunk = Arrays.asList(3L);
+        final List<Long> empty = Collections.emptyList();
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(1L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class))).thenReturn(firstChunk, secondChunk, empty);
+
+        createJob().execute();
+
+        verify(processInstanceService).purgeArchivedProcessInstances(firstChunk);
+        verify(processInstanceService).purgeArchivedProcessInstances(secondChunk);
+        // the process without policy is not read
+        verify(processInstanceService, never()).getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(2L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class));
+        verify(lockService).releaseExclusiveLockAccess(eq(TENANT_ID), any(String.class));
+    }
+
+    @Test
+    public void defaultPolicyAppliesToTheProcessesWithoutPolicy() throws Exception {
+        addPolicy(null, 30);
+        final List<Long> empty = Collections.emptyList();
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(anyLong(), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class))).thenReturn(empty);
+
+        createJob().execute();
+
+        verify(processInstanceService).getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(1L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class));
+        verify(processInstanceService).getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(2L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class));
+    }
+
+    @Test
+    public void stopsAtTheMaximumNumberOfProcessInstancesPerRun() throws Exception {
+        when(nodeConfiguration.getArchivePurgeMaxProcessInstancesPerRun()).thenReturn(2);
+        addPolicy(null, 30);
+        final List<Long> chunk = Arrays.asList(1L, 2L);
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(anyLong(), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class))).thenReturn(chunk);
+
+        createJob().execute();
+
+        verify(processInstanceService, times(1)).purgeArchivedProcessInstances(anyListOf(Long.class));
+        verify(processInstanceService, never()).getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(2L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class));
+    }
+
+    @Test
+    public void keepsTheMostRecentProcessInstancesWhenLimitedInNumber() throws Exception {
+        final ArchiveRetentionPolicy policy = new ArchiveRetentionPolicy();
+        policy.setProcessName("Invoice");
+        policy.setMaxNumberOfProcessInstances(50);
+        policies.add(policy);
+        final List<Long> empty = Collections.emptyList();
+        final List<QueryOptions> queryOptions = new ArrayList<QueryOptions>();
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(1L), anyListOf(Integer.class), eq(Long.MAX_VALUE),
+                any(QueryOptions.class))).thenAnswer(new Answer<List<Long>>() {
+
+            @Override
+            public List<Long> answer(final InvocationOnMock invocation) {
+                queryOptions.add((QueryOptions) invocation.getArguments()[3]);
+                return empty;
+            }
+        });
+
+        createJob().execute();
+
+        assertEquals(1, queryOptions.size());
+        assertEquals(50, queryOptions.get(0).getFromIndex());
+    }
+
+    @Test
+    public void rollsBackTheFailingChunkAndReleasesTheLock() throws Exception {
+        addPolicy("Invoice", 30);
+        final List<Long> chunk = Arrays.asList(1L);
+        when(processInstanceService.getSourceObjectIdsOfFinishedArchivedRootProcessInstances(eq(1L), anyListOf(Integer.class), anyLong(),
+                any(QueryOptions.class))).thenReturn(chunk);
+        doThrow(new SProcessInstanceModificationException(new Exception("purge failed"))).when(processInstanceService).purgeArchivedProcessInstances(chunk);
+
+        try {
+            createJob().execute();
+            fail("the failure must be reported");
+        } catch (final JobExecutionException e) {
+            verify(transactionExecutor).setTransactionRollback();
+            verify(lockService).releaseExclusiveLockAccess(eq(TENANT_ID), any(String.class));
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.restart;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.bonitasoft.engine.commons.transaction.TransactionExecutor;
+import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeNotFoundException;
+import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
+import org.bonitasoft.engine.execution.ProcessExecutor;
+import org.bonitasoft.engine.execution.work.ExecuteFlowNodeWork;
+import org.bonitasoft.engine.service.PlatformServiceAccessor;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.work.BonitaWork;
+import org.bonitasoft.engine.work.WorkDescriptor;
+import org.bonitasoft.engine.work.WorkService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RestartWorksHandlerTest {
+
+    private static final long TENANT_ID = 12;
+
+    private PlatformServiceAccessor platformServiceAccessor;
+
+    private TenantServiceAccessor tenantServiceAccessor;
+
+    private WorkService workService;
+
+    private ActivityInstanceService activityInstanceService;
+
+    @Before
+    public void setUp() throws Exception {
+        platformServiceAccessor = mock(PlatformServiceAccessor.class);
+        tenantServiceAccessor = mock(TenantServiceAccessor.class);
+        workService = mock(WorkService.class);
+        activityInstanceService = mock(ActivityInstanceService.class);
+        when(platformServiceAccessor.getWorkService()).thenReturn(workService);
+        when(workService.isDurable()).thenReturn(true);
+        when(tenantServiceAccessor.getTenantId()).thenReturn(TENANT_ID);
+        when(tenantServiceAccessor.getTransactionExecutor()).thenReturn(mock(TransactionExecutor.class));
+        when(tenantServiceAccessor.getProcessExecutor()).thenReturn(mock(ProcessExecutor.class));
+        when(tenantServiceAccessor.getActivityInstanceService()).thenReturn(activityInstanceService);
+    }
+
+    private static WorkDescriptor executeFlowNode(final String id, final long flowNodeInstanceId) {
+        final WorkDescriptor descriptor = new WorkDescriptor(ExecuteFlowNodeWork.TYPE).addParameter(ExecuteFlowNodeWork.FLOW_NODE_INSTANCE_ID,
+                flowNodeInstanceId).addParameter(ExecuteFlowNodeWork.PROCESS_INSTANCE_ID, 1L);
+        descriptor.setId(id);
+        return descriptor;
+    }
+
+    private SFlowNodeInstance flowNode(final long id, final boolean stateExecuting, final boolean stable) throws Exception {
+        final SFlowNodeInstance flowNodeInstance = mock(SFlowNodeInstance.class);
+        when(flowNodeInstance.getId()).thenReturn(id);
+        when(flowNodeInstance.isStateExecuting()).thenReturn(stateExecuting);
+        when(flowNodeInstance.isStable()).thenReturn(stable);
+        when(activityInstanceService.getFlowNodeInstance(id)).thenReturn(flowNodeInstance);
+        return flowNodeInstance;
+    }
+
+    @Test
+    public void replayFlowNodeThatWasNotStable() throws Exception {
+        flowNode(5, false, false);
+        when(workService.getUnacknowledgedWorks(eq(TENANT_ID), anyInt(), anyInt())).thenReturn(Arrays.asList(executeFlowNode("a", 5)));
+
+        new RestartWorksHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+
+        verify(workService).registerWork(any(ExecuteFlowNodeWork.class));
+        verify(workService).acknowledge(TENANT_ID, "a");
+    }
+
+    @Test
+    public void replayFlowNodeInExecutingState() throws Exception {
+        flowNode(5, true, true);
+        when(workService.getUnacknowledgedWorks(eq(TENANT_ID), anyInt(), anyInt())).thenReturn(Arrays.asList(executeFlowNode("a", 5)));
+
+        new RestartWorksHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+
+        verify(workService).registerWork(any(ExecuteFlowNodeWork.class));
+    }
+
+    @Test
+    public void doNotReplayStableFlowNode() throws Exception {
+        // e.g. a ready user task
+        flowNode(5, false, true);
+        when(workService.getUnacknowledgedWorks(eq(TENANT_ID), anyInt(), anyInt())).thenReturn(Arrays.asList(executeFlowNode("a", 5)));
+
+        new RestartWorksHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+
+        verify(workService, never()).registerWork(any(BonitaWork.class));
+        verify(workService).acknowledge(TENANT_ID, "a");
+    }
+
+    @Test
+    public void doNotReplayArchivedFlowNode() throws Exception {
+        when(activityInstanceService.getFlowNodeInstance(5)).thenThrow(new SFlowNodeNotFoundException(5));
+        when(workService.getUnacknowledgedWorks(eq(TENANT_ID), anyInt(), anyInt())).thenReturn(Arrays.asList(executeFlowNode("a", 5)));
+
+        new RestartWorksHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+
+        verify(workService, never()).registerWork(any(BonitaWork.class));
+        verify(workService).acknowledge(TENANT_ID, "a");
+    }
+
+    @Test
+    public void nothingToReplay() throws Exception {
+        when(workService.getUnacknowledgedWorks(eq(TENANT_ID), anyInt(), anyInt())).thenReturn(Collections.<WorkDescriptor> emptyList());
+
+        new RestartWorksHandler().handleRestart(platformServiceAccessor, tenantServiceAccessor);
+
+        verify(workService, never()).registerWork(any(BonitaWork.class));
+        verify(workService, never()).acknowledge(anyLong(), any(String.class));
+    }
+
+}
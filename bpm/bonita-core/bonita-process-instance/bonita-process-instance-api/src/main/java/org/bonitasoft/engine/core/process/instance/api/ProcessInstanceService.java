@@ -477,4 +477,34 @@ public interface ProcessInstanceService {
      */
     List<SProcessInstance> getProcessInstancesInState(QueryOptions queryOptions, ProcessInstanceState state) throws SProcessInstanceReadException;
 
+    /**
+     * Get the ids of the root process instances of a process definition that were archived in one of the given states before the given date
+     * 
+     * @param processDefinitionId
+     *            the identifier of the process definition
+     * @param stateIds
+     *            the identifiers of the final states to consider
+     * @param archivedBefore
+     *            only the process instances archived before this date are returned
+     * @param queryOptions
+     *            the paging and the order of the result
+     * @return the ids of the process instances, i.e. the sourceObjectIds of their archived process instances
+     * @throws SProcessInstanceReadException
+     * @since 6.1
+     */
+    List<Long> getSourceObjectIdsOfFinishedArchivedRootProcessInstances(long processDefinitionId, List<Integer> stateIds, long archivedBefore,
+            QueryOptions queryOptions) throws SProcessInstanceReadException;
+
+    /**
+     * Delete all archived elements of the given root process instances and of their sub process instances, even the archived process instances.
+     * Unlike {@link #deleteArchivedProcessInstanceElements(long, long)} the elements are deleted by chunks of ids, without event nor queriable log, and only
+     * the archive tables are read.
+     * 
+     * @param rootProcessInstanceIds
+     *            the ids of the root process instances
+     * @throws SProcessInstanceModificationException
+     * @since 6.1
+     */
+    void purgeArchivedProcessInstances(List<Long> rootProcessInstanceIds) throws SProcessInstanceModificationException;
+
 }
@@ -95,8 +95,55 @@ public interface EventInstanceService extends FlowNodeInstanceService {
 
     List<SWaitingEvent> getStartWaitingEvents(long processDefinitionId) throws SEventTriggerInstanceReadException;
 
-    List<SMessageEventCouple> getMessageEventCouples() throws SEventTriggerInstanceReadException, SMessageModificationException,
-            SWaitingEventModificationException;
+    /**
+     * Get the couples of a message instance and of an active waiting message event it can trigger, ordered by message instance
+     * 
+     * @param fromIndex
+     *            index of the first couple to return
+     * @param maxResults
+     *            max number of couples to return
+     * @return the couples
+     * @throws SEventTriggerInstanceReadException
+     * @since 6.1
+     */
+    List<SMessageEventCouple> getMessageEventCouples(int fromIndex, int maxResults) throws SEventTriggerInstanceReadException;
+
+    /**
+     * Same as {@link #getMessageEventCouples(int, int)} but only for the message instances and the waiting message events having the given correlation key
+     * 
+     * @param correlationKey
+     *            the correlation key of the messages and of the waiting message events
+     * @param fromIndex
+     *            index of the first couple to return
+     * @param maxResults
+     *            max number of couples to return
+     * @return the couples
+     * @throws SEventTriggerInstanceReadException
+     * @since 6.1
+     */
+    List<SMessageEventCouple> getMessageEventCouples(String correlationKey, int fromIndex, int maxResults) throws SEventTriggerInstanceReadException;
+
+    /**
+     * Get the message instances not handled yet that have no correlation key, i.e. that were created before it was introduced
+     * 
+     * @param maxResults
+     *            max number of message instances to return
+     * @return the message instances, oldest first
+     * @throws SEventTriggerInstanceReadException
+     * @since 6.1
+     */
+    List<SMessageInstance> getMessageInstancesWithoutCorrelationKey(int maxResults) throws SEventTriggerInstanceReadException;
+
+    /**
+     * Get the active waiting message events that have no correlation key, i.e. that were created before it was introduced
+     * 
+     * @param maxResults
+     *            max number of waiting message events to return
+     * @return the waiting message events, oldest first
+     * @throws SEventTriggerInstanceReadException
+     * @since 6.1
+     */
+    List<SWaitingMessageEvent> getWaitingMessageEventsWithoutCorrelationKey(int maxResults) throws SEventTriggerInstanceReadException;
 
     SWaitingMessageEvent getWaitingMessage(long waitingMessageId) throws SWaitingEventNotFoundException, SWaitingEventReadException;
 
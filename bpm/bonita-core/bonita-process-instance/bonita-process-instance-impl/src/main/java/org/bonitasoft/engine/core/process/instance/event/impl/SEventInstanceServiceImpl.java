@@ -306,9 +306,8 @@ public class SEventInstanceServiceImpl extends FlowNodeInstanceServiceImpl imple
     }
 
     @Override
-    public List<SMessageEventCouple> getMessageEventCouples() throws SEventTriggerInstanceReadException, SMessageModificationException,
-            SWaitingEventModificationException {
-        final SelectListDescriptor<SMessageEventCouple> selectDescriptor = SelectDescriptorBuilder.getMessageEventCouples();
+    public List<SMessageEventCouple> getMessageEventCouples(final int fromIndex, final int maxResults) throws SEventTriggerInstanceReadException {
+        final SelectListDescriptor<SMessageEventCouple> selectDescriptor = SelectDescriptorBuilder.getMessageEventCouples(fromIndex, maxResults);
         try {
             return getPersistenceRead().selectList(selectDescriptor);
         } catch (final SBonitaReadException e) {
@@ -316,6 +315,36 @@ public class SEventInstanceServiceImpl extends FlowNodeInstanceServiceImpl imple
         }
     }
 
+    @Override
+    public List<SMessageEventCouple> getMessageEventCouples(final String correlationKey, final int fromIndex, final int maxResults)
+            throws SEventTriggerInstanceReadException {
+        final SelectListDescriptor<SMessageEventCouple> selectDescriptor = SelectDescriptorBuilder.getMessageEventCouples(correlationKey, fromIndex,
+                maxResults);
+        try {
+            return getPersistenceRead().selectList(selectDescriptor);
+        } catch (final SBonitaReadException e) {
+            throw new SEventTriggerInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public List<SMessageInstance> getMessageInstancesWithoutCorrelationKey(final int maxResults) throws SEventTriggerInstanceReadException {
+        try {
+            return getPersistenceRead().selectList(SelectDescriptorBuilder.getMessageInstancesWithoutCorrelationKey(maxResults));
+        } catch (final SBonitaReadException e) {
+            throw new SEventTriggerInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public List<SWaitingMessageEvent> getWaitingMessageEventsWithoutCorrelationKey(final int maxResults) throws SEventTriggerInstanceReadException {
+        try {
+            return getPersistenceRead().selectList(SelectDescriptorBuilder.getWaitingMessageEventsWithoutCorrelationKey(maxResults));
+        } catch (final SBonitaReadException e) {
+            throw new SEventTriggerInstanceReadException(e);
+        }
+    }
+
     @Override
     public SWaitingMessageEvent getWaitingMessage(final long waitingMessageId) throws SWaitingEventNotFoundException, SWaitingEventReadException {
         SWaitingMessageEvent selectOne;
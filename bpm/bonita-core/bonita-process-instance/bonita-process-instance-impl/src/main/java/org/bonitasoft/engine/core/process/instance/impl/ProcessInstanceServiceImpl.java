@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.bonitasoft.engine.archive.ArchiveInsertRecord;
 import org.bonitasoft.engine.archive.ArchiveService;
@@ -43,6 +44,8 @@ import org.bonitasoft.engine.core.process.definition.model.SFlowNodeType;
 import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
 import org.bonitasoft.engine.core.process.document.api.ProcessDocumentService;
 import org.bonitasoft.engine.core.process.document.api.SProcessDocumentDeletionException;
+import org.bonitasoft.engine.core.process.document.mapping.model.SDocumentMapping;
+import org.bonitasoft.engine.core.process.document.mapping.model.archive.SADocumentMapping;
 import org.bonitasoft.engine.core.process.document.mapping.model.builder.SDocumentMappingBuilder;
 import org.bonitasoft.engine.core.process.document.mapping.model.builder.SDocumentMappingBuilderAccessor;
 import org.bonitasoft.engine.core.process.document.model.SProcessDocument;
@@ -90,6 +93,7 @@ import org.bonitasoft.engine.data.instance.api.DataInstanceService;
 import org.bonitasoft.engine.data.instance.exception.SDataInstanceException;
 import org.bonitasoft.engine.data.instance.model.SDataInstance;
 import org.bonitasoft.engine.data.instance.model.archive.SADataInstance;
+import org.bonitasoft.engine.data.instance.model.archive.SADataInstanceVisibilityMapping;
 import org.bonitasoft.engine.document.SDocumentException;
 import org.bonitasoft.engine.events.EventActionType;
 import org.bonitasoft.engine.events.EventService;
@@ -1193,4 +1197,123 @@ public class ProcessInstanceServiceImpl implements ProcessInstanceService {
                 inputParameters, SAProcessInstance.class, queryOptions);
         return persistenceRead.selectList(selectListDescriptor);
     }
+
+    @Override
+    public List<Long> getSourceObjectIdsOfFinishedArchivedRootProcessInstances(final long processDefinitionId, final List<Integer> stateIds,
+            final long archivedBefore, final QueryOptions queryOptions) throws SProcessInstanceReadException {
+        final ReadPersistenceService persistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
+        final Map<String, Object> inputParameters = new HashMap<String, Object>(3);
+        inputParameters.put("processDefinitionId", processDefinitionId);
+        inputParameters.put("stateIds", stateIds);
+        inputParameters.put("archivedBefore", archivedBefore);
+        final SelectListDescriptor<Long> selectListDescriptor = new SelectListDescriptor<Long>("getSourceObjectIdsOfFinishedArchivedRootProcessInstances",
+                inputParameters, SAProcessInstance.class, queryOptions);
+        try {
+            return persistenceService.selectList(selectListDescriptor);
+        } catch (final SBonitaReadException e) {
+            throw new SProcessInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public void purgeArchivedProcessInstances(final List<Long> rootProcessInstanceIds) throws SProcessInstanceModificationException {
+        final ReadPersistenceService persistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
+        try {
+            for (final List<Long> rootIds : splitIds(rootProcessInstanceIds)) {
+                final Map<String, Object> rootParameters = Collections.<String, Object> singletonMap("rootProcessInstanceIds", rootIds);
+                final List<Long> processInstanceIds = persistenceService.selectList(new SelectListDescriptor<Long>(
+                        "getSourceObjectIdsOfArchivedProcessInstancesOfRootProcessInstances", rootParameters, SAProcessInstance.class,
+                        QueryOptions.allResultsQueryOptions()));
+                for (final List<Long> ids : splitIds(processInstanceIds)) {
+                    final Map<String, Object> parameters = Collections.<String, Object> singletonMap("processInstanceIds", ids);
+                    purgeArchivedFlowNodeInstances(parameters);
+                    purgeArchivedContainerElements(ids, DataInstanceContainer.PROCESS_INSTANCE.toString(), SConnectorInstance.PROCESS_TYPE);
+                    purgeArchivedObjects("getIdsOfArchivedTransitionInstancesOfProcessInstances", parameters, SATransitionInstance.class);
+                    purgeArchivedDocumentMappings(parameters);
+                    purgeArchivedObjects("getIdsOfArchivedCommentsOfProcessInstances", parameters, SAComment.class);
+                }
+                purgeArchivedObjects("getIdsOfArchivedProcessInstancesOfRootProcessInstances", rootParameters, SAProcessInstance.class);
+            }
+        } catch (final SBonitaException e) {
+            throw new SProcessInstanceModificationException(e);
+        }
+    }
+
+    private void purgeArchivedFlowNodeInstances(final Map<String, Object> processInstanceParameters) throws SBonitaReadException, SRecorderException {
+        final ReadPersistenceService persistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
+        List<Long> flowNodeInstanceIds;
+        do {
+            // fromIndex always will be zero because the elements will be deleted
+            flowNodeInstanceIds = persistenceService.selectList(new SelectListDescriptor<Long>(
+                    "getSourceObjectIdsOfArchivedFlowNodeInstancesOfProcessInstances", processInstanceParameters, SAFlowNodeInstance.class, new QueryOptions(0,
+                            BATCH_SIZE)));
+            if (!flowNodeInstanceIds.isEmpty()) {
+                purgeArchivedContainerElements(flowNodeInstanceIds, DataInstanceContainer.ACTIVITY_INSTANCE.toString(), SConnectorInstance.FLOWNODE_TYPE);
+                purgeArchivedObjects("getIdsOfArchivedFlowNodeInstancesOfSourceObjects",
+                        Collections.<String, Object> singletonMap("sourceObjectIds", flowNodeInstanceIds), SAFlowNodeInstance.class);
+            }
+        } while (!flowNodeInstanceIds.isEmpty());
+    }
+
+    private void purgeArchivedContainerElements(final List<Long> containerIds, final String dataInstanceContainerType, final String connectorContainerType)
+            throws SBonitaReadException, SRecorderException {
+        final Map<String, Object> dataParameters = new HashMap<String, Object>(2);
+        dataParameters.put("containerIds", containerIds);
+        dataParameters.put("containerType", dataInstanceContainerType);
+        purgeArchivedObjects("getIdsOfArchivedDataInstancesOfContainers", dataParameters, SADataInstance.class);
+        purgeArchivedObjects("getIdsOfArchivedDataInstanceVisibilityMappingsOfContainers", dataParameters, SADataInstanceVisibilityMapping.class);
+        final Map<String, Object> connectorParameters = new HashMap<String, Object>(2);
+        connectorParameters.put("containerIds", containerIds);
+        connectorParameters.put("containerType", connectorContainerType);
+        purgeArchivedObjects("getIdsOfArchivedConnectorInstancesOfContainers", connectorParameters, SAConnectorInstance.class);
+    }
+
+    /**
+     * Purge the archived document mappings of process instances and the contents that are not referenced anymore by a document or an archived document
+     */
+    private void purgeArchivedDocumentMappings(final Map<String, Object> processInstanceParameters) throws SBonitaReadException, SRecorderException,
+            SProcessDocumentDeletionException {
+        final ReadPersistenceService persistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
+        final List<String> contentStorageIds = persistenceService.selectList(new SelectListDescriptor<String>(
+                "getContentStorageIdsOfArchivedDocumentMappingsOfProcessInstances", processInstanceParameters, SADocumentMapping.class,
+                QueryOptions.allResultsQueryOptions()));
+        purgeArchivedObjects("getIdsOfArchivedDocumentMappingsOfProcessInstances", processInstanceParameters, SADocumentMapping.class);
+        final List<String> unreferencedContentStorageIds = new ArrayList<String>();
+        for (final List<String> ids : splitIds(contentStorageIds)) {
+            final Map<String, Object> parameters = Collections.<String, Object> singletonMap("contentStorageIds", ids);
+            final Set<String> referencedIds = new HashSet<String>(persistenceRead.selectList(new SelectListDescriptor<String>(
+                    "getReferencedContentStorageIdsOfDocumentMappings", parameters, SDocumentMapping.class, QueryOptions.allResultsQueryOptions())));
+            referencedIds.addAll(persistenceService.selectList(new SelectListDescriptor<String>("getReferencedContentStorageIdsOfArchivedDocumentMappings",
+                    parameters, SADocumentMapping.class, QueryOptions.allResultsQueryOptions())));
+            for (final String id : ids) {
+                if (!referencedIds.contains(id)) {
+                    unreferencedContentStorageIds.add(id);
+                }
+            }
+        }
+        processDocumentService.deleteContents(unreferencedContentStorageIds);
+    }
+
+    private void purgeArchivedObjects(final String queryName, final Map<String, Object> parameters, final Class<? extends PersistentObject> entityClass)
+            throws SBonitaReadException, SRecorderException {
+        final ReadPersistenceService persistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
+        List<Long> ids;
+        do {
+            // fromIndex always will be zero because the elements will be deleted
+            ids = persistenceService.selectList(new SelectListDescriptor<Long>(queryName, parameters, entityClass, new QueryOptions(0, BATCH_SIZE)));
+            archiveService.deleteByIds(entityClass, ids);
+        } while (!ids.isEmpty());
+    }
+
+    /**
+     * Split the ids in lists of at most BATCH_SIZE elements so that the IN clauses stay short
+     */
+    private static <T> List<List<T>> splitIds(final List<T> ids) {
+        final List<List<T>> chunks = new ArrayList<List<T>>();
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            chunks.add(ids.subList(i, Math.min(i + BATCH_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
 }
@@ -296,9 +296,29 @@ public class SelectDescriptorBuilder {
         return new SelectListDescriptor<SWaitingEvent>("getStartWaitingEvents", parameters, SWaitingEvent.class);
     }
 
-    public static SelectListDescriptor<SMessageEventCouple> getMessageEventCouples() {
+    public static SelectListDescriptor<SMessageInstance> getMessageInstancesWithoutCorrelationKey(final int maxResults) {
         final Map<String, Object> parameters = Collections.emptyMap();
-        return new SelectListDescriptor<SMessageEventCouple>("getMessageEventCouples", parameters, SMessageEventCouple.class);
+        return new SelectListDescriptor<SMessageInstance>("getMessageInstancesWithoutCorrelationKey", parameters, SMessageInstance.class, new QueryOptions(0,
+                maxResults));
+    }
+
+    public static SelectListDescriptor<SWaitingMessageEvent> getWaitingMessageEventsWithoutCorrelationKey(final int maxResults) {
+        final Map<String, Object> parameters = Collections.emptyMap();
+        return new SelectListDescriptor<SWaitingMessageEvent>("getWaitingMessageEventsWithoutCorrelationKey", parameters, SWaitingMessageEvent.class,
+                new QueryOptions(0, maxResults));
+    }
+
+    public static SelectListDescriptor<SMessageEventCouple> getMessageEventCouples(final int fromIndex, final int maxResults) {
+        final Map<String, Object> parameters = Collections.emptyMap();
+        final QueryOptions queryOptions = new QueryOptions(fromIndex, maxResults);
+        return new SelectListDescriptor<SMessageEventCouple>("getMessageEventCouples", parameters, SMessageEventCouple.class, queryOptions);
+    }
+
+    public static SelectListDescriptor<SMessageEventCouple> getMessageEventCouples(final String correlationKey, final int fromIndex, final int maxResults) {
+        final Map<String, Object> parameters = Collections.singletonMap("correlationKey", (Object) correlationKey);
+        final QueryOptions queryOptions = new QueryOptions(fromIndex, maxResults);
+        return new SelectListDescriptor<SMessageEventCouple>("getMessageEventCouplesWithCorrelationKey", parameters, SMessageEventCouple.class,
+                queryOptions);
     }
 
     public static SelectOneDescriptor<SAActivityInstance> getArchivedActivityInstanceWithActivityIdAndStateId(final long activityInstanceId, final int stateId) {
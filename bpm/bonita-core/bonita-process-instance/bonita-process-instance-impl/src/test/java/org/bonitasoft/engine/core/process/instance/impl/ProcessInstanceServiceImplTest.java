@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.archive.ArchiveService;
+import org.bonitasoft.engine.core.process.document.api.ProcessDocumentService;
+import org.bonitasoft.engine.core.process.document.mapping.model.archive.SADocumentMapping;
+import org.bonitasoft.engine.core.process.instance.api.exceptions.SProcessInstanceModificationException;
+import org.bonitasoft.engine.core.process.instance.model.archive.SAProcessInstance;
+import org.bonitasoft.engine.core.process.instance.model.builder.BPMInstanceBuilders;
+import org.bonitasoft.engine.persistence.ReadPersistenceService;
+import org.bonitasoft.engine.persistence.SelectListDescriptor;
+import org.bonitasoft.engine.recorder.SRecorderException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ProcessInstanceServiceImplTest {
+
+    private ReadPersistenceService persistenceRead;
+
+    private ReadPersistenceService archiveRead;
+
+    private ArchiveService archiveService;
+
+    private ProcessDocumentService processDocumentService;
+
+    private ProcessInstanceServiceImpl processInstanceService;
+
+    /**
+     * results of the queries: each one is returned once, the following calls return an empty list as if the elements were deleted
+     */
+    private final Map<String, List<?>> results = new HashMap<String, List<?>>();
+
+    @Before
+    public void setUp() throws Exception {
+        persistenceRead = mock(ReadPersistenceService.class);
+        archiveRead = mock(ReadPersistenceService.class);
+        archiveService = mock(ArchiveService.class);
+        processDocumentService = mock(ProcessDocumentService.class);
+        when(archiveService.getDefinitiveArchiveReadPersistenceService()).thenReturn(archiveRead);
+        final Answer<List<?>> answer = new Answer<List<?>>() {
+
+            @Override
+            public List<?> answer(final InvocationOnMock invocation) {
+                final List<?> result = results.remove(((SelectListDescriptor<?>) invocation.getArguments()[0]).getQueryName());
+                return result == null ? Collections.emptyList() : result;
+            }
+        };
+        when(archiveRead.selectList(any(SelectListDescriptor.class))).thenAnswer(answer);
+        when(persistenceRead.selectList(any(SelectListDescriptor.class))).thenAnswer(answer);
+        processInstanceService = new ProcessInstanceServiceImpl(null, persistenceRead, null, null, null, mock(BPMInstanceBuilders.class), null, null,
+                archiveService, null, null, null, null, null, processDocumentService, null, null, null, null);
+        results.put("getSourceObjectIdsOfArchivedProcessInstancesOfRootProcessInstances", Arrays.asList(10L, 11L));
+        results.put("getIdsOfArchivedDocumentMappingsOfProcessInstances", Arrays.asList(100L, 101L));
+        results.put("getIdsOfArchivedProcessInstancesOfRootProcessInstances", Arrays.asList(200L, 201L));
+        results.put("getContentStorageIdsOfArchivedDocumentMappingsOfProcessInstances", Arrays.asList("a", "b", "c"));
+    }
+
+    @Test
+    public void purgeDeletesTheArchivedElementsOfTheProcessInstances() throws Exception {
+        processInstanceService.purgeArchivedProcessInstances(Arrays.asList(10L));
+
+        verify(archiveService).deleteByIds(SADocumentMapping.class, Arrays.asList(100L, 101L));
+        verify(archiveService).deleteByIds(SAProcessInstance.class, Arrays.asList(200L, 201L));
+    }
+
+    @Test
+    public void purgeDeletesOnlyTheContentsThatAreNotReferencedAnymore() throws Exception {
+        // "a" is still used by a document of a running process instance, "b" by the archive of another process instance
+        results.put("getReferencedContentStorageIdsOfDocumentMappings", Arrays.asList("a"));
+        results.put("getReferencedContentStorageIdsOfArchivedDocumentMappings", Arrays.asList("b"));
+
+        processInstanceService.purgeArchivedProcessInstances(Arrays.asList(10L));
+
+        verify(processDocumentService).deleteContents(Arrays.asList("c"));
+    }
+
+    @Test
+    public void purgeKeepsTheContentsWhenTheirMappingsCouldNotBeDeleted() throws Exception {
+        doThrow(new SRecorderException("delete failed")).when(archiveService).deleteByIds(eq(SADocumentMapping.class), anyListOf(Long.class));
+
+        try {
+            processInstanceService.purgeArchivedProcessInstances(Arrays.asList(10L));
+            fail("the failure must be reported");
+        } catch (final SProcessInstanceModificationException e) {
+            verify(processDocumentService, never()).deleteContents(anyListOf(String.class));
+        }
+    }
+
+}
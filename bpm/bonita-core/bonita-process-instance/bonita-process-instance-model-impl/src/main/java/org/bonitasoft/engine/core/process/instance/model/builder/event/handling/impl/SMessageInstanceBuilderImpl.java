@@ -15,6 +15,7 @@ package org.bonitasoft.engine.core.process.instance.model.builder.event.handling
 
 import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SMessageInstanceBuilder;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.CorrelationKey;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SMessageInstanceImpl;
 import org.bonitasoft.engine.core.process.instance.model.event.trigger.SThrowMessageEventTriggerInstance;
 
@@ -65,6 +66,8 @@ public class SMessageInstanceBuilderImpl implements SMessageInstanceBuilder {
 
     @Override
     public SMessageInstance done() {
+        entity.setCorrelationKey(CorrelationKey.compute(entity.getMessageName(), entity.getTargetProcess(), entity.getCorrelation1(),
+                entity.getCorrelation2(), entity.getCorrelation3(), entity.getCorrelation4(), entity.getCorrelation5()));
         return entity;
     }
 
@@ -88,6 +91,11 @@ public class SMessageInstanceBuilderImpl implements SMessageInstanceBuilder {
         return "locked";
     }
 
+    @Override
+    public String getCorrelationKeyKey() {
+        return "correlationKey";
+    }
+
     @Override
     public String getHandledKey() {
         return "handled";
@@ -16,6 +16,7 @@ package org.bonitasoft.engine.core.process.instance.model.builder.event.handling
 import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SWaitingMessageEventBuilder;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.CorrelationKey;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SWaitingMessageEventImpl;
 
 /**
@@ -75,6 +76,8 @@ public class SWaitingMessageEventBuilderImpl extends SWaitingEventKeyProviderImp
 
     @Override
     public SWaitingMessageEvent done() {
+        entity.setCorrelationKey(CorrelationKey.compute(entity.getMessageName(), entity.getProcessName(), entity.getCorrelation1(),
+                entity.getCorrelation2(), entity.getCorrelation3(), entity.getCorrelation4(), entity.getCorrelation5()));
         return entity;
     }
 
@@ -88,6 +91,11 @@ public class SWaitingMessageEventBuilderImpl extends SWaitingEventKeyProviderImp
         return "locked";
     }
 
+    @Override
+    public String getCorrelationKeyKey() {
+        return "correlationKey";
+    }
+
     @Override
     public SWaitingMessageEventBuilder setCorrelation(final int index, final String correlation) {
         switch (index) {
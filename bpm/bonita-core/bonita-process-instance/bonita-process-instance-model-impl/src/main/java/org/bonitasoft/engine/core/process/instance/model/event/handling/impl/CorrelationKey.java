@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model.event.handling.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Key of the correlation between a message instance and the waiting message events it can trigger: a message and a waiting message event can only be
+ * matched if they have the same key. It is the SHA-1 of the message name, of the target process and of the five correlations, so that the matching is done
+ * on one indexed column.
+ */
+public final class CorrelationKey {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private CorrelationKey() {
+    }
+
+    /**
+     * @return the key or null if one of the values is null: such messages or waiting events never match, as in the join on the correlation columns
+     */
+    public static String compute(final String messageName, final String processName, final String... correlations) {
+        if (messageName == null || processName == null) {
+            return null;
+        }
+        final StringBuilder builder = new StringBuilder(messageName).append('\u0000').append(processName);
+        for (final String correlation : correlations) {
+            if (correlation == null) {
+                return null;
+            }
+            builder.append('\u0000').append(correlation);
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(builder.toString().getBytes("UTF-8"));
+            final char[] key = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                key[i * 2] = HEX[digest[i] >> 4 & 0xf];
+                key[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(key);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
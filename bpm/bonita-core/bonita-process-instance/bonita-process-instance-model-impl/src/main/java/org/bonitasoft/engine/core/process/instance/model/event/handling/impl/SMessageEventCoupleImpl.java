@@ -57,6 +57,8 @@ public class SMessageEventCoupleImpl implements SMessageEventCouple {
 
     private String targetFlowNode;
 
+    private String correlationKey;
+
     public SMessageEventCoupleImpl() {
     }
 
@@ -84,12 +86,22 @@ public class SMessageEventCoupleImpl implements SMessageEventCouple {
         this.sendMessageFlowNodeName = sendMessageFlowNodeName;
     }
 
+    public SMessageEventCoupleImpl(final long waitingMessageId, final SBPMEventType eventType, final long waitingProcessdefinitionId, final String processName,
+            final long waitingFlowNodeDefinitionId, final String waitingFlowNodeName, final String waitingMessageName, final long messageId,
+            final String messageName, final String targetProcess, final String targetFlowNode, final long sendMessageProcessefinitionId,
+            final String sendMessageFlowNodeName, final String correlationKey) {
+        this(waitingMessageId, eventType, waitingProcessdefinitionId, processName, waitingFlowNodeDefinitionId, waitingFlowNodeName, waitingMessageName,
+                messageId, messageName, targetProcess, targetFlowNode, sendMessageProcessefinitionId, sendMessageFlowNodeName);
+        this.correlationKey = correlationKey;
+    }
+
     @Override
     public SWaitingMessageEvent getWaitingMessage() {
         if (waitingMessage == null) {
             waitingMessage = new SWaitingMessageEventImpl(eventType, waitingProcessefinitionId, processName, waitingFlowNodeDefinitionId, waitingFlowNodeName,
                     waitingMessageName);
             waitingMessage.setId(waitingMessageId);
+            waitingMessage.setCorrelationKey(correlationKey);
         }
         return waitingMessage;
     }
@@ -99,6 +111,7 @@ public class SMessageEventCoupleImpl implements SMessageEventCouple {
         if (messageInstance == null) {
             messageInstance = new SMessageInstanceImpl(messageName, targetProcess, targetFlowNode, sendMessageProcessefinitionId, sendMessageFlowNodeName);
             messageInstance.setId(messageId);
+            messageInstance.setCorrelationKey(correlationKey);
         }
         return messageInstance;
     }
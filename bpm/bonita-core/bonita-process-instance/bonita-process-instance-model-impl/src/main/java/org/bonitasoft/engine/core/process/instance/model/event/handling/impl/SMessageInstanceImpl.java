@@ -48,6 +48,8 @@ public class SMessageInstanceImpl extends SPersistenceObjectImpl implements SMes
 
     private String correlation5;
 
+    private String correlationKey;
+
     public SMessageInstanceImpl() {
     }
 
@@ -216,6 +218,15 @@ public class SMessageInstanceImpl extends SPersistenceObjectImpl implements SMes
         this.correlation5 = correlation5;
     }
 
+    @Override
+    public String getCorrelationKey() {
+        return correlationKey;
+    }
+
+    public void setCorrelationKey(final String correlationKey) {
+        this.correlationKey = correlationKey;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -40,6 +40,8 @@ public class SWaitingMessageEventImpl extends SWaitingEventImpl implements SWait
 
     private String correlation5;
 
+    private String correlationKey;
+
     public SWaitingMessageEventImpl() {
     }
 
@@ -142,6 +144,15 @@ public class SWaitingMessageEventImpl extends SWaitingEventImpl implements SWait
         this.correlation5 = correlation5;
     }
 
+    @Override
+    public String getCorrelationKey() {
+        return correlationKey;
+    }
+
+    public void setCorrelationKey(final String correlationKey) {
+        this.correlationKey = correlationKey;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
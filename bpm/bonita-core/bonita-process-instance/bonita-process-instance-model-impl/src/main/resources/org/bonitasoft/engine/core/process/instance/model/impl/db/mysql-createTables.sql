@@ -164,9 +164,12 @@ CREATE TABLE waiting_event (
   	correlation3 VARCHAR(128),
   	correlation4 VARCHAR(128),
   	correlation5 VARCHAR(128),
+  	correlationKey VARCHAR(40),
   	PRIMARY KEY (tenantid, id)
 ) ENGINE = INNODB;
 
+CREATE INDEX idx_we_corkey ON waiting_event (tenantid, correlationKey);
+
 CREATE TABLE message_instance (
 	tenantid BIGINT NOT NULL,
   	id BIGINT NOT NULL,
@@ -182,9 +185,12 @@ CREATE TABLE message_instance (
   	correlation3 VARCHAR(128),
   	correlation4 VARCHAR(128),
   	correlation5 VARCHAR(128),
+  	correlationKey VARCHAR(40),
   	PRIMARY KEY (tenantid, id)
 ) ENGINE = INNODB;
 
+CREATE INDEX idx_mi_corkey ON message_instance (tenantid, correlationKey);
+
 CREATE TABLE pending_mapping (
 	tenantid BIGINT NOT NULL,
   	id BIGINT NOT NULL,
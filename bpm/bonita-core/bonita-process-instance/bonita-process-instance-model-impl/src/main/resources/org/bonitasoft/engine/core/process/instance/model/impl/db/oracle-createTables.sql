@@ -164,9 +164,12 @@ CREATE TABLE waiting_event (
   	correlation3 VARCHAR2(128),
   	correlation4 VARCHAR2(128),
   	correlation5 VARCHAR2(128),
+  	correlationKey VARCHAR2(40),
   	PRIMARY KEY (tenantid, id)
 );
 
+CREATE INDEX idx_we_corkey ON waiting_event (tenantid, correlationKey);
+
 CREATE TABLE message_instance (
 	tenantid NUMBER(19, 0) NOT NULL,
   	id NUMBER(19, 0) NOT NULL,
@@ -182,9 +185,12 @@ CREATE TABLE message_instance (
   	correlation3 VARCHAR2(128),
   	correlation4 VARCHAR2(128),
   	correlation5 VARCHAR2(128),
+  	correlationKey VARCHAR2(40),
   	PRIMARY KEY (tenantid, id)
 );
 
+CREATE INDEX idx_mi_corkey ON message_instance (tenantid, correlationKey);
+
 CREATE TABLE pending_mapping (
 	tenantid NUMBER(19, 0) NOT NULL,
   	id NUMBER(19, 0) NOT NULL,
@@ -172,10 +172,14 @@ CREATE TABLE waiting_event (
   	correlation3 NVARCHAR(128),
   	correlation4 NVARCHAR(128),
   	correlation5 NVARCHAR(128),
+  	correlationKey NVARCHAR(40),
   	PRIMARY KEY (tenantid, id)
 )
 GO
 
+CREATE INDEX idx_we_corkey ON waiting_event (tenantid, correlationKey)
+GO
+
 CREATE TABLE message_instance (
 	tenantid NUMERIC(19, 0) NOT NULL,
   	id NUMERIC(19, 0) NOT NULL,
@@ -191,10 +195,14 @@ CREATE TABLE message_instance (
   	correlation3 NVARCHAR(128),
   	correlation4 NVARCHAR(128),
   	correlation5 NVARCHAR(128),
+  	correlationKey NVARCHAR(40),
   	PRIMARY KEY (tenantid, id)
 )
 GO
 
+CREATE INDEX idx_mi_corkey ON message_instance (tenantid, correlationKey)
+GO
+
 CREATE TABLE pending_mapping (
 	tenantid NUMERIC(19, 0) NOT NULL,
   	id NUMERIC(19, 0) NOT NULL,
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model.event.handling.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CorrelationKeyTest {
+
+    @Test
+    public void keyIsTheSha1OfTheMessageTargetAndCorrelations() {
+        // must not change between versions: keys are stored in the database
+        assertEquals("71e5508cc8850ace91f4c470487bda949c5d598b", CorrelationKey.compute("msg", "proc", "a", "NONE", "NONE", "NONE", "NONE"));
+    }
+
+    @Test
+    public void sameValuesGiveTheSameKey() {
+        assertEquals(CorrelationKey.compute("msg", "proc", "k-$-1", "NONE", "NONE", "NONE", "NONE"),
+                CorrelationKey.compute(new String("msg"), "proc", "k-$-1", "NONE", "NONE", "NONE", "NONE"));
+    }
+
+    @Test
+    public void orderOfTheCorrelationsMatters() {
+        assertFalse(CorrelationKey.compute("msg", "proc", "a", "b", "NONE", "NONE", "NONE").equals(
+                CorrelationKey.compute("msg", "proc", "b", "a", "NONE", "NONE", "NONE")));
+    }
+
+    @Test
+    public void valuesAreSeparated() {
+        assertFalse(CorrelationKey.compute("ab", "c", "NONE", "NONE", "NONE", "NONE", "NONE").equals(
+                CorrelationKey.compute("a", "bc", "NONE", "NONE", "NONE", "NONE", "NONE")));
+    }
+
+    @Test
+    public void keyIsNullWhenAValueIsMissing() {
+        assertNull(CorrelationKey.compute(null, "proc", "a", "NONE", "NONE", "NONE", "NONE"));
+        assertNull(CorrelationKey.compute("msg", null, "a", "NONE", "NONE", "NONE", "NONE"));
+        assertNull(CorrelationKey.compute("msg", "proc", "a", null, "NONE", "NONE", "NONE"));
+    }
+
+}
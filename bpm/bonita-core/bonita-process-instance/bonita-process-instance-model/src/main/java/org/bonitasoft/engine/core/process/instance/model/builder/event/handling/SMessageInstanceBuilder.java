@@ -37,4 +37,6 @@ public interface SMessageInstanceBuilder extends SCorrelationContainerBuilder {
 
     String getHandledKey();
 
+    String getCorrelationKeyKey();
+
 }
@@ -42,4 +42,6 @@ public interface SWaitingMessageEventBuilder extends SWaitingEventKeyProvider, S
 
     String getLockedKey();
 
+    String getCorrelationKeyKey();
+
 }
@@ -44,4 +44,10 @@ public interface SMessageInstance extends PersistentObject {
 
     String getFlowNodeName(); // FIXME : -> never used ??
 
+    /**
+     * @return the key of the correlation of this message: it can only trigger waiting message events having the same key
+     * @since 6.1
+     */
+    String getCorrelationKey();
+
 }
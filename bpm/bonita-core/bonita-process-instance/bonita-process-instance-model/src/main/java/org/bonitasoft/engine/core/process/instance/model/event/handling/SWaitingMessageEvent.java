@@ -32,4 +32,10 @@ public interface SWaitingMessageEvent extends SWaitingEvent {
 
     String getCorrelation5();
 
+    /**
+     * @return the key of the correlation of this waiting event: it can only be triggered by messages having the same key
+     * @since 6.1
+     */
+    String getCorrelationKey();
+
 }
@@ -93,4 +93,8 @@ public final class TenantAPIAccessor {
         return getAPI(ProfileAPI.class, session);
     }
 
+    public static BatchAPI getBatchAPI(final APISession session) throws BonitaHomeNotSetException, ServerAPIException, UnknownAPITypeException {
+        return getAPI(BatchAPI.class, session);
+    }
+
 }
@@ -13,6 +13,8 @@
  */
 package org.bonitasoft.engine.archive;
 
+import java.util.List;
+
 import org.bonitasoft.engine.persistence.PersistentObject;
 import org.bonitasoft.engine.persistence.ReadPersistenceService;
 import org.bonitasoft.engine.queriablelogger.model.SQueriableLog;
@@ -63,6 +65,19 @@ public interface ArchiveService {
      */
     void recordDelete(DeleteRecord record, SQueriableLog queriableLog) throws SRecorderException;
 
+    /**
+     * Remove the archived entities having the given ids from the definitive archive in one statement, using the named query deleteByIds followed by the
+     * simple name of the mapped class. No event nor log is produced: this is meant for the purge of old archives.
+     * 
+     * @param entityClass
+     *            the class of the archived entities
+     * @param ids
+     *            the ids of the archived entities to remove
+     * @throws SRecorderException
+     * @since 6.1
+     */
+    void deleteByIds(Class<? extends PersistentObject> entityClass, List<Long> ids) throws SRecorderException;
+
     /**
      * Get the ReadPersistenceService corresponding to the definitive archive
      * 
@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.archive.impl;
 
+import java.util.List;
+
 import org.bonitasoft.engine.archive.ArchiveInsertRecord;
 import org.bonitasoft.engine.archive.ArchiveService;
 import org.bonitasoft.engine.archive.ArchivingStrategy;
@@ -51,9 +53,22 @@ public class ArchiveServiceImpl implements ArchiveService {
 
     private final ArchivingStrategy archivingStrategy;
 
+    private final AsyncArchiver asyncArchiver;
+
     public ArchiveServiceImpl(final SArchiveDescriptor definitiveArchiveDescriptor, final PersistenceService definitiveArchivePersistenceService,
             final TechnicalLoggerService logger, final ArchivingStrategy archivingStrategy, final TransactionService transactionService) {
+        this(definitiveArchiveDescriptor, definitiveArchivePersistenceService, logger, archivingStrategy, transactionService, null);
+    }
+
+    /**
+     * @param asyncArchiver
+     *            writes the archives after the commit of the transactions that create them, null to write them in these transactions
+     */
+    public ArchiveServiceImpl(final SArchiveDescriptor definitiveArchiveDescriptor, final PersistenceService definitiveArchivePersistenceService,
+            final TechnicalLoggerService logger, final ArchivingStrategy archivingStrategy, final TransactionService transactionService,
+            final AsyncArchiver asyncArchiver) {
         super();
+        this.asyncArchiver = asyncArchiver;
         this.definitiveArchiveDescriptor = definitiveArchiveDescriptor;
         this.definitiveArchivePersistenceService = definitiveArchivePersistenceService;
         this.archivingStrategy = archivingStrategy;
@@ -115,9 +130,10 @@ public class ArchiveServiceImpl implements ArchiveService {
      */
     private synchronized BatchArchiveSynchronization getBatchArchiveSynchronization() throws STransactionNotFoundException {
         BatchArchiveSynchronization synchro = this.synchronizations.get();
-        if (synchro == null) {
-            synchro = new BatchArchiveSynchronization(this.definitiveArchivePersistenceService);
+        if (synchro == null || synchro.isExecuted()) {
+            synchro = new BatchArchiveSynchronization(this.definitiveArchivePersistenceService, this.asyncArchiver);
             this.transactionService.registerBonitaSynchronization(synchro);
+            this.synchronizations.set(synchro);
         }
         return synchro;
     }
@@ -150,6 +166,18 @@ public class ArchiveServiceImpl implements ArchiveService {
         }
     }
 
+    @Override
+    public void deleteByIds(final Class<? extends PersistentObject> entityClass, final List<Long> ids) throws SRecorderException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            this.definitiveArchivePersistenceService.delete(ids, entityClass);
+        } catch (final SPersistenceException e) {
+            throw new SRecorderException(e);
+        }
+    }
+
     @Override
     public SArchiveDescriptor getDefinitiveArchiveDescriptor() {
         return this.definitiveArchiveDescriptor;
@@ -0,0 +1,410 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.transaction.TransactionService;
+
+/**
+ * Write the archives of committed transactions in the background.
+ * A transaction that archives objects reserves room for them before its commit and hands them over once committed: the objects of several transactions
+ * are then written together, by batches of batchSize objects of the same tenant in one transaction. When maxPendingObjects objects are already waiting, the
+ * reservation fails and the transaction writes its archives itself: the lag of the archives stays bounded.
+ * The archives of a transaction that cannot be written are written again after retryDelayMillis, the delay doubling at each attempt, and are dropped after
+ * maxAttempts attempts. They keep their room while they wait so that the transactions write their archives themselves when the writes keep failing.
+ * The archives waiting to be written are kept in memory only: they are lost if the JVM stops abruptly.
+ *
+ * @since 6.1
+ */
+public class AsyncArchiver {
+
+    /**
+     * The archives of one committed transaction
+     */
+    static final class ArchiveIntent {
+
+        private final long tenantId;
+
+        private final List<ArchivedPersistentObject> archivedObjects;
+
+        private final long creationDate;
+
+        private int attempts;
+
+        private long retryDate;
+
+        private Exception lastFailure;
+
+        ArchiveIntent(final long tenantId, final List<ArchivedPersistentObject> archivedObjects) {
+            this.tenantId = tenantId;
+            this.archivedObjects = archivedObjects;
+            creationDate = System.currentTimeMillis();
+        }
+
+    }
+
+    private final PersistenceService persistenceService;
+
+    private final TransactionService transactionService;
+
+    private final SessionService sessionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final int maxPendingObjects;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    /**
+     * the intents whose write failed, waiting for their next attempt, only used by the writer thread
+     */
+    private final List<ArchiveIntent> retries = new ArrayList<ArchiveIntent>();
+
+    private final BlockingQueue<ArchiveIntent> intents = new LinkedBlockingQueue<ArchiveIntent>();
+
+    private final AtomicInteger pendingObjects = new AtomicInteger();
+
+    private final AtomicLong archivedObjects = new AtomicLong();
+
+    private final AtomicLong failedObjects = new AtomicLong();
+
+    private Thread writer;
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param maxPendingObjects
+     *            max number of archived objects waiting to be written, beyond that transactions write their archives themselves
+     * @param batchSize
+     *            number of archived objects written in one transaction
+     * @param maxAttempts
+     *            number of times the archives of a transaction are written before being dropped
+     * @param retryDelayMillis
+     *            delay before the first new attempt to write archives that failed to be written
+     */
+    public AsyncArchiver(final PersistenceService persistenceService, final TransactionService transactionService, final SessionService sessionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final int maxPendingObjects, final int batchSize,
+            final int maxAttempts, final long retryDelayMillis) {
+        this.persistenceService = persistenceService;
+        this.transactionService = transactionService;
+        this.sessionService = sessionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.maxPendingObjects = maxPendingObjects;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Reserve room for the given archived objects, must be called in the transaction that archives them
+     *
+     * @return the intent to {@link #submit(ArchiveIntent)} once the transaction is committed or to {@link #release(ArchiveIntent)} otherwise, null if the
+     *         objects must be written by the transaction itself
+     */
+    ArchiveIntent reserve(final List<ArchivedPersistentObject> objects) {
+        if (stopped) {
+            return null;
+        }
+        final long tenantId;
+        try {
+            tenantId = sessionAccessor.getTenantId();
+        } catch (final TenantIdNotSetException e) {
+            return null;
+        }
+        if (pendingObjects.addAndGet(objects.size()) > maxPendingObjects) {
+            pendingObjects.addAndGet(-objects.size());
+            return null;
+        }
+        return new ArchiveIntent(tenantId, new ArrayList<ArchivedPersistentObject>(objects));
+    }
+
+    void submit(final ArchiveIntent intent) {
+        startIfNeeded();
+        intents.add(intent);
+    }
+
+    void release(final ArchiveIntent intent) {
+        pendingObjects.addAndGet(-intent.archivedObjects.size());
+    }
+
+    private synchronized void startIfNeeded() {
+        if (writer == null) {
+            writer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeIntents();
+                }
+
+            }, "Bonita-Archive-Writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Write the archives already submitted, retrying the failed ones without delay, then stop the writer, transactions write their archives themselves
+     * afterwards
+     */
+    public void stop() throws InterruptedException {
+        final Thread thread;
+        synchronized (this) {
+            stopped = true;
+            thread = writer;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * @return the number of archived objects waiting to be written
+     */
+    public int getPendingObjects() {
+        return pendingObjects.get();
+    }
+
+    /**
+     * @return the number of archived objects written since the start
+     */
+    public long getArchivedObjects() {
+        return archivedObjects.get();
+    }
+
+    /**
+     * @return the number of archived objects dropped since the start because they could not be written
+     */
+    public long getFailedObjects() {
+        return failedObjects.get();
+    }
+
+    /**
+     * @return the time in milliseconds since the oldest archive waiting to be written was submitted, 0 if nothing is waiting
+     */
+    public long getLag() {
+        final ArchiveIntent oldest = intents.peek();
+        if (oldest == null) {
+            return 0;
+        }
+        return System.currentTimeMillis() - oldest.creationDate;
+    }
+
+    private void writeIntents() {
+        while (!stopped || !intents.isEmpty() || !retries.isEmpty()) {
+            final List<ArchiveIntent> batch = new ArrayList<ArchiveIntent>();
+            int nbObjects = takeRetries(batch);
+            if (batch.isEmpty()) {
+                try {
+                    final ArchiveIntent first = intents.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    nbObjects = first.archivedObjects.size();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+            ArchiveIntent next;
+            while (nbObjects < batchSize && (next = intents.poll()) != null) {
+                batch.add(next);
+                nbObjects += next.archivedObjects.size();
+            }
+            for (final Entry<Long, List<ArchiveIntent>> entry : groupByTenant(batch).entrySet()) {
+                for (final ArchiveIntent failed : write(entry.getKey(), entry.getValue())) {
+                    if (retryLater(failed)) {
+                        // keeps its room in the pending objects
+                        nbObjects -= failed.archivedObjects.size();
+                    }
+                }
+            }
+            pendingObjects.addAndGet(-nbObjects);
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "Wrote the archives of " + batch.size() + " transactions, " + pendingObjects.get()
+                        + " archived objects pending, lag " + getLag() + " ms");
+            }
+        }
+    }
+
+    /**
+     * Move the intents whose next attempt is due to the batch
+     *
+     * @return the number of archived objects added to the batch
+     */
+    private int takeRetries(final List<ArchiveIntent> batch) {
+        int nbObjects = 0;
+        final long now = System.currentTimeMillis();
+        final Iterator<ArchiveIntent> iterator = retries.iterator();
+        while (iterator.hasNext()) {
+            final ArchiveIntent intent = iterator.next();
+            // once stopped, the remaining attempts are made without waiting
+            if (stopped || intent.retryDate <= now) {
+                iterator.remove();
+                batch.add(intent);
+                nbObjects += intent.archivedObjects.size();
+            }
+        }
+        if (batch.isEmpty() && !retries.isEmpty() && intents.isEmpty()) {
+            // nothing else to do until the next attempt
+            try {
+                Thread.sleep(Math.min(100, retryDelayMillis));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return nbObjects;
+    }
+
+    /**
+     * @return true if the intent is written again later, false if it is dropped
+     */
+    private boolean retryLater(final ArchiveIntent intent) {
+        intent.attempts++;
+        if (intent.attempts < maxAttempts) {
+            intent.retryDate = System.currentTimeMillis() + (retryDelayMillis << (intent.attempts - 1));
+            retries.add(intent);
+            logger.log(this.getClass(), TechnicalLogSeverity.WARNING, "Unable to write " + intent.archivedObjects.size() + " archived objects of tenant "
+                    + intent.tenantId + ", attempt " + intent.attempts + " of " + maxAttempts + ": " + intent.lastFailure.getMessage());
+            return true;
+        }
+        failedObjects.addAndGet(intent.archivedObjects.size());
+        final StringBuilder ids = new StringBuilder();
+        for (final ArchivedPersistentObject archivedObject : intent.archivedObjects) {
+            ids.append(' ').append(archivedObject.getClass().getSimpleName()).append('#').append(archivedObject.getId());
+        }
+        logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Dropping " + intent.archivedObjects.size() + " archived objects of tenant " + intent.tenantId
+                + " after " + maxAttempts + " attempts:" + ids + ": " + intent.lastFailure.getMessage());
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+            logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, intent.lastFailure);
+        }
+        return false;
+    }
+
+    private Map<Long, List<ArchiveIntent>> groupByTenant(final List<ArchiveIntent> batch) {
+        final Map<Long, List<ArchiveIntent>> intentsByTenant = new LinkedHashMap<Long, List<ArchiveIntent>>();
+        for (final ArchiveIntent intent : batch) {
+            List<ArchiveIntent> tenantIntents = intentsByTenant.get(intent.tenantId);
+            if (tenantIntents == null) {
+                tenantIntents = new ArrayList<ArchiveIntent>();
+                intentsByTenant.put(intent.tenantId, tenantIntents);
+            }
+            tenantIntents.add(intent);
+        }
+        return intentsByTenant;
+    }
+
+    /**
+     * @return the intents that could not be written
+     */
+    private List<ArchiveIntent> write(final long tenantId, final List<ArchiveIntent> tenantIntents) {
+        final List<ArchiveIntent> failed = new ArrayList<ArchiveIntent>();
+        SSession session = null;
+        try {
+            session = createSession(tenantId);
+            sessionAccessor.setSessionInfo(session.getId(), session.getTenantId());
+            final List<PersistentObject> objects = new ArrayList<PersistentObject>();
+            for (final ArchiveIntent intent : tenantIntents) {
+                objects.addAll(intent.archivedObjects);
+            }
+            try {
+                insert(objects);
+            } catch (final Exception e) {
+                if (tenantIntents.size() == 1) {
+                    throw e;
+                }
+                // write the transactions one by one so that one faulty archive does not prevent the others to be written
+                for (final ArchiveIntent intent : tenantIntents) {
+                    try {
+                        insert(new ArrayList<PersistentObject>(intent.archivedObjects));
+                    } catch (final Exception e1) {
+                        intent.lastFailure = e1;
+                        failed.add(intent);
+                    }
+                }
+            }
+        } catch (final Exception e) {
+            for (final ArchiveIntent intent : tenantIntents) {
+                intent.lastFailure = e;
+            }
+            failed.clear();
+            failed.addAll(tenantIntents);
+        } finally {
+            if (session != null) {
+                try {
+                    sessionAccessor.deleteSessionId();
+                    sessionService.deleteSession(session.getId());
+                } catch (final Exception e) {
+                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, e);
+                }
+            }
+        }
+        return failed;
+    }
+
+    private void insert(final List<PersistentObject> objects) throws STransactionException, SPersistenceException {
+        transactionService.begin();
+        try {
+            persistenceService.insertInBatch(objects);
+            persistenceService.flushStatements();
+        } catch (final SPersistenceException e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            transactionService.complete();
+        }
+        archivedObjects.addAndGet(objects.size());
+    }
+
+    private SSession createSession(final long tenantId) throws Exception {
+        try {
+            transactionService.begin();
+            return sessionService.createSession(tenantId, "archiver");
+        } catch (final Exception e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            transactionService.complete();
+        }
+    }
+
+}
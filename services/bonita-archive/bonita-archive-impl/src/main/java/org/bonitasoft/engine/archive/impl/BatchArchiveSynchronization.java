@@ -35,20 +35,50 @@ public class BatchArchiveSynchronization implements BonitaTransactionSynchroniza
 
     private final List<ArchivedPersistentObject> archivedObjects;
 
+    private final AsyncArchiver asyncArchiver;
+
+    private AsyncArchiver.ArchiveIntent archiveIntent;
+
+    private boolean executed = false;
+
     public BatchArchiveSynchronization(final PersistenceService persistenceService) {
+        this(persistenceService, null);
+    }
+
+    /**
+     * @param asyncArchiver
+     *            the archiver writing the archives once the transaction is committed, null to write them in the transaction
+     */
+    public BatchArchiveSynchronization(final PersistenceService persistenceService, final AsyncArchiver asyncArchiver) {
         super();
         this.persistenceService = persistenceService;
+        this.asyncArchiver = asyncArchiver;
         this.archivedObjects = new ArrayList<ArchivedPersistentObject>();
     }
 
     @Override
     public void afterCompletion(final TransactionState status) {
-        // NOTHING
+        if (archiveIntent != null) {
+            if (TransactionState.COMMITTED == status) {
+                asyncArchiver.submit(archiveIntent);
+            } else {
+                asyncArchiver.release(archiveIntent);
+            }
+            archiveIntent = null;
+        }
+        this.archivedObjects.clear();
+        executed = true;
     }
 
     @Override
     public void beforeCommit() {
         if (this.archivedObjects != null && !this.archivedObjects.isEmpty()) {
+            if (asyncArchiver != null) {
+                archiveIntent = asyncArchiver.reserve(archivedObjects);
+                if (archiveIntent != null) {
+                    return;
+                }
+            }
             try {
                 this.persistenceService.insertInBatch(new ArrayList<PersistentObject>(this.archivedObjects));
                 this.persistenceService.flushStatements();
@@ -65,4 +95,8 @@ public class BatchArchiveSynchronization implements BonitaTransactionSynchroniza
         this.archivedObjects.add(archivedPersistentObject);
     }
 
+    public boolean isExecuted() {
+        return executed;
+    }
+
 }
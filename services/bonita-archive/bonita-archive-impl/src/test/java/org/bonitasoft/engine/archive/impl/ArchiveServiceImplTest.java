@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.archive.ArchivingStrategy;
+import org.bonitasoft.engine.archive.SArchiveDescriptor;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.recorder.SRecorderException;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveServiceImplTest {
+
+    private PersistenceService persistenceService;
+
+    private ArchiveServiceImpl archiveService;
+
+    @Before
+    public void setUp() {
+        persistenceService = mock(PersistenceService.class);
+        archiveService = new ArchiveServiceImpl(mock(SArchiveDescriptor.class), persistenceService, mock(TechnicalLoggerService.class),
+                mock(ArchivingStrategy.class), mock(TransactionService.class));
+    }
+
+    @Test
+    public void deleteByIdsDeletesAllTheIdsAtOnce() throws Exception {
+        final List<Long> ids = Arrays.asList(1L, 2L, 3L);
+
+        archiveService.deleteByIds(PersistentObject.class, ids);
+
+        verify(persistenceService).delete(ids, PersistentObject.class);
+    }
+
+    @Test
+    public void deleteByIdsDoesNothingWithoutIds() throws Exception {
+        archiveService.deleteByIds(PersistentObject.class, Collections.<Long> emptyList());
+
+        verify(persistenceService, never()).delete(anyListOf(Long.class), any(Class.class));
+    }
+
+    @Test
+    public void deleteByIdsWrapsThePersistenceFailure() throws Exception {
+        final List<Long> ids = Arrays.asList(1L);
+        final SPersistenceException failure = new SPersistenceException("delete failed");
+        doThrow(failure).when(persistenceService).delete(ids, PersistentObject.class);
+
+        try {
+            archiveService.deleteByIds(PersistentObject.class, ids);
+            fail("the failure must be reported");
+        } catch (final SRecorderException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+}
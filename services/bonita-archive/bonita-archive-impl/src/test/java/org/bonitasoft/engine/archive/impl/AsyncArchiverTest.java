@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncArchiverTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private PersistenceService persistenceService;
+
+    private SessionAccessor sessionAccessor;
+
+    private SessionService sessionService;
+
+    private AsyncArchiver archiver;
+
+    @Before
+    public void setUp() throws Exception {
+        persistenceService = mock(PersistenceService.class);
+        sessionAccessor = mock(SessionAccessor.class);
+        when(sessionAccessor.getTenantId()).thenReturn(1L);
+        sessionService = mock(SessionService.class);
+        final SSession session = mock(SSession.class);
+        when(sessionService.createSession(anyLong(), anyString())).thenReturn(session);
+        archiver = new AsyncArchiver(persistenceService, mock(TransactionService.class), sessionService, sessionAccessor, mock(TechnicalLoggerService.class),
+                3, 100, 3, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        archiver.stop();
+    }
+
+    private static List<ArchivedPersistentObject> objects(final int nb) {
+        final ArchivedPersistentObject[] objects = new ArchivedPersistentObject[nb];
+        for (int i = 0; i < nb; i++) {
+            objects[i] = mock(ArchivedPersistentObject.class);
+        }
+        return Arrays.asList(objects);
+    }
+
+    private void waitUntilNothingIsPending() throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (archiver.getPendingObjects() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, archiver.getPendingObjects());
+    }
+
+    @Test
+    public void reserveFailsWhenTooManyObjectsArePending() {
+        final AsyncArchiver.ArchiveIntent intent = archiver.reserve(objects(2));
+        assertNotNull(intent);
+        assertNull(archiver.reserve(objects(2)));
+        assertEquals(2, archiver.getPendingObjects());
+
+        archiver.release(intent);
+
+        assertEquals(0, archiver.getPendingObjects());
+        assertNotNull(archiver.reserve(objects(3)));
+    }
+
+    @Test
+    public void reserveFailsOutsideOfATenant() throws Exception {
+        when(sessionAccessor.getTenantId()).thenThrow(new TenantIdNotSetException("no tenant"));
+
+        assertNull(archiver.reserve(objects(1)));
+        assertEquals(0, archiver.getPendingObjects());
+    }
+
+    @Test
+    public void reserveFailsOnceStopped() throws Exception {
+        archiver.stop();
+
+        assertNull(archiver.reserve(objects(1)));
+    }
+
+    @Test
+    public void submittedArchivesAreWritten() throws Exception {
+        archiver.submit(archiver.reserve(objects(1)));
+        archiver.submit(archiver.reserve(objects(2)));
+
+        waitUntilNothingIsPending();
+        assertEquals(3, archiver.getArchivedObjects());
+        assertEquals(0, archiver.getFailedObjects());
+    }
+
+    @Test
+    public void failedArchivesAreWrittenAgain() throws Exception {
+        doThrow(new SPersistenceException("database down")).doNothing().when(persistenceService).insertInBatch(anyListOf(PersistentObject.class));
+
+        archiver.submit(archiver.reserve(objects(2)));
+
+        waitUntilNothingIsPending();
+        verify(persistenceService, times(2)).insertInBatch(anyListOf(PersistentObject.class));
+        assertEquals(2, archiver.getArchivedObjects());
+        assertEquals(0, archiver.getFailedObjects());
+    }
+
+    @Test
+    public void failedArchivesKeepTheirRoomUntilWritten() throws Exception {
+        doThrow(new SPersistenceException("database down")).when(persistenceService).insertInBatch(anyListOf(PersistentObject.class));
+        archiver = new AsyncArchiver(persistenceService, mock(TransactionService.class), sessionService, sessionAccessor, mock(TechnicalLoggerService.class),
+                3, 100, 3, 60000);
+
+        archiver.submit(archiver.reserve(objects(3)));
+        Thread.sleep(200);
+
+        assertEquals(3, archiver.getPendingObjects());
+        assertNull(archiver.reserve(objects(1)));
+        assertEquals(0, archiver.getFailedObjects());
+    }
+
+    @Test
+    public void stopMakesTheRemainingAttemptsWithoutWaiting() throws Exception {
+        doThrow(new SPersistenceException("database down")).doNothing().when(persistenceService).insertInBatch(anyListOf(PersistentObject.class));
+        archiver = new AsyncArchiver(persistenceService, mock(TransactionService.class), sessionService, sessionAccessor, mock(TechnicalLoggerService.class),
+                3, 100, 3, 60000);
+        archiver.submit(archiver.reserve(objects(3)));
+        Thread.sleep(200);
+
+        archiver.stop();
+
+        assertEquals(0, archiver.getPendingObjects());
+        assertEquals(3, archiver.getArchivedObjects());
+    }
+
+    @Test
+    public void archivesAreDroppedAfterMaxAttempts() throws Exception {
+        doThrow(new SPersistenceException("constraint violation")).when(persistenceService).insertInBatch(anyListOf(PersistentObject.class));
+
+        archiver.submit(archiver.reserve(objects(2)));
+
+        waitUntilNothingIsPending();
+        verify(persistenceService, times(3)).insertInBatch(anyListOf(PersistentObject.class));
+        assertEquals(0, archiver.getArchivedObjects());
+        assertEquals(2, archiver.getFailedObjects());
+    }
+
+    @Test
+    public void oneFaultyTransactionDoesNotPreventTheOthersToBeWritten() throws Exception {
+        final List<ArchivedPersistentObject> faulty = objects(1);
+        final List<ArchivedPersistentObject> valid = objects(1);
+        // the faulty object fails alone or in a batch
+        doThrow(new SPersistenceException("constraint violation")).when(persistenceService).insertInBatch(
+                Arrays.<PersistentObject> asList(faulty.get(0), valid.get(0)));
+        doThrow(new SPersistenceException("constraint violation")).when(persistenceService).insertInBatch(
+                Collections.<PersistentObject> singletonList(faulty.get(0)));
+        final AsyncArchiver.ArchiveIntent faultyIntent = archiver.reserve(faulty);
+        final AsyncArchiver.ArchiveIntent validIntent = archiver.reserve(valid);
+
+        archiver.submit(faultyIntent);
+        archiver.submit(validIntent);
+
+        waitUntilNothingIsPending();
+        assertEquals(1, archiver.getArchivedObjects());
+        assertEquals(1, archiver.getFailedObjects());
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchArchiveSynchronizationTest {
+
+    private PersistenceService persistenceService;
+
+    private AsyncArchiver asyncArchiver;
+
+    private ArchivedPersistentObject archivedObject;
+
+    private AsyncArchiver.ArchiveIntent intent;
+
+    @Before
+    public void setUp() {
+        persistenceService = mock(PersistenceService.class);
+        asyncArchiver = mock(AsyncArchiver.class);
+        archivedObject = mock(ArchivedPersistentObject.class);
+        intent = new AsyncArchiver.ArchiveIntent(1, Collections.singletonList(archivedObject));
+    }
+
+    @Test
+    public void archivesAreWrittenInTheTransactionWithoutArchiver() throws Exception {
+        final BatchArchiveSynchronization synchronization = new BatchArchiveSynchronization(persistenceService);
+        synchronization.addArchivedObject(archivedObject);
+
+        synchronization.beforeCommit();
+
+        verify(persistenceService).insertInBatch(Collections.<PersistentObject> singletonList(archivedObject));
+        verify(persistenceService).flushStatements();
+    }
+
+    @Test
+    public void reservedArchivesAreSubmittedOnCommit() throws Exception {
+        when(asyncArchiver.reserve(Collections.singletonList(archivedObject))).thenReturn(intent);
+        final BatchArchiveSynchronization synchronization = new BatchArchiveSynchronization(persistenceService, asyncArchiver);
+        synchronization.addArchivedObject(archivedObject);
+
+        synchronization.beforeCommit();
+        synchronization.afterCompletion(TransactionState.COMMITTED);
+
+        verify(asyncArchiver).submit(intent);
+        verify(asyncArchiver, never()).release(any(AsyncArchiver.ArchiveIntent.class));
+        verify(persistenceService, never()).insertInBatch(anyListOf(PersistentObject.class));
+    }
+
+    @Test
+    public void reservedArchivesAreReleasedOnRollback() throws Exception {
+        when(asyncArchiver.reserve(Collections.singletonList(archivedObject))).thenReturn(intent);
+        final BatchArchiveSynchronization synchronization = new BatchArchiveSynchronization(persistenceService, asyncArchiver);
+        synchronization.addArchivedObject(archivedObject);
+
+        synchronization.beforeCommit();
+        synchronization.afterCompletion(TransactionState.ROLLEDBACK);
+
+        verify(asyncArchiver).release(intent);
+        verify(asyncArchiver, never()).submit(any(AsyncArchiver.ArchiveIntent.class));
+    }
+
+    @Test
+    public void archivesAreWrittenInTheTransactionWhenNoRoomIsLeft() throws Exception {
+        final List<ArchivedPersistentObject> objects = Collections.singletonList(archivedObject);
+        when(asyncArchiver.reserve(objects)).thenReturn(null);
+        final BatchArchiveSynchronization synchronization = new BatchArchiveSynchronization(persistenceService, asyncArchiver);
+        synchronization.addArchivedObject(archivedObject);
+
+        synchronization.beforeCommit();
+        synchronization.afterCompletion(TransactionState.COMMITTED);
+
+        verify(persistenceService).insertInBatch(Collections.<PersistentObject> singletonList(archivedObject));
+        verify(asyncArchiver, never()).submit(any(AsyncArchiver.ArchiveIntent.class));
+    }
+
+}
@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bonitasoft.engine.commons.IOUtil;
 import org.bonitasoft.engine.commons.NullCheckingUtil;
@@ -44,6 +46,10 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
 
     private final File temporaryFolder;
 
+    private static final String JAVA_PACKAGE_PREFIX = "java.";
+
+    private final ConcurrentMap<String, Boolean> notFoundClasses = new ConcurrentHashMap<String, Boolean>();
+
     /**
      * Logger
      */
@@ -118,19 +124,22 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
     }
 
     @Override
-    protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
-        Class<?> c = null;
-        //me
-        if (c == null) {
-            c = findLoadedClass(name);
-        }
-        if (c == null) {
-            try {
-                c = findClass(name);
-            } catch (ClassNotFoundException e) {
-                //ignore
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        // only the definition of a class is done under the lock: classes of the parent, most of them, are loaded concurrently
+        Class<?> c = findLoadedClass(name);
+        if (c == null && !name.startsWith(JAVA_PACKAGE_PREFIX) && !this.notFoundClasses.containsKey(name)) {
+            synchronized (this) {
+                c = findLoadedClass(name);
+                if (c == null) {
+                    try {
+                        c = findClass(name);
+                    } catch (final ClassNotFoundException e) {
+                        // not looked up again in the jars of this class loader
+                        this.notFoundClasses.put(name, Boolean.TRUE);
+                    }
+                }
             }
-        }    
+        }
 
         if (c == null) {
             c = getParent().loadClass(name);
@@ -143,6 +152,12 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
         return c;
     }
 
+    @Override
+    public void addURL(final URL url) {
+        super.addURL(url);
+        this.notFoundClasses.clear();
+    }
+
     public void release() {
         if (this.temporaryFolder.exists()) {
             this.temporaryFolder.delete();
@@ -14,10 +14,10 @@
 package org.bonitasoft.engine.classloader;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +27,9 @@ import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 
 /**
+ * Class loaders are looked up without locking: they are retrieved on each expression evaluation and connector execution. Only the methods that replace or
+ * remove a class loader are synchronized.
+ * 
  * @author Elias Ricken de Medeiros
  * @author Baptiste Mesta
  * @author Matthieu Chaffotte
@@ -37,10 +40,8 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
 
     private final String temporaryFolder;
 
-    private VirtualClassLoader virtualGlobalClassLoader;
-    private final Map<String, VirtualClassLoader> localClassLoaders = new HashMap<String, VirtualClassLoader>();
-
-    private static final String separator = ":";
+    private volatile VirtualClassLoader virtualGlobalClassLoader;
+    private final ConcurrentMap<ClassLoaderKey, VirtualClassLoader> localClassLoaders = new ConcurrentHashMap<ClassLoaderKey, VirtualClassLoader>();
 
     private static final String GLOBAL_FOLDER = "global";
     public static final String GLOBAL_TYPE = "___global___";
@@ -63,14 +64,6 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         }
     }
 
-    private String getKey(final String type, final long id) {
-        final StringBuffer stb = new StringBuffer();
-        stb.append(type);
-        stb.append(separator);
-        stb.append(id);
-        return stb.toString();
-    }
-
     @Override
     public long getGlobalClassLoaderId() {
         return GLOBAL_ID;
@@ -81,47 +74,55 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         return GLOBAL_TYPE;
     }
 
-    private synchronized VirtualClassLoader getVirtualGlobalClassLoader() throws ClassLoaderException {
-        if (this.virtualGlobalClassLoader == null) {
-            this.virtualGlobalClassLoader = new VirtualClassLoader(GLOBAL_TYPE, GLOBAL_ID, VirtualClassLoader.class.getClassLoader());
+    private VirtualClassLoader getVirtualGlobalClassLoader() throws ClassLoaderException {
+        VirtualClassLoader globalClassLoader = this.virtualGlobalClassLoader;
+        if (globalClassLoader == null) {
+            synchronized (this) {
+                globalClassLoader = this.virtualGlobalClassLoader;
+                if (globalClassLoader == null) {
+                    globalClassLoader = new VirtualClassLoader(GLOBAL_TYPE, GLOBAL_ID, VirtualClassLoader.class.getClassLoader());
+                    this.virtualGlobalClassLoader = globalClassLoader;
+                }
+            }
         }
-        return this.virtualGlobalClassLoader;
+        return globalClassLoader;
     }
 
     @Override
-    public synchronized ClassLoader getGlobalClassLoader() throws ClassLoaderException {
+    public ClassLoader getGlobalClassLoader() throws ClassLoaderException {
         return getVirtualGlobalClassLoader();
     }
 
     @Override
-    public synchronized ClassLoader getLocalClassLoader(final String type, final long id) throws ClassLoaderException {
+    public ClassLoader getLocalClassLoader(final String type, final long id) throws ClassLoaderException {
         if (this.logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             this.logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "getLocalClassLoader"));
         }
         NullCheckingUtil.checkArgsNotNull(id, type);
-        final String key = getKey(type, id);
-        final VirtualClassLoader classLoader = this.localClassLoaders.get(key);
+        final ClassLoaderKey key = new ClassLoaderKey(type, id);
+        VirtualClassLoader classLoader = this.localClassLoaders.get(key);
         if (classLoader == null) {
-            final VirtualClassLoader virtualClassLoader = new VirtualClassLoader(type, id, getGlobalClassLoader()); 
-            this.localClassLoaders.put(key, virtualClassLoader);
+            final VirtualClassLoader virtualClassLoader = new VirtualClassLoader(type, id, getGlobalClassLoader());
+            classLoader = this.localClassLoaders.putIfAbsent(key, virtualClassLoader);
+            if (classLoader == null) {
+                classLoader = virtualClassLoader;
+            }
         }
         if (this.logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             this.logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "getLocalClassLoader"));
         }
-        return this.localClassLoaders.get(key);
+        return classLoader;
     }
 
     @Override
-    public void removeLocalClassLoader(final String type, final long id) {
+    public synchronized void removeLocalClassLoader(final String type, final long id) {
         if (this.logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             this.logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "removeLocalClassLoader"));
         }
         NullCheckingUtil.checkArgsNotNull(id, type);
-        final String key = getKey(type, id);
-        final VirtualClassLoader localClassLoader = this.localClassLoaders.get(key);
+        final VirtualClassLoader localClassLoader = this.localClassLoaders.remove(new ClassLoaderKey(type, id));
         if (localClassLoader != null) {
             localClassLoader.release();
-            this.localClassLoaders.remove(key);
         }
         if (this.logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             this.logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "removeLocalClassLoader"));
@@ -154,14 +155,12 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
             this.logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "removeAllLocalClassLoaders"));
         }
         NullCheckingUtil.checkArgsNotNull(application);
-        final Set<String> keySet = new HashSet<String>(this.localClassLoaders.keySet());
-        for (final String key : keySet) {
-            if (key.startsWith(application + separator)) {
-                final VirtualClassLoader localClassLoader = this.localClassLoaders.get(key);
-                if (localClassLoader != null) {
-                    localClassLoader.release();
-                }
-                this.localClassLoaders.remove(key);
+        final Iterator<Map.Entry<ClassLoaderKey, VirtualClassLoader>> iterator = this.localClassLoaders.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<ClassLoaderKey, VirtualClassLoader> entry = iterator.next();
+            if (application.equals(entry.getKey().type)) {
+                entry.getValue().release();
+                iterator.remove();
             }
         }
         if (this.logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
@@ -187,4 +186,34 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         virtualClassloader.setClassLoader(new BonitaClassLoader(resources, type, id, getLocalTemporaryFolder(type, id), getGlobalClassLoader()));
     }
 
+    private static final class ClassLoaderKey {
+
+        private final String type;
+
+        private final long id;
+
+        ClassLoaderKey(final String type, final long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + (int) (id ^ id >>> 32);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ClassLoaderKey)) {
+                return false;
+            }
+            final ClassLoaderKey other = (ClassLoaderKey) obj;
+            return id == other.id && type.equals(other.type);
+        }
+
+    }
+
 }
@@ -14,6 +14,7 @@
 package org.bonitasoft.engine.classloader;
 
 import java.io.InputStream;
+import java.lang.reflect.Method;
 
 /**
  * @author Elias Ricken de Medeiros
@@ -22,7 +23,18 @@ import java.io.InputStream;
  * @author Matthieu Chaffotte
  */
 public class VirtualClassLoader extends ClassLoader {
-    
+
+    static {
+        // ClassLoader.registerAsParallelCapable() only exists since Java 7: without it the JVM locks the class loader for each class it loads through it
+        try {
+            final Method registerAsParallelCapable = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            registerAsParallelCapable.setAccessible(true);
+            registerAsParallelCapable.invoke(null);
+        } catch (final Exception e) {
+            // Java 6: class loading is serialized
+        }
+    }
+
     /**
      * WARNING!!!!!!
      * The bigger weakness of this class is that it does not override ALL public, package and protected methods of the java.lang.ClassLoader class
@@ -30,7 +42,7 @@ public class VirtualClassLoader extends ClassLoader {
      * and thus, all protected/package methods can be called this this "clhid" classloader. If VirtualClassLoader does not override the given method to delegate this to the BonitaClassLoader instance
      * then the delegation model does not work anymore and some classes/resources can't be found. A good implementation should override all methods...
      */
-    private BonitaClassLoader classloader;
+    private volatile BonitaClassLoader classloader;
 
     protected final String artifactType;
 
@@ -48,24 +60,24 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     public Class<?> loadClass(final String name) throws ClassNotFoundException {
-        if (this.classloader != null) {
-           return this.classloader.loadClass(name, false);
-        }
-        return getParent().loadClass(name);
+        return loadClass(name, false);
     }
-    
+
     @Override
-    protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
-        if (this.classloader != null) {
-            return this.classloader.loadClass(name, resolve);
-         }
-         return getParent().loadClass(name);
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        // read once: the class loader can be replaced concurrently by a refresh
+        final BonitaClassLoader currentClassLoader = this.classloader;
+        if (currentClassLoader != null) {
+            return currentClassLoader.loadClass(name, resolve);
+        }
+        return getParent().loadClass(name);
     }
 
     @Override
-    public synchronized InputStream getResourceAsStream(final String name) {
-        if (this.classloader != null) {
-            return this.classloader.getResourceAsStream(name);    
+    public InputStream getResourceAsStream(final String name) {
+        final BonitaClassLoader currentClassLoader = this.classloader;
+        if (currentClassLoader != null) {
+            return currentClassLoader.getResourceAsStream(name);
         }
         return null;
     }
@@ -75,8 +87,9 @@ public class VirtualClassLoader extends ClassLoader {
     }
 
     public void release() {
-        if (this.classloader != null) {
-            this.classloader.release();
+        final BonitaClassLoader currentClassLoader = this.classloader;
+        if (currentClassLoader != null) {
+            currentClassLoader.release();
         }
     }
     
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.classloader;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.classloader.test.GlobalClass1;
+import org.bonitasoft.classloader.test.LocalClass1;
+import org.bonitasoft.engine.commons.IOUtil;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * What an expression evaluation does with the class loader service: get the class loader of the process definition then load, through it, a class of
+ * the process, a class of the engine and a class of the JDK. Run with 32 threads, as many as the workers of a loaded node.
+ * Not run by the build, launch the main method with the test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(32)
+public class ClassLoaderServiceBenchmark {
+
+    private static final long PROCESS_DEFINITION_ID = 12L;
+
+    private File temporaryFolder;
+
+    private ClassLoaderServiceImpl classLoaderService;
+
+    @Setup
+    public void setup() throws Exception {
+        temporaryFolder = IOUtil.createDirectory(System.getProperty("java.io.tmpdir") + File.separator + "classloader-benchmark-" + System.nanoTime());
+        classLoaderService = new ClassLoaderServiceImpl(temporaryFolder.getAbsolutePath(), mock(TechnicalLoggerService.class));
+        classLoaderService.refreshLocalClassLoader("process", PROCESS_DEFINITION_ID,
+                Collections.singletonMap("process.jar", IOUtil.generateJar(LocalClass1.class)));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        IOUtil.deleteDir(temporaryFolder);
+    }
+
+    @Benchmark
+    public Object evaluationLookups() throws Exception {
+        final ClassLoader classLoader = classLoaderService.getLocalClassLoader("process", PROCESS_DEFINITION_ID);
+        classLoader.loadClass(LocalClass1.class.getName());
+        classLoader.loadClass(GlobalClass1.class.getName());
+        return classLoader.loadClass(String.class.getName());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ClassLoaderServiceBenchmark.class.getSimpleName()).forks(1).warmupIterations(5)
+                .measurementIterations(5).build()).run();
+    }
+
+}
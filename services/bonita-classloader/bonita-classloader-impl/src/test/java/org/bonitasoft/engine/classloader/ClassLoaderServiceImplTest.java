@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.classloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bonitasoft.classloader.test.GlobalClass1;
+import org.bonitasoft.classloader.test.LocalClass1;
+import org.bonitasoft.engine.commons.IOUtil;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassLoaderServiceImplTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ClassLoaderServiceImpl classLoaderService;
+
+    @Before
+    public void setUp() {
+        classLoaderService = new ClassLoaderServiceImpl(temporaryFolder.getRoot().getAbsolutePath(), mock(TechnicalLoggerService.class));
+    }
+
+    @Test
+    public void concurrentLookupsGetTheSameClassLoader() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<ClassLoader>> results = new ArrayList<Future<ClassLoader>>();
+        for (int i = 0; i < 100; i++) {
+            results.add(executor.submit(new Callable<ClassLoader>() {
+
+                @Override
+                public ClassLoader call() throws Exception {
+                    return classLoaderService.getLocalClassLoader("process", 12L);
+                }
+            }));
+        }
+        final ClassLoader classLoader = classLoaderService.getLocalClassLoader("process", 12L);
+        for (final Future<ClassLoader> result : results) {
+            assertSame(classLoader, result.get());
+        }
+        executor.shutdown();
+        assertNotSame(classLoader, classLoaderService.getLocalClassLoader("process", 13L));
+        assertNotSame(classLoader, classLoaderService.getLocalClassLoader("tenant", 12L));
+    }
+
+    @Test
+    public void removeAllLocalClassLoadersOfAType() throws Exception {
+        final ClassLoader processClassLoader = classLoaderService.getLocalClassLoader("process", 12L);
+        final ClassLoader tenantClassLoader = classLoaderService.getLocalClassLoader("tenant", 12L);
+
+        classLoaderService.removeAllLocalClassLoaders("process");
+
+        assertNotSame(processClassLoader, classLoaderService.getLocalClassLoader("process", 12L));
+        assertSame(tenantClassLoader, classLoaderService.getLocalClassLoader("tenant", 12L));
+    }
+
+    @Test
+    public void classesAreLoadedFromTheJarsThenFromTheParent() throws Exception {
+        classLoaderService.refreshLocalClassLoader("process", 12L, Collections.singletonMap("local.jar", IOUtil.generateJar(LocalClass1.class)));
+        final ClassLoader classLoader = classLoaderService.getLocalClassLoader("process", 12L);
+
+        final Class<?> localClass = classLoader.loadClass(LocalClass1.class.getName());
+        assertTrue(localClass.getClassLoader() instanceof BonitaClassLoader);
+        assertSame(localClass, classLoader.loadClass(LocalClass1.class.getName()));
+        // not in the jar: looked up once in the jar then always in the parent
+        assertSame(GlobalClass1.class, classLoader.loadClass(GlobalClass1.class.getName()));
+        assertSame(GlobalClass1.class, classLoader.loadClass(GlobalClass1.class.getName()));
+        assertSame(String.class, classLoader.loadClass(String.class.getName()));
+    }
+
+    @Test
+    public void refreshReplacesTheClassesOfTheClassLoader() throws Exception {
+        final ClassLoader classLoader = classLoaderService.getLocalClassLoader("process", 12L);
+        assertSame(LocalClass1.class, classLoader.loadClass(LocalClass1.class.getName()));
+
+        classLoaderService.refreshLocalClassLoader("process", 12L, Collections.singletonMap("local.jar", IOUtil.generateJar(LocalClass1.class)));
+
+        assertSame(classLoader, classLoaderService.getLocalClassLoader("process", 12L));
+        final Class<?> localClass = classLoader.loadClass(LocalClass1.class.getName());
+        assertNotSame(LocalClass1.class, localClass);
+        assertEquals(LocalClass1.class.getName(), localClass.getName());
+    }
+
+}
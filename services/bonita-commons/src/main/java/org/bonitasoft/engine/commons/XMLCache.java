@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.commons;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Per-thread cache of the objects needed to evaluate XPath expressions on XML contents: the document builder, the XPath, the compiled expressions and
+ * the last parsed documents, by content. Neither the DOM nor the XPath objects are thread safe, so nothing is shared between threads.
+ * The documents are only reused within a work, an API call or a job: {@link #clearDocuments()} is called at the end of each of them, so that the
+ * threads do not keep them afterwards.
+ *
+ * @since 6.1
+ */
+public final class XMLCache {
+
+    private static final int MAX_DOCUMENTS = 4;
+
+    private static final int MAX_XPATH_EXPRESSIONS = 200;
+
+    private static final ThreadLocal<XMLCache> CACHE = new ThreadLocal<XMLCache>();
+
+    private final Map<String, Document> documents = new LRUMap<String, Document>(MAX_DOCUMENTS);
+
+    private final Map<String, XPathExpression> xpathExpressions = new LRUMap<String, XPathExpression>(MAX_XPATH_EXPRESSIONS);
+
+    private DocumentBuilder documentBuilder;
+
+    private XPath xpath;
+
+    private XMLCache() {
+    }
+
+    /**
+     * @return a new document parsed from the content, that the caller can modify
+     */
+    public static Document parse(final String xmlContent) throws ParserConfigurationException, SAXException, IOException {
+        return getCache().parseDocument(xmlContent);
+    }
+
+    /**
+     * @return the document parsed from the content, shared with the next callers of this thread: it must not be modified
+     */
+    public static Document getDocument(final String xmlContent) throws ParserConfigurationException, SAXException, IOException {
+        final XMLCache cache = getCache();
+        Document document = cache.documents.get(xmlContent);
+        if (document == null) {
+            document = cache.parseDocument(xmlContent);
+            cache.documents.put(xmlContent, document);
+        }
+        return document;
+    }
+
+    /**
+     * @return the document parsed from the content, removed from the cache so that the caller can modify it
+     */
+    public static Document takeDocument(final String xmlContent) throws ParserConfigurationException, SAXException, IOException {
+        final XMLCache cache = getCache();
+        final Document document = cache.documents.remove(xmlContent);
+        if (document != null) {
+            return document;
+        }
+        return cache.parseDocument(xmlContent);
+    }
+
+    /**
+     * @return the compiled expression, shared with the next callers of this thread
+     */
+    public static XPathExpression compile(final String expression) throws XPathExpressionException {
+        final XMLCache cache = getCache();
+        XPathExpression xpathExpression = cache.xpathExpressions.get(expression);
+        if (xpathExpression == null) {
+            if (cache.xpath == null) {
+                cache.xpath = XPathFactory.newInstance().newXPath();
+            }
+            xpathExpression = cache.xpath.compile(expression);
+            cache.xpathExpressions.put(expression, xpathExpression);
+        }
+        return xpathExpression;
+    }
+
+    /**
+     * Forget the documents parsed by this thread, the compiled expressions are kept
+     */
+    public static void clearDocuments() {
+        final XMLCache cache = CACHE.get();
+        if (cache != null) {
+            cache.documents.clear();
+        }
+    }
+
+    private static XMLCache getCache() {
+        XMLCache cache = CACHE.get();
+        if (cache == null) {
+            cache = new XMLCache();
+            CACHE.set(cache);
+        }
+        return cache;
+    }
+
+    private Document parseDocument(final String xmlContent) throws ParserConfigurationException, SAXException, IOException {
+        if (documentBuilder == null) {
+            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } else {
+            documentBuilder.reset();
+        }
+        return documentBuilder.parse(new InputSource(new StringReader(xmlContent)));
+    }
+
+    private static final class LRUMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 3263532469163431512L;
+
+        private final int maxSize;
+
+        LRUMap(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+
+    }
+
+}
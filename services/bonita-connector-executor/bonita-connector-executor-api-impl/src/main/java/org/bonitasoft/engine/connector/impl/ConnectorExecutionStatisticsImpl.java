@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bonitasoft.engine.connector.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bonitasoft.engine.connector.ConnectorExecutionStatistics;
+
+/**
+ * @since 6.1
+ */
+public class ConnectorExecutionStatisticsImpl implements ConnectorExecutionStatistics {
+
+    private static final long[] LATENCY_BUCKET_LIMITS = { 10, 50, 100, 500, 1000, 5000, 10000, 60000 };
+
+    private final AtomicLong executions = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    private final AtomicInteger runningExecutions = new AtomicInteger();
+
+    private final AtomicLong totalExecutionTime = new AtomicLong();
+
+    private final AtomicLong maxExecutionTime = new AtomicLong();
+
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKET_LIMITS.length + 1);
+
+    void executionStarted() {
+        runningExecutions.incrementAndGet();
+    }
+
+    void executionFinished(final long executionTime, final boolean failed) {
+        runningExecutions.decrementAndGet();
+        executions.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalExecutionTime.addAndGet(executionTime);
+        long max = maxExecutionTime.get();
+        while (executionTime > max && !maxExecutionTime.compareAndSet(max, executionTime)) {
+            max = maxExecutionTime.get();
+        }
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKET_LIMITS.length && executionTime > LATENCY_BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    void executionTimedOut() {
+        timeouts.incrementAndGet();
+    }
+
+    void executionRejected() {
+        rejections.incrementAndGet();
+    }
+
+    @Override
+    public long getNumberOfExecutions() {
+        return executions.get();
+    }
+
+    @Override
+    public long getNumberOfFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getNumberOfTimeouts() {
+        return timeouts.get();
+    }
+
+    @Override
+    public long getNumberOfRejections() {
+        return rejections.get();
+    }
+
+    @Override
+    public int getNumberOfRunningExecutions() {
+        return runningExecutions.get();
+    }
+
+    @Override
+    public long getTotalExecutionTime() {
+        return totalExecutionTime.get();
+    }
+
+    @Override
+    public long getMaxExecutionTime() {
+        return maxExecutionTime.get();
+    }
+
+    @Override
+    public long[] getLatencyBucketLimits() {
+        return LATENCY_BUCKET_LIMITS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        final long[] histogram = new long[latencyHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyHistogram.get(i);
+        }
+        return histogram;
+    }
+
+}
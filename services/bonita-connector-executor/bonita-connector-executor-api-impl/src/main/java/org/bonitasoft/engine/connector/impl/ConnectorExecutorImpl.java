@@ -14,21 +14,85 @@
  */
 package org.bonitasoft.engine.connector.impl;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.bonitasoft.engine.connector.ConnectorExecutionStatistics;
 import org.bonitasoft.engine.connector.ConnectorExecutor;
 import org.bonitasoft.engine.connector.SConnector;
 import org.bonitasoft.engine.connector.exception.SConnectorException;
 import org.bonitasoft.engine.connector.exception.SConnectorValidationException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
 
 /**
- * Execute connectors directly
+ * Execute connectors directly or, when created with a pool of threads, in threads that are not the ones of the engine: a slow connector then only
+ * blocks the threads of the connectors of its definition, up to maxConcurrentExecutionsPerConnector, and for at most timeout milliseconds. When all
+ * of them are in use, the next connectors of the definition wait for one of them to finish: the time they wait counts in their timeout, they are
+ * rejected if none finished in time.
  * 
  * @author Baptiste Mesta
  */
 public class ConnectorExecutorImpl implements ConnectorExecutor {
 
+    private final ThreadPoolExecutor executorService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final int maxConcurrentExecutionsPerConnector;
+
+    private final long timeout;
+
+    private final ConcurrentMap<String, ConnectorDefinitionBulkhead> bulkheads = new ConcurrentHashMap<String, ConnectorDefinitionBulkhead>();
+
     public ConnectorExecutorImpl() {
+        executorService = null;
+        sessionAccessor = null;
+        logger = null;
+        maxConcurrentExecutionsPerConnector = 0;
+        timeout = 0;
+    }
+
+    /**
+     * @param maxThreads
+     *            number of threads executing the connectors
+     * @param queueCapacity
+     *            number of connectors that can wait for a thread, the following ones are rejected
+     * @param maxConcurrentExecutionsPerConnector
+     *            number of connectors of a same definition that can be executing or waiting for a thread at the same time, the following ones wait
+     *            until one of them finishes
+     * @param timeout
+     *            time in milliseconds after which the execution of a connector, including the time it waited, is given up, 0 to wait forever
+     */
+    public ConnectorExecutorImpl(final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final int maxThreads, final int queueCapacity,
+            final int maxConcurrentExecutionsPerConnector, final long timeout) {
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.maxConcurrentExecutionsPerConnector = maxConcurrentExecutionsPerConnector;
+        this.timeout = timeout;
+        executorService = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ConnectorThreadFactory());
+        executorService.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -49,9 +113,193 @@ public class ConnectorExecutorImpl implements ConnectorExecutor {
         }
     }
 
+    @Override
+    public Map<String, Object> execute(final SConnector sConnector, final Map<String, Object> inputParameters, final String connectorDefinitionKey)
+            throws SConnectorException {
+        if (executorService == null) {
+            return execute(sConnector, inputParameters);
+        }
+        final ConnectorDefinitionBulkhead bulkhead = getBulkhead(connectorDefinitionKey);
+        final long start = System.currentTimeMillis();
+        acquirePermit(bulkhead, connectorDefinitionKey);
+        final ConnectorExecution execution = new ConnectorExecution(sConnector, inputParameters, bulkhead);
+        final Future<Map<String, Object>> future;
+        try {
+            future = executorService.submit(execution);
+        } catch (final RejectedExecutionException e) {
+            bulkhead.permits.release();
+            bulkhead.statistics.executionRejected();
+            throw new SConnectorException("Unable to execute the connector " + connectorDefinitionKey + ": too many connectors are waiting to be executed", e);
+        }
+        try {
+            if (timeout > 0) {
+                return future.get(timeout - (System.currentTimeMillis() - start), TimeUnit.MILLISECONDS);
+            }
+            return future.get();
+        } catch (final TimeoutException e) {
+            cancel(future, execution);
+            bulkhead.statistics.executionTimedOut();
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.WARNING)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.WARNING, "The connector " + connectorDefinitionKey + " did not finish within " + timeout
+                        + " ms, it is interrupted");
+            }
+            throw new SConnectorException("The connector " + connectorDefinitionKey + " did not finish within " + timeout + " ms");
+        } catch (final InterruptedException e) {
+            cancel(future, execution);
+            Thread.currentThread().interrupt();
+            throw new SConnectorException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SConnectorException) {
+                throw (SConnectorException) e.getCause();
+            }
+            throw new SConnectorException(e.getCause());
+        }
+    }
+
+    private void acquirePermit(final ConnectorDefinitionBulkhead bulkhead, final String connectorDefinitionKey) throws SConnectorException {
+        try {
+            if (timeout <= 0) {
+                bulkhead.permits.acquire();
+            } else if (!bulkhead.permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                bulkhead.statistics.executionRejected();
+                throw new SConnectorException("Unable to execute the connector " + connectorDefinitionKey + ": " + maxConcurrentExecutionsPerConnector
+                        + " connectors of this definition were executing during " + timeout + " ms");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SConnectorException(e);
+        }
+    }
+
+    private ConnectorDefinitionBulkhead getBulkhead(final String connectorDefinitionKey) {
+        ConnectorDefinitionBulkhead bulkhead = bulkheads.get(connectorDefinitionKey);
+        if (bulkhead == null) {
+            bulkhead = new ConnectorDefinitionBulkhead(maxConcurrentExecutionsPerConnector);
+            final ConnectorDefinitionBulkhead existing = bulkheads.putIfAbsent(connectorDefinitionKey, bulkhead);
+            if (existing != null) {
+                bulkhead = existing;
+            }
+        }
+        return bulkhead;
+    }
+
+    private void cancel(final Future<Map<String, Object>> future, final ConnectorExecution execution) {
+        future.cancel(true);
+        if (execution.started.compareAndSet(false, true)) {
+            // it was still waiting for a thread and will not be executed: the thread will not release the permit
+            execution.bulkhead.permits.release();
+        }
+    }
+
     @Override
     public void disconnect(final SConnector sConnector) throws SConnectorException {
         sConnector.disconnect();
     }
 
+    @Override
+    public Map<String, ConnectorExecutionStatistics> getStatistics() {
+        final Map<String, ConnectorExecutionStatistics> statistics = new HashMap<String, ConnectorExecutionStatistics>(bulkheads.size());
+        for (final Map.Entry<String, ConnectorDefinitionBulkhead> entry : bulkheads.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().statistics);
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Interrupt the connectors still executing and stop the threads
+     */
+    public void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static final class ConnectorDefinitionBulkhead {
+
+        private final Semaphore permits;
+
+        private final ConnectorExecutionStatisticsImpl statistics = new ConnectorExecutionStatisticsImpl();
+
+        ConnectorDefinitionBulkhead(final int maxConcurrentExecutions) {
+            permits = new Semaphore(maxConcurrentExecutions);
+        }
+
+    }
+
+    /**
+     * Execution of a connector with the session and the class loader of the thread that created it
+     */
+    private final class ConnectorExecution implements Callable<Map<String, Object>> {
+
+        private final SConnector sConnector;
+
+        private final Map<String, Object> inputParameters;
+
+        private final ConnectorDefinitionBulkhead bulkhead;
+
+        private final ClassLoader classLoader;
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private Long sessionId;
+
+        private long tenantId;
+
+        ConnectorExecution(final SConnector sConnector, final Map<String, Object> inputParameters, final ConnectorDefinitionBulkhead bulkhead) {
+            this.sConnector = sConnector;
+            this.inputParameters = inputParameters;
+            this.bulkhead = bulkhead;
+            classLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                sessionId = sessionAccessor.getSessionId();
+                tenantId = sessionAccessor.getTenantId();
+            } catch (final SessionIdNotSetException e) {
+                sessionId = null;
+            } catch (final TenantIdNotSetException e) {
+                sessionId = null;
+            }
+        }
+
+        @Override
+        public Map<String, Object> call() throws SConnectorException {
+            if (!started.compareAndSet(false, true)) {
+                // cancelled while waiting for a thread
+                return null;
+            }
+            final Thread thread = Thread.currentThread();
+            final ClassLoader threadClassLoader = thread.getContextClassLoader();
+            final long start = System.currentTimeMillis();
+            boolean failed = true;
+            bulkhead.statistics.executionStarted();
+            try {
+                thread.setContextClassLoader(classLoader);
+                if (sessionId != null) {
+                    sessionAccessor.setSessionInfo(sessionId, tenantId);
+                }
+                final Map<String, Object> result = execute(sConnector, inputParameters);
+                failed = false;
+                return result;
+            } finally {
+                sessionAccessor.deleteSessionId();
+                thread.setContextClassLoader(threadClassLoader);
+                bulkhead.permits.release();
+                bulkhead.statistics.executionFinished(System.currentTimeMillis() - start, failed);
+            }
+        }
+
+    }
+
+    private static final class ConnectorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Bonita-Connector-Executor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
 }
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bonitasoft.engine.connector.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonitasoft.engine.connector.AbstractSConnector;
+import org.bonitasoft.engine.connector.ConnectorExecutionStatistics;
+import org.bonitasoft.engine.connector.exception.SConnectorException;
+import org.bonitasoft.engine.connector.exception.SConnectorValidationException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectorExecutorImplTest {
+
+    private static final String DEFINITION = "slowConnector-1.0";
+
+    private ConnectorExecutorImpl connectorExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        final SessionAccessor sessionAccessor = mock(SessionAccessor.class);
+        when(sessionAccessor.getSessionId()).thenThrow(new SessionIdNotSetException("No session set."));
+        connectorExecutor = new ConnectorExecutorImpl(sessionAccessor, mock(TechnicalLoggerService.class), 2, 10, 1, 300);
+    }
+
+    @After
+    public void tearDown() {
+        connectorExecutor.stop();
+    }
+
+    @Test
+    public void executeConnectorInAnotherThread() throws Exception {
+        final Map<String, Object> result = connectorExecutor.execute(new ThreadNameConnector(), Collections.<String, Object> emptyMap(), DEFINITION);
+
+        assertTrue(((String) result.get("thread")).startsWith("Bonita-Connector-Executor-"));
+        final ConnectorExecutionStatistics statistics = connectorExecutor.getStatistics().get(DEFINITION);
+        assertEquals(1, statistics.getNumberOfExecutions());
+        assertEquals(0, statistics.getNumberOfRunningExecutions());
+    }
+
+    @Test
+    public void connectorNotFinishingWithinTheTimeoutIsInterrupted() throws Exception {
+        final BlockingConnector connector = new BlockingConnector();
+        try {
+            connectorExecutor.execute(connector, Collections.<String, Object> emptyMap(), DEFINITION);
+            fail("the connector should time out");
+        } catch (final SConnectorException e) {
+            // expected
+        }
+        assertTrue(connector.interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, connectorExecutor.getStatistics().get(DEFINITION).getNumberOfTimeouts());
+    }
+
+    @Test
+    public void connectorOfABusyDefinitionIsRejected() throws Exception {
+        final UninterruptibleConnector connector = new UninterruptibleConnector();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    connectorExecutor.execute(connector, Collections.<String, Object> emptyMap(), DEFINITION);
+                } catch (final SConnectorException e) {
+                    // times out
+                }
+            }
+        }).start();
+        assertTrue(connector.started.await(5, TimeUnit.SECONDS));
+        try {
+            connectorExecutor.execute(new ThreadNameConnector(), Collections.<String, Object> emptyMap(), DEFINITION);
+            fail("the connector should be rejected");
+        } catch (final SConnectorException e) {
+            // expected
+        }
+        assertEquals(1, connectorExecutor.getStatistics().get(DEFINITION).getNumberOfRejections());
+        // an other definition is not blocked
+        connectorExecutor.execute(new ThreadNameConnector(), Collections.<String, Object> emptyMap(), "otherConnector-1.0");
+        connector.released.countDown();
+    }
+
+    @Test
+    public void burstOfConnectorsOfADefinitionWaitsForTheRunningOnes() throws Exception {
+        final SessionAccessor sessionAccessor = mock(SessionAccessor.class);
+        when(sessionAccessor.getSessionId()).thenThrow(new SessionIdNotSetException("No session set."));
+        final ConnectorExecutorImpl burstExecutor = new ConnectorExecutorImpl(sessionAccessor, mock(TechnicalLoggerService.class), 4, 10, 2, 10000);
+        final int burst = 6;
+        final CountDownLatch done = new CountDownLatch(burst);
+        final AtomicInteger failures = new AtomicInteger();
+        try {
+            for (int i = 0; i < burst; i++) {
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            burstExecutor.execute(new SlowConnector(), Collections.<String, Object> emptyMap(), DEFINITION);
+                        } catch (final SConnectorException e) {
+                            failures.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, failures.get());
+            final ConnectorExecutionStatistics statistics = burstExecutor.getStatistics().get(DEFINITION);
+            assertEquals(burst, statistics.getNumberOfExecutions());
+            assertEquals(0, statistics.getNumberOfRejections());
+        } finally {
+            burstExecutor.stop();
+        }
+    }
+
+    private static class ThreadNameConnector extends AbstractSConnector {
+
+        @Override
+        public void validate() throws SConnectorValidationException {
+        }
+
+        @Override
+        public Map<String, Object> execute() throws SConnectorException {
+            final Map<String, Object> result = new HashMap<String, Object>();
+            result.put("thread", Thread.currentThread().getName());
+            return result;
+        }
+
+        @Override
+        public void connect() throws SConnectorException {
+        }
+
+        @Override
+        public void disconnect() throws SConnectorException {
+        }
+
+    }
+
+    private static class SlowConnector extends ThreadNameConnector {
+
+        @Override
+        public Map<String, Object> execute() throws SConnectorException {
+            try {
+                Thread.sleep(100);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.execute();
+        }
+
+    }
+
+    private static class BlockingConnector extends ThreadNameConnector {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public Map<String, Object> execute() throws SConnectorException {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }
+
+    }
+
+    private static class UninterruptibleConnector extends ThreadNameConnector {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public Map<String, Object> execute() throws SConnectorException {
+            started.countDown();
+            boolean wasReleased = false;
+            while (!wasReleased) {
+                try {
+                    wasReleased = released.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    // keeps its thread, and its permit, after the timeout
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2.0 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bonitasoft.engine.connector;
+
+/**
+ * Statistics of the executions of the connectors of one connector definition by a {@link ConnectorExecutor}.
+ * 
+ * @since 6.1
+ */
+public interface ConnectorExecutionStatistics {
+
+    /**
+     * @return the number of executions that finished, successfully or not, including the ones that finished after their timeout
+     */
+    long getNumberOfExecutions();
+
+    /**
+     * @return the number of executions that finished with an exception
+     */
+    long getNumberOfFailures();
+
+    /**
+     * @return the number of executions given up because they did not finish within the timeout
+     */
+    long getNumberOfTimeouts();
+
+    /**
+     * @return the number of executions refused because too many connectors were executing or waiting
+     */
+    long getNumberOfRejections();
+
+    /**
+     * @return the number of connectors currently executing
+     */
+    int getNumberOfRunningExecutions();
+
+    /**
+     * @return the total time spent executing the connectors, in milliseconds
+     */
+    long getTotalExecutionTime();
+
+    /**
+     * @return the longest execution time, in milliseconds
+     */
+    long getMaxExecutionTime();
+
+    /**
+     * @return the upper limits, in milliseconds, of the buckets of the latency histogram
+     */
+    long[] getLatencyBucketLimits();
+
+    /**
+     * @return the number of executions per bucket of the latency histogram: the execution time of the executions counted in bucket i is lower than or
+     *         equal to the limit i, the last bucket counts the executions longer than all limits
+     */
+    long[] getLatencyHistogram();
+
+}
@@ -25,7 +25,7 @@ import org.bonitasoft.engine.connector.exception.SConnectorException;
 public interface ConnectorExecutor {
 
     /**
-     * Execute a connector.
+     * Execute a connector in the calling thread.
      * 
      * @param sConnector
      *            The connector will be executed
@@ -38,6 +38,27 @@ public interface ConnectorExecutor {
      */
     Map<String, Object> execute(SConnector sConnector, Map<String, Object> inputParameters) throws SConnectorException;
 
+    /**
+     * Execute a connector in the threads of this executor: at most a configured number of connectors of a same definition execute at the same time and an
+     * execution that does not finish within the configured timeout is given up. The connector is executed with the session and the context class loader
+     * of the calling thread but not in its transaction, so it must not be called in a transaction.
+     * 
+     * @param sConnector
+     *            The connector will be executed
+     * @param inputParameters
+     *            The input parameters of connector
+     * @param connectorDefinitionKey
+     *            Identifies the definition of the connector, e.g. its id and version: the executions of a same definition share their concurrency limit
+     *            and their statistics
+     * @return
+     *         The output after connector executing
+     * @throws SConnectorException
+     *             Error thrown when error occurs in connector executing, when the connector does not finish within the timeout or when too many
+     *             connectors are waiting to be executed
+     * @since 6.1
+     */
+    Map<String, Object> execute(SConnector sConnector, Map<String, Object> inputParameters, String connectorDefinitionKey) throws SConnectorException;
+
     /**
      * call disconnect method of the connector
      * 
@@ -46,4 +67,12 @@ public interface ConnectorExecutor {
      */
     void disconnect(SConnector sConnector) throws SConnectorException;
 
+    /**
+     * Get the statistics of the connectors executed in the threads of this executor
+     * 
+     * @return the statistics per connector definition key
+     * @since 6.1
+     */
+    Map<String, ConnectorExecutionStatistics> getStatistics();
+
 }
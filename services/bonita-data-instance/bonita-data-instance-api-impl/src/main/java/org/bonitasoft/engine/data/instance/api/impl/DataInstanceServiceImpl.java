@@ -464,6 +464,8 @@ public class DataInstanceServiceImpl implements DataInstanceService {
                     deleteDataInstanceVisibilityMapping(containerId, sDataInstanceVisibilityMapping);
                 }
             } while (visibilityMappings.size() > 0);
+            // transient data do not outlive their container
+            getDataInstanceDataSource(TRANSIENT_DATA_SOURCE, TRANSIENT_DATA_SOURCE_VERSION).deleteDataInstances(containerId, containerType);
             if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
                 logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "removeContainer"));
             }
@@ -143,6 +143,17 @@ public class DataInstanceDataSourceImpl implements DataInstanceDataSource {
         }
     }
 
+    @Override
+    public void deleteDataInstances(final long containerId, final String containerType) throws SDataInstanceException {
+        List<SDataInstance> dataInstances;
+        do {
+            dataInstances = getDataInstances(containerId, containerType, 0, QueryOptions.DEFAULT_NUMBER_OF_RESULTS);
+            for (final SDataInstance dataInstance : dataInstances) {
+                deleteDataInstance(dataInstance);
+            }
+        } while (!dataInstances.isEmpty());
+    }
+
     @Override
     public SDataInstance getDataInstance(final long dataInstanceId) throws SDataInstanceException {
         NullCheckingUtil.checkArgsNotNull(dataInstanceId);
@@ -34,6 +34,19 @@ public interface DataInstanceDataSource extends DataSourceImplementation {
 
     void deleteDataInstance(final SDataInstance dataInstance) throws SDataInstanceException;
 
+    /**
+     * Delete all the data instances of a container
+     * 
+     * @param containerId
+     *            the ID of the container
+     * @param containerType
+     *            the type of the container
+     * @throws SDataInstanceException
+     *             in case a data instance can not be deleted
+     * @since 6.1
+     */
+    void deleteDataInstances(long containerId, String containerType) throws SDataInstanceException;
+
     SDataInstance getDataInstance(final long dataInstanceId) throws SDataInstanceException;
 
     SDataInstance getDataInstance(final String dataName, final long containerId, final String containerType) throws SDataInstanceException;
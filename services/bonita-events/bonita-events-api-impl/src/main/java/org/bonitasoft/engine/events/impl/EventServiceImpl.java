@@ -13,10 +13,19 @@
  **/
 package org.bonitasoft.engine.events.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bonitasoft.engine.commons.LogUtil;
 import org.bonitasoft.engine.events.EventActionType;
@@ -24,41 +33,92 @@ import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.events.model.FireEventException;
 import org.bonitasoft.engine.events.model.HandlerRegistrationException;
 import org.bonitasoft.engine.events.model.HandlerUnregistrationException;
+import org.bonitasoft.engine.events.model.SAsynchronousHandler;
 import org.bonitasoft.engine.events.model.SEvent;
 import org.bonitasoft.engine.events.model.SHandler;
 import org.bonitasoft.engine.events.model.builders.SEventBuilder;
 import org.bonitasoft.engine.events.model.builders.SEventBuilders;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
 
 /**
+ * The handlers are kept in an immutable {@link HandlerRegistry} that is replaced on each registration, so that firing an event reads it without
+ * lock nor allocation.
+ * The {@link SAsynchronousHandler}s are executed after the commit by a pool of threads: the events of a transaction are kept by a synchronization
+ * registered on the {@link TransactionService}. The event service that the transaction service itself depends on cannot be given it: it keeps the
+ * events of a transaction per thread between the transaction events that the transaction service fires through it.
+ * 
  * @author Christophe Havard
  * @author Matthieu Chaffotte
  */
 public class EventServiceImpl implements EventService {
 
+    private static final int DEFAULT_ASYNCHRONOUS_HANDLER_THREADS = 2;
+
     /**
      * Contains a list of all events type and their registered handlers
      */
-    private final Map<String, Set<SHandler<SEvent>>> registeredHandlers;
+    private volatile HandlerRegistry registry = new HandlerRegistry(new HashMap<String, Set<SHandler<SEvent>>>());
+
+    private final Object registrationLock = new Object();
+
+    /**
+     * Events of the current transaction waiting to be sent to the asynchronous handlers, null outside of a transaction. Only used without transaction
+     * service.
+     */
+    private final ThreadLocal<List<AsynchronousDispatch>> pendingDispatches = new ThreadLocal<List<AsynchronousDispatch>>();
+
+    private final ThreadLocal<AsynchronousHandlerSynchronization> synchronizations = new ThreadLocal<AsynchronousHandlerSynchronization>();
 
     private final SEventBuilders eventBuilders;
 
     private final TechnicalLoggerService logger;
 
+    private final int asynchronousHandlerThreads;
+
+    private final TransactionService transactionService;
+
+    private volatile ExecutorService asynchronousExecutor;
+
     /**
      * @return the registeredHandlers
      */
     @Override
     public Map<String, Set<SHandler<SEvent>>> getRegisteredHandlers() {
-        return registeredHandlers;
+        return registry.handlers;
     }
 
     public EventServiceImpl(final SEventBuilders eventBuilders, final TechnicalLoggerService logger) throws HandlerRegistrationException {
+        this(eventBuilders, logger, DEFAULT_ASYNCHRONOUS_HANDLER_THREADS);
+    }
+
+    /**
+     * @param asynchronousHandlerThreads
+     *            number of threads executing the {@link SAsynchronousHandler}s, started when the first one is registered
+     */
+    public EventServiceImpl(final SEventBuilders eventBuilders, final TechnicalLoggerService logger, final int asynchronousHandlerThreads)
+            throws HandlerRegistrationException {
+        this(eventBuilders, logger, asynchronousHandlerThreads, null);
+    }
+
+    /**
+     * @param asynchronousHandlerThreads
+     *            number of threads executing the {@link SAsynchronousHandler}s, started when the first one is registered
+     * @param transactionService
+     *            the transaction service the asynchronous handlers wait the commit of, null if it fires its transaction events through this service
+     */
+    public EventServiceImpl(final SEventBuilders eventBuilders, final TechnicalLoggerService logger, final int asynchronousHandlerThreads,
+            final TransactionService transactionService) throws HandlerRegistrationException {
         super();
         this.eventBuilders = eventBuilders;
         this.logger = logger;
-        registeredHandlers = new HashMap<String, Set<SHandler<SEvent>>>();
+        this.asynchronousHandlerThreads = asynchronousHandlerThreads;
+        this.transactionService = transactionService;
     }
 
     /**
@@ -72,32 +132,35 @@ public class EventServiceImpl implements EventService {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "fireEvent"));
         }
         if (event != null) {
-            // if at least 1 eventFilter contains a group of handlers for the given event type
-            if (registeredHandlers.containsKey(event.getType())) {
-                // retrieve the handler list concerned by the given event
-                final Set<SHandler<SEvent>> handlers = registeredHandlers.get(event.getType());
-
-                if (handlers.size() > 0) {
-                    FireEventException fireEventException = null;
-                    for (final SHandler<SEvent> h : handlers) {// for each handler, I check if it's interested or not by the given event
-                        if (h.isInterested(event)) {
-                            // for now, I just log the Exception into the console
-                            try {
-                                h.execute(event);
-                            } catch (final Exception e) {
-                                if (fireEventException == null) {
-                                    fireEventException = new FireEventException("Unable to execute some handler");
-                                }
-                                fireEventException.addHandlerException(e);
-                                if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.ERROR)) {
-                                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Unable to execute handler", e);
-                                }
+            final HandlerRegistry currentRegistry = registry;
+            if (transactionService == null && currentRegistry.hasAsynchronousHandlers) {
+                handleTransactionEvent(event.getType());
+            }
+            // retrieve the handlers concerned by the given event type, if at least 1 is registered
+            final EventTypeHandlers handlers = currentRegistry.handlersByType.get(event.getType());
+            if (handlers != null) {
+                if (handlers.asynchronous.length > 0) {
+                    dispatchAsynchronously(event, handlers.asynchronous);
+                }
+                FireEventException fireEventException = null;
+                for (final SHandler<SEvent> h : handlers.synchronous) {// for each handler, I check if it's interested or not by the given event
+                    if (h.isInterested(event)) {
+                        // for now, I just log the Exception into the console
+                        try {
+                            h.execute(event);
+                        } catch (final Exception e) {
+                            if (fireEventException == null) {
+                                fireEventException = new FireEventException("Unable to execute some handler");
+                            }
+                            fireEventException.addHandlerException(e);
+                            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.ERROR)) {
+                                logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Unable to execute handler", e);
                             }
                         }
                     }
-                    if (fireEventException != null) {
-                        throw fireEventException;
-                    }
+                }
+                if (fireEventException != null) {
+                    throw fireEventException;
                 }
             }
             if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
@@ -112,6 +175,97 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    private void handleTransactionEvent(final String eventType) {
+        if (TransactionService.TRANSACTION_ACTIVE_EVT.equals(eventType)) {
+            pendingDispatches.set(new ArrayList<AsynchronousDispatch>());
+        } else if (TransactionService.TRANSACTION_COMMITED_EVT.equals(eventType)) {
+            final List<AsynchronousDispatch> dispatches = pendingDispatches.get();
+            pendingDispatches.remove();
+            if (dispatches != null && !dispatches.isEmpty()) {
+                submit(new AsynchronousDispatches(dispatches));
+            }
+        } else if (TransactionService.TRANSACTION_ROLLEDBACK_EVT.equals(eventType)) {
+            pendingDispatches.remove();
+        }
+    }
+
+    private void dispatchAsynchronously(final SEvent event, final SHandler<SEvent>[] handlers) {
+        final AsynchronousDispatch dispatch = new AsynchronousDispatch(event, handlers);
+        if (transactionService != null) {
+            dispatchAfterCommit(dispatch);
+            return;
+        }
+        final List<AsynchronousDispatch> dispatches = pendingDispatches.get();
+        if (dispatches != null) {
+            dispatches.add(dispatch);
+        } else {
+            // not fired in a transaction: nothing to wait for
+            submit(dispatch);
+        }
+    }
+
+    private void dispatchAfterCommit(final AsynchronousDispatch dispatch) {
+        AsynchronousHandlerSynchronization synchronization = synchronizations.get();
+        if (synchronization == null || synchronization.completed) {
+            try {
+                if (transactionService.isRollbackOnly()) {
+                    // the transaction will be rolled back: its events never happened
+                    return;
+                }
+                if (!transactionService.isTransactionActive()) {
+                    // not fired in a transaction: nothing to wait for
+                    submit(dispatch);
+                    return;
+                }
+                synchronization = new AsynchronousHandlerSynchronization();
+                transactionService.registerBonitaSynchronization(synchronization);
+            } catch (final STransactionException e) {
+                logUndispatchedEvent(dispatch, e);
+                return;
+            } catch (final STransactionNotFoundException e) {
+                logUndispatchedEvent(dispatch, e);
+                return;
+            }
+            synchronizations.set(synchronization);
+        }
+        synchronization.dispatches.add(dispatch);
+    }
+
+    private void logUndispatchedEvent(final AsynchronousDispatch dispatch, final Exception e) {
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.WARNING)) {
+            logger.log(this.getClass(), TechnicalLogSeverity.WARNING, "Unable to wait for the commit to execute the asynchronous handlers on event "
+                    + dispatch.event.getType() + ": " + e.getMessage());
+        }
+    }
+
+    private void submit(final Runnable dispatch) {
+        final ExecutorService executor = asynchronousExecutor;
+        try {
+            if (executor == null) {
+                throw new RejectedExecutionException("The event service is stopped");
+            }
+            executor.execute(dispatch);
+        } catch (final RejectedExecutionException e) {
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.WARNING)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.WARNING, "Unable to execute asynchronous handlers: " + e.getMessage());
+            }
+        }
+    }
+
+    private void executeAsynchronousHandlers(final SEvent event, final SHandler<SEvent>[] handlers) {
+        for (final SHandler<SEvent> h : handlers) {
+            try {
+                if (h.isInterested(event)) {
+                    h.execute(event);
+                }
+            } catch (final Throwable t) {
+                if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.ERROR)) {
+                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Unable to execute asynchronous handler on event " + event.getType(), t);
+                }
+            }
+        }
+    }
+
     /**
      * No handler duplication in a list for a given event type
      */
@@ -120,19 +274,23 @@ public class EventServiceImpl implements EventService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "addHandler"));
         }
-        // the add method return false if the given element already exists in the Set, and do nothing.
         if (h != null && eventType != null) {
-            // check if the given event type is already registered in the Event Service
-            if (registeredHandlers.containsKey(eventType)) {
+            synchronized (registrationLock) {
+                final Map<String, Set<SHandler<SEvent>>> handlers = registry.copyHandlers();
+                Set<SHandler<SEvent>> handlersOfType = handlers.get(eventType);
+                if (handlersOfType == null) {
+                    // if the given type doesnt't already exists in the eventFilters list, we create it
+                    handlersOfType = new LinkedHashSet<SHandler<SEvent>>();
+                    handlers.put(eventType, handlersOfType);
+                }
                 // if the Handler already exists for the same eventType, an Exception is thrown
-                final Set<SHandler<SEvent>> handlers = registeredHandlers.get(eventType);
-                if (!handlers.add(h)) {
+                if (!handlersOfType.add(h)) {
                     throw new HandlerRegistrationException("This handler is already registered for this event type");
                 }
-            } else { // if the given type doesnt't already exists in the eventFilters list, we create it
-                final Set<SHandler<SEvent>> newHandlerSet = new HashSet<SHandler<SEvent>>();
-                newHandlerSet.add(h);
-                registeredHandlers.put(eventType, newHandlerSet);
+                if (h instanceof SAsynchronousHandler && asynchronousExecutor == null) {
+                    asynchronousExecutor = Executors.newFixedThreadPool(asynchronousHandlerThreads, new AsynchronousHandlerThreadFactory());
+                }
+                registry = new HandlerRegistry(handlers);
             }
             if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
                 logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "addHandler"));
@@ -157,10 +315,12 @@ public class EventServiceImpl implements EventService {
             }
             throw new HandlerUnregistrationException();
         } else {
-            for (final Set<SHandler<SEvent>> handlers : registeredHandlers.values()) {
-                if (handlers.contains(h)) {
-                    handlers.remove(h);
+            synchronized (registrationLock) {
+                final Map<String, Set<SHandler<SEvent>>> handlers = registry.copyHandlers();
+                for (final Set<SHandler<SEvent>> handlersOfType : handlers.values()) {
+                    handlersOfType.remove(h);
                 }
+                registry = new HandlerRegistry(handlers);
             }
         }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
@@ -177,11 +337,13 @@ public class EventServiceImpl implements EventService {
             throw new HandlerUnregistrationException();
         }
         // check if the handler has already been registered, then remove it
-        final Set<SHandler<SEvent>> handlers = registeredHandlers.get(eventType);
-        if (handlers != null && handlers.contains(h)) {
-            handlers.remove(h);
-        } else {
-            throw new HandlerUnregistrationException();
+        synchronized (registrationLock) {
+            final Map<String, Set<SHandler<SEvent>>> handlers = registry.copyHandlers();
+            final Set<SHandler<SEvent>> handlersOfType = handlers.get(eventType);
+            if (handlersOfType == null || !handlersOfType.remove(h)) {
+                throw new HandlerUnregistrationException();
+            }
+            registry = new HandlerRegistry(handlers);
         }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "removeHandler"));
@@ -193,7 +355,7 @@ public class EventServiceImpl implements EventService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "getHandlers"));
         }
-        final Set<SHandler<SEvent>> setSHandler = registeredHandlers.get(eventType);
+        final Set<SHandler<SEvent>> setSHandler = registry.handlers.get(eventType);
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "getHandlers"));
         }
@@ -230,7 +392,163 @@ public class EventServiceImpl implements EventService {
                     return false;
             }
         }
-        return registeredHandlers.containsKey(key);
+        final HandlerRegistry currentRegistry = registry;
+        // the transaction events are needed to know when to execute the asynchronous handlers
+        return currentRegistry.handlersByType.containsKey(key) || transactionService == null && currentRegistry.hasAsynchronousHandlers
+                && isTransactionEvent(key);
+    }
+
+    private boolean isTransactionEvent(final String eventType) {
+        return TransactionService.TRANSACTION_ACTIVE_EVT.equals(eventType) || TransactionService.TRANSACTION_COMMITED_EVT.equals(eventType)
+                || TransactionService.TRANSACTION_ROLLEDBACK_EVT.equals(eventType);
+    }
+
+    /**
+     * Stop the threads executing the asynchronous handlers, after the events already committed.
+     */
+    public void stop() {
+        synchronized (registrationLock) {
+            if (asynchronousExecutor != null) {
+                asynchronousExecutor.shutdown();
+                asynchronousExecutor = null;
+            }
+        }
+    }
+
+    private static final class HandlerRegistry {
+
+        private final Map<String, Set<SHandler<SEvent>>> handlers;
+
+        private final Map<String, EventTypeHandlers> handlersByType;
+
+        private final boolean hasAsynchronousHandlers;
+
+        HandlerRegistry(final Map<String, Set<SHandler<SEvent>>> newHandlers) {
+            final Map<String, Set<SHandler<SEvent>>> readOnlyHandlers = new HashMap<String, Set<SHandler<SEvent>>>(newHandlers.size());
+            handlersByType = new HashMap<String, EventTypeHandlers>(newHandlers.size());
+            boolean asynchronous = false;
+            for (final Entry<String, Set<SHandler<SEvent>>> entry : newHandlers.entrySet()) {
+                // an event type without handler is forgotten, so that firing it costs nothing
+                if (!entry.getValue().isEmpty()) {
+                    readOnlyHandlers.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+                    final EventTypeHandlers eventTypeHandlers = new EventTypeHandlers(entry.getValue());
+                    handlersByType.put(entry.getKey(), eventTypeHandlers);
+                    asynchronous |= eventTypeHandlers.asynchronous.length > 0;
+                }
+            }
+            handlers = Collections.unmodifiableMap(readOnlyHandlers);
+            hasAsynchronousHandlers = asynchronous;
+        }
+
+        Map<String, Set<SHandler<SEvent>>> copyHandlers() {
+            final Map<String, Set<SHandler<SEvent>>> copy = new HashMap<String, Set<SHandler<SEvent>>>(handlers.size() + 1);
+            for (final Entry<String, Set<SHandler<SEvent>>> entry : handlers.entrySet()) {
+                copy.put(entry.getKey(), new LinkedHashSet<SHandler<SEvent>>(entry.getValue()));
+            }
+            return copy;
+        }
+
+    }
+
+    private static final class EventTypeHandlers {
+
+        private final SHandler<SEvent>[] synchronous;
+
+        private final SHandler<SEvent>[] asynchronous;
+
+        @SuppressWarnings("unchecked")
+        EventTypeHandlers(final Set<SHandler<SEvent>> handlers) {
+            final List<SHandler<SEvent>> synchronousHandlers = new ArrayList<SHandler<SEvent>>(handlers.size());
+            final List<SHandler<SEvent>> asynchronousHandlers = new ArrayList<SHandler<SEvent>>();
+            for (final SHandler<SEvent> handler : handlers) {
+                if (handler instanceof SAsynchronousHandler) {
+                    asynchronousHandlers.add(handler);
+                } else {
+                    synchronousHandlers.add(handler);
+                }
+            }
+            synchronous = synchronousHandlers.toArray(new SHandler[synchronousHandlers.size()]);
+            asynchronous = asynchronousHandlers.toArray(new SHandler[asynchronousHandlers.size()]);
+        }
+
+    }
+
+    private final class AsynchronousDispatch implements Runnable {
+
+        private final SEvent event;
+
+        private final SHandler<SEvent>[] handlers;
+
+        AsynchronousDispatch(final SEvent event, final SHandler<SEvent>[] handlers) {
+            this.event = event;
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void run() {
+            executeAsynchronousHandlers(event, handlers);
+        }
+
+    }
+
+    /**
+     * Keeps the events of one transaction until it completes
+     */
+    private final class AsynchronousHandlerSynchronization implements BonitaTransactionSynchronization {
+
+        private final List<AsynchronousDispatch> dispatches = new ArrayList<AsynchronousDispatch>();
+
+        private boolean completed;
+
+        @Override
+        public void beforeCommit() {
+            // nothing to do
+        }
+
+        @Override
+        public void afterCompletion(final TransactionState txState) {
+            completed = true;
+            if (synchronizations.get() == this) {
+                synchronizations.remove();
+            }
+            if (TransactionState.COMMITTED == txState && !dispatches.isEmpty()) {
+                submit(new AsynchronousDispatches(dispatches));
+            }
+        }
+
+    }
+
+    /**
+     * The events of one transaction, given to the handlers in the order they were fired
+     */
+    private static final class AsynchronousDispatches implements Runnable {
+
+        private final List<AsynchronousDispatch> dispatches;
+
+        AsynchronousDispatches(final List<AsynchronousDispatch> dispatches) {
+            this.dispatches = dispatches;
+        }
+
+        @Override
+        public void run() {
+            for (final AsynchronousDispatch dispatch : dispatches) {
+                dispatch.run();
+            }
+        }
+
+    }
+
+    private static final class AsynchronousHandlerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Bonita-Event-Handler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
     }
 
 }
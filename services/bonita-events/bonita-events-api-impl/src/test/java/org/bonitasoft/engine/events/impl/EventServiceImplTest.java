@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.events.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.events.model.SAsynchronousHandler;
+import org.bonitasoft.engine.events.model.SEvent;
+import org.bonitasoft.engine.events.model.SHandler;
+import org.bonitasoft.engine.events.model.SHandlerExecutionException;
+import org.bonitasoft.engine.events.model.builders.SEventBuilders;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EventServiceImplTest {
+
+    private static final String EVENT_TYPE = "PROCESS_CREATED";
+
+    private EventServiceImpl eventService;
+
+    @Before
+    public void setUp() throws Exception {
+        eventService = new EventServiceImpl(mock(SEventBuilders.class), mock(TechnicalLoggerService.class), 1);
+    }
+
+    @After
+    public void tearDown() {
+        eventService.stop();
+    }
+
+    @Test
+    public void synchronousHandlerIsExecutedByTheFiringThread() throws Exception {
+        final RecordingHandler handler = new RecordingHandler();
+        eventService.addHandler(EVENT_TYPE, handler);
+
+        final SEvent event = event(EVENT_TYPE);
+        eventService.fireEvent(event);
+
+        assertEquals(1, handler.events.size());
+        assertEquals(Thread.currentThread(), handler.threads.get(0));
+    }
+
+    @Test
+    public void removedHandlerIsForgotten() throws Exception {
+        final RecordingHandler handler = new RecordingHandler();
+        eventService.addHandler(EVENT_TYPE, handler);
+        eventService.removeHandler(EVENT_TYPE, handler);
+
+        eventService.fireEvent(event(EVENT_TYPE));
+
+        assertTrue(handler.events.isEmpty());
+        assertFalse(eventService.hasHandlers(EVENT_TYPE, null));
+        assertFalse(eventService.getRegisteredHandlers().containsKey(EVENT_TYPE));
+    }
+
+    @Test
+    public void asynchronousHandlerIsExecutedAfterTheCommit() throws Exception {
+        final RecordingAsynchronousHandler handler = new RecordingAsynchronousHandler(1);
+        eventService.addHandler(EVENT_TYPE, handler);
+        assertTrue(eventService.hasHandlers(TransactionService.TRANSACTION_ACTIVE_EVT, null));
+
+        eventService.fireEvent(event(TransactionService.TRANSACTION_ACTIVE_EVT));
+        eventService.fireEvent(event(EVENT_TYPE));
+        assertFalse(handler.executed.await(100, TimeUnit.MILLISECONDS));
+        eventService.fireEvent(event(TransactionService.TRANSACTION_COMMITED_EVT));
+
+        assertTrue(handler.executed.await(5, TimeUnit.SECONDS));
+        assertFalse(Thread.currentThread().equals(handler.threads.get(0)));
+    }
+
+    @Test
+    public void asynchronousHandlerIgnoresTheEventsOfARolledBackTransaction() throws Exception {
+        final RecordingAsynchronousHandler handler = new RecordingAsynchronousHandler(1);
+        eventService.addHandler(EVENT_TYPE, handler);
+
+        eventService.fireEvent(event(TransactionService.TRANSACTION_ACTIVE_EVT));
+        eventService.fireEvent(event(EVENT_TYPE));
+        eventService.fireEvent(event(TransactionService.TRANSACTION_ROLLEDBACK_EVT));
+
+        assertFalse(handler.executed.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(handler.events.isEmpty());
+    }
+
+    @Test
+    public void asynchronousHandlerWaitsForTheCommitOfTheTransactionService() throws Exception {
+        final TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.isTransactionActive()).thenReturn(true);
+        final EventServiceImpl tenantEventService = new EventServiceImpl(mock(SEventBuilders.class), mock(TechnicalLoggerService.class), 1,
+                transactionService);
+        try {
+            final RecordingAsynchronousHandler handler = new RecordingAsynchronousHandler(2);
+            tenantEventService.addHandler(EVENT_TYPE, handler);
+            assertFalse(tenantEventService.hasHandlers(TransactionService.TRANSACTION_ACTIVE_EVT, null));
+
+            tenantEventService.fireEvent(event(EVENT_TYPE));
+            tenantEventService.fireEvent(event(EVENT_TYPE));
+            final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+            verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+            assertFalse(handler.executed.await(100, TimeUnit.MILLISECONDS));
+            synchronization.getValue().afterCompletion(TransactionState.COMMITTED);
+
+            assertTrue(handler.executed.await(5, TimeUnit.SECONDS));
+        } finally {
+            tenantEventService.stop();
+        }
+    }
+
+    @Test
+    public void asynchronousHandlerIgnoresTheEventsOfATransactionRolledBackByTheTransactionService() throws Exception {
+        final TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.isTransactionActive()).thenReturn(true);
+        final EventServiceImpl tenantEventService = new EventServiceImpl(mock(SEventBuilders.class), mock(TechnicalLoggerService.class), 1,
+                transactionService);
+        try {
+            final RecordingAsynchronousHandler handler = new RecordingAsynchronousHandler(1);
+            tenantEventService.addHandler(EVENT_TYPE, handler);
+
+            tenantEventService.fireEvent(event(EVENT_TYPE));
+            final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+            verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+            synchronization.getValue().afterCompletion(TransactionState.ROLLEDBACK);
+            when(transactionService.isTransactionActive()).thenReturn(false);
+            when(transactionService.isRollbackOnly()).thenReturn(true);
+            tenantEventService.fireEvent(event(EVENT_TYPE));
+
+            assertFalse(handler.executed.await(200, TimeUnit.MILLISECONDS));
+            assertTrue(handler.events.isEmpty());
+        } finally {
+            tenantEventService.stop();
+        }
+    }
+
+    @Test
+    public void asynchronousHandlerIsExecutedAtOnceOutsideOfATransaction() throws Exception {
+        final TransactionService transactionService = mock(TransactionService.class);
+        final EventServiceImpl tenantEventService = new EventServiceImpl(mock(SEventBuilders.class), mock(TechnicalLoggerService.class), 1,
+                transactionService);
+        try {
+            final RecordingAsynchronousHandler handler = new RecordingAsynchronousHandler(1);
+            tenantEventService.addHandler(EVENT_TYPE, handler);
+
+            tenantEventService.fireEvent(event(EVENT_TYPE));
+
+            assertTrue(handler.executed.await(5, TimeUnit.SECONDS));
+            verify(transactionService, never()).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        } finally {
+            tenantEventService.stop();
+        }
+    }
+
+    private SEvent event(final String type) {
+        final SEvent event = mock(SEvent.class);
+        when(event.getType()).thenReturn(type);
+        return event;
+    }
+
+    private static class RecordingHandler implements SHandler<SEvent> {
+
+        final List<SEvent> events = new CopyOnWriteArrayList<SEvent>();
+
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+
+        @Override
+        public void execute(final SEvent event) throws SHandlerExecutionException {
+            events.add(event);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public boolean isInterested(final SEvent event) {
+            return true;
+        }
+
+    }
+
+    private static class RecordingAsynchronousHandler extends RecordingHandler implements SAsynchronousHandler<SEvent> {
+
+        final CountDownLatch executed;
+
+        RecordingAsynchronousHandler(final int expectedEvents) {
+            executed = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void execute(final SEvent event) throws SHandlerExecutionException {
+            super.execute(event);
+            executed.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.events.model;
+
+/**
+ * A handler that is not executed in the thread firing the event: it receives the event after the commit of the transaction that fired it, on a
+ * thread of the event service, and never receives the events of a rolled back transaction.
+ * It runs outside of any transaction and without session, so it must not slow down nor fail the business transactions.
+ *
+ * @since 6.1
+ */
+public interface SAsynchronousHandler<T extends SEvent> extends SHandler<T> {
+
+}
@@ -13,11 +13,22 @@
  **/
 package org.bonitasoft.engine.expression.impl;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.bonitasoft.engine.commons.LogUtil;
+import org.bonitasoft.engine.expression.CompilableExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.ExpressionExecutorStrategyProvider;
 import org.bonitasoft.engine.expression.ExpressionService;
@@ -29,6 +40,9 @@ import org.bonitasoft.engine.expression.model.ExpressionKind;
 import org.bonitasoft.engine.expression.model.SExpression;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
 
 /**
  * @author Zhao na
@@ -41,11 +55,23 @@ public class ExpressionServiceImpl implements ExpressionService {
 
     private final TechnicalLoggerService logger;
 
+    private final SessionAccessor sessionAccessor;
+
     private boolean checkExpressionReturnType = false;
 
     public ExpressionServiceImpl(final ExpressionExecutorStrategyProvider expressionExecutorStrategyProvider, final TechnicalLoggerService logger,
             final boolean checkExpressionReturnType) {
+        this(expressionExecutorStrategyProvider, null, logger, checkExpressionReturnType);
+    }
+
+    /**
+     * @param sessionAccessor
+     *            used to give the session of the thread compiling expressions, and thus its tenant, to the compiler threads
+     */
+    public ExpressionServiceImpl(final ExpressionExecutorStrategyProvider expressionExecutorStrategyProvider, final SessionAccessor sessionAccessor,
+            final TechnicalLoggerService logger, final boolean checkExpressionReturnType) {
         super();
+        this.sessionAccessor = sessionAccessor;
         final List<ExpressionExecutorStrategy> expressionExecutors = expressionExecutorStrategyProvider.getExpressionExecutors();
         expressionExecutorsMap = new HashMap<ExpressionKind, ExpressionExecutorStrategy>(expressionExecutors.size());
         this.checkExpressionReturnType = checkExpressionReturnType;
@@ -171,4 +197,111 @@ public class ExpressionServiceImpl implements ExpressionService {
         return expressionExecutorsMap.get(expressionKind).mustPutEvaluatedExpressionInContext();
     }
 
+    @Override
+    public void setClassesFolder(final long definitionId, final File classesFolder) {
+        for (final ExpressionExecutorStrategy strategy : expressionExecutorsMap.values()) {
+            if (strategy instanceof CompilableExpressionExecutorStrategy) {
+                ((CompilableExpressionExecutorStrategy) strategy).setClassesFolder(definitionId, classesFolder);
+            }
+        }
+    }
+
+    @Override
+    public void compile(final Collection<SExpression> expressions, final long definitionId, final File classesFolder) throws SExpressionEvaluationException {
+        final Map<String, SExpression> toCompile = new LinkedHashMap<String, SExpression>();
+        collectCompilableExpressions(expressions, toCompile);
+        if (toCompile.isEmpty()) {
+            return;
+        }
+        // the compiler threads compile on behalf of the calling thread: they use its session, e.g. to store the scripts in the caches of its tenant,
+        // and its class loader
+        final long[] sessionInfo = getSessionInfo();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final int nbThreads = Math.min(toCompile.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "Bonita-Expression-Compiler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final List<Future<Void>> compilations = new ArrayList<Future<Void>>(toCompile.size());
+            for (final SExpression expression : toCompile.values()) {
+                final CompilableExpressionExecutorStrategy strategy = (CompilableExpressionExecutorStrategy) expressionExecutorsMap.get(expression
+                        .getExpressionKind());
+                compilations.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws SExpressionEvaluationException {
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader previousClassLoader = thread.getContextClassLoader();
+                        thread.setContextClassLoader(contextClassLoader);
+                        if (sessionInfo != null) {
+                            sessionAccessor.setSessionInfo(sessionInfo[0], sessionInfo[1]);
+                        }
+                        try {
+                            strategy.compile(expression, definitionId, classesFolder);
+                        } finally {
+                            if (sessionInfo != null) {
+                                sessionAccessor.deleteSessionId();
+                            }
+                            thread.setContextClassLoader(previousClassLoader);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> compilation : compilations) {
+                compilation.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SExpressionEvaluationException("Interrupted while compiling the expressions of definition " + definitionId, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SExpressionEvaluationException) {
+                throw (SExpressionEvaluationException) e.getCause();
+            }
+            throw new SExpressionEvaluationException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the session id and the tenant id of the current thread, null if it has no session
+     */
+    private long[] getSessionInfo() {
+        if (sessionAccessor == null) {
+            return null;
+        }
+        try {
+            return new long[] { sessionAccessor.getSessionId(), sessionAccessor.getTenantId() };
+        } catch (final SessionIdNotSetException e) {
+            return null;
+        } catch (final TenantIdNotSetException e) {
+            return null;
+        }
+    }
+
+    private void collectCompilableExpressions(final Collection<SExpression> expressions, final Map<String, SExpression> toCompile) {
+        for (final SExpression expression : expressions) {
+            if (expression == null) {
+                continue;
+            }
+            if (expressionExecutorsMap.get(expression.getExpressionKind()) instanceof CompilableExpressionExecutorStrategy) {
+                // the same script is often used several times in a definition
+                final String key = expression.getExpressionKind() + ":" + expression.getContent();
+                if (!toCompile.containsKey(key)) {
+                    toCompile.put(key, expression);
+                }
+            }
+            if (expression.getDependencies() != null) {
+                collectCompilableExpressions(expression.getDependencies(), toCompile);
+            }
+        }
+    }
+
 }
@@ -14,70 +14,229 @@
 package org.bonitasoft.engine.expression.impl;
 
 import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyRuntimeException;
-import groovy.lang.GroovyShell;
 import groovy.lang.MissingPropertyException;
 import groovy.lang.Script;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bonitasoft.engine.cache.CacheException;
 import org.bonitasoft.engine.cache.CacheService;
 import org.bonitasoft.engine.classloader.ClassLoaderException;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.commons.IOUtil;
+import org.bonitasoft.engine.expression.CompilableExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.NonEmptyContentExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
 import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
 import org.bonitasoft.engine.expression.model.ExpressionKind;
 import org.bonitasoft.engine.expression.model.SExpression;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
 
 /**
+ * Scripts are compiled once per process definition and content: the generated class is cached and a new instance, with its own binding, is created for
+ * each evaluation.
+ * Scripts can also be compiled ahead of time, when the definition is deployed. If persistCompiledScripts is set, the bytecode is then written in the given
+ * folder and read back instead of compiling the script again, e.g. after a restart: the folder of a definition is remembered when its scripts are compiled
+ * or set by {@link #setClassesFolder(long, File)}, and a script is read from it when it is first evaluated.
+ * 
  * @author Zhao na
  * @author Baptiste Mesta
  * @author Matthieu Chaffotte
  */
-public class GroovyScriptExpressionExecutorCacheStrategy extends NonEmptyContentExpressionExecutorStrategy {
+public class GroovyScriptExpressionExecutorCacheStrategy extends NonEmptyContentExpressionExecutorStrategy implements CompilableExpressionExecutorStrategy {
 
     private static final String GROOVY_SCRIPT_CACHE_NAME = "GROOVY_SCRIPT_CACHE_NAME";
 
     private static final String SCRIPT_KEY = "SCRIPT_";
 
-    private static final String SHELL_KEY = "SHELL_";
+    private static final String CLASSLOADER_KEY = "CLASSLOADER_";
+
+    private static final String SCRIPT_CLASS_PREFIX = "BonitaScript_";
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private final CacheService cacheService;
 
     private final ClassLoaderService classLoaderService;
 
+    private final boolean persistCompiledScripts;
+
+    private final ConcurrentMap<Long, File> classesFolders = new ConcurrentHashMap<Long, File>();
+
     public GroovyScriptExpressionExecutorCacheStrategy(final CacheService cacheService, final ClassLoaderService classLoaderService) {
+        this(cacheService, classLoaderService, false);
+    }
+
+    public GroovyScriptExpressionExecutorCacheStrategy(final CacheService cacheService, final ClassLoaderService classLoaderService,
+            final boolean persistCompiledScripts) {
         this.cacheService = cacheService;
         this.classLoaderService = classLoaderService;
+        this.persistCompiledScripts = persistCompiledScripts;
     }
 
-    private Script getScriptFromCache(final String expressionContent, final Long definitionId) throws CacheException, ClassLoaderException {
-        final GroovyShell shell = getShell(definitionId);
-        Script script = (Script) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, SCRIPT_KEY + definitionId + expressionContent.hashCode());
-        if (script == null) {
-            script = shell.parse(expressionContent);
-            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, SCRIPT_KEY + definitionId + expressionContent.hashCode(), script);
+    Class<? extends Script> getScriptClassFromCache(final String expressionContent, final Long definitionId) throws CacheException, ClassLoaderException,
+            IOException {
+        return getScriptClassFromCache(expressionContent, definitionId, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends Script> getScriptClassFromCache(final String expressionContent, final Long definitionId, final File classesFolder)
+            throws CacheException, ClassLoaderException, IOException {
+        final String digest = digest(expressionContent);
+        final String key = SCRIPT_KEY + definitionId + "_" + digest;
+        Class<? extends Script> scriptClass = (Class<? extends Script>) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, key);
+        if (scriptClass == null) {
+            final String className = SCRIPT_CLASS_PREFIX + digest;
+            Map<String, byte[]> classes = null;
+            if (classesFolder != null) {
+                classes = readClasses(new File(classesFolder, digest), className);
+            }
+            if (classes == null) {
+                classes = compile(expressionContent, className, definitionId);
+                if (classesFolder != null) {
+                    writeClasses(classesFolder, digest, classes);
+                }
+            }
+            try {
+                scriptClass = (Class<? extends Script>) new ScriptClassLoader(classes, getClassLoader(definitionId)).loadClass(className);
+            } catch (final ClassNotFoundException e) {
+                throw new ClassLoaderException(e);
+            }
+            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, key, scriptClass);
         }
-        return script;
+        return scriptClass;
     }
 
-    private GroovyShell getShell(final Long definitionId) throws ClassLoaderException, CacheException {
-        GroovyShell shell = (GroovyShell) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, SHELL_KEY + definitionId);
-        if (shell == null) {
-            ClassLoader classLoader;
-            if (definitionId != null) {
-                classLoader = classLoaderService.getLocalClassLoader(DEFINITION_TYPE, definitionId);
-            } else {
-                classLoader = Thread.currentThread().getContextClassLoader();
+    private static String digest(final String expressionContent) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            // every JVM has SHA-1
+            throw new IllegalStateException(e);
+        }
+        final byte[] digest = messageDigest.digest(expressionContent.getBytes(UTF_8));
+        final StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            builder.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private Map<String, byte[]> compile(final String expressionContent, final String className, final Long definitionId) throws ClassLoaderException,
+            CacheException {
+        final CompilationUnit compilationUnit = new CompilationUnit(CompilerConfiguration.DEFAULT, null, getGroovyClassLoader(definitionId));
+        compilationUnit.addSource(className + ".groovy", expressionContent);
+        compilationUnit.compile(Phases.CLASS_GENERATION);
+        @SuppressWarnings("unchecked")
+        final List<GroovyClass> groovyClasses = compilationUnit.getClasses();
+        final Map<String, byte[]> classes = new HashMap<String, byte[]>(groovyClasses.size());
+        for (final GroovyClass groovyClass : groovyClasses) {
+            classes.put(groovyClass.getName(), groovyClass.getBytes());
+        }
+        return classes;
+    }
+
+    /**
+     * @return the classes of the script, null if the script class is not in the folder
+     */
+    private static Map<String, byte[]> readClasses(final File scriptFolder, final String className) throws IOException {
+        final File[] files = scriptFolder.listFiles();
+        if (files == null || !new File(scriptFolder, className + CLASS_EXTENSION).isFile()) {
+            return null;
+        }
+        final Map<String, byte[]> classes = new HashMap<String, byte[]>(files.length);
+        for (final File file : files) {
+            final String fileName = file.getName();
+            if (fileName.endsWith(CLASS_EXTENSION)) {
+                classes.put(fileName.substring(0, fileName.length() - CLASS_EXTENSION.length()), IOUtil.getAllContentFrom(file));
             }
-            shell = new GroovyShell(classLoader);
-            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, SHELL_KEY + definitionId, shell);
         }
-        return shell;
+        return classes;
+    }
+
+    private static void writeClasses(final File classesFolder, final String digest, final Map<String, byte[]> classes) throws IOException {
+        // written aside then renamed so that a partially written script is never read
+        final File temporaryFolder = new File(classesFolder, digest + "." + UUID.randomUUID() + ".tmp");
+        if (!temporaryFolder.mkdirs()) {
+            throw new IOException("Unable to create folder " + temporaryFolder);
+        }
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            IOUtil.write(new File(temporaryFolder, entry.getKey() + CLASS_EXTENSION), entry.getValue());
+        }
+        if (!temporaryFolder.renameTo(new File(classesFolder, digest))) {
+            // already written by another thread or node
+            IOUtil.deleteDir(temporaryFolder);
+        }
+    }
+
+    private ClassLoader getClassLoader(final Long definitionId) throws ClassLoaderException {
+        if (definitionId != null) {
+            return classLoaderService.getLocalClassLoader(DEFINITION_TYPE, definitionId);
+        }
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    private GroovyClassLoader getGroovyClassLoader(final Long definitionId) throws ClassLoaderException, CacheException {
+        GroovyClassLoader groovyClassLoader = (GroovyClassLoader) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, CLASSLOADER_KEY + definitionId);
+        if (groovyClassLoader == null) {
+            groovyClassLoader = new GroovyClassLoader(getClassLoader(definitionId));
+            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, CLASSLOADER_KEY + definitionId, groovyClassLoader);
+        }
+        return groovyClassLoader;
+    }
+
+    @Override
+    public void setClassesFolder(final long definitionId, final File classesFolder) {
+        if (!persistCompiledScripts) {
+            return;
+        }
+        if (classesFolder == null) {
+            classesFolders.remove(definitionId);
+        } else {
+            classesFolders.put(definitionId, classesFolder);
+        }
+    }
+
+    private File getClassesFolder(final Long definitionId) {
+        return definitionId == null ? null : classesFolders.get(definitionId);
+    }
+
+    @Override
+    public void compile(final SExpression expression, final Long definitionId, final File classesFolder) throws SExpressionEvaluationException {
+        if (definitionId != null && classesFolder != null) {
+            setClassesFolder(definitionId, classesFolder);
+        }
+        try {
+            getScriptClassFromCache(expression.getContent(), definitionId, persistCompiledScripts ? classesFolder : null);
+        } catch (final GroovyRuntimeException e) {
+            throw new SExpressionEvaluationException("Unable to compile expression " + expression.getName() + " with content: " + expression.getContent(), e);
+        } catch (final CacheException e) {
+            throw new SExpressionEvaluationException("Problem accessing the Script Cache from GroovyScriptExpressionExecutorCacheStrategy", e);
+        } catch (final ClassLoaderException e) {
+            throw new SExpressionEvaluationException("Unable to retrieve the correct classloader to compile the groovy script: " + expression, e);
+        } catch (final IOException e) {
+            throw new SExpressionEvaluationException("Unable to store the compiled groovy script: " + expression, e);
+        }
     }
 
     @Override
@@ -85,10 +244,10 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends NonEmptyContent
             throws SExpressionEvaluationException {
         final String expressionContent = expression.getContent();
         try {
-            final Script script = getScriptFromCache(expressionContent, (Long) dependencyValues.get(DEFINITION_ID));
-            final Binding binding = new Binding(dependencyValues);
-            script.setBinding(binding);
-            return script.evaluate(expressionContent);// .evaluate(expressionContent);run()
+            final Long definitionId = (Long) dependencyValues.get(DEFINITION_ID);
+            final Class<? extends Script> scriptClass = getScriptClassFromCache(expressionContent, definitionId, getClassesFolder(definitionId));
+            final Script script = InvokerHelper.createScript(scriptClass, new Binding(dependencyValues));
+            return script.run();
         } catch (final MissingPropertyException e) {
             final String property = e.getProperty();
             final StringBuilder builder = new StringBuilder("Expression ");
@@ -126,4 +285,27 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends NonEmptyContent
         return false;
     }
 
+    /**
+     * Defines the classes of one script, the script class and its closures, from their bytecode.
+     */
+    private static final class ScriptClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        ScriptClassLoader(final Map<String, byte[]> classes, final ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            final byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
 }
@@ -14,21 +14,16 @@
 package org.bonitasoft.engine.expression.impl;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
+import org.bonitasoft.engine.commons.XMLCache;
 import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
 import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
@@ -38,7 +33,6 @@ import org.bonitasoft.engine.expression.model.SExpression;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -72,19 +66,21 @@ public class XPathReadExpressionExecutorStrategy implements ExpressionExecutorSt
             if (qname == null) {
                 throw new SExpressionEvaluationException("XPathReadExpressionExecutorStrategy return type not supported: " + expression.getReturnType());
             }
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
             // Check has already been done above:
             final SExpression dep = expression.getDependencies().get(0);
             final String xmlContent = (String) resolvedExpressions.get(dep.getDiscriminant());
             if (xmlContent == null || xmlContent.isEmpty()) {
                 throw new SExpressionEvaluationException("The content of the xml is nul or empty: " + expression);
             }
-            final Document document = builder.parse(new InputSource(new StringReader(xmlContent)));
-            final XPathFactory xpFactory = XPathFactory.newInstance();
-            final XPath xpath = xpFactory.newXPath();
-            final XPathExpression exp = xpath.compile(expression.getContent());
-            return transType(exp.evaluate(document, qname), returnType);
+            final Document document;
+            if (XPathConstants.STRING.equals(qname)) {
+                // the same content is usually read by several expressions: parse it once
+                document = XMLCache.getDocument(xmlContent);
+            } else {
+                // the returned nodes belong to the document: it must not be shared
+                document = XMLCache.parse(xmlContent);
+            }
+            return transType(XMLCache.compile(expression.getContent()).evaluate(document, qname), returnType);
         } catch (final XPathExpressionException e) {
             throw new SExpressionEvaluationException("Error evaluating expression " + expression + " with strategy XPathReadExpressionExecutorStrategy", e);
         } catch (final ParserConfigurationException e) {
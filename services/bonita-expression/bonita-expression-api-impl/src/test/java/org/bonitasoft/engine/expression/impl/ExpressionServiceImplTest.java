@@ -13,20 +13,34 @@
  **/
 package org.bonitasoft.engine.expression.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 
+import org.bonitasoft.engine.cache.CacheConfiguration;
+import org.bonitasoft.engine.cache.CacheConfigurations;
+import org.bonitasoft.engine.cache.CacheService;
+import org.bonitasoft.engine.cache.ehcache.EhCacheCacheService;
+import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.expression.CompilableExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.ExpressionExecutorStrategyProvider;
+import org.bonitasoft.engine.expression.model.ExpressionKind;
 import org.bonitasoft.engine.expression.model.SExpression;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.ThreadLocalSessionAccessor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -64,4 +78,58 @@ public class ExpressionServiceImplTest {
         expressionService.evaluate(expression, new HashMap<Integer, Object>(0));
         verify(expressionExecutorStrategy, times(1)).validate(any(SExpression.class));
     }
+
+    @Test
+    public void compileScriptsOnceWithTheirDependencies() throws Exception {
+        final CompilableExpressionExecutorStrategy scriptStrategy = mock(CompilableExpressionExecutorStrategy.class);
+        when(scriptStrategy.getExpressionKind()).thenReturn(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY);
+        when(expressionExecutorStrategy.getExpressionKind()).thenReturn(ExpressionExecutorStrategy.KIND_CONSTANT);
+        when(expressionExecutorStrategyProvider.getExpressionExecutors()).thenReturn(Arrays.asList(expressionExecutorStrategy, scriptStrategy));
+        final SExpression dependency = expression(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY, "a + 1");
+        final SExpression script = expression(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY, "b + 1", dependency);
+        final SExpression sameScript = expression(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY, "b + 1");
+        final SExpression constant = expression(ExpressionExecutorStrategy.KIND_CONSTANT, "1");
+        final File classesFolder = new File("classes");
+        expressionService = new ExpressionServiceImpl(expressionExecutorStrategyProvider, logger, true);
+
+        expressionService.compile(Arrays.asList(script, constant, sameScript), 12L, classesFolder);
+
+        verify(scriptStrategy).compile(script, 12L, classesFolder);
+        verify(scriptStrategy).compile(dependency, 12L, classesFolder);
+        verify(scriptStrategy, times(2)).compile(any(SExpression.class), anyLong(), any(File.class));
+    }
+
+    @Test
+    public void compileScriptsInTheCachesOfTheTenantOfTheCallingThread() throws Exception {
+        final SessionAccessor sessionAccessor = new ThreadLocalSessionAccessor();
+        final CacheConfigurations cacheConfigurations = new CacheConfigurations();
+        cacheConfigurations.setConfigurations(Collections.<CacheConfiguration> emptyList());
+        final CacheService cacheService = new EhCacheCacheService(logger, sessionAccessor, cacheConfigurations);
+        final ClassLoaderService classLoaderService = mock(ClassLoaderService.class);
+        when(classLoaderService.getLocalClassLoader(anyString(), anyLong())).thenReturn(ExpressionServiceImplTest.class.getClassLoader());
+        final ExpressionExecutorStrategy scriptStrategy = new GroovyScriptExpressionExecutorCacheStrategy(cacheService, classLoaderService);
+        when(expressionExecutorStrategyProvider.getExpressionExecutors()).thenReturn(Arrays.asList(scriptStrategy));
+        final SExpression script = expression(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY, "a + 1");
+        final SExpression otherScript = expression(ExpressionExecutorStrategy.KIND_READ_ONLY_SCRIPT_GROOVY, "b + 1");
+        expressionService = new ExpressionServiceImpl(expressionExecutorStrategyProvider, sessionAccessor, logger, true);
+        sessionAccessor.setSessionInfo(5, 3);
+        try {
+            expressionService.compile(Arrays.asList(script, otherScript), 12L, null);
+
+            // both scripts and the class loader of the definition
+            assertEquals(3, cacheService.getCacheSize("GROOVY_SCRIPT_CACHE_NAME"));
+        } finally {
+            cacheService.clearAll();
+            sessionAccessor.deleteSessionId();
+        }
+    }
+
+    private SExpression expression(final ExpressionKind kind, final String content, final SExpression... dependencies) {
+        final SExpression expression = mock(SExpression.class);
+        when(expression.getExpressionKind()).thenReturn(kind);
+        when(expression.getContent()).thenReturn(content);
+        when(expression.getDependencies()).thenReturn(Arrays.asList(dependencies));
+        return expression;
+    }
+
 }
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression.impl;
+
+import static org.mockito.Mockito.mock;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.expression.model.SExpressionType;
+import org.bonitasoft.engine.expression.model.impl.SExpressionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of one evaluation of a typical condition script.
+ * recompileOnEachEvaluation is what the strategy did before the script classes were cached: parse once, then Script.evaluate(content) which compiles the
+ * content again. Not run by the build, launch the main method with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class GroovyScriptEvaluationBenchmark {
+
+    private static final String CONTENT = "if (amount > 1000) { return 'manager' } else { return 'clerk' + amount.toString().size() }";
+
+    private final SExpression expression = new SExpressionImpl("script", CONTENT, SExpressionType.TYPE_READ_ONLY_SCRIPT_GROOVY.name(), String.class.getName(),
+            "GROOVY", null);
+
+    private GroovyScriptExpressionExecutorCacheStrategy strategy;
+
+    private Script sharedScript;
+
+    @Setup
+    public void setup() {
+        strategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(), mock(ClassLoaderService.class));
+        sharedScript = new GroovyShell(Thread.currentThread().getContextClassLoader()).parse(CONTENT);
+    }
+
+    private static Map<String, Object> dependencies() {
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put("amount", 500);
+        return dependencyValues;
+    }
+
+    @Benchmark
+    public Object recompileOnEachEvaluation() {
+        sharedScript.setBinding(new Binding(dependencies()));
+        return sharedScript.evaluate(CONTENT);
+    }
+
+    @Benchmark
+    public Object cachedScriptClass() throws SExpressionEvaluationException {
+        return strategy.evaluate(expression, dependencies(), Collections.<Integer, Object> emptyMap());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(GroovyScriptEvaluationBenchmark.class.getSimpleName()).forks(1).warmupIterations(5)
+                .measurementIterations(5).build()).run();
+    }
+
+}
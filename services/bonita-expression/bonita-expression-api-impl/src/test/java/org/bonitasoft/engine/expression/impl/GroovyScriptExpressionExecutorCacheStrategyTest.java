@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.expression.model.SExpressionType;
+import org.bonitasoft.engine.expression.model.impl.SExpressionImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GroovyScriptExpressionExecutorCacheStrategyTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GroovyScriptExpressionExecutorCacheStrategy strategy;
+
+    @Before
+    public void setup() {
+        strategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(), mock(ClassLoaderService.class));
+    }
+
+    private static SExpression script(final String content) {
+        return new SExpressionImpl("script", content, SExpressionType.TYPE_READ_ONLY_SCRIPT_GROOVY.name(), Object.class.getName(), "GROOVY", null);
+    }
+
+    @Test
+    public void evaluateWithDependencies() throws Exception {
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put("a", 2);
+        dependencyValues.put("b", 3);
+
+        assertEquals(5, strategy.evaluate(script("a + b"), dependencyValues, Collections.<Integer, Object> emptyMap()));
+    }
+
+    @Test
+    public void scriptIsCompiledOnce() throws Exception {
+        assertSame(strategy.getScriptClassFromCache("1 + 1", null), strategy.getScriptClassFromCache("1 + 1", null));
+    }
+
+    @Test
+    public void contentsWithSameHashCodeAreDifferentScripts() throws Exception {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotSame(strategy.getScriptClassFromCache("'Aa'", null), strategy.getScriptClassFromCache("'BB'", null));
+        assertEquals("Aa", strategy.evaluate(script("'Aa'"), new HashMap<String, Object>(), Collections.<Integer, Object> emptyMap()));
+        assertEquals("BB", strategy.evaluate(script("'BB'"), new HashMap<String, Object>(), Collections.<Integer, Object> emptyMap()));
+    }
+
+    @Test
+    public void compiledScriptIsEvaluatedWithClosures() throws Exception {
+        final SExpression expression = script("[1, 2, 3].collect { it * factor }");
+        strategy.compile(expression, null, null);
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put("factor", 2);
+
+        assertEquals(Arrays.asList(2, 4, 6), strategy.evaluate(expression, dependencyValues, Collections.<Integer, Object> emptyMap()));
+    }
+
+    @Test(expected = SExpressionEvaluationException.class)
+    public void compileInvalidScript() throws Exception {
+        strategy.compile(script("1 +"), null, null);
+    }
+
+    @Test
+    public void compiledScriptsAreReloadedFromTheClassesFolder() throws Exception {
+        final SExpression expression = script("[1, 2, 3].collect { it * factor }");
+        final GroovyScriptExpressionExecutorCacheStrategy persistingStrategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(),
+                mock(ClassLoaderService.class), true);
+        persistingStrategy.compile(expression, null, temporaryFolder.getRoot());
+        final File[] scriptFolders = temporaryFolder.getRoot().listFiles();
+        assertEquals(1, scriptFolders.length);
+        // the script class and its closure
+        assertEquals(2, scriptFolders[0].listFiles().length);
+
+        // e.g. after a restart: nothing in the cache
+        final GroovyScriptExpressionExecutorCacheStrategy restartedStrategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(),
+                mock(ClassLoaderService.class), true);
+        restartedStrategy.compile(expression, null, temporaryFolder.getRoot());
+        assertEquals(1, temporaryFolder.getRoot().listFiles().length);
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put("factor", 3);
+        assertEquals(Arrays.asList(3, 6, 9), restartedStrategy.evaluate(expression, dependencyValues, Collections.<Integer, Object> emptyMap()));
+    }
+
+    @Test
+    public void scriptIsCompiledAgainWhenItsClassesAreMissing() throws Exception {
+        final SExpression expression = script("[1, 2, 3].collect { it * factor }");
+        final GroovyScriptExpressionExecutorCacheStrategy persistingStrategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(),
+                mock(ClassLoaderService.class), true);
+        persistingStrategy.compile(expression, null, temporaryFolder.getRoot());
+        final File scriptFolder = temporaryFolder.getRoot().listFiles()[0];
+        for (final File classFile : scriptFolder.listFiles()) {
+            assertTrue(classFile.delete());
+        }
+
+        final GroovyScriptExpressionExecutorCacheStrategy restartedStrategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(),
+                mock(ClassLoaderService.class), true);
+        restartedStrategy.compile(expression, null, temporaryFolder.getRoot());
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put("factor", 2);
+        assertEquals(Arrays.asList(2, 4, 6), restartedStrategy.evaluate(expression, dependencyValues, Collections.<Integer, Object> emptyMap()));
+    }
+
+    @Test
+    public void classesFolderOfTheDefinitionIsUsedOnEvaluation() throws Exception {
+        final ClassLoaderService classLoaderService = mock(ClassLoaderService.class);
+        when(classLoaderService.getLocalClassLoader(anyString(), anyLong())).thenReturn(GroovyScriptExpressionExecutorCacheStrategyTest.class.getClassLoader());
+        final GroovyScriptExpressionExecutorCacheStrategy persistingStrategy = new GroovyScriptExpressionExecutorCacheStrategy(new MapCacheService(),
+                classLoaderService, true);
+        persistingStrategy.setClassesFolder(12L, temporaryFolder.getRoot());
+        final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+        dependencyValues.put(GroovyScriptExpressionExecutorCacheStrategy.DEFINITION_ID, 12L);
+
+        assertEquals(2, persistingStrategy.evaluate(script("1 + 1"), dependencyValues, Collections.<Integer, Object> emptyMap()));
+        assertEquals(1, temporaryFolder.getRoot().listFiles().length);
+
+        persistingStrategy.setClassesFolder(12L, null);
+        assertEquals(3, persistingStrategy.evaluate(script("1 + 2"), dependencyValues, Collections.<Integer, Object> emptyMap()));
+        assertEquals(1, temporaryFolder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void classesFolderIsIgnoredWhenScriptsAreNotPersisted() throws Exception {
+        strategy.compile(script("1 + 1"), null, temporaryFolder.getRoot());
+
+        assertEquals(0, temporaryFolder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void concurrentEvaluationsHaveTheirOwnBinding() throws Exception {
+        final SExpression expression = script("Thread.yield(); value * 2");
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 200; i++) {
+            final int value = i;
+            results.add(executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    final Map<String, Object> dependencyValues = new HashMap<String, Object>();
+                    dependencyValues.put("value", value);
+                    return strategy.evaluate(expression, dependencyValues, Collections.<Integer, Object> emptyMap());
+                }
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i * 2, results.get(i).get());
+        }
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bonitasoft.engine.cache.CacheService;
+
+/**
+ * In memory {@link CacheService} for tests
+ */
+public class MapCacheService implements CacheService {
+
+    private final Map<String, Map<Object, Object>> caches = new ConcurrentHashMap<String, Map<Object, Object>>();
+
+    private synchronized Map<Object, Object> getCache(final String cacheName) {
+        Map<Object, Object> cache = caches.get(cacheName);
+        if (cache == null) {
+            cache = new ConcurrentHashMap<Object, Object>();
+            caches.put(cacheName, cache);
+        }
+        return cache;
+    }
+
+    @Override
+    public void store(final String cacheName, final Serializable key, final Object value) {
+        getCache(cacheName).put(key, value);
+    }
+
+    @Override
+    public boolean remove(final String cacheName, final Object key) {
+        return getCache(cacheName).remove(key) != null;
+    }
+
+    @Override
+    public Object get(final String cacheName, final Object key) {
+        return getCache(cacheName).get(key);
+    }
+
+    @Override
+    public List<?> getKeys(final String cacheName) {
+        return new ArrayList<Object>(getCache(cacheName).keySet());
+    }
+
+    @Override
+    public boolean clear(final String cacheName) {
+        getCache(cacheName).clear();
+        return true;
+    }
+
+    @Override
+    public void clearAll() {
+        caches.clear();
+    }
+
+    @Override
+    public int getCacheSize(final String cacheName) {
+        return getCache(cacheName).size();
+    }
+
+    @Override
+    public List<String> getCachesNames() {
+        return new ArrayList<String>(caches.keySet());
+    }
+
+}
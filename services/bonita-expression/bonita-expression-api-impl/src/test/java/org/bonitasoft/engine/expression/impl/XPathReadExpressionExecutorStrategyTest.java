@@ -105,6 +105,16 @@ public class XPathReadExpressionExecutorStrategyTest {
         assertEquals("XML Developer's Guide", obj);
     }
 
+    @Test
+    public void evaluateXpathReturnsNodeNotSharedWithNextEvaluations() throws SExpressionException {
+        assertEquals("XML Developer's Guide", evaluate(XML_CONTENT_BOOKS, String.class, "//book[@id='bk101']/title"));
+        final Node node = evaluate(XML_CONTENT_BOOKS, Node.class, "//book[@id='bk101']/title");
+        node.setTextContent("modified");
+
+        assertEquals("XML Developer's Guide", evaluate(XML_CONTENT_BOOKS, String.class, "//book[@id='bk101']/title"));
+        assertEquals("XML Developer's Guide", evaluate(XML_CONTENT_BOOKS, Node.class, "//book[@id='bk101']/title").getTextContent());
+    }
+
     @Test(expected = SExpressionEvaluationException.class)
     public void evaluateXpathInvalidReturnType() throws SExpressionException {
         final SExpressionImpl dep = new SExpressionImpl(null, XML_CONTENT_AUTHOR, SExpressionType.TYPE_CONSTANT.name(), String.class.getName(), null, null);
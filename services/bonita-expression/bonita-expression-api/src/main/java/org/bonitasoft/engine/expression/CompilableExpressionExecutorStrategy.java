@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression;
+
+import java.io.File;
+
+import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
+import org.bonitasoft.engine.expression.model.SExpression;
+
+/**
+ * An {@link ExpressionExecutorStrategy} for expressions that are compiled before being evaluated, e.g. scripts.
+ * Compiling them ahead of time, when the definition is deployed, avoids paying the compilation on their first evaluation.
+ */
+public interface CompilableExpressionExecutorStrategy extends ExpressionExecutorStrategy {
+
+    /**
+     * Compile the expression against the classloader of the definition and keep the result for the next evaluations
+     *
+     * @param expression
+     *            the expression to compile
+     * @param definitionId
+     *            the identifier of the definition the expression belongs to
+     * @param classesFolder
+     *            folder where the compiled classes are stored so that they are reloaded instead of compiled again, e.g. after a restart. May be null
+     * @throws SExpressionEvaluationException
+     *             if the expression can't be compiled
+     * @since 6.1
+     */
+    void compile(SExpression expression, Long definitionId, File classesFolder) throws SExpressionEvaluationException;
+
+    /**
+     * Set the folder where the compiled classes of the expressions of a definition are stored, so that they are read from it the first time they are
+     * evaluated instead of being compiled again, e.g. after a restart
+     *
+     * @param definitionId
+     *            the identifier of the definition
+     * @param classesFolder
+     *            folder where the compiled classes of the definition are stored, null to forget it, e.g. when the definition is deleted
+     * @since 6.1
+     */
+    void setClassesFolder(long definitionId, File classesFolder);
+
+}
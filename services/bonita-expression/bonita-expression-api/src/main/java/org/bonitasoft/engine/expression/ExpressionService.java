@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.expression;
 
+import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -93,4 +95,32 @@ public interface ExpressionService {
      *            the {@link ExpressionKind}
      */
     boolean mustPutEvaluatedExpressionInContext(ExpressionKind expressionKind);
+
+    /**
+     * Compile, in parallel, the given expressions that are handled by a {@link CompilableExpressionExecutorStrategy}. Other expressions are ignored.
+     * 
+     * @param expressions
+     *            the expressions of the definition, their dependencies are compiled too
+     * @param definitionId
+     *            the identifier of the definition the expressions belong to
+     * @param classesFolder
+     *            folder where the compiled classes are stored and reloaded from, may be null
+     * @throws SExpressionEvaluationException
+     *             if an expression can't be compiled
+     * @since 6.1
+     */
+    void compile(Collection<SExpression> expressions, long definitionId, File classesFolder) throws SExpressionEvaluationException;
+
+    /**
+     * Set, for all the {@link CompilableExpressionExecutorStrategy}, the folder where the compiled classes of the expressions of a definition are stored.
+     * Classes are read from it lazily, when the expressions are first evaluated.
+     * 
+     * @param definitionId
+     *            the identifier of the definition
+     * @param classesFolder
+     *            folder where the compiled classes of the definition are stored, null to forget it, e.g. when the definition is deleted
+     * @since 6.1
+     */
+    void setClassesFolder(long definitionId, File classesFolder);
+
 }
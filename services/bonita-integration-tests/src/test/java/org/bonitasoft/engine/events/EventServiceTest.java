@@ -8,13 +8,20 @@ import static org.junit.Assert.fail;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.bonitasoft.engine.ServicesBuilder;
+import org.bonitasoft.engine.events.impl.EventServiceImpl;
 import org.bonitasoft.engine.events.model.FireEventException;
 import org.bonitasoft.engine.events.model.HandlerRegistrationException;
 import org.bonitasoft.engine.events.model.HandlerUnregistrationException;
+import org.bonitasoft.engine.events.model.SAsynchronousHandler;
 import org.bonitasoft.engine.events.model.SEvent;
 import org.bonitasoft.engine.events.model.SHandler;
+import org.bonitasoft.engine.events.model.builders.SEventBuilders;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.transaction.TransactionService;
 import org.junit.Test;
 
 /**
@@ -134,4 +141,64 @@ public class EventServiceTest {
         eventSvc.removeHandler(EVT_INTERESTING, h2);
     }
 
+    @Test
+    public void asynchronousHandlerOfATenantEventServiceIsExecutedAfterTheCommit() throws Exception {
+        final TransactionService transactionService = serviceBuilder.buildTransactionService();
+        final EventServiceImpl tenantEventService = buildTenantEventService(transactionService);
+        final CountingAsynchronousHandler handler = new CountingAsynchronousHandler();
+        tenantEventService.addHandler(EVT_INTERESTING, handler);
+        try {
+            transactionService.begin();
+            try {
+                tenantEventService.fireEvent(tenantEventService.getEventBuilder().createNewInstance(EVT_INTERESTING).done());
+                assertFalse(handler.executed.await(200, TimeUnit.MILLISECONDS));
+            } finally {
+                transactionService.complete();
+            }
+
+            assertTrue(handler.executed.await(5, TimeUnit.SECONDS));
+        } finally {
+            tenantEventService.stop();
+        }
+    }
+
+    @Test
+    public void asynchronousHandlerOfATenantEventServiceIgnoresTheEventsOfARolledBackTransaction() throws Exception {
+        final TransactionService transactionService = serviceBuilder.buildTransactionService();
+        final EventServiceImpl tenantEventService = buildTenantEventService(transactionService);
+        final CountingAsynchronousHandler handler = new CountingAsynchronousHandler();
+        tenantEventService.addHandler(EVT_INTERESTING, handler);
+        try {
+            transactionService.begin();
+            try {
+                tenantEventService.fireEvent(tenantEventService.getEventBuilder().createNewInstance(EVT_INTERESTING).done());
+                transactionService.setRollbackOnly();
+            } finally {
+                transactionService.complete();
+            }
+
+            assertFalse(handler.executed.await(500, TimeUnit.MILLISECONDS));
+        } finally {
+            tenantEventService.stop();
+        }
+    }
+
+    private EventServiceImpl buildTenantEventService(final TransactionService transactionService) throws HandlerRegistrationException {
+        // the transaction service fires its own events on the platform event service, as for the tenants
+        return new EventServiceImpl(serviceBuilder.getInstanceOf(SEventBuilders.class), serviceBuilder.buildTechnicalLoggerService(), 1,
+                transactionService);
+    }
+
+    private static class CountingAsynchronousHandler extends TestHandler implements SAsynchronousHandler<SEvent> {
+
+        final CountDownLatch executed = new CountDownLatch(1);
+
+        @Override
+        public void execute(final SEvent event) {
+            super.execute(event);
+            executed.countDown();
+        }
+
+    }
+
 }
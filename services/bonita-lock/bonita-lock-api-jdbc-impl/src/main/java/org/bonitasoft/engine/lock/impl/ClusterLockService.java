@@ -0,0 +1,555 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.ReadSessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
+
+/**
+ * {@link LockService} shared by all the engine nodes using the same database.
+ * A node owns an object when it has a row in the table cluster_lock for it. While it owns it, its threads synchronize on a local
+ * {@link ReentrantReadWriteLock} without accessing the database: the row is inserted by the first local thread asking for the object and deleted when the
+ * last local thread released it. Other nodes poll until the row is deleted.
+ * Rows are leases: they are renewed in background while the node is alive and can be taken over by another node once expired, so the locks of a crashed
+ * node are released after leaseDurationMillis. The clocks of the nodes must be synchronized.
+ * A node only trusts its row until the end of the last lease it confirmed: after that, local threads asking for the object take the row again, and the
+ * threads that held the lock while its lease lapsed get an {@link SLockException} when releasing it since another node may have owned the object meanwhile.
+ * Each time a node takes a row, it writes a new token in it: a thread deleting the row of a lock it released only deletes it if it still holds its token, so
+ * that it does not delete the row taken again meanwhile by another local thread.
+ * Objects are identified by their tenant, type and id.
+ * Shared locks taken on different nodes exclude each other: only one node at a time owns an object.
+ * The datasource must not be managed by the transaction manager (e.g. the one of the sequence manager) so that the rows are visible to the other nodes
+ * as soon as the lock is taken.
+ * This service must be configured as a singleton.
+ */
+public class ClusterLockService implements LockService {
+
+    /**
+     * Tenant of the locks taken outside of a tenant session
+     */
+    private static final long NO_TENANT = -1;
+
+    private static final String INSERT = "INSERT INTO cluster_lock (tenantid, objecttype, objectid, lockowner, expiration, locktoken) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // our own row is taken again when this node let its lease lapse
+    private static final String TAKE_OVER = "UPDATE cluster_lock SET lockowner = ?, expiration = ?, locktoken = ? WHERE tenantid = ? AND objecttype = ? AND objectid = ? AND (expiration < ? OR lockowner = ?)";
+
+    private static final String DELETE = "DELETE FROM cluster_lock WHERE tenantid = ? AND objecttype = ? AND objectid = ? AND lockowner = ? AND locktoken = ?";
+
+    private static final String RENEW = "UPDATE cluster_lock SET expiration = ? WHERE lockowner = ?";
+
+    private static final String SELECT_OWNED = "SELECT tenantid, objecttype, objectid FROM cluster_lock WHERE lockowner = ?";
+
+    private final ConcurrentMap<LockKey, NodeLock> locks = new ConcurrentHashMap<LockKey, NodeLock>();
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    private final DataSource datasource;
+
+    private final TechnicalLoggerService logger;
+
+    private final ReadSessionAccessor sessionAccessor;
+
+    private final boolean debugEnabled;
+
+    private final String owner;
+
+    private final long leaseDurationMillis;
+
+    private final long pollIntervalMillis;
+
+    private final ScheduledExecutorService renewer;
+
+    /**
+     * @param nodeName
+     *            name of the node, used to identify the owner of the locks in the table
+     * @param leaseDurationMillis
+     *            time after which the locks of a node that stopped renewing them can be taken by another node
+     * @param pollIntervalMillis
+     *            time to wait before retrying to take a lock owned by another node
+     */
+    public ClusterLockService(final TechnicalLoggerService logger, final ReadSessionAccessor sessionAccessor, final DataSource datasource,
+            final String nodeName, final long leaseDurationMillis, final long pollIntervalMillis) {
+        this.logger = logger;
+        this.sessionAccessor = sessionAccessor;
+        this.datasource = datasource;
+        this.leaseDurationMillis = leaseDurationMillis;
+        this.pollIntervalMillis = pollIntervalMillis;
+        debugEnabled = logger.isLoggable(ClusterLockService.class, TechnicalLogSeverity.DEBUG);
+        owner = nodeName + "-" + UUID.randomUUID().toString();
+        renewer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "Bonita-ClusterLock-Renewer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long renewPeriod = Math.max(1, leaseDurationMillis / 3);
+        renewer.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                renewLeases();
+            }
+        }, renewPeriod, renewPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop renewing the leases of this node. Locks still owned will be released by their expiration.
+     */
+    public void stop() {
+        renewer.shutdownNow();
+    }
+
+    @Override
+    public void createExclusiveLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]request X id=" + objectToLockId + ", type=" + objectType);
+        }
+        lock(newKey(objectType, objectToLockId), true, Long.MAX_VALUE);
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]acquired X id=" + objectToLockId + ", type=" + objectType);
+        }
+    }
+
+    @Override
+    public void releaseExclusiveLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]release X id=" + objectToLockId + ", type=" + objectType);
+        }
+        final LockKey key = newKey(objectType, objectToLockId);
+        final NodeLock lock = getHeldLock(key);
+        lock.writeLock().unlock();
+        final boolean lapsed = lock.released();
+        release(key, lock);
+        checkNotLapsed(key, lapsed);
+    }
+
+    @Override
+    public void createSharedLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]request S id=" + objectToLockId + ", type=" + objectType);
+        }
+        lock(newKey(objectType, objectToLockId), false, Long.MAX_VALUE);
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]acquired S id=" + objectToLockId + ", type=" + objectType);
+        }
+    }
+
+    @Override
+    public void releaseSharedLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]release S id=" + objectToLockId + ", type=" + objectType);
+        }
+        final LockKey key = newKey(objectType, objectToLockId);
+        final NodeLock lock = getHeldLock(key);
+        lock.readLock().unlock();
+        final boolean lapsed = lock.released();
+        release(key, lock);
+        checkNotLapsed(key, lapsed);
+    }
+
+    @Override
+    public boolean tryExclusiveLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        return lock(newKey(objectType, objectToLockId), true, System.nanoTime() + timeUnit.toNanos(timeout));
+    }
+
+    @Override
+    public boolean trySharedLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        return lock(newKey(objectType, objectToLockId), false, System.nanoTime() + timeUnit.toNanos(timeout));
+    }
+
+    private LockKey newKey(final String objectType, final long objectToLockId) {
+        long tenantId;
+        try {
+            tenantId = sessionAccessor.getTenantId();
+        } catch (final TenantIdNotSetException e) {
+            tenantId = NO_TENANT;
+        }
+        return new LockKey(tenantId, objectType, objectToLockId);
+    }
+
+    private static void checkNotLapsed(final LockKey key, final boolean lapsed) throws SLockException {
+        if (lapsed) {
+            throw new SLockException("The lease of the lock on id=" + key.id + ", type=" + key.type
+                    + " lapsed while it was held: another node may have owned the object meanwhile");
+        }
+    }
+
+    /**
+     * @param deadline
+     *            value of {@link System#nanoTime()} after which we give up, Long.MAX_VALUE to wait forever
+     */
+    private boolean lock(final LockKey key, final boolean exclusive, final long deadline) throws SLockException {
+        final NodeLock lock = retain(key);
+        boolean acquired = false;
+        try {
+            if (ensureOwnedByThisNode(key, lock, deadline)) {
+                final Lock localLock = exclusive ? lock.writeLock() : lock.readLock();
+                if (deadline == Long.MAX_VALUE) {
+                    localLock.lock();
+                    acquired = true;
+                } else {
+                    acquired = localLock.tryLock(remaining(deadline), TimeUnit.NANOSECONDS);
+                }
+                if (acquired) {
+                    lock.acquired();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SLockException("Interrupted while waiting for the lock on id=" + key.id + ", type=" + key.type, e);
+        } finally {
+            if (!acquired) {
+                release(key, lock);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Only one local thread at a time talks to the database for a given object, the others wait for it on the guard.
+     */
+    private boolean ensureOwnedByThisNode(final LockKey key, final NodeLock lock, final long deadline) throws SLockException, InterruptedException {
+        if (lock.isLeased()) {
+            return true;
+        }
+        if (deadline == Long.MAX_VALUE) {
+            lock.guard.lockInterruptibly();
+        } else if (!lock.guard.tryLock(remaining(deadline), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        try {
+            while (!lock.isLeased()) {
+                if (lock.owned) {
+                    logger.log(ClusterLockService.class, TechnicalLogSeverity.WARNING, "The lease of the lock on id=" + key.id + ", type=" + key.type
+                            + " lapsed, taking it again");
+                    lock.owned = false;
+                }
+                final long leaseEnd = System.currentTimeMillis() + leaseDurationMillis;
+                final long token = tokens.incrementAndGet();
+                if (insertOrTakeOver(key, leaseEnd, token)) {
+                    lock.token = token;
+                    lock.leaseEnd = leaseEnd;
+                    lock.generation++;
+                    lock.owned = true;
+                } else {
+                    final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(remaining(deadline));
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    Thread.sleep(Math.min(pollIntervalMillis, remainingMillis));
+                }
+            }
+            return true;
+        } finally {
+            lock.guard.unlock();
+        }
+    }
+
+    private static long remaining(final long deadline) {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    private NodeLock retain(final LockKey key) {
+        while (true) {
+            NodeLock lock = locks.get(key);
+            if (lock == null) {
+                final NodeLock newLock = new NodeLock();
+                lock = locks.putIfAbsent(key, newLock);
+                if (lock == null) {
+                    return newLock;
+                }
+            }
+            if (lock.retain()) {
+                return lock;
+            }
+            // released by its last user, its row may still be in the table: it will be replaced by a new one
+            locks.remove(key, lock);
+        }
+    }
+
+    private NodeLock getHeldLock(final LockKey key) throws SLockException {
+        final NodeLock lock = locks.get(key);
+        if (lock == null) {
+            throw new SLockException("No lock is held on id=" + key.id + ", type=" + key.type);
+        }
+        return lock;
+    }
+
+    private void release(final LockKey key, final NodeLock lock) throws SLockException {
+        if (lock.count.decrementAndGet() == 0) {
+            locks.remove(key, lock);
+            if (lock.owned) {
+                deleteRow(key, lock.token);
+            }
+        }
+    }
+
+    private boolean insertOrTakeOver(final LockKey key, final long leaseEnd, final long token) throws SLockException {
+        final long now = System.currentTimeMillis();
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                execute(connection, INSERT, key.tenantId, key.type, key.id, owner, leaseEnd, token);
+                connection.commit();
+                return true;
+            } catch (final SQLException e) {
+                // most probably a duplicate key: some node owns the object
+                connection.rollback();
+            }
+            final boolean takenOver = execute(connection, TAKE_OVER, owner, leaseEnd, token, key.tenantId, key.type, key.id, now, owner) == 1;
+            connection.commit();
+            if (takenOver) {
+                logger.log(ClusterLockService.class, TechnicalLogSeverity.WARNING, "Took over the expired lock on id=" + key.id + ", type=" + key.type);
+            }
+            return takenOver;
+        } catch (final SQLException e) {
+            rollback(connection);
+            throw new SLockException("Unable to take the lock on id=" + key.id + ", type=" + key.type, e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * @param token
+     *            token written when the row was taken: the row is not deleted if it was taken again since
+     */
+    private void deleteRow(final LockKey key, final long token) throws SLockException {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            connection.setAutoCommit(false);
+            execute(connection, DELETE, key.tenantId, key.type, key.id, owner, token);
+            connection.commit();
+        } catch (final SQLException e) {
+            rollback(connection);
+            throw new SLockException("Unable to release the lock on id=" + key.id + ", type=" + key.type + ", it will expire after "
+                    + leaseDurationMillis + " ms", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * Extend the lease of the rows still owned by this node. The locks whose row was taken over are not extended and lapse.
+     */
+    void renewLeases() {
+        final long leaseEnd = System.currentTimeMillis() + leaseDurationMillis;
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            connection.setAutoCommit(false);
+            execute(connection, RENEW, leaseEnd, owner);
+            final Set<LockKey> renewed = new HashSet<LockKey>();
+            final PreparedStatement statement = connection.prepareStatement(SELECT_OWNED);
+            try {
+                statement.setString(1, owner);
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    renewed.add(new LockKey(resultSet.getLong(1), resultSet.getString(2), resultSet.getLong(3)));
+                }
+            } finally {
+                statement.close();
+            }
+            connection.commit();
+            for (final Entry<LockKey, NodeLock> entry : locks.entrySet()) {
+                final NodeLock lock = entry.getValue();
+                if (renewed.contains(entry.getKey())) {
+                    lock.leaseEnd = Math.max(lock.leaseEnd, leaseEnd);
+                } else if (lock.owned && !lock.isLeased()) {
+                    logger.log(ClusterLockService.class, TechnicalLogSeverity.WARNING, "Lost the lock on id=" + entry.getKey().id + ", type="
+                            + entry.getKey().type + ", its lease lapsed");
+                }
+            }
+        } catch (final SQLException e) {
+            rollback(connection);
+            logger.log(ClusterLockService.class, TechnicalLogSeverity.WARNING, "Unable to renew the locks of " + owner
+                    + ", other nodes may take them once expired", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    private static int execute(final Connection connection, final String sql, final Object... parameters) throws SQLException {
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                final Object parameter = parameters[i];
+                if (parameter instanceof Long) {
+                    statement.setLong(i + 1, (Long) parameter);
+                } else {
+                    statement.setString(i + 1, (String) parameter);
+                }
+            }
+            return statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void rollback(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (final SQLException e) {
+                // Can't do anything...
+            }
+        }
+    }
+
+    private static void close(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                // Can't do anything...
+            }
+        }
+    }
+
+    private static final class LockKey {
+
+        private final long tenantId;
+
+        private final String type;
+
+        private final long id;
+
+        private final int hash;
+
+        LockKey(final long tenantId, final String type, final long id) {
+            this.tenantId = tenantId;
+            this.type = type;
+            this.id = id;
+            hash = 31 * (31 * (int) (tenantId ^ tenantId >>> 32) + type.hashCode()) + (int) (id ^ id >>> 32);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LockKey)) {
+                return false;
+            }
+            final LockKey other = (LockKey) obj;
+            return id == other.id && tenantId == other.tenantId && type.equals(other.type);
+        }
+
+    }
+
+    /**
+     * Local lock of an object, with the count of the local threads holding or waiting for it. Starts at 1 for the thread that created it.
+     * The generation changes each time the row is taken: a thread that acquired the lock under a previous generation held it while its lease lapsed.
+     */
+    private static final class NodeLock extends ReentrantReadWriteLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        private final ReentrantLock guard = new ReentrantLock();
+
+        private volatile boolean owned;
+
+        /**
+         * Value of {@link System#currentTimeMillis()} until which the row is known to be owned by this node
+         */
+        private volatile long leaseEnd;
+
+        private volatile int generation;
+
+        /**
+         * Token written in the row when it was taken
+         */
+        private volatile long token;
+
+        private final ConcurrentMap<Thread, Integer> holderGenerations = new ConcurrentHashMap<Thread, Integer>();
+
+        boolean isLeased() {
+            return owned && leaseEnd > System.currentTimeMillis();
+        }
+
+        void acquired() {
+            // reentrant acquisitions keep the generation of the first one
+            holderGenerations.putIfAbsent(Thread.currentThread(), generation);
+        }
+
+        /**
+         * @return true if the lease lapsed while the current thread held the lock
+         */
+        boolean released() {
+            final Thread thread = Thread.currentThread();
+            final Integer acquiredGeneration = holderGenerations.get(thread);
+            final boolean lapsed = acquiredGeneration != null && (acquiredGeneration.intValue() != generation || !isLeased());
+            if (getReadHoldCount() == 0 && !isWriteLockedByCurrentThread()) {
+                holderGenerations.remove(thread);
+            }
+            return lapsed;
+        }
+
+        boolean retain() {
+            while (true) {
+                final int current = count.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,10 @@
+CREATE TABLE cluster_lock (
+  tenantid BIGINT NOT NULL,
+  objecttype VARCHAR(50) NOT NULL,
+  objectid BIGINT NOT NULL,
+  lockowner VARCHAR(100) NOT NULL,
+  expiration BIGINT NOT NULL,
+  locktoken BIGINT NOT NULL,
+  PRIMARY KEY (tenantid, objecttype, objectid)
+) ENGINE = INNODB;
+CREATE INDEX idx_cluster_lock_owner ON cluster_lock (lockowner);
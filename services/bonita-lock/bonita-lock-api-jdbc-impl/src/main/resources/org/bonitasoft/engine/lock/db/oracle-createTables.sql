@@ -0,0 +1,10 @@
+CREATE TABLE cluster_lock (
+  tenantid NUMBER(19, 0) NOT NULL,
+  objecttype VARCHAR2(50) NOT NULL,
+  objectid NUMBER(19, 0) NOT NULL,
+  lockowner VARCHAR2(100) NOT NULL,
+  expiration NUMBER(19, 0) NOT NULL,
+  locktoken NUMBER(19, 0) NOT NULL,
+  PRIMARY KEY (tenantid, objecttype, objectid)
+);
+CREATE INDEX idx_cluster_lock_owner ON cluster_lock (lockowner);
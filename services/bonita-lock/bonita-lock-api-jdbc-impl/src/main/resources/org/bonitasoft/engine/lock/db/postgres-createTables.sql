@@ -0,0 +1,10 @@
+CREATE TABLE cluster_lock (
+  tenantid INT8 NOT NULL,
+  objecttype VARCHAR(50) NOT NULL,
+  objectid INT8 NOT NULL,
+  lockowner VARCHAR(100) NOT NULL,
+  expiration INT8 NOT NULL,
+  locktoken INT8 NOT NULL,
+  PRIMARY KEY (tenantid, objecttype, objectid)
+);
+CREATE INDEX idx_cluster_lock_owner ON cluster_lock (lockowner);
@@ -0,0 +1,12 @@
+CREATE TABLE cluster_lock (
+  tenantid NUMERIC(19, 0) NOT NULL,
+  objecttype NVARCHAR(50) NOT NULL,
+  objectid NUMERIC(19, 0) NOT NULL,
+  lockowner NVARCHAR(100) NOT NULL,
+  expiration NUMERIC(19, 0) NOT NULL,
+  locktoken NUMERIC(19, 0) NOT NULL,
+  PRIMARY KEY (tenantid, objecttype, objectid)
+)
+GO
+CREATE INDEX idx_cluster_lock_owner ON cluster_lock (lockowner)
+GO
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.ReadSessionAccessor;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ClusterLockServiceTest {
+
+    private static final String TYPE = "GATEWAY";
+
+    private JdbcDataSource datasource;
+
+    private ClusterLockService node1;
+
+    private ClusterLockService node2;
+
+    @Before
+    public void setUp() throws Exception {
+        datasource = new JdbcDataSource();
+        datasource.setURL("jdbc:h2:mem:cluster_lock;DB_CLOSE_DELAY=-1");
+        final InputStream script = ClusterLockServiceTest.class.getResourceAsStream("/org/bonitasoft/engine/lock/db/h2-createTables.sql");
+        final String sql = new Scanner(script, "UTF-8").useDelimiter("\\A").next();
+        script.close();
+        for (final String statement : sql.split(";")) {
+            if (statement.trim().length() > 0) {
+                execute(statement);
+            }
+        }
+        node1 = newNode("node1", 1, 60000);
+        node2 = newNode("node2", 1, 60000);
+    }
+
+    private ClusterLockService newNode(final String name, final long tenantId, final long leaseDurationMillis) throws Exception {
+        final ReadSessionAccessor sessionAccessor = mock(ReadSessionAccessor.class);
+        when(sessionAccessor.getTenantId()).thenReturn(tenantId);
+        return new ClusterLockService(mock(TechnicalLoggerService.class), sessionAccessor, datasource, name, leaseDurationMillis, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        node1.stop();
+        node2.stop();
+        execute("DROP TABLE cluster_lock");
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private long getExpiration() throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            final ResultSet resultSet = statement.executeQuery("SELECT expiration FROM cluster_lock");
+            resultSet.next();
+            final long expiration = resultSet.getLong(1);
+            statement.close();
+            return expiration;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int countRows() throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            final ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM cluster_lock");
+            resultSet.next();
+            final int count = resultSet.getInt(1);
+            statement.close();
+            return count;
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void lockOfANodeBlocksTheOtherNodes() throws Exception {
+        node1.createExclusiveLockAccess(1, TYPE);
+
+        assertFalse(node2.tryExclusiveLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS));
+        assertFalse(node2.trySharedLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS));
+        assertTrue(node2.tryExclusiveLockAccess(2, TYPE, 50, TimeUnit.MILLISECONDS));
+        node2.releaseExclusiveLockAccess(2, TYPE);
+
+        node1.releaseExclusiveLockAccess(1, TYPE);
+        assertTrue(node2.tryExclusiveLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS));
+        node2.releaseExclusiveLockAccess(1, TYPE);
+    }
+
+    @Test
+    public void localLocksShareTheRowOfTheNode() throws Exception {
+        node1.createSharedLockAccess(1, TYPE);
+        node1.createSharedLockAccess(1, TYPE);
+        assertEquals(1, countRows());
+
+        node1.releaseSharedLockAccess(1, TYPE);
+        assertEquals(1, countRows());
+        node1.releaseSharedLockAccess(1, TYPE);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void expiredLockIsTakenOver() throws Exception {
+        final ClusterLockService crashingNode = newNode("crashing", 1, 100);
+        crashingNode.stop();
+        crashingNode.createExclusiveLockAccess(1, TYPE);
+
+        assertTrue(node2.tryExclusiveLockAccess(1, TYPE, 5, TimeUnit.SECONDS));
+        node2.releaseExclusiveLockAccess(1, TYPE);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void sameObjectOfDifferentTenantsIsLockedIndependently() throws Exception {
+        final ClusterLockService otherTenant = newNode("node2", 2, 60000);
+        try {
+            node1.createExclusiveLockAccess(1, TYPE);
+            assertTrue(otherTenant.tryExclusiveLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS));
+            assertEquals(2, countRows());
+
+            otherTenant.releaseExclusiveLockAccess(1, TYPE);
+            node1.releaseExclusiveLockAccess(1, TYPE);
+            assertEquals(0, countRows());
+        } finally {
+            otherTenant.stop();
+        }
+    }
+
+    @Test
+    public void releasingALockTakenOverByAnotherNodeFails() throws Exception {
+        final ClusterLockService slowNode = newNode("slow", 1, 100);
+        slowNode.stop();
+        slowNode.createExclusiveLockAccess(1, TYPE);
+        assertTrue(node2.tryExclusiveLockAccess(1, TYPE, 5, TimeUnit.SECONDS));
+
+        try {
+            slowNode.releaseExclusiveLockAccess(1, TYPE);
+            fail("the lease of the lock lapsed while it was held");
+        } catch (final SLockException e) {
+            // ok
+        }
+        // the row of the new owner is kept
+        assertEquals(1, countRows());
+        node2.releaseExclusiveLockAccess(1, TYPE);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void lapsedLeaseIsTakenAgainBeforeLocking() throws Exception {
+        final ClusterLockService slowNode = newNode("slow", 1, 100);
+        slowNode.stop();
+        slowNode.createSharedLockAccess(1, TYPE);
+        Thread.sleep(150);
+        final long now = System.currentTimeMillis();
+
+        slowNode.createSharedLockAccess(1, TYPE);
+        assertTrue(getExpiration() > now);
+        // this thread held the lock since before the lapse
+        for (int i = 0; i < 2; i++) {
+            try {
+                slowNode.releaseSharedLockAccess(1, TYPE);
+                fail("the lease of the lock lapsed while it was held");
+            } catch (final SLockException e) {
+                // ok
+            }
+        }
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void releaseDoesNotDeleteTheRowTakenAgainByAnotherLocalThread() throws Exception {
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final CountDownLatch releasing = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        final AtomicBoolean interleave = new AtomicBoolean();
+        final DataSource interleavingDatasource = mock(DataSource.class);
+        final ReadSessionAccessor sessionAccessor = mock(ReadSessionAccessor.class);
+        when(sessionAccessor.getTenantId()).thenReturn(1L);
+        final ClusterLockService node = new ClusterLockService(mock(TechnicalLoggerService.class), sessionAccessor, interleavingDatasource, "node", 60000,
+                10);
+        final Thread otherThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    node.createExclusiveLockAccess(1, TYPE);
+                    acquired.countDown();
+                    releasing.await();
+                    node.releaseExclusiveLockAccess(1, TYPE);
+                } catch (final Exception e) {
+                    failure.set(e);
+                    acquired.countDown();
+                }
+            }
+        });
+        when(interleavingDatasource.getConnection()).thenAnswer(new Answer<Connection>() {
+
+            @Override
+            public Connection answer(final InvocationOnMock invocation) throws Throwable {
+                if (interleave.compareAndSet(true, false)) {
+                    // the lock is released locally but its row is not deleted yet: another thread takes it again
+                    otherThread.start();
+                    acquired.await();
+                }
+                return datasource.getConnection();
+            }
+        });
+        try {
+            node.createExclusiveLockAccess(1, TYPE);
+            interleave.set(true);
+            node.releaseExclusiveLockAccess(1, TYPE);
+
+            assertNull(failure.get());
+            assertEquals(1, countRows());
+            assertFalse(node2.tryExclusiveLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS));
+            releasing.countDown();
+            otherThread.join(5000);
+            assertNull(failure.get());
+            assertEquals(0, countRows());
+        } finally {
+            releasing.countDown();
+            node.stop();
+        }
+    }
+
+    @Test
+    public void renewedLeaseIsStillHeld() throws Exception {
+        final ClusterLockService slowNode = newNode("slow", 1, 200);
+        slowNode.stop();
+        slowNode.createExclusiveLockAccess(1, TYPE);
+        Thread.sleep(100);
+        slowNode.renewLeases();
+        Thread.sleep(150);
+
+        assertFalse(node2.tryExclusiveLockAccess(1, TYPE, 10, TimeUnit.MILLISECONDS));
+        slowNode.releaseExclusiveLockAccess(1, TYPE);
+        assertEquals(0, countRows());
+    }
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+
+/**
+ * {@link LockService} that keeps one reference counted {@link ReentrantReadWriteLock} per (type, id) pair in a {@link ConcurrentHashMap}.
+ * Unlike {@link MemoryLockService} there is no global monitor: threads locking different objects never wait on each other, and no String key is built.
+ * A lock entry is removed from the map when its last holder or waiter releases it.
+ * This service must be configured as a singleton.
+ */
+public class ConcurrentMemoryLockService implements LockService {
+
+    private final ConcurrentMap<LockKey, RefCountedLock> locks;
+
+    private final TechnicalLoggerService logger;
+
+    private final boolean debugEnabled;
+
+    public ConcurrentMemoryLockService(final TechnicalLoggerService logger) {
+        this(logger, 16);
+    }
+
+    /**
+     * @param concurrencyLevel
+     *            estimated number of threads taking locks at the same time, used to size the internal map
+     */
+    public ConcurrentMemoryLockService(final TechnicalLoggerService logger, final int concurrencyLevel) {
+        this.logger = logger;
+        debugEnabled = logger.isLoggable(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG);
+        locks = new ConcurrentHashMap<LockKey, RefCountedLock>(64, 0.75f, concurrencyLevel);
+    }
+
+    @Override
+    public void createExclusiveLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]request X id=" + objectToLockId + ", type=" + objectType);
+        }
+        acquire(objectToLockId, objectType).writeLock().lock();
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]acquired X id=" + objectToLockId + ", type=" + objectType);
+        }
+    }
+
+    @Override
+    public void releaseExclusiveLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]release X id=" + objectToLockId + ", type=" + objectType);
+        }
+        final LockKey key = new LockKey(objectType, objectToLockId);
+        final RefCountedLock lock = getHeldLock(key);
+        lock.writeLock().unlock();
+        release(key, lock);
+    }
+
+    @Override
+    public void createSharedLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]request S id=" + objectToLockId + ", type=" + objectType);
+        }
+        acquire(objectToLockId, objectType).readLock().lock();
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]acquired S id=" + objectToLockId + ", type=" + objectType);
+        }
+    }
+
+    @Override
+    public void releaseSharedLockAccess(final long objectToLockId, final String objectType) throws SLockException {
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]release S id=" + objectToLockId + ", type=" + objectType);
+        }
+        final LockKey key = new LockKey(objectType, objectToLockId);
+        final RefCountedLock lock = getHeldLock(key);
+        lock.readLock().unlock();
+        release(key, lock);
+    }
+
+    @Override
+    public boolean tryExclusiveLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        final LockKey key = new LockKey(objectType, objectToLockId);
+        final RefCountedLock lock = acquire(key);
+        return tryLock(key, lock, lock.writeLock(), timeout, timeUnit);
+    }
+
+    @Override
+    public boolean trySharedLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        final LockKey key = new LockKey(objectType, objectToLockId);
+        final RefCountedLock lock = acquire(key);
+        return tryLock(key, lock, lock.readLock(), timeout, timeUnit);
+    }
+
+    /**
+     * @return the number of objects currently locked or waited for
+     */
+    public int getNumberOfLocks() {
+        return locks.size();
+    }
+
+    private boolean tryLock(final LockKey key, final RefCountedLock lock, final Lock toTake, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        boolean acquired = false;
+        try {
+            acquired = toTake.tryLock(timeout, timeUnit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SLockException("Interrupted while waiting for the lock on id=" + key.id + ", type=" + key.type, e);
+        } finally {
+            if (!acquired) {
+                release(key, lock);
+            }
+        }
+        if (debugEnabled) {
+            logger.log(ConcurrentMemoryLockService.class, TechnicalLogSeverity.DEBUG, "[LOCK]" + (acquired ? "acquired" : "timed out") + " id=" + key.id
+                    + ", type=" + key.type);
+        }
+        return acquired;
+    }
+
+    private RefCountedLock acquire(final long objectToLockId, final String objectType) {
+        return acquire(new LockKey(objectType, objectToLockId));
+    }
+
+    /**
+     * Get the lock of the key and increment its reference count, creating it if needed.
+     * An entry whose count already dropped to 0 is being removed by another thread: it can't be reused, we wait for a new one.
+     */
+    private RefCountedLock acquire(final LockKey key) {
+        while (true) {
+            RefCountedLock lock = locks.get(key);
+            if (lock == null) {
+                final RefCountedLock newLock = new RefCountedLock();
+                lock = locks.putIfAbsent(key, newLock);
+                if (lock == null) {
+                    return newLock;
+                }
+            }
+            if (lock.retain()) {
+                return lock;
+            }
+            // dead entry, help removing it
+            locks.remove(key, lock);
+        }
+    }
+
+    private RefCountedLock getHeldLock(final LockKey key) throws SLockException {
+        final RefCountedLock lock = locks.get(key);
+        if (lock == null) {
+            throw new SLockException("No lock is held on id=" + key.id + ", type=" + key.type);
+        }
+        return lock;
+    }
+
+    private void release(final LockKey key, final RefCountedLock lock) {
+        if (lock.decrementAndGet() == 0) {
+            locks.remove(key, lock);
+        }
+    }
+
+    private static final class LockKey {
+
+        private final String type;
+
+        private final long id;
+
+        private final int hash;
+
+        LockKey(final String type, final long id) {
+            this.type = type;
+            this.id = id;
+            hash = 31 * type.hashCode() + (int) (id ^ id >>> 32);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LockKey)) {
+                return false;
+            }
+            final LockKey other = (LockKey) obj;
+            return id == other.id && type.equals(other.type);
+        }
+
+    }
+
+    /**
+     * Count of the threads holding or waiting for the lock. Starts at 1 for the thread that created it.
+     */
+    private static final class RefCountedLock extends ReentrantReadWriteLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        boolean retain() {
+            while (true) {
+                final int current = count.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        int decrementAndGet() {
+            return count.decrementAndGet();
+        }
+
+    }
+
+}
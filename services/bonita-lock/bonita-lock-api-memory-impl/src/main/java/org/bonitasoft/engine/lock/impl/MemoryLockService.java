@@ -15,6 +15,7 @@ package org.bonitasoft.engine.lock.impl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.bonitasoft.engine.lock.LockService;
@@ -114,6 +115,44 @@ public class MemoryLockService implements LockService {
         removeFromMapIfPossible(key);
     }
 
+    @Override
+    public boolean tryExclusiveLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        final String key = getKey(objectToLockId, objectType);
+        ensureProcessHasLockObject(key);
+        boolean acquired = false;
+        try {
+            acquired = readWriteLock.get(key).writeLock().tryLock(timeout, timeUnit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SLockException("Interrupted while waiting for the lock on " + key, e);
+        } finally {
+            if (!acquired) {
+                removeFromMapIfPossible(key);
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean trySharedLockAccess(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit)
+            throws SLockException {
+        final String key = getKey(objectToLockId, objectType);
+        ensureProcessHasLockObject(key);
+        boolean acquired = false;
+        try {
+            acquired = readWriteLock.get(key).readLock().tryLock(timeout, timeUnit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SLockException("Interrupted while waiting for the lock on " + key, e);
+        } finally {
+            if (!acquired) {
+                removeFromMapIfPossible(key);
+            }
+        }
+        return acquired;
+    }
+
     private void removeFromMapIfPossible(final String key) {
         synchronized (lock) {
             if (lockCount.containsKey(key)) {
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConcurrentMemoryLockServiceTest {
+
+    private static final String TYPE = "PROCESS";
+
+    private final ConcurrentMemoryLockService lockService = new ConcurrentMemoryLockService(mock(TechnicalLoggerService.class));
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private boolean tryExclusiveInOtherThread(final long id, final String type) throws Exception {
+        final Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                final boolean acquired = lockService.tryExclusiveLockAccess(id, type, 50, TimeUnit.MILLISECONDS);
+                if (acquired) {
+                    lockService.releaseExclusiveLockAccess(id, type);
+                }
+                return acquired;
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void exclusiveLockBlocksOtherThreadOnSameObject() throws Exception {
+        lockService.createExclusiveLockAccess(1, TYPE);
+
+        assertFalse(tryExclusiveInOtherThread(1, TYPE));
+        lockService.releaseExclusiveLockAccess(1, TYPE);
+        assertTrue(tryExclusiveInOtherThread(1, TYPE));
+    }
+
+    @Test
+    public void exclusiveLockDoesNotBlockOtherObjects() throws Exception {
+        lockService.createExclusiveLockAccess(1, TYPE);
+
+        assertTrue(tryExclusiveInOtherThread(2, TYPE));
+        assertTrue(tryExclusiveInOtherThread(1, "GATEWAY"));
+        lockService.releaseExclusiveLockAccess(1, TYPE);
+    }
+
+    @Test
+    public void sharedLockBlocksExclusiveOnly() throws Exception {
+        lockService.createSharedLockAccess(1, TYPE);
+
+        assertTrue(executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                final boolean acquired = lockService.trySharedLockAccess(1, TYPE, 50, TimeUnit.MILLISECONDS);
+                lockService.releaseSharedLockAccess(1, TYPE);
+                return acquired;
+            }
+        }).get(5, TimeUnit.SECONDS));
+        assertFalse(tryExclusiveInOtherThread(1, TYPE));
+        lockService.releaseSharedLockAccess(1, TYPE);
+    }
+
+    @Test
+    public void locksAreRemovedOnceReleased() throws Exception {
+        lockService.createExclusiveLockAccess(1, TYPE);
+        lockService.createExclusiveLockAccess(1, TYPE);
+        lockService.createSharedLockAccess(2, TYPE);
+        assertEquals(2, lockService.getNumberOfLocks());
+
+        assertFalse(tryExclusiveInOtherThread(1, TYPE));
+        lockService.releaseExclusiveLockAccess(1, TYPE);
+        lockService.releaseExclusiveLockAccess(1, TYPE);
+        lockService.releaseSharedLockAccess(2, TYPE);
+
+        assertEquals(0, lockService.getNumberOfLocks());
+    }
+
+    @Test(expected = SLockException.class)
+    public void releaseLockNotTaken() throws Exception {
+        lockService.releaseExclusiveLockAccess(1, TYPE);
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare {@link MemoryLockService} and {@link ConcurrentMemoryLockService} the way the process executor uses them: a shared lock on the process
+ * instance and an exclusive lock on a gateway or flow node.
+ * Not run by the build, launch the main method (with the test classpath) to get the results for 1, 8 and 64 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LockServiceBenchmark {
+
+    private static final String PROCESS = "SProcessInstance";
+
+    private static final String GATEWAY = "GATEWAY";
+
+    @Param({ "memory", "concurrent" })
+    public String implementation;
+
+    /**
+     * number of distinct process instances locked, the lower the more contention
+     */
+    @Param({ "16", "1024" })
+    public int processInstances;
+
+    private LockService lockService;
+
+    @Setup
+    public void setup() {
+        final TechnicalLoggerService logger = mock(TechnicalLoggerService.class);
+        if ("memory".equals(implementation)) {
+            lockService = new MemoryLockService(logger);
+        } else {
+            lockService = new ConcurrentMemoryLockService(logger, 64);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadIds {
+
+        private long next = System.identityHashCode(this);
+
+        long nextId(final int bound) {
+            next = next * 6364136223846793005L + 1442695040888963407L;
+            return (next >>> 33) % bound;
+        }
+
+    }
+
+    @Benchmark
+    public long executeTransition(final ThreadIds ids) throws SLockException {
+        final long processInstanceId = ids.nextId(processInstances);
+        final long gatewayId = processInstanceId * 100 + ids.nextId(4);
+        lockService.createSharedLockAccess(processInstanceId, PROCESS);
+        try {
+            lockService.createExclusiveLockAccess(gatewayId, GATEWAY);
+            lockService.releaseExclusiveLockAccess(gatewayId, GATEWAY);
+        } finally {
+            lockService.releaseSharedLockAccess(processInstanceId, PROCESS);
+        }
+        return gatewayId;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        for (final int threads : new int[] { 1, 8, 64 }) {
+            final Options options = new OptionsBuilder().include(LockServiceBenchmark.class.getSimpleName()).threads(threads).forks(1)
+                    .warmupIterations(5).measurementIterations(5).build();
+            new Runner(options).run();
+        }
+    }
+
+}
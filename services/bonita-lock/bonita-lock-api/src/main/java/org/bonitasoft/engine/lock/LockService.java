@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.lock;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -81,4 +82,40 @@ public interface LockService {
      */
     void releaseSharedLockAccess(long objectToLockId, String objectType) throws SLockException;
 
+    /**
+     * Same as createExclusiveLockAccess but give up if the lock can't be taken within the given time.
+     * 
+     * @param objectToLockId
+     *            the id of object to be locked
+     * @param objectType
+     *            the type of the object to be locked
+     * @param timeout
+     *            max time to wait for the lock
+     * @param timeUnit
+     *            unit of the timeout
+     * @return true if the lock was taken and must be released by calling releaseExclusiveLockAccess, false if the timeout elapsed
+     * @throws SLockException
+     *             if an exception occurs while acquiring the lock
+     * @since 6.1
+     */
+    boolean tryExclusiveLockAccess(long objectToLockId, String objectType, long timeout, TimeUnit timeUnit) throws SLockException;
+
+    /**
+     * Same as createSharedLockAccess but give up if the lock can't be taken within the given time.
+     * 
+     * @param objectToLockId
+     *            the id of object to be locked
+     * @param objectType
+     *            the type of the object to be locked
+     * @param timeout
+     *            max time to wait for the lock
+     * @param timeUnit
+     *            unit of the timeout
+     * @return true if the lock was taken and must be released by calling releaseSharedLockAccess, false if the timeout elapsed
+     * @throws SLockException
+     *             if an exception occurs while acquiring the lock
+     * @since 6.1
+     */
+    boolean trySharedLockAccess(long objectToLockId, String objectType, long timeout, TimeUnit timeUnit) throws SLockException;
+
 }
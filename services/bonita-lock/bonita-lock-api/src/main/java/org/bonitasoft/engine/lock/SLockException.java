@@ -26,6 +26,10 @@ public class SLockException extends SBonitaException {
         super(message, cause);
     }
 
+    public SLockException(final String message) {
+        super(message);
+    }
+
     public SLockException(final Throwable cause) {
         super(cause);
     }
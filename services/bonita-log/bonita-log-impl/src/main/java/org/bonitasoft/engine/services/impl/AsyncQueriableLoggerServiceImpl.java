@@ -0,0 +1,527 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.services.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.queriablelogger.model.SQueriableLog;
+import org.bonitasoft.engine.queriablelogger.model.builder.SQueriableLogModelBuilder;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.QueriableLogSessionProvider;
+import org.bonitasoft.engine.services.QueriableLoggerStrategy;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.TenantIdNotSetException;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+
+/**
+ * Persist the queriable logs in the background once the transactions that create them are committed.
+ * The logs of a committed transaction go into a buffer of at most bufferSize logs. A writer thread inserts them in batches of the same tenant, one
+ * transaction per batch: a batch is written when it holds batchSize logs or when its first log waited flushInterval milliseconds. When the buffer is full,
+ * the {@link OverflowPolicy} decides what happens to the new logs.
+ * A batch that cannot be written is written again after retryDelayMillis, the delay doubling at each attempt, and is dropped after maxAttempts attempts.
+ * It keeps its room in the buffer while it waits.
+ * Logs created outside of a transaction or of a tenant, and all logs once the service is stopped, are persisted in the current transaction as by
+ * {@link SyncQueriableLoggerServiceImpl}. The buffered logs are kept in memory only: they are lost if the JVM stops abruptly.
+ *
+ * @since 6.1
+ */
+public class AsyncQueriableLoggerServiceImpl extends SyncQueriableLoggerServiceImpl {
+
+    /**
+     * What to do with the logs of a transaction when the buffer is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the new logs
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest buffered logs to make room for the new ones
+         */
+        DROP_OLDEST,
+        /**
+         * Write the new logs in the transaction that creates them, before its commit: no log is lost and the transactions slow down while the buffer is
+         * full
+         */
+        WRITE_IN_TRANSACTION
+    }
+
+    private static final class BufferedLog {
+
+        private final long tenantId;
+
+        private final SQueriableLog log;
+
+        BufferedLog(final long tenantId, final SQueriableLog log) {
+            this.tenantId = tenantId;
+            this.log = log;
+        }
+
+    }
+
+    /**
+     * Logs of the same tenant written in one transaction
+     */
+    private static final class Batch {
+
+        private final long tenantId;
+
+        private final List<PersistentObject> logs;
+
+        private int attempts;
+
+        private long retryDate;
+
+        private Exception lastFailure;
+
+        Batch(final long tenantId, final List<PersistentObject> logs) {
+            this.tenantId = tenantId;
+            this.logs = logs;
+        }
+
+    }
+
+    /**
+     * Buffer the logs of one transaction once it is committed
+     */
+    private final class QueriableLogSynchronization implements BonitaTransactionSynchronization {
+
+        private final List<BufferedLog> logs = new ArrayList<BufferedLog>();
+
+        private boolean reserved = false;
+
+        private boolean executed = false;
+
+        @Override
+        public void beforeCommit() {
+            if (OverflowPolicy.WRITE_IN_TRANSACTION == overflowPolicy && !logs.isEmpty()) {
+                reserved = reserve(logs.size());
+                if (!reserved) {
+                    // the transaction can still write its logs itself: it never waits for the writer thread
+                    final List<SQueriableLog> queriableLogs = new ArrayList<SQueriableLog>(logs.size());
+                    for (final BufferedLog log : logs) {
+                        queriableLogs.add(log.log);
+                    }
+                    logs.clear();
+                    writeInTransaction(queriableLogs);
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(final TransactionState txState) {
+            if (TransactionState.COMMITTED == txState) {
+                buffer(logs, reserved);
+            } else if (reserved) {
+                pendingLogs.addAndGet(-logs.size());
+            }
+            logs.clear();
+            executed = true;
+        }
+
+    }
+
+    private final TransactionService transactionService;
+
+    private final SessionService sessionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final int bufferSize;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    private final BlockingQueue<BufferedLog> buffer = new LinkedBlockingQueue<BufferedLog>();
+
+    /**
+     * the batches whose write failed, waiting for their next attempt, only used by the writer thread
+     */
+    private final List<Batch> retries = new ArrayList<Batch>();
+
+    private final ThreadLocal<QueriableLogSynchronization> synchronizations = new ThreadLocal<QueriableLogSynchronization>();
+
+    /**
+     * number of logs in the buffer, in the batches being written or retried and reserved by committing transactions
+     */
+    private final AtomicInteger pendingLogs = new AtomicInteger();
+
+    private final AtomicLong bufferedLogs = new AtomicLong();
+
+    private final AtomicLong flushedLogs = new AtomicLong();
+
+    private final AtomicLong droppedLogs = new AtomicLong();
+
+    private final AtomicLong failedLogs = new AtomicLong();
+
+    private Thread writer;
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param bufferSize
+     *            max number of logs waiting to be written
+     * @param batchSize
+     *            max number of logs written in one transaction
+     * @param flushInterval
+     *            max time in milliseconds a log waits for its batch to be full
+     * @param overflowPolicy
+     *            what to do with new logs when bufferSize logs are already waiting
+     * @param maxAttempts
+     *            number of times a batch is written before being dropped
+     * @param retryDelayMillis
+     *            delay before the first new attempt to write a batch that failed to be written
+     */
+    public AsyncQueriableLoggerServiceImpl(final PersistenceService persistenceService, final SQueriableLogModelBuilder builder,
+            final QueriableLoggerStrategy loggerStrategy, final QueriableLogSessionProvider sessionProvider, final TechnicalLoggerService logger,
+            final TransactionService transactionService, final SessionService sessionService, final SessionAccessor sessionAccessor, final int bufferSize,
+            final int batchSize, final long flushInterval, final OverflowPolicy overflowPolicy, final int maxAttempts, final long retryDelayMillis) {
+        super(persistenceService, builder, loggerStrategy, sessionProvider, logger);
+        this.transactionService = transactionService;
+        this.sessionService = sessionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.bufferSize = bufferSize;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    @Override
+    protected void log(final List<SQueriableLog> loggableLogs) {
+        final long tenantId;
+        try {
+            tenantId = sessionAccessor.getTenantId();
+        } catch (final TenantIdNotSetException e) {
+            super.log(loggableLogs);
+            return;
+        }
+        final QueriableLogSynchronization synchronization = getSynchronization();
+        if (synchronization == null) {
+            super.log(loggableLogs);
+            return;
+        }
+        for (final SQueriableLog log : loggableLogs) {
+            synchronization.logs.add(new BufferedLog(tenantId, log));
+        }
+    }
+
+    private void writeInTransaction(final List<SQueriableLog> loggableLogs) {
+        super.log(loggableLogs);
+    }
+
+    /**
+     * @return the synchronization buffering the logs of the current transaction, null if the logs must be written in the current transaction
+     */
+    private QueriableLogSynchronization getSynchronization() {
+        if (stopped) {
+            return null;
+        }
+        QueriableLogSynchronization synchronization = synchronizations.get();
+        if (synchronization == null || synchronization.executed) {
+            synchronization = new QueriableLogSynchronization();
+            try {
+                if (!transactionService.isTransactionActive()) {
+                    return null;
+                }
+                transactionService.registerBonitaSynchronization(synchronization);
+            } catch (final STransactionException e) {
+                return null;
+            } catch (final STransactionNotFoundException e) {
+                return null;
+            }
+            synchronizations.set(synchronization);
+        }
+        return synchronization;
+    }
+
+    /**
+     * @return true if there is room in the buffer for nbLogs more logs, the room being taken
+     */
+    private boolean reserve(final int nbLogs) {
+        if (pendingLogs.addAndGet(nbLogs) > bufferSize) {
+            pendingLogs.addAndGet(-nbLogs);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Buffer the logs of a committed transaction, never waits
+     *
+     * @param reserved
+     *            true if the room of the logs was reserved before the commit
+     */
+    private void buffer(final List<BufferedLog> logs, final boolean reserved) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        startIfNeeded();
+        for (final BufferedLog log : logs) {
+            if (reserved || reserve(1)) {
+                buffer.add(log);
+                bufferedLogs.incrementAndGet();
+            } else if (OverflowPolicy.DROP_OLDEST == overflowPolicy && buffer.poll() != null) {
+                // the new log takes the room of the dropped one
+                droppedLogs.incrementAndGet();
+                buffer.add(log);
+                bufferedLogs.incrementAndGet();
+            } else {
+                droppedLogs.incrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void startIfNeeded() {
+        if (writer == null) {
+            writer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeLogs();
+                }
+
+            }, "Bonita-Queriable-Log-Writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Write the logs already buffered, retrying the failed batches without delay, then stop the writer, transactions write their logs themselves
+     * afterwards
+     */
+    public void stop() throws InterruptedException {
+        final Thread thread;
+        synchronized (this) {
+            stopped = true;
+            thread = writer;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * @return the number of logs waiting to be written, including the ones of the failed batches waiting for a new attempt
+     */
+    public int getPendingLogs() {
+        return pendingLogs.get();
+    }
+
+    /**
+     * @return the number of logs put in the buffer since the start
+     */
+    public long getBufferedLogs() {
+        return bufferedLogs.get();
+    }
+
+    /**
+     * @return the number of logs written since the start
+     */
+    public long getFlushedLogs() {
+        return flushedLogs.get();
+    }
+
+    /**
+     * @return the number of logs dropped because the buffer was full since the start
+     */
+    public long getDroppedLogs() {
+        return droppedLogs.get();
+    }
+
+    /**
+     * @return the number of logs dropped since the start because they could not be written
+     */
+    public long getFailedLogs() {
+        return failedLogs.get();
+    }
+
+    private void writeLogs() {
+        while (!stopped || !buffer.isEmpty() || !retries.isEmpty()) {
+            for (final Batch batch : takeRetries()) {
+                write(batch);
+            }
+            final List<BufferedLog> logs;
+            try {
+                logs = takeLogs();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            if (logs.isEmpty()) {
+                continue;
+            }
+            for (final Entry<Long, List<PersistentObject>> entry : groupByTenant(logs).entrySet()) {
+                write(new Batch(entry.getKey(), entry.getValue()));
+            }
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "Wrote " + logs.size() + " queriable logs, " + pendingLogs.get() + " logs pending");
+            }
+        }
+    }
+
+    /**
+     * @return the logs of the next batch, empty if none was buffered in the last 100 milliseconds
+     */
+    private List<BufferedLog> takeLogs() throws InterruptedException {
+        final List<BufferedLog> logs = new ArrayList<BufferedLog>();
+        final BufferedLog first = buffer.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return logs;
+        }
+        logs.add(first);
+        final long flushDate = System.currentTimeMillis() + flushInterval;
+        long wait = flushInterval;
+        while (logs.size() < batchSize && wait > 0) {
+            final BufferedLog next = buffer.poll(wait, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                break;
+            }
+            logs.add(next);
+            buffer.drainTo(logs, batchSize - logs.size());
+            wait = flushDate - System.currentTimeMillis();
+        }
+        return logs;
+    }
+
+    /**
+     * @return the failed batches whose next attempt is due
+     */
+    private List<Batch> takeRetries() {
+        final List<Batch> due = new ArrayList<Batch>();
+        final long now = System.currentTimeMillis();
+        final Iterator<Batch> iterator = retries.iterator();
+        while (iterator.hasNext()) {
+            final Batch batch = iterator.next();
+            // once stopped, the remaining attempts are made without waiting
+            if (stopped || batch.retryDate <= now) {
+                iterator.remove();
+                due.add(batch);
+            }
+        }
+        return due;
+    }
+
+    private Map<Long, List<PersistentObject>> groupByTenant(final List<BufferedLog> logs) {
+        final Map<Long, List<PersistentObject>> logsByTenant = new LinkedHashMap<Long, List<PersistentObject>>();
+        for (final BufferedLog log : logs) {
+            List<PersistentObject> tenantLogs = logsByTenant.get(log.tenantId);
+            if (tenantLogs == null) {
+                tenantLogs = new ArrayList<PersistentObject>();
+                logsByTenant.put(log.tenantId, tenantLogs);
+            }
+            tenantLogs.add(log.log);
+        }
+        return logsByTenant;
+    }
+
+    private void write(final Batch batch) {
+        SSession session = null;
+        try {
+            session = createSession(batch.tenantId);
+            sessionAccessor.setSessionInfo(session.getId(), session.getTenantId());
+            insert(batch.logs);
+            flushedLogs.addAndGet(batch.logs.size());
+            pendingLogs.addAndGet(-batch.logs.size());
+        } catch (final Exception e) {
+            batch.lastFailure = e;
+            retryLater(batch);
+        } finally {
+            if (session != null) {
+                try {
+                    sessionAccessor.deleteSessionId();
+                    sessionService.deleteSession(session.getId());
+                } catch (final Exception e) {
+                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, e);
+                }
+            }
+        }
+    }
+
+    private void retryLater(final Batch batch) {
+        batch.attempts++;
+        if (batch.attempts < maxAttempts) {
+            // keeps its room in the pending logs
+            batch.retryDate = System.currentTimeMillis() + (retryDelayMillis << (batch.attempts - 1));
+            retries.add(batch);
+            logger.log(this.getClass(), TechnicalLogSeverity.WARNING, "Unable to write " + batch.logs.size() + " queriable logs of tenant " + batch.tenantId
+                    + ", attempt " + batch.attempts + " of " + maxAttempts + ": " + batch.lastFailure.getMessage());
+            return;
+        }
+        failedLogs.addAndGet(batch.logs.size());
+        pendingLogs.addAndGet(-batch.logs.size());
+        logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Dropping " + batch.logs.size() + " queriable logs of tenant " + batch.tenantId + " after "
+                + maxAttempts + " attempts: " + batch.lastFailure.getMessage());
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+            logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, batch.lastFailure);
+        }
+    }
+
+    private void insert(final List<PersistentObject> logs) throws STransactionException, SPersistenceException {
+        transactionService.begin();
+        try {
+            getPersitenceService().insertInBatch(logs);
+            getPersitenceService().flushStatements();
+        } catch (final SPersistenceException e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            transactionService.complete();
+        }
+    }
+
+    private SSession createSession(final long tenantId) throws Exception {
+        try {
+            transactionService.begin();
+            return sessionService.createSession(tenantId, "queriableLogger");
+        } catch (final Exception e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            transactionService.complete();
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.services.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.queriablelogger.model.SQueriableLog;
+import org.bonitasoft.engine.queriablelogger.model.builder.SQueriableLogModelBuilder;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.QueriableLogSessionProvider;
+import org.bonitasoft.engine.services.QueriableLoggerStrategy;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.services.impl.AsyncQueriableLoggerServiceImpl.OverflowPolicy;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class AsyncQueriableLoggerServiceImplTest {
+
+    private PersistenceService persistenceService;
+
+    private TransactionService transactionService;
+
+    private AsyncQueriableLoggerServiceImpl loggerService;
+
+    /**
+     * the logs written by the writer thread, one list per batch
+     */
+    private final List<List<PersistentObject>> batches = Collections.synchronizedList(new ArrayList<List<PersistentObject>>());
+
+    private final List<BonitaTransactionSynchronization> synchronizations = new ArrayList<BonitaTransactionSynchronization>();
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+
+    private final CountDownLatch writeAllowed = new CountDownLatch(1);
+
+    private int failuresBeforeSuccess = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        persistenceService = mock(PersistenceService.class);
+        transactionService = mock(TransactionService.class);
+        when(transactionService.isTransactionActive()).thenReturn(true);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                synchronizations.add((BonitaTransactionSynchronization) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(transactionService).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(final InvocationOnMock invocation) throws Exception {
+                writing.countDown();
+                writeAllowed.await(10, TimeUnit.SECONDS);
+                synchronized (AsyncQueriableLoggerServiceImplTest.this) {
+                    if (failuresBeforeSuccess > 0) {
+                        failuresBeforeSuccess--;
+                        throw new SPersistenceException("database unavailable");
+                    }
+                }
+                batches.add(new ArrayList<PersistentObject>((List<PersistentObject>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(persistenceService).insertInBatch(anyListOf(PersistentObject.class));
+    }
+
+    private AsyncQueriableLoggerServiceImpl createLoggerService(final int bufferSize, final OverflowPolicy overflowPolicy, final int maxAttempts)
+            throws Exception {
+        final SessionService sessionService = mock(SessionService.class);
+        final SSession session = mock(SSession.class);
+        when(sessionService.createSession(anyLong(), anyString())).thenReturn(session);
+        final SessionAccessor sessionAccessor = mock(SessionAccessor.class);
+        when(sessionAccessor.getTenantId()).thenReturn(1L);
+        return new AsyncQueriableLoggerServiceImpl(persistenceService, mock(SQueriableLogModelBuilder.class), mock(QueriableLoggerStrategy.class),
+                mock(QueriableLogSessionProvider.class), mock(TechnicalLoggerService.class), transactionService, sessionService, sessionAccessor,
+                bufferSize, 1, 0, overflowPolicy, maxAttempts, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writeAllowed.countDown();
+        if (loggerService != null) {
+            loggerService.stop();
+        }
+    }
+
+    /**
+     * Log in a new transaction and complete it
+     */
+    private void logInTransaction(final TransactionState txState, final SQueriableLog... logs) {
+        loggerService.log(Arrays.asList(logs));
+        final BonitaTransactionSynchronization synchronization = synchronizations.get(synchronizations.size() - 1);
+        if (TransactionState.COMMITTED == txState) {
+            synchronization.beforeCommit();
+        }
+        synchronization.afterCompletion(txState);
+    }
+
+    private void blockTheWriterOn(final SQueriableLog log) throws InterruptedException {
+        logInTransaction(TransactionState.COMMITTED, log);
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+    }
+
+    private List<PersistentObject> writtenLogs() {
+        final List<PersistentObject> logs = new ArrayList<PersistentObject>();
+        for (final List<PersistentObject> batch : batches) {
+            logs.addAll(batch);
+        }
+        return logs;
+    }
+
+    @Test
+    public void writesTheLogsOfCommittedTransactionsInTheBackground() throws Exception {
+        loggerService = createLoggerService(10, OverflowPolicy.DROP_NEWEST, 1);
+        writeAllowed.countDown();
+        final SQueriableLog log1 = mock(SQueriableLog.class);
+        final SQueriableLog log2 = mock(SQueriableLog.class);
+
+        logInTransaction(TransactionState.COMMITTED, log1, log2);
+        loggerService.stop();
+
+        assertEquals(Arrays.<PersistentObject> asList(log1, log2), writtenLogs());
+        assertEquals(2, loggerService.getFlushedLogs());
+        assertEquals(0, loggerService.getPendingLogs());
+        verify(persistenceService, never()).insert(any(PersistentObject.class));
+    }
+
+    @Test
+    public void discardsTheLogsOfRolledBackTransactions() throws Exception {
+        loggerService = createLoggerService(10, OverflowPolicy.WRITE_IN_TRANSACTION, 1);
+        writeAllowed.countDown();
+
+        logInTransaction(TransactionState.ROLLEDBACK, mock(SQueriableLog.class));
+        loggerService.stop();
+
+        assertEquals(0, writtenLogs().size());
+        assertEquals(0, loggerService.getPendingLogs());
+    }
+
+    @Test
+    public void dropNewestDropsTheLogsThatDoNotFitInTheBuffer() throws Exception {
+        loggerService = createLoggerService(1, OverflowPolicy.DROP_NEWEST, 1);
+        final SQueriableLog written = mock(SQueriableLog.class);
+        blockTheWriterOn(written);
+
+        logInTransaction(TransactionState.COMMITTED, mock(SQueriableLog.class));
+        writeAllowed.countDown();
+        loggerService.stop();
+
+        assertEquals(Arrays.<PersistentObject> asList(written), writtenLogs());
+        assertEquals(1, loggerService.getDroppedLogs());
+    }
+
+    @Test
+    public void dropOldestDropsTheOldestBufferedLogsToMakeRoom() throws Exception {
+        loggerService = createLoggerService(3, OverflowPolicy.DROP_OLDEST, 1);
+        final SQueriableLog first = mock(SQueriableLog.class);
+        final SQueriableLog oldest = mock(SQueriableLog.class);
+        final SQueriableLog kept = mock(SQueriableLog.class);
+        final SQueriableLog newest = mock(SQueriableLog.class);
+        blockTheWriterOn(first);
+
+        logInTransaction(TransactionState.COMMITTED, oldest, kept);
+        logInTransaction(TransactionState.COMMITTED, newest);
+        writeAllowed.countDown();
+        loggerService.stop();
+
+        assertEquals(Arrays.<PersistentObject> asList(first, kept, newest), writtenLogs());
+        assertEquals(1, loggerService.getDroppedLogs());
+    }
+
+    @Test
+    public void writeInTransactionWritesTheLogsBeforeTheCommitWhenTheBufferIsFull() throws Exception {
+        loggerService = createLoggerService(1, OverflowPolicy.WRITE_IN_TRANSACTION, 1);
+        final SQueriableLog written = mock(SQueriableLog.class);
+        final SQueriableLog inTransaction = mock(SQueriableLog.class);
+        blockTheWriterOn(written);
+
+        logInTransaction(TransactionState.COMMITTED, inTransaction);
+
+        verify(persistenceService).insert(inTransaction);
+        writeAllowed.countDown();
+        loggerService.stop();
+        assertEquals(Arrays.<PersistentObject> asList(written), writtenLogs());
+        assertEquals(0, loggerService.getDroppedLogs());
+    }
+
+    @Test
+    public void writeInTransactionReleasesTheRoomOfRolledBackTransactions() throws Exception {
+        loggerService = createLoggerService(1, OverflowPolicy.WRITE_IN_TRANSACTION, 1);
+        loggerService.log(Arrays.asList(mock(SQueriableLog.class)));
+        final BonitaTransactionSynchronization synchronization = synchronizations.get(0);
+        synchronization.beforeCommit();
+        assertEquals(1, loggerService.getPendingLogs());
+
+        synchronization.afterCompletion(TransactionState.ROLLEDBACK);
+
+        assertEquals(0, loggerService.getPendingLogs());
+    }
+
+    @Test
+    public void writesAgainTheBatchesThatFailed() throws Exception {
+        loggerService = createLoggerService(10, OverflowPolicy.DROP_NEWEST, 3);
+        failuresBeforeSuccess = 2;
+        writeAllowed.countDown();
+        final SQueriableLog log = mock(SQueriableLog.class);
+
+        logInTransaction(TransactionState.COMMITTED, log);
+        loggerService.stop();
+
+        verify(persistenceService, times(3)).insertInBatch(anyListOf(PersistentObject.class));
+        assertEquals(Arrays.<PersistentObject> asList(log), writtenLogs());
+        assertEquals(1, loggerService.getFlushedLogs());
+        assertEquals(0, loggerService.getFailedLogs());
+        assertEquals(0, loggerService.getPendingLogs());
+    }
+
+    @Test
+    public void dropsTheBatchesThatStillFailAfterTheLastAttempt() throws Exception {
+        loggerService = createLoggerService(10, OverflowPolicy.DROP_NEWEST, 2);
+        failuresBeforeSuccess = 5;
+        writeAllowed.countDown();
+
+        logInTransaction(TransactionState.COMMITTED, mock(SQueriableLog.class));
+        loggerService.stop();
+
+        verify(persistenceService, times(2)).insertInBatch(anyListOf(PersistentObject.class));
+        assertEquals(0, writtenLogs().size());
+        assertEquals(1, loggerService.getFailedLogs());
+        assertEquals(0, loggerService.getPendingLogs());
+    }
+
+}
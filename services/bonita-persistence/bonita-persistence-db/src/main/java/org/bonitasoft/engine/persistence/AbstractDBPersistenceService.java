@@ -274,13 +274,8 @@ public abstract class AbstractDBPersistenceService implements TenantPersistenceS
             return;
         }
         // if this entity has no id, set it
-        Long id = null;
-        try {
-            id = entity.getId();
-        } catch (final Exception e) {
-            // this is a new object to save
-        }
-        if (id == null || id == -1 || id == 0) {
+        if (!hasId(entity)) {
+            Long id = null;
             try {
                 id = getSequenceManager().getNextId(entity.getClass().getName(), getTenantId());
                 ClassReflector.invokeSetter(entity, "setId", long.class, id);
@@ -290,6 +285,44 @@ public abstract class AbstractDBPersistenceService implements TenantPersistenceS
         }
     }
 
+    /**
+     * Set the ids of all the entities that have none, getting the ids of entities of the same class at once
+     */
+    protected void setIds(final List<? extends PersistentObject> entities) throws SPersistenceException {
+        final Map<Class<?>, List<PersistentObject>> entitiesWithoutId = new HashMap<Class<?>, List<PersistentObject>>();
+        for (final PersistentObject entity : entities) {
+            if (entity != null && !hasId(entity)) {
+                List<PersistentObject> entitiesOfClass = entitiesWithoutId.get(entity.getClass());
+                if (entitiesOfClass == null) {
+                    entitiesOfClass = new ArrayList<PersistentObject>();
+                    entitiesWithoutId.put(entity.getClass(), entitiesOfClass);
+                }
+                entitiesOfClass.add(entity);
+            }
+        }
+        for (final Entry<Class<?>, List<PersistentObject>> entry : entitiesWithoutId.entrySet()) {
+            final List<PersistentObject> entitiesOfClass = entry.getValue();
+            try {
+                final long[] ids = getSequenceManager().getNextIds(entry.getKey().getName(), getTenantId(), entitiesOfClass.size());
+                for (int i = 0; i < ids.length; i++) {
+                    ClassReflector.invokeSetter(entitiesOfClass.get(i), "setId", long.class, ids[i]);
+                }
+            } catch (final Exception e) {
+                throw new SPersistenceException("Problem while setting the ids of " + entitiesOfClass.size() + " entities of type " + entry.getKey(), e);
+            }
+        }
+    }
+
+    private static boolean hasId(final PersistentObject entity) {
+        Long id = null;
+        try {
+            id = entity.getId();
+        } catch (final Exception e) {
+            // this is a new object to save
+        }
+        return id != null && id != -1 && id != 0;
+    }
+
     /**
      * Get like clause for given term with escaped sql query wildcards and escape character
      */
@@ -13,16 +13,13 @@
  **/
 package org.bonitasoft.engine.persistence;
 
-import static org.bonitasoft.engine.persistence.search.FilterOperationType.L_PARENTHESIS;
-import static org.bonitasoft.engine.persistence.search.FilterOperationType.R_PARENTHESIS;
-import static org.bonitasoft.engine.persistence.search.FilterOperationType.isNormalOperator;
-
 import java.io.IOException;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -35,12 +32,10 @@ import java.util.Set;
 import javax.sql.DataSource;
 
 import org.bonitasoft.engine.commons.ClassReflector;
-import org.bonitasoft.engine.commons.EnumToObjectConvertible;
 import org.bonitasoft.engine.commons.IOUtil;
 import org.bonitasoft.engine.commons.StringUtil;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
-import org.bonitasoft.engine.persistence.search.FilterOperationType;
 import org.bonitasoft.engine.sequence.SequenceManager;
 import org.bonitasoft.engine.services.SPersistenceException;
 import org.bonitasoft.engine.services.UpdateDescriptor;
@@ -51,9 +46,11 @@ import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.StaleStateException;
+import org.hibernate.TypeHelper;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.exception.LockAcquisitionException;
 import org.hibernate.stat.Statistics;
+import org.hibernate.type.Type;
 
 /**
  * Hibernate implementation of the persistence service
@@ -69,6 +66,10 @@ public abstract class AbstractHibernatePersistenceService extends AbstractDBPers
 
     private final Map<String, String> classAliasMappings;
 
+    private final SearchQueryBuilder searchQueryBuilder;
+
+    private final TypeHelper typeHelper;
+
     protected final Map<String, String> cacheQueries;
 
     protected final List<Class<? extends PersistentObject>> classMapping;
@@ -133,6 +134,8 @@ public abstract class AbstractHibernatePersistenceService extends AbstractDBPers
         mappingExclusions = hbmConfigurationProvider.getMappingExclusions();
 
         cacheQueries = hbmConfigurationProvider.getCacheQueries();
+        searchQueryBuilder = new SearchQueryBuilder(classAliasMappings, likeEscapeCharacter);
+        typeHelper = sessionFactory.getTypeHelper();
         this.logger = logger;
     }
 
@@ -282,9 +285,10 @@ public abstract class AbstractHibernatePersistenceService extends AbstractDBPers
         if (!entities.isEmpty()) {
             final Session session = getSession(true);
             for (final PersistentObject entity : entities) {
-                final Class<? extends PersistentObject> entityClass = entity.getClass();
-                checkClassMapping(entityClass);
-                setId(entity);
+                checkClassMapping(entity.getClass());
+            }
+            setIds(entities);
+            for (final PersistentObject entity : entities) {
                 session.save(entity);
             }
         }
@@ -428,189 +432,24 @@ public abstract class AbstractHibernatePersistenceService extends AbstractDBPers
         }
     }
 
-    private <T> String getQueryWithFilters(final String query, final SelectListDescriptor<T> selectDescriptor) {
-        final QueryOptions queryOptions = selectDescriptor.getQueryOptions();
-        final List<FilterOption> filters = queryOptions.getFilters();
-        final StringBuilder builder = new StringBuilder(query);
-        final Set<String> specificFilters = new HashSet<String>(filters.size());
-        FilterOption previousFilter = null;
-        if (!filters.isEmpty()) {
-            if (!query.contains("WHERE")) {
-                builder.append(" WHERE (");
-            } else {
-                builder.append(" AND (");
-            }
-            for (final FilterOption filterOption : filters) {
-                if (previousFilter != null) {
-                    final FilterOperationType prevOp = previousFilter.getFilterOperationType();
-                    final FilterOperationType currOp = filterOption.getFilterOperationType();
-                    // Auto add AND if previous operator was normal op or ')' and that current op is normal op or '(' :
-                    if ((isNormalOperator(prevOp) || prevOp == R_PARENTHESIS) && (isNormalOperator(currOp) || currOp == L_PARENTHESIS)) {
-                        builder.append(" AND ");
-                    }
-                }
-                final StringBuilder aliasBuilder = appendFilterClause(builder, filterOption);
-                // FIXME: is it really filterOption.getFieldName() or is it its formatted value: classAliasMappings.get(.......) ?:
-                // specificFilters.add(filterOption.getFieldName());
-                if (aliasBuilder != null) {
-                    specificFilters.add(aliasBuilder.toString());
-                }
-                previousFilter = filterOption;
-            }
-            builder.append(")");
-        }
-        final SearchFields multipleFilter = queryOptions.getMultipleFilter();
-        if (multipleFilter != null && multipleFilter.getTerms() != null && !multipleFilter.getTerms().isEmpty()) {
-            final Map<Class<? extends PersistentObject>, Set<String>> allTextFields = multipleFilter.getFields();
-            final Set<String> fields = new HashSet<String>();
-            for (final Entry<Class<? extends PersistentObject>, Set<String>> entry : allTextFields.entrySet()) {
-                final String alias = classAliasMappings.get(entry.getKey().getName());
-                for (final String field : entry.getValue()) {
-                    final StringBuilder aliasBuilder = new StringBuilder(alias);
-                    aliasBuilder.append('.').append(field);
-                    fields.add(aliasBuilder.toString());
+    private void setSearchParameters(final Query query, final QueryOptions queryOptions) {
+        final Set<String> namedParameters = new HashSet<String>(Arrays.asList(query.getNamedParameters()));
+        for (final Entry<String, Object> parameter : searchQueryBuilder.getParameters(queryOptions).entrySet()) {
+            if (namedParameters.contains(parameter.getKey())) {
+                final Object value = parameter.getValue();
+                if (value instanceof Collection<?>) {
+                    query.setParameterList(parameter.getKey(), (Collection<?>) value);
+                    continue;
                 }
-            }
-            fields.removeAll(specificFilters);
-            final Iterator<String> fieldIterator = fields.iterator();
-            final List<String> terms = multipleFilter.getTerms();
-            if (!fields.isEmpty()) {
-                if (!builder.toString().contains("WHERE")) {
-                    builder.append(" WHERE (");
+                // bind the value with the type of the value, as when it was written in the query, and not with the type of the field
+                final Type type = typeHelper.heuristicType(value.getClass().getName());
+                if (type != null) {
+                    query.setParameter(parameter.getKey(), value, type);
                 } else {
-                    builder.append(" AND (");
+                    query.setParameter(parameter.getKey(), value);
                 }
-                while (fieldIterator.hasNext()) {
-                    final Iterator<String> termIterator = terms.iterator();
-                    final String currentField = fieldIterator.next();
-                    while (termIterator.hasNext()) {
-                        final String currentTerm = termIterator.next();
-                        builder.append(currentField).append(getLikeEscapeClause(currentTerm));
-                        if (termIterator.hasNext() || fieldIterator.hasNext()) {
-                            builder.append(" OR ");
-                        }
-                    }
-                }
-                builder.append(")");
             }
         }
-        return builder.toString();
-    }
-
-    private <T> String getQueryWithOrderByClause(final String query, final SelectListDescriptor<T> selectDescriptor) throws SBonitaReadException {
-        final StringBuilder builder = new StringBuilder(query);
-        appendOrderByClause(builder, selectDescriptor);
-        return builder.toString();
-    }
-
-    private StringBuilder appendFilterClause(final StringBuilder clause, final FilterOption filterOption) {
-        final FilterOperationType type = filterOption.getFilterOperationType();
-        StringBuilder completeField = null;
-        if (filterOption.getPersistentClass() != null) {
-            completeField = new StringBuilder(classAliasMappings.get(filterOption.getPersistentClass().getName())).append('.').append(
-                    filterOption.getFieldName());
-        }
-        Object fieldValue = filterOption.getValue();
-        if (fieldValue instanceof String) {
-            fieldValue = "'" + fieldValue + "'";
-        } else if (fieldValue instanceof EnumToObjectConvertible) {
-            fieldValue = ((EnumToObjectConvertible) fieldValue).fromEnum();
-        }
-        switch (type) {
-            case EQUALS:
-                if (fieldValue == null) {
-                    clause.append(completeField).append(" IS NULL");
-                } else {
-                    clause.append(completeField).append(" = ").append(fieldValue);
-                }
-                break;
-            case GREATER:
-                clause.append(completeField).append(" > ").append(fieldValue);
-                break;
-            case GREATER_OR_EQUALS:
-                clause.append(completeField).append(" >= ").append(fieldValue);
-                break;
-            case LESS:
-                clause.append(completeField).append(" < ").append(fieldValue);
-                break;
-            case LESS_OR_EQUALS:
-                clause.append(completeField).append(" <= ").append(fieldValue);
-                break;
-            case DIFFERENT:
-                clause.append(completeField).append(" != ").append(fieldValue);
-                break;
-            case IN:
-                // TODO:write IN
-                break;
-            case BETWEEN:
-                final Object from = filterOption.getFrom() instanceof String ? "'" + filterOption.getFrom() + "'" : filterOption.getFrom();
-                final Object to = filterOption.getTo() instanceof String ? "'" + filterOption.getTo() + "'" : filterOption.getTo();
-                clause.append("(").append(from).append(" <= ").append(completeField);
-                clause.append(" AND ").append(completeField).append(" <= ").append(to).append(")");
-                break;
-            case LIKE:
-                // TODO:write LIKE
-                clause.append(completeField).append(" LIKE '%").append(filterOption.getValue()).append("%'");
-                break;
-            case L_PARENTHESIS:
-                clause.append(" (");
-                break;
-            case R_PARENTHESIS:
-                clause.append(" )");
-                break;
-            case AND:
-                clause.append(" AND ");
-                break;
-            case OR:
-                clause.append(" OR ");
-                break;
-            default:
-                // TODO:do we want default behaviour?
-                break;
-        }
-        return completeField;
-    }
-
-    private <T> void appendOrderByClause(final StringBuilder builder, final SelectListDescriptor<T> selectDescriptor) throws SBonitaReadException {
-        builder.append(" ORDER BY ");
-        boolean startWithComma = false;
-        boolean sortedById = false;
-        for (final OrderByOption orderByOption : selectDescriptor.getQueryOptions().getOrderByOptions()) {
-            if (startWithComma) {
-                builder.append(',');
-            }
-            final Class<? extends PersistentObject> clazz = orderByOption.getClazz();
-            if (clazz != null) {
-                appendClassAlias(builder, clazz);
-            }
-            final String fieldName = orderByOption.getFieldName();
-            if ("id".equalsIgnoreCase(fieldName) || "sourceObjectId".equalsIgnoreCase(fieldName)) {
-                sortedById = true;
-            }
-            builder.append(fieldName);
-            builder.append(' ');
-            builder.append(orderByOption.getOrderByType().toString());
-            startWithComma = true;
-        }
-        if (!sortedById) {
-            if (startWithComma) {
-                builder.append(',');
-            }
-            appendClassAlias(builder, selectDescriptor.getEntityType());
-            builder.append("id");
-            builder.append(' ');
-            builder.append("ASC");
-        }
-    }
-
-    private void appendClassAlias(final StringBuilder builder, final Class<? extends PersistentObject> clazz) throws SBonitaReadException {
-        final String className = clazz.getName();
-        final String classAlias = classAliasMappings.get(className);
-        if (classAlias == null || classAlias.trim().isEmpty()) {
-            throw new SBonitaReadException("No class alias found for class " + className);
-        }
-        builder.append(classAlias);
-        builder.append('.');
     }
 
     protected void setQueryCache(final Query query, final String name) {
@@ -628,11 +467,11 @@ public abstract class AbstractHibernatePersistenceService extends AbstractDBPers
             final Session session = getSession(true);
             Query query = session.getNamedQuery(selectDescriptor.getQueryName());
 
-            if (selectDescriptor.hasAFilter()) {
-                query = session.createQuery(getQueryWithFilters(query.getQueryString(), selectDescriptor));
-            }
-            if (selectDescriptor.hasOrderByParameters()) {
-                query = session.createQuery(getQueryWithOrderByClause(query.getQueryString(), selectDescriptor));
+            if (selectDescriptor.hasAFilter() || selectDescriptor.hasOrderByParameters()) {
+                query = session.createQuery(searchQueryBuilder.getQuery(query.getQueryString(), selectDescriptor));
+                if (selectDescriptor.hasAFilter()) {
+                    setSearchParameters(query, selectDescriptor.getQueryOptions());
+                }
             }
             setQueryCache(query, selectDescriptor.getQueryName());
 
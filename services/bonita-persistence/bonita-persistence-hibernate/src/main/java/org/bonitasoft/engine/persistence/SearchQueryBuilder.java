@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.persistence;
+
+import static org.bonitasoft.engine.persistence.search.FilterOperationType.L_PARENTHESIS;
+import static org.bonitasoft.engine.persistence.search.FilterOperationType.R_PARENTHESIS;
+import static org.bonitasoft.engine.persistence.search.FilterOperationType.isNormalOperator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bonitasoft.engine.commons.EnumToObjectConvertible;
+import org.bonitasoft.engine.persistence.search.FilterOperationType;
+
+/**
+ * Build the HQL of the searches: the named query completed with the filters, the search terms and the order by clause.
+ * The values of the filters and of the terms are not written in the query but bound as named parameters (see {@link #getParameters(QueryOptions)}), so
+ * the query only depends on the shape of the search. It is built once per shape and cached, and the same HQL, hence the same Hibernate query plan and the
+ * same prepared statement, is reused whatever the values searched.
+ */
+class SearchQueryBuilder {
+
+    static final String FILTER_VALUE = "filterValue";
+
+    static final String FILTER_TO = "filterTo";
+
+    static final String SEARCH_TERM = "searchTerm";
+
+    /**
+     * Upper bound of the number of query shapes kept, shapes built once the cache is full are not cached
+     */
+    private static final int MAX_CACHED_QUERIES = 1000;
+
+    private final ConcurrentMap<String, String> queries = new ConcurrentHashMap<String, String>();
+
+    private final Map<String, String> classAliasMappings;
+
+    private final String likeEscapeCharacter;
+
+    SearchQueryBuilder(final Map<String, String> classAliasMappings, final String likeEscapeCharacter) {
+        this.classAliasMappings = classAliasMappings;
+        this.likeEscapeCharacter = likeEscapeCharacter;
+    }
+
+    /**
+     * @param queryString
+     *            the HQL of the named query of the descriptor
+     * @return the HQL of the search, with named parameters for the values of its filters and terms
+     */
+    <T> String getQuery(final String queryString, final SelectListDescriptor<T> selectDescriptor) throws SBonitaReadException {
+        final String key = getShape(selectDescriptor);
+        String query = queries.get(key);
+        if (query == null) {
+            query = queryString;
+            if (selectDescriptor.hasAFilter()) {
+                query = getQueryWithFilters(query, selectDescriptor.getQueryOptions());
+            }
+            if (selectDescriptor.hasOrderByParameters()) {
+                query = getQueryWithOrderByClause(query, selectDescriptor);
+            }
+            if (queries.size() < MAX_CACHED_QUERIES) {
+                queries.putIfAbsent(key, query);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @return the values of the named parameters of the query built by {@link #getQuery(String, SelectListDescriptor)} for the same options. Some of them
+     *         may not be used by the query, e.g. the terms when all their fields are already filtered.
+     */
+    Map<String, Object> getParameters(final QueryOptions queryOptions) {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        final List<FilterOption> filters = queryOptions.getFilters();
+        if (filters != null) {
+            int index = 0;
+            for (final FilterOption filterOption : filters) {
+                switch (filterOption.getFilterOperationType()) {
+                    case EQUALS:
+                    case GREATER:
+                    case GREATER_OR_EQUALS:
+                    case LESS:
+                    case LESS_OR_EQUALS:
+                    case DIFFERENT:
+                        putIfNotNull(parameters, FILTER_VALUE + index, getValue(filterOption.getValue()));
+                        break;
+                    case LIKE:
+                        if (filterOption.getValue() != null) {
+                            parameters.put(FILTER_VALUE + index, "%" + filterOption.getValue() + "%");
+                        }
+                        break;
+                    case BETWEEN:
+                        putIfNotNull(parameters, FILTER_VALUE + index, filterOption.getFrom());
+                        putIfNotNull(parameters, FILTER_TO + index, filterOption.getTo());
+                        break;
+                    case IN:
+                        if (!isEmpty(filterOption.getValues())) {
+                            final List<Object> values = new ArrayList<Object>(filterOption.getValues().size());
+                            for (final Object value : filterOption.getValues()) {
+                                values.add(getValue(value));
+                            }
+                            parameters.put(FILTER_VALUE + index, values);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                index++;
+            }
+        }
+        final SearchFields multipleFilter = queryOptions.getMultipleFilter();
+        if (multipleFilter != null && multipleFilter.getTerms() != null) {
+            int index = 0;
+            for (final String term : multipleFilter.getTerms()) {
+                parameters.put(SEARCH_TERM + index, escapeTerm(term) + "%");
+                index++;
+            }
+        }
+        return parameters;
+    }
+
+    private static void putIfNotNull(final Map<String, Object> parameters, final String name, final Object value) {
+        if (value != null) {
+            parameters.put(name, value);
+        }
+    }
+
+    private static boolean isEmpty(final Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private static Object getValue(final Object value) {
+        if (value instanceof EnumToObjectConvertible) {
+            return ((EnumToObjectConvertible) value).fromEnum();
+        }
+        return value;
+    }
+
+    private String escapeTerm(final String term) {
+        // 1) protect escape character if this character is used in data
+        // 2) escape % character (sql query wildcard) by adding escape character
+        // 3) escape _ character (sql query wildcard) by adding escape character
+        return term.replaceAll(likeEscapeCharacter, likeEscapeCharacter + likeEscapeCharacter).replaceAll("%", likeEscapeCharacter + "%")
+                .replaceAll("_", likeEscapeCharacter + "_");
+    }
+
+    /**
+     * Everything the HQL depends on: the named query, the fields and operators of the filters and which of their values are null, the fields searched,
+     * the number of terms and the order by options.
+     */
+    private <T> String getShape(final SelectListDescriptor<T> selectDescriptor) {
+        final QueryOptions queryOptions = selectDescriptor.getQueryOptions();
+        final StringBuilder builder = new StringBuilder(selectDescriptor.getQueryName());
+        if (selectDescriptor.hasAFilter()) {
+            builder.append('|');
+            final List<FilterOption> filters = queryOptions.getFilters();
+            if (filters != null) {
+                for (final FilterOption filterOption : filters) {
+                    builder.append(filterOption.getFilterOperationType());
+                    if (filterOption.getPersistentClass() != null) {
+                        builder.append(':').append(filterOption.getPersistentClass().getName()).append('.').append(filterOption.getFieldName());
+                    }
+                    if (filterOption.getFilterOperationType() == FilterOperationType.BETWEEN) {
+                        builder.append(filterOption.getFrom() == null ? ":null" : ":").append(filterOption.getTo() == null ? ":null" : ":");
+                    } else if (filterOption.getFilterOperationType() == FilterOperationType.IN) {
+                        if (isEmpty(filterOption.getValues())) {
+                            builder.append(":empty");
+                        }
+                    } else if (filterOption.getValue() == null) {
+                        builder.append(":null");
+                    }
+                    builder.append(',');
+                }
+            }
+            final SearchFields multipleFilter = queryOptions.getMultipleFilter();
+            if (multipleFilter != null && multipleFilter.getTerms() != null && !multipleFilter.getTerms().isEmpty()) {
+                builder.append('|').append(multipleFilter.getTerms().size());
+                for (final Entry<Class<? extends PersistentObject>, Set<String>> entry : multipleFilter.getFields().entrySet()) {
+                    builder.append(':').append(entry.getKey().getName()).append(entry.getValue());
+                }
+            }
+        }
+        if (selectDescriptor.hasOrderByParameters()) {
+            builder.append('|').append(selectDescriptor.getEntityType().getName());
+            for (final OrderByOption orderByOption : queryOptions.getOrderByOptions()) {
+                builder.append(':');
+                if (orderByOption.getClazz() != null) {
+                    builder.append(orderByOption.getClazz().getName()).append('.');
+                }
+                builder.append(orderByOption.getFieldName()).append(' ').append(orderByOption.getOrderByType());
+            }
+        }
+        return builder.toString();
+    }
+
+    private String getQueryWithFilters(final String query, final QueryOptions queryOptions) {
+        final List<FilterOption> filters = queryOptions.getFilters();
+        final StringBuilder builder = new StringBuilder(query);
+        final Set<String> specificFilters = new HashSet<String>();
+        FilterOption previousFilter = null;
+        if (filters != null && !filters.isEmpty()) {
+            if (!query.contains("WHERE")) {
+                builder.append(" WHERE (");
+            } else {
+                builder.append(" AND (");
+            }
+            int index = 0;
+            for (final FilterOption filterOption : filters) {
+                if (previousFilter != null) {
+                    final FilterOperationType prevOp = previousFilter.getFilterOperationType();
+                    final FilterOperationType currOp = filterOption.getFilterOperationType();
+                    // Auto add AND if previous operator was normal op or ')' and that current op is normal op or '(' :
+                    if ((isNormalOperator(prevOp) || prevOp == R_PARENTHESIS) && (isNormalOperator(currOp) || currOp == L_PARENTHESIS)) {
+                        builder.append(" AND ");
+                    }
+                }
+                final StringBuilder aliasBuilder = appendFilterClause(builder, filterOption, index);
+                if (aliasBuilder != null) {
+                    specificFilters.add(aliasBuilder.toString());
+                }
+                previousFilter = filterOption;
+                index++;
+            }
+            builder.append(")");
+        }
+        final SearchFields multipleFilter = queryOptions.getMultipleFilter();
+        if (multipleFilter != null && multipleFilter.getTerms() != null && !multipleFilter.getTerms().isEmpty()) {
+            final Map<Class<? extends PersistentObject>, Set<String>> allTextFields = multipleFilter.getFields();
+            final Set<String> fields = new HashSet<String>();
+            for (final Entry<Class<? extends PersistentObject>, Set<String>> entry : allTextFields.entrySet()) {
+                final String alias = classAliasMappings.get(entry.getKey().getName());
+                for (final String field : entry.getValue()) {
+                    final StringBuilder aliasBuilder = new StringBuilder(alias);
+                    aliasBuilder.append('.').append(field);
+                    fields.add(aliasBuilder.toString());
+                }
+            }
+            fields.removeAll(specificFilters);
+            final Iterator<String> fieldIterator = fields.iterator();
+            final int numberOfTerms = multipleFilter.getTerms().size();
+            if (!fields.isEmpty()) {
+                if (!builder.toString().contains("WHERE")) {
+                    builder.append(" WHERE (");
+                } else {
+                    builder.append(" AND (");
+                }
+                while (fieldIterator.hasNext()) {
+                    final String currentField = fieldIterator.next();
+                    for (int i = 0; i < numberOfTerms; i++) {
+                        builder.append(currentField).append(" LIKE :").append(SEARCH_TERM).append(i).append(" ESCAPE '").append(likeEscapeCharacter)
+                                .append('\'');
+                        if (i < numberOfTerms - 1 || fieldIterator.hasNext()) {
+                            builder.append(" OR ");
+                        }
+                    }
+                }
+                builder.append(")");
+            }
+        }
+        return builder.toString();
+    }
+
+    private StringBuilder appendFilterClause(final StringBuilder clause, final FilterOption filterOption, final int index) {
+        final FilterOperationType type = filterOption.getFilterOperationType();
+        StringBuilder completeField = null;
+        if (filterOption.getPersistentClass() != null) {
+            completeField = new StringBuilder(classAliasMappings.get(filterOption.getPersistentClass().getName())).append('.').append(
+                    filterOption.getFieldName());
+        }
+        final String fieldValue = getParameter(filterOption.getValue(), FILTER_VALUE + index);
+        switch (type) {
+            case EQUALS:
+                if (filterOption.getValue() == null) {
+                    clause.append(completeField).append(" IS NULL");
+                } else {
+                    clause.append(completeField).append(" = ").append(fieldValue);
+                }
+                break;
+            case GREATER:
+                clause.append(completeField).append(" > ").append(fieldValue);
+                break;
+            case GREATER_OR_EQUALS:
+                clause.append(completeField).append(" >= ").append(fieldValue);
+                break;
+            case LESS:
+                clause.append(completeField).append(" < ").append(fieldValue);
+                break;
+            case LESS_OR_EQUALS:
+                clause.append(completeField).append(" <= ").append(fieldValue);
+                break;
+            case DIFFERENT:
+                clause.append(completeField).append(" != ").append(fieldValue);
+                break;
+            case IN:
+                if (isEmpty(filterOption.getValues())) {
+                    // nothing is in an empty list, and "IN ()" is not valid
+                    clause.append("1 = 0");
+                } else {
+                    clause.append(completeField).append(" IN (:").append(FILTER_VALUE).append(index).append(")");
+                }
+                break;
+            case BETWEEN:
+                final String from = getParameter(filterOption.getFrom(), FILTER_VALUE + index);
+                final String to = getParameter(filterOption.getTo(), FILTER_TO + index);
+                clause.append("(").append(from).append(" <= ").append(completeField);
+                clause.append(" AND ").append(completeField).append(" <= ").append(to).append(")");
+                break;
+            case LIKE:
+                clause.append(completeField).append(" LIKE ").append(fieldValue);
+                break;
+            case L_PARENTHESIS:
+                clause.append(" (");
+                break;
+            case R_PARENTHESIS:
+                clause.append(" )");
+                break;
+            case AND:
+                clause.append(" AND ");
+                break;
+            case OR:
+                clause.append(" OR ");
+                break;
+            default:
+                break;
+        }
+        return completeField;
+    }
+
+    private static String getParameter(final Object value, final String name) {
+        if (value == null) {
+            return "null";
+        }
+        return ":" + name;
+    }
+
+    private <T> String getQueryWithOrderByClause(final String query, final SelectListDescriptor<T> selectDescriptor) throws SBonitaReadException {
+        final StringBuilder builder = new StringBuilder(query);
+        builder.append(" ORDER BY ");
+        boolean startWithComma = false;
+        boolean sortedById = false;
+        for (final OrderByOption orderByOption : selectDescriptor.getQueryOptions().getOrderByOptions()) {
+            if (startWithComma) {
+                builder.append(',');
+            }
+            final Class<? extends PersistentObject> clazz = orderByOption.getClazz();
+            if (clazz != null) {
+                appendClassAlias(builder, clazz);
+            }
+            final String fieldName = orderByOption.getFieldName();
+            if ("id".equalsIgnoreCase(fieldName) || "sourceObjectId".equalsIgnoreCase(fieldName)) {
+                sortedById = true;
+            }
+            builder.append(fieldName);
+            builder.append(' ');
+            builder.append(orderByOption.getOrderByType().toString());
+            startWithComma = true;
+        }
+        if (!sortedById) {
+            if (startWithComma) {
+                builder.append(',');
+            }
+            appendClassAlias(builder, selectDescriptor.getEntityType());
+            builder.append("id");
+            builder.append(' ');
+            builder.append("ASC");
+        }
+        return builder.toString();
+    }
+
+    private void appendClassAlias(final StringBuilder builder, final Class<? extends PersistentObject> clazz) throws SBonitaReadException {
+        final String className = clazz.getName();
+        final String classAlias = classAliasMappings.get(className);
+        if (classAlias == null || classAlias.trim().isEmpty()) {
+            throw new SBonitaReadException("No class alias found for class " + className);
+        }
+        builder.append(classAlias);
+        builder.append('.');
+    }
+
+}
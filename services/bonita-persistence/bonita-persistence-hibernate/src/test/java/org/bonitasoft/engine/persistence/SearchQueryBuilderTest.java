@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bonitasoft.engine.persistence.search.FilterOperationType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchQueryBuilderTest {
+
+    private static final String QUERY = "SELECT p FROM PersistentObject AS p";
+
+    private SearchQueryBuilder builder;
+
+    @Before
+    public void setUp() {
+        builder = new SearchQueryBuilder(Collections.singletonMap(PersistentObject.class.getName(), "p"), "#");
+    }
+
+    private static SelectListDescriptor<PersistentObject> descriptor(final List<FilterOption> filters, final SearchFields searchFields) {
+        final QueryOptions queryOptions = new QueryOptions(0, 10, Collections.singletonList(new OrderByOption(PersistentObject.class, "name",
+                OrderByType.DESC)), filters, searchFields);
+        return new SelectListDescriptor<PersistentObject>("searchPersistentObject", Collections.<String, Object> emptyMap(), PersistentObject.class,
+                queryOptions);
+    }
+
+    private static FilterOption filter(final String field, final Object value, final FilterOperationType type) {
+        return new FilterOption(PersistentObject.class, field, value, type);
+    }
+
+    @Test
+    public void filterValuesAreBoundAsParameters() throws Exception {
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(
+                Arrays.asList(filter("name", "O'Neil", FilterOperationType.EQUALS), filter("id", 5L, FilterOperationType.GREATER)), null);
+
+        final String query = builder.getQuery(QUERY, descriptor);
+
+        assertEquals(QUERY + " WHERE (p.name = :filterValue0 AND p.id > :filterValue1) ORDER BY p.name DESC,p.id ASC", query);
+        final Map<String, Object> parameters = builder.getParameters(descriptor.getQueryOptions());
+        assertEquals("O'Neil", parameters.get("filterValue0"));
+        assertEquals(5L, parameters.get("filterValue1"));
+    }
+
+    @Test
+    public void searchesOfTheSameShapeShareTheirQuery() throws Exception {
+        final String query = builder.getQuery(QUERY, descriptor(Arrays.asList(filter("name", "john", FilterOperationType.EQUALS)), null));
+
+        assertSame(query, builder.getQuery(QUERY, descriptor(Arrays.asList(filter("name", "jack", FilterOperationType.EQUALS)), null)));
+        assertNotSame(query, builder.getQuery(QUERY, descriptor(Arrays.asList(filter("name", null, FilterOperationType.EQUALS)), null)));
+        assertNotSame(query, builder.getQuery(QUERY, descriptor(Arrays.asList(filter("label", "jack", FilterOperationType.EQUALS)), null)));
+    }
+
+    @Test
+    public void nullValuesAreNotBound() throws Exception {
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(Arrays.asList(filter("name", null, FilterOperationType.EQUALS)), null);
+
+        assertEquals(QUERY + " WHERE (p.name IS NULL) ORDER BY p.name DESC,p.id ASC", builder.getQuery(QUERY, descriptor));
+        assertFalse(builder.getParameters(descriptor.getQueryOptions()).containsKey("filterValue0"));
+    }
+
+    @Test
+    public void betweenAndLikeFiltersAreBound() throws Exception {
+        final FilterOption between = new FilterOption(PersistentObject.class, "id", 1L, 10L);
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(Arrays.asList(between, filter("name", "oh", FilterOperationType.LIKE)), null);
+
+        assertEquals(QUERY + " WHERE ((:filterValue0 <= p.id AND p.id <= :filterTo0) AND p.name LIKE :filterValue1) ORDER BY p.name DESC,p.id ASC",
+                builder.getQuery(QUERY, descriptor));
+        final Map<String, Object> parameters = builder.getParameters(descriptor.getQueryOptions());
+        assertEquals(1L, parameters.get("filterValue0"));
+        assertEquals(10L, parameters.get("filterTo0"));
+        assertEquals("%oh%", parameters.get("filterValue1"));
+    }
+
+    @Test
+    public void inFilterIsBoundAsAList() throws Exception {
+        final FilterOption in = new FilterOption(PersistentObject.class, "id", null).in(1L, 2L);
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(Arrays.asList(in), null);
+
+        assertEquals(QUERY + " WHERE (p.id IN (:filterValue0)) ORDER BY p.name DESC,p.id ASC", builder.getQuery(QUERY, descriptor));
+        assertEquals(Arrays.asList(1L, 2L), builder.getParameters(descriptor.getQueryOptions()).get("filterValue0"));
+        final FilterOption otherIn = new FilterOption(PersistentObject.class, "id", null).in(3L, 4L, 5L);
+        assertSame(builder.getQuery(QUERY, descriptor), builder.getQuery(QUERY, descriptor(Arrays.asList(otherIn), null)));
+    }
+
+    @Test
+    public void emptyInFilterMatchesNothing() throws Exception {
+        final FilterOption in = new FilterOption(PersistentObject.class, "id", null).in(Collections.emptyList());
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(Arrays.asList(in), null);
+
+        assertEquals(QUERY + " WHERE (1 = 0) ORDER BY p.name DESC,p.id ASC", builder.getQuery(QUERY, descriptor));
+        assertFalse(builder.getParameters(descriptor.getQueryOptions()).containsKey("filterValue0"));
+    }
+
+    @Test
+    public void searchTermsAreEscapedAndBound() throws Exception {
+        final SearchFields searchFields = new SearchFields(Arrays.asList("50%_#"), Collections.<Class<? extends PersistentObject>, Set<String>> singletonMap(
+                PersistentObject.class, Collections.singleton("name")));
+        final SelectListDescriptor<PersistentObject> descriptor = descriptor(Collections.<FilterOption> emptyList(), searchFields);
+
+        assertEquals(QUERY + " WHERE (p.name LIKE :searchTerm0 ESCAPE '#') ORDER BY p.name DESC,p.id ASC", builder.getQuery(QUERY, descriptor));
+        assertEquals("50#%#_##%", builder.getParameters(descriptor.getQueryOptions()).get("searchTerm0"));
+    }
+
+}
@@ -28,6 +28,20 @@ public interface SequenceManager {
 
     long getNextId(String entityName, long tenantId) throws SObjectNotFoundException, SObjectModificationException;
 
+    /**
+     * Get several ids at once, e.g. to insert entities in batch. The ids are not necessarily contiguous.
+     * 
+     * @param entityName
+     *            the name of the class of the entities
+     * @param tenantId
+     *            the tenant of the entities
+     * @param numberOfIds
+     *            how many ids to get
+     * @return the ids, in ascending order
+     * @since 6.1
+     */
+    long[] getNextIds(String entityName, long tenantId, int numberOfIds) throws SObjectNotFoundException, SObjectModificationException;
+
     /**
      * clear all in memory sequence
      */
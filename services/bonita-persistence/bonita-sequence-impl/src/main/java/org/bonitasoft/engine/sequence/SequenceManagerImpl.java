@@ -17,8 +17,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
@@ -26,6 +36,10 @@ import org.bonitasoft.engine.commons.exceptions.SObjectModificationException;
 import org.bonitasoft.engine.commons.exceptions.SObjectNotFoundException;
 
 /**
+ * Ids are given from ranges reserved in the table sequence. Each (tenant, sequence) has its own range, consumed without lock; only the thread that
+ * exhausts a range synchronizes on its sequence to get the next one, so one slow range fetch does not block the other sequences.
+ * When prefetchPercentage is set, the next range is reserved in background once this percentage of the current range remains.
+ *
  * @author Charles Souillard
  * @author Matthieu Chaffotte
  * @author Baptiste Mesta
@@ -36,24 +50,17 @@ public class SequenceManagerImpl implements SequenceManager {
 
     private static final String SELECT_BY_ID = "SELECT * FROM sequence WHERE tenantid = ? AND id = ?";
 
-    private static final String UPDATE_SEQUENCE = "UPDATE sequence SET nextId = ? WHERE tenantid = ? AND id = ?";
+    // the update takes the row lock: concurrent reservations, even from other nodes, wait for our commit before reading the row
+    private static final String RESERVE_RANGE = "UPDATE sequence SET nextId = nextId + ? WHERE tenantid = ? AND id = ?";
 
     private final Map<Long, Integer> rangeSizes;
 
-    // Map of available IDs: key=sequenceId, value = nextAvailableId to be assigned to a new entity of the given sequence
-    private Map<Long, Map<Long, Long>> nextAvailableIds;
-
-    // Map of lastId that can be consumed for a given sequence
-    private Map<Long, Map<Long, Long>> lastIdInRanges;
-
-    private static final Map<Long, Object> sequenceMutexs = new HashMap<Long, Object>();
+    private final ConcurrentMap<SequenceKey, Sequence> sequences = new ConcurrentHashMap<SequenceKey, Sequence>();
 
     private final int defaultRangeSize;
 
     private final Map<String, Long> sequencesMappings;
 
-    private static final Object newRangeMutex = new Object();
-
     private final int retries;
 
     private final int delay;
@@ -62,161 +69,208 @@ public class SequenceManagerImpl implements SequenceManager {
 
     private final DataSource datasource;
 
+    private final int prefetchPercentage;
+
+    private final ExecutorService prefetchExecutor;
+
     public SequenceManagerImpl(final Map<Long, Integer> rangeSizes,
             final int defaultRangeSize,
             final Map<String, Long> sequencesMappings,
             final DataSource datasource, final int retries, final int delay,
             final int delayFactor) throws InstantiationException,
             IllegalAccessException, ClassNotFoundException, SQLException {
+        this(rangeSizes, defaultRangeSize, sequencesMappings, datasource, retries, delay, delayFactor, 0);
+    }
+
+    /**
+     * @param prefetchPercentage
+     *            percentage of the range remaining when the next range is reserved in background, 0 to reserve it only when the current one is exhausted
+     */
+    public SequenceManagerImpl(final Map<Long, Integer> rangeSizes,
+            final int defaultRangeSize,
+            final Map<String, Long> sequencesMappings,
+            final DataSource datasource, final int retries, final int delay,
+            final int delayFactor, final int prefetchPercentage) throws InstantiationException,
+            IllegalAccessException, ClassNotFoundException, SQLException {
         this.defaultRangeSize = defaultRangeSize;
         this.rangeSizes = rangeSizes;
         this.sequencesMappings = sequencesMappings;
         this.retries = retries;
         this.delay = delay;
         this.delayFactor = delayFactor;
-        this.nextAvailableIds = new HashMap<Long, Map<Long, Long>>();
-        this.lastIdInRanges = new HashMap<Long, Map<Long, Long>>();
         this.datasource = datasource;
+        this.prefetchPercentage = prefetchPercentage;
+        if (prefetchPercentage > 0) {
+            prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "Bonita-Sequence-Prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            prefetchExecutor = null;
+        }
     }
 
     @Override
     public void reset() {
-        nextAvailableIds = new HashMap<Long, Map<Long, Long>>();
-        lastIdInRanges = new HashMap<Long, Map<Long, Long>>();
+        sequences.clear();
     }
 
-    private long getNextAvailableId(final long sequenceId, final long tenantId) {
-        final Map<Long, Long> nextAvailableIds = getNextAvailableIdsMapForTenant(tenantId);
-        if (!nextAvailableIds.containsKey(sequenceId)) {
-            nextAvailableIds.put(sequenceId, 0L);
+    private Sequence getSequence(final String entityName, final long tenantId) throws SObjectNotFoundException {
+        final Long sequenceId = sequencesMappings.get(entityName);
+        if (sequenceId == null) {
+            throw new SObjectNotFoundException("No sequence id found for " + entityName);
         }
-        return nextAvailableIds.get(sequenceId);
-    }
-
-    /**
-     * @param tenantId
-     * @return
-     */
-    private Map<Long, Long> getNextAvailableIdsMapForTenant(final long tenantId) {
-        if (!nextAvailableIds.containsKey(tenantId)) {
-            nextAvailableIds.put(tenantId, new HashMap<Long, Long>());
+        final SequenceKey key = new SequenceKey(tenantId, sequenceId);
+        Sequence sequence = sequences.get(key);
+        if (sequence == null) {
+            final int rangeSize = getRangeSize(sequenceId);
+            final Sequence newSequence = new Sequence(tenantId, sequenceId, rangeSize, (long) rangeSize * prefetchPercentage / 100);
+            sequence = sequences.putIfAbsent(key, newSequence);
+            if (sequence == null) {
+                sequence = newSequence;
+            }
         }
-        return nextAvailableIds.get(tenantId);
-    }
-
-    private void setNextAvailableId(final long sequenceId, final long nextAvailableId, final long tenantId) {
-        getNextAvailableIdsMapForTenant(tenantId).put(sequenceId, nextAvailableId);
+        return sequence;
     }
 
-    private long getLastIdInRange(final long sequenceId, final long tenantId) {
-        final Map<Long, Long> lastIdInRanges = getLastIdInRangeMapForTenant(tenantId);
-        if (!lastIdInRanges.containsKey(sequenceId)) {
-            lastIdInRanges.put(sequenceId, -1L);
+    @Override
+    public long getNextId(final String entityName, final long tenantId) throws SObjectNotFoundException, SObjectModificationException {
+        final Sequence sequence = getSequence(entityName, tenantId);
+        while (true) {
+            final Range range = sequence.current;
+            final long id = range.next.getAndIncrement();
+            if (id <= range.last) {
+                if (id == range.last - sequence.prefetchThreshold) {
+                    prefetch(sequence);
+                }
+                return id;
+            }
+            setNewRange(sequence, range);
         }
-        return lastIdInRanges.get(sequenceId);
     }
 
-    /**
-     * @param tenantId
-     * @return
-     */
-    private Map<Long, Long> getLastIdInRangeMapForTenant(final long tenantId) {
-        if (!lastIdInRanges.containsKey(tenantId)) {
-            lastIdInRanges.put(tenantId, new HashMap<Long, Long>());
+    @Override
+    public long[] getNextIds(final String entityName, final long tenantId, final int numberOfIds) throws SObjectNotFoundException,
+            SObjectModificationException {
+        final Sequence sequence = getSequence(entityName, tenantId);
+        final long[] ids = new long[numberOfIds];
+        int index = 0;
+        while (index < numberOfIds) {
+            final Range range = sequence.current;
+            final long first = range.next.getAndAdd(numberOfIds - index);
+            if (first <= range.last) {
+                final long last = Math.min(range.last, first + numberOfIds - index - 1);
+                final long prefetchId = range.last - sequence.prefetchThreshold;
+                if (first <= prefetchId && prefetchId <= last) {
+                    prefetch(sequence);
+                }
+                for (long id = first; id <= last; id++) {
+                    ids[index++] = id;
+                }
+            } else {
+                setNewRange(sequence, range);
+            }
         }
-        return lastIdInRanges.get(tenantId);
+        return ids;
     }
 
-    private void setLastIdInRange(final long sequenceId, final long lastIdInRange, final long tenantId) {
-        getLastIdInRangeMapForTenant(tenantId).put(sequenceId, lastIdInRange);
-    }
+    private void prefetch(final Sequence sequence) {
+        if (prefetchExecutor == null) {
+            return;
+        }
+        synchronized (sequence) {
+            if (sequence.prefetched == null) {
+                try {
+                    sequence.prefetched = prefetchExecutor.submit(new Callable<Range>() {
 
-    private static synchronized Object getSequenceMutex(final Long sequenceId) {
-        if (!sequenceMutexs.containsKey(sequenceId)) {
-            sequenceMutexs.put(sequenceId, new Object());
+                        @Override
+                        public Range call() throws Exception {
+                            return reserveRange(sequence);
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    // closed: the range will be reserved when needed
+                }
+            }
         }
-        return sequenceMutexs.get(sequenceId);
     }
 
-    @Override
-    public long getNextId(final String entityName, final long tenantId) throws SObjectNotFoundException, SObjectModificationException {
-        final Long sequenceId = sequencesMappings.get(entityName);
-        if (sequenceId == null) {
-            throw new SObjectNotFoundException("No sequence id found for " + entityName);
-        }
-        final Object sequenceMutex = getSequenceMutex(sequenceId);
-        synchronized (sequenceMutex) {
-            final long nextAvailableId = getNextAvailableId(sequenceId, tenantId);
-            final long lastIdInRange = getLastIdInRange(sequenceId, tenantId);
-            // System.err.println("***** getting new ID for sequence: " +
-            // sequenceId + ", nextAvailableId= " + nextAvailableId +
-            // ", lastIdInRange=" +
-            // lastIdInRange);
-            if (nextAvailableId > lastIdInRange) {
-                // System.err.println("nextAvailableId > lastIdInRange, settingNewRange..");
-                // no available IF in the range this sequence can consume, we
-                // need to get a new range and calculate a new nextAvailableId
-                setNewRange(sequenceId, tenantId);
-                return getNextId(entityName, tenantId);
+    private void setNewRange(final Sequence sequence, final Range exhausted) throws SObjectNotFoundException {
+        synchronized (sequence) {
+            if (sequence.current != exhausted) {
+                // already done by another thread
+                return;
             }
-            // System.err.println("***** getting new ID for sequence: " +
-            // sequenceId + ", setting nextAvailableId to= " +
-            // (nextAvailableId+1) +
-            // " and returning: " + nextAvailableId);
-            setNextAvailableId(sequenceId, nextAvailableId + 1, tenantId);
-
-            return nextAvailableId;
+            Range range = null;
+            if (sequence.prefetched != null) {
+                try {
+                    range = sequence.prefetched.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    // reserve it again below
+                }
+                sequence.prefetched = null;
+            }
+            if (range == null) {
+                range = reserveRange(sequence);
+            }
+            sequence.current = range;
         }
     }
 
-    private void setNewRange(final long sequenceId, final long tenantId) throws SObjectNotFoundException {
-        synchronized (newRangeMutex) {
-            int attempt = 1;
-            long sleepTime = delay;
-            while (attempt <= retries) {
-                if (attempt > 1) {
-                    System.err.println("retrying... #" + attempt);
-                }
-                Connection connection = null;
-                try {
-                    connection = datasource.getConnection();
-                    connection.setAutoCommit(false);
-
-                    // we have reach the maximum in this range
-                    final long nextAvailableId = selectById(connection,
-                            sequenceId, tenantId);
-                    setNextAvailableId(sequenceId, nextAvailableId, tenantId);
-
-                    final long nextSequenceId = nextAvailableId
-                            + getRangeSize(sequenceId);
-                    updateSequence(connection, nextSequenceId, tenantId,
-                            sequenceId);
-                    setLastIdInRange(sequenceId, nextSequenceId - 1, tenantId);
-
-                    connection.commit();
-                    return;
-                } catch (final Throwable t) {
-                    attempt++;
+    private Range reserveRange(final Sequence sequence) throws SObjectNotFoundException {
+        int attempt = 1;
+        long sleepTime = delay;
+        while (attempt <= retries) {
+            if (attempt > 1) {
+                System.err.println("retrying... #" + attempt);
+            }
+            Connection connection = null;
+            try {
+                connection = datasource.getConnection();
+                connection.setAutoCommit(false);
+
+                reserveRange(connection, sequence.rangeSize, sequence.tenantId, sequence.sequenceId);
+                final long nextSequenceId = selectById(connection, sequence.sequenceId, sequence.tenantId);
+
+                connection.commit();
+                return new Range(nextSequenceId - sequence.rangeSize, nextSequenceId - 1);
+            } catch (final SObjectNotFoundException e) {
+                rollback(connection);
+                throw e;
+            } catch (final Throwable t) {
+                attempt++;
+                rollback(connection);
+                manageException(sleepTime, t);
+                sleepTime *= delayFactor;
+            } finally {
+                if (connection != null) {
                     try {
-                        connection.rollback();
-                    } catch (final SQLException e) {
-                        e.printStackTrace();
-                        // do nothing
-                    }
-                    manageException(sleepTime, t);
-                    sleepTime *= delayFactor;
-                } finally {
-                    if (connection != null) {
-                        try {
-                            connection.close();
-                        } catch (SQLException e) {
-                            // Can't do anything...
-                        }
+                        connection.close();
+                    } catch (SQLException e) {
+                        // Can't do anything...
                     }
                 }
             }
-            throw new SObjectNotFoundException(
-                    "Unable to get a sequence id for " + sequenceId);
+        }
+        throw new SObjectNotFoundException(
+                "Unable to get a sequence id for " + sequence.sequenceId);
+    }
+
+    private static void rollback(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (final SQLException e) {
+                e.printStackTrace();
+                // do nothing
+            }
         }
     }
 
@@ -225,18 +279,18 @@ public class SequenceManagerImpl implements SequenceManager {
         return rangeSize != null ? rangeSize : defaultRangeSize;
     }
 
-    protected void updateSequence(Connection connection, final long nextSequenceId, final long tenantId, final long id)
-            throws SQLException {
-        PreparedStatement updateSequencePreparedStatement = connection.prepareStatement(UPDATE_SEQUENCE);
+    protected void reserveRange(Connection connection, final int rangeSize, final long tenantId, final long id)
+            throws SQLException, SObjectNotFoundException {
+        PreparedStatement reserveRangePreparedStatement = connection.prepareStatement(RESERVE_RANGE);
         try {
-            updateSequencePreparedStatement.setObject(1, nextSequenceId);
-            updateSequencePreparedStatement.setObject(2, tenantId);
-            updateSequencePreparedStatement.setObject(3, id);
-            updateSequencePreparedStatement.executeUpdate();
-        } finally {
-            if (updateSequencePreparedStatement != null) {
-                updateSequencePreparedStatement.close();
+            reserveRangePreparedStatement.setLong(1, rangeSize);
+            reserveRangePreparedStatement.setLong(2, tenantId);
+            reserveRangePreparedStatement.setLong(3, id);
+            if (reserveRangePreparedStatement.executeUpdate() == 0) {
+                throw new SObjectNotFoundException("Found no row for tenantId:" + tenantId + " id: " + id);
             }
+        } finally {
+            reserveRangePreparedStatement.close();
         }
     }
 
@@ -291,22 +345,96 @@ public class SequenceManagerImpl implements SequenceManager {
 
     @Override
     public void clear() {
-        nextAvailableIds.clear();
-        lastIdInRanges.clear();
+        sequences.clear();
     }
 
     @Override
     public void close() throws SQLException {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
     }
 
     @Override
     public void clear(final long tenantId) {
-        if (nextAvailableIds.containsKey(tenantId)) {
-            nextAvailableIds.get(tenantId).clear();
+        final Iterator<SequenceKey> iterator = sequences.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().tenantId == tenantId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class SequenceKey {
+
+        private final long tenantId;
+
+        private final long sequenceId;
+
+        SequenceKey(final long tenantId, final long sequenceId) {
+            this.tenantId = tenantId;
+            this.sequenceId = sequenceId;
+        }
+
+        @Override
+        public int hashCode() {
+            final long hash = 31 * tenantId + sequenceId;
+            return (int) (hash ^ hash >>> 32);
         }
-        if (lastIdInRanges.containsKey(tenantId)) {
-            lastIdInRanges.get(tenantId).clear();
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SequenceKey)) {
+                return false;
+            }
+            final SequenceKey other = (SequenceKey) obj;
+            return tenantId == other.tenantId && sequenceId == other.sequenceId;
+        }
+
+    }
+
+    /**
+     * Ids from next to last can be given. Once next is greater than last the range is exhausted.
+     */
+    private static final class Range {
+
+        private final AtomicLong next;
+
+        private final long last;
+
+        Range(final long first, final long last) {
+            next = new AtomicLong(first);
+            this.last = last;
         }
+
+    }
+
+    private static final class Sequence {
+
+        private final long tenantId;
+
+        private final long sequenceId;
+
+        private final int rangeSize;
+
+        private final long prefetchThreshold;
+
+        // exhausted until the first range is reserved
+        private volatile Range current = new Range(0, -1);
+
+        // guarded by this
+        private Future<Range> prefetched;
+
+        Sequence(final long tenantId, final long sequenceId, final int rangeSize, final long prefetchThreshold) {
+            this.tenantId = tenantId;
+            this.sequenceId = sequenceId;
+            this.rangeSize = rangeSize;
+            this.prefetchThreshold = prefetchThreshold;
+        }
+
     }
 
 }
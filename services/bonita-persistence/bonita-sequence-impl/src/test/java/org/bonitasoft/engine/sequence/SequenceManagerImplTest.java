@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.sequence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bonitasoft.engine.commons.exceptions.SObjectNotFoundException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SequenceManagerImplTest {
+
+    private static final String ENTITY = "SProcessInstanceImpl";
+
+    private JdbcDataSource datasource;
+
+    private SequenceManagerImpl sequenceManager;
+
+    @Before
+    public void setUp() throws Exception {
+        datasource = new JdbcDataSource();
+        datasource.setURL("jdbc:h2:mem:sequence;DB_CLOSE_DELAY=-1");
+        execute("CREATE TABLE sequence (tenantid BIGINT NOT NULL, id BIGINT NOT NULL, nextid BIGINT NOT NULL, PRIMARY KEY (tenantid, id))");
+        execute("INSERT INTO sequence VALUES (1, 10, 1)");
+        execute("INSERT INTO sequence VALUES (2, 10, 1)");
+        sequenceManager = createSequenceManager(10);
+    }
+
+    private SequenceManagerImpl createSequenceManager(final int prefetchPercentage) throws Exception {
+        final Map<String, Long> mappings = new HashMap<String, Long>();
+        mappings.put(ENTITY, 10L);
+        return new SequenceManagerImpl(Collections.<Long, Integer> emptyMap(), 10, mappings, datasource, 3, 1, 2, prefetchPercentage);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sequenceManager.close();
+        execute("DROP TABLE sequence");
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void idsFollowEachOtherAcrossRanges() throws Exception {
+        for (long expected = 1; expected <= 35; expected++) {
+            assertEquals(expected, sequenceManager.getNextId(ENTITY, 1));
+        }
+    }
+
+    @Test
+    public void tenantsHaveTheirOwnSequence() throws Exception {
+        assertEquals(1, sequenceManager.getNextId(ENTITY, 1));
+        assertEquals(2, sequenceManager.getNextId(ENTITY, 1));
+        assertEquals(1, sequenceManager.getNextId(ENTITY, 2));
+    }
+
+    @Test
+    public void getNextIdsSpansRanges() throws Exception {
+        assertEquals(1, sequenceManager.getNextId(ENTITY, 1));
+        final long[] ids = sequenceManager.getNextIds(ENTITY, 1, 25);
+        final long[] expected = new long[25];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i + 2;
+        }
+        assertArrayEquals(expected, ids);
+    }
+
+    @Test
+    public void twoManagersOnTheSameTableNeverGiveTheSameId() throws Exception {
+        final SequenceManagerImpl otherNode = createSequenceManager(0);
+        final Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(sequenceManager.getNextId(ENTITY, 1));
+            ids.add(otherNode.getNextId(ENTITY, 1));
+        }
+        otherNode.close();
+        assertEquals(200, ids.size());
+    }
+
+    @Test
+    public void concurrentCallsNeverGiveTheSameId() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<List<Long>>> results = new ArrayList<Future<List<Long>>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(new Callable<List<Long>>() {
+
+                @Override
+                public List<Long> call() throws Exception {
+                    final List<Long> ids = new ArrayList<Long>();
+                    for (int j = 0; j < 500; j++) {
+                        ids.add(sequenceManager.getNextId(ENTITY, 1));
+                    }
+                    return ids;
+                }
+            }));
+        }
+        final Set<Long> ids = new HashSet<Long>();
+        for (final Future<List<Long>> result : results) {
+            ids.addAll(result.get());
+        }
+        executor.shutdown();
+        assertEquals(4000, ids.size());
+    }
+
+    @Test(expected = SObjectNotFoundException.class)
+    public void unknownEntity() throws Exception {
+        sequenceManager.getNextId("unknown", 1);
+    }
+
+    @Test(expected = SObjectNotFoundException.class)
+    public void missingSequenceRow() throws Exception {
+        sequenceManager.getNextId(ENTITY, 3);
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.scheduler;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execute jobs once at a given date, e.g. the timers of BPMN events, without registering them in the {@link SchedulerExecutor}: the {@link SchedulerService}
+ * delegates its one shot jobs to this service when it has one.
+ *
+ * @since 6.1
+ */
+public interface TimerService {
+
+    /**
+     * Schedule a job to be executed once. The timer is stored in the current transaction: it is not executed if the transaction is rolled back.
+     *
+     * @param tenantId
+     *            the tenant of the job
+     * @param name
+     *            the name of the job, unique in the tenant
+     * @param jobClassName
+     *            the class of the {@link StatelessJob} to execute
+     * @param dueDate
+     *            the date at which the job must be executed
+     * @param parameters
+     *            the attributes given to the job before it is executed
+     * @throws SSchedulerException
+     */
+    void schedule(long tenantId, String name, String jobClassName, Date dueDate, Map<String, Serializable> parameters) throws SSchedulerException;
+
+    /**
+     * Cancel a timer in the current transaction
+     *
+     * @param tenantId
+     *            the tenant of the job
+     * @param name
+     *            the name of the job
+     * @return true if a timer having that name was cancelled, false if there is no such timer
+     * @throws SSchedulerException
+     */
+    boolean cancel(long tenantId, String name) throws SSchedulerException;
+
+    /**
+     * Cancel all the timers of a tenant
+     *
+     * @param tenantId
+     *            the tenant of the timers
+     * @throws SSchedulerException
+     */
+    void cancelAll(long tenantId) throws SSchedulerException;
+
+    /**
+     * Get the names of the timers of a tenant that are not executed yet
+     *
+     * @param tenantId
+     *            the tenant of the timers
+     * @return the names of the timers
+     * @throws SSchedulerException
+     */
+    List<String> getTimers(long tenantId) throws SSchedulerException;
+
+    /**
+     * Get the names of the timers of all tenants that are not executed yet
+     *
+     * @return the names of the timers
+     * @throws SSchedulerException
+     */
+    List<String> getAllTimers() throws SSchedulerException;
+
+    /**
+     * Start executing the timers when they are due
+     *
+     * @throws SSchedulerException
+     */
+    void start() throws SSchedulerException;
+
+    /**
+     * Stop executing the timers, they are kept and executed when the service is started again
+     *
+     * @throws SSchedulerException
+     */
+    void stop() throws SSchedulerException;
+
+}
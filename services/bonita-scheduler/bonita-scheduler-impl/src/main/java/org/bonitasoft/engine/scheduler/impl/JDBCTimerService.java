@@ -0,0 +1,696 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.scheduler.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.scheduler.SSchedulerException;
+import org.bonitasoft.engine.scheduler.StatelessJob;
+import org.bonitasoft.engine.scheduler.TimerService;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionException;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+
+/**
+ * Store the timers in the table timer_event using plain JDBC and fire them from a {@link TimingWheel}.
+ * The table is split in buckets of bucketMillis milliseconds: only the timers of the current and of the next bucket are loaded in the wheel, the timers
+ * scheduled later are read when their bucket becomes the next one. These two buckets are read again every pollMillis milliseconds to get the timers
+ * scheduled by the other nodes.
+ * Due timers are fired by batches: a batch of timers of one tenant is claimed in one transaction for claimMillis milliseconds, only the timers actually
+ * claimed by that transaction are executed so that a timer cancelled in the meantime or already fired by another node is not executed. The row of a timer
+ * is deleted in the transaction of its job, or after its job when the job is not wrapped in a transaction: a timer whose job fails is kept and fired again
+ * when its claim expires. A job lasting longer than claimMillis can be fired a second time by another node.
+ * The datasource must be the one managed by the transaction manager of the engine so that timers are written in the transaction that schedules them.
+ *
+ * @since 6.1
+ */
+public class JDBCTimerService implements TimerService {
+
+    private static final String INSERT = "INSERT INTO timer_event (tenantid, name, jobclassname, dueDate, bucket, parameters) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE = "DELETE FROM timer_event WHERE tenantid = ? AND name = ?";
+
+    private static final String DELETE_CLAIMED = "DELETE FROM timer_event WHERE tenantid = ? AND name = ? AND claimeduntil = ?";
+
+    private static final String DELETE_TENANT = "DELETE FROM timer_event WHERE tenantid = ?";
+
+    private static final String CLAIM = "UPDATE timer_event SET claimeduntil = ? WHERE tenantid = ? AND name = ? AND dueDate = ? AND (claimeduntil IS NULL OR claimeduntil <= ?)";
+
+    private static final String SELECT_UNTIL_BUCKET = "SELECT tenantid, name, jobclassname, dueDate, parameters FROM timer_event WHERE bucket <= ? AND (claimeduntil IS NULL OR claimeduntil <= ?)";
+
+    private static final String SELECT_NAMES = "SELECT name FROM timer_event WHERE tenantid = ?";
+
+    private static final String SELECT_ALL_NAMES = "SELECT name FROM timer_event";
+
+    private static final int WHEEL_SIZE = 64;
+
+    private static final int WHEEL_LEVELS = 3;
+
+    private static final class Timer {
+
+        private final long tenantId;
+
+        private final String name;
+
+        private final String jobClassName;
+
+        private final long dueDate;
+
+        private final Map<String, Serializable> parameters;
+
+        Timer(final long tenantId, final String name, final String jobClassName, final long dueDate, final Map<String, Serializable> parameters) {
+            this.tenantId = tenantId;
+            this.name = name;
+            this.jobClassName = jobClassName;
+            this.dueDate = dueDate;
+            this.parameters = parameters;
+        }
+
+        String getKey() {
+            return tenantId + "_" + name;
+        }
+
+    }
+
+    private final DataSource datasource;
+
+    private final TransactionService transactionService;
+
+    private final SessionService sessionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final long tickMillis;
+
+    private final long bucketMillis;
+
+    private final long pollMillis;
+
+    private final long claimMillis;
+
+    private final int batchSize;
+
+    private final int nbThreads;
+
+    /**
+     * the timers in the wheel by key: an entry of the wheel that is not the one of this map has been replaced by a newer one and must be ignored
+     */
+    private final Map<String, Timer> loadedTimers = new HashMap<String, Timer>();
+
+    private TimingWheel<Timer> wheel;
+
+    private long loadedBucket = -1;
+
+    private long nextLoad;
+
+    private Thread ticker;
+
+    private ExecutorService firingExecutor;
+
+    private volatile boolean stopped = true;
+
+    /**
+     * @param tickMillis
+     *            precision of the timers: a timer is fired at most tickMillis after its due date
+     * @param bucketMillis
+     *            duration covered by one bucket of the table, the timers of two buckets are kept in memory
+     * @param pollMillis
+     *            interval at which the loaded buckets are read again to get the timers scheduled by other nodes
+     * @param claimMillis
+     *            time during which a fired timer is reserved to this node, a timer whose job failed is fired again once it is elapsed
+     * @param batchSize
+     *            max number of timers fired in one transaction
+     * @param nbThreads
+     *            number of threads firing the timers
+     */
+    public JDBCTimerService(final DataSource datasource, final TransactionService transactionService, final SessionService sessionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final long tickMillis, final long bucketMillis, final long pollMillis,
+            final long claimMillis, final int batchSize, final int nbThreads) {
+        this.datasource = datasource;
+        this.transactionService = transactionService;
+        this.sessionService = sessionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.tickMillis = tickMillis;
+        this.bucketMillis = bucketMillis;
+        this.pollMillis = pollMillis;
+        this.claimMillis = claimMillis;
+        this.batchSize = batchSize;
+        this.nbThreads = nbThreads;
+    }
+
+    @Override
+    public void schedule(final long tenantId, final String name, final String jobClassName, final Date dueDate, final Map<String, Serializable> parameters)
+            throws SSchedulerException {
+        final Timer timer = new Timer(tenantId, name, jobClassName, dueDate.getTime(), new HashMap<String, Serializable>(parameters));
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(INSERT);
+            try {
+                statement.setLong(1, tenantId);
+                statement.setString(2, name);
+                statement.setString(3, jobClassName);
+                statement.setLong(4, timer.dueDate);
+                statement.setLong(5, getBucket(timer.dueDate));
+                statement.setBytes(6, serialize(timer.parameters));
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SSchedulerException("Unable to store the timer " + name + " of tenant " + tenantId, e);
+        } catch (final IOException e) {
+            throw new SSchedulerException("Unable to serialize the parameters of the timer " + name + " of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+        // the timer must not be fired before its row is visible: add it to the wheel once committed
+        try {
+            transactionService.registerBonitaSynchronization(new BonitaTransactionSynchronization() {
+
+                @Override
+                public void beforeCommit() {
+                    // nothing to do
+                }
+
+                @Override
+                public void afterCompletion(final TransactionState txState) {
+                    if (TransactionState.COMMITTED == txState) {
+                        addIfInLoadedBuckets(timer);
+                    }
+                }
+
+            });
+        } catch (final STransactionNotFoundException e) {
+            addIfInLoadedBuckets(timer);
+        }
+    }
+
+    @Override
+    public boolean cancel(final long tenantId, final String name) throws SSchedulerException {
+        // the entry of the wheel is ignored when fired: its row is not there anymore
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE);
+            try {
+                statement.setLong(1, tenantId);
+                statement.setString(2, name);
+                return statement.executeUpdate() > 0;
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SSchedulerException("Unable to cancel the timer " + name + " of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public void cancelAll(final long tenantId) throws SSchedulerException {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE_TENANT);
+            try {
+                statement.setLong(1, tenantId);
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SSchedulerException("Unable to cancel the timers of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+        // the entries of the wheel that are not in loadedTimers anymore are ignored when fired
+        synchronized (this) {
+            final Iterator<Timer> iterator = loadedTimers.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().tenantId == tenantId) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<String> getTimers(final long tenantId) throws SSchedulerException {
+        return getNames(SELECT_NAMES, tenantId);
+    }
+
+    @Override
+    public List<String> getAllTimers() throws SSchedulerException {
+        return getNames(SELECT_ALL_NAMES, null);
+    }
+
+    private List<String> getNames(final String query, final Long tenantId) throws SSchedulerException {
+        final List<String> names = new ArrayList<String>();
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(query);
+            try {
+                if (tenantId != null) {
+                    statement.setLong(1, tenantId);
+                }
+                final ResultSet resultSet = statement.executeQuery();
+                try {
+                    while (resultSet.next()) {
+                        names.add(resultSet.getString("name"));
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SSchedulerException("Unable to read the timers", e);
+        } finally {
+            close(connection);
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!stopped) {
+            return;
+        }
+        stopped = false;
+        wheel = new TimingWheel<Timer>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        loadedBucket = -1;
+        firingExecutor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Bonita-Timer-Firing-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+        ticker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                tick();
+            }
+
+        }, "Bonita-Timer");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public void stop() throws SSchedulerException {
+        final Thread thread;
+        final ExecutorService executor;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            thread = ticker;
+            executor = firingExecutor;
+        }
+        thread.interrupt();
+        executor.shutdown();
+        try {
+            thread.join();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SSchedulerException(e);
+        }
+        synchronized (this) {
+            ticker = null;
+            firingExecutor = null;
+            wheel = null;
+            loadedTimers.clear();
+        }
+    }
+
+    private void tick() {
+        while (!stopped) {
+            final long now = System.currentTimeMillis();
+            final long bucket = getBucket(now);
+            if (bucket != loadedBucket || now >= nextLoad) {
+                try {
+                    load(bucket, now);
+                } catch (final SSchedulerException e) {
+                    // retried at the next tick
+                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, e);
+                }
+            }
+            final List<Timer> dueTimers = new ArrayList<Timer>();
+            synchronized (this) {
+                for (final Timer timer : wheel.advance(now)) {
+                    // skip the entries replaced by a newer timer having the same name
+                    if (loadedTimers.get(timer.getKey()) == timer) {
+                        loadedTimers.remove(timer.getKey());
+                        dueTimers.add(timer);
+                    }
+                }
+            }
+            submit(dueTimers);
+            try {
+                Thread.sleep(tickMillis);
+            } catch (final InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void load(final long bucket, final long now) throws SSchedulerException {
+        final List<Timer> timers = new ArrayList<Timer>();
+        Connection connection = null;
+        try {
+            transactionService.begin();
+            try {
+                connection = datasource.getConnection();
+                final PreparedStatement statement = connection.prepareStatement(SELECT_UNTIL_BUCKET);
+                try {
+                    statement.setLong(1, bucket + 1);
+                    statement.setLong(2, now);
+                    final ResultSet resultSet = statement.executeQuery();
+                    try {
+                        while (resultSet.next()) {
+                            timers.add(new Timer(resultSet.getLong("tenantid"), resultSet.getString("name"), resultSet.getString("jobclassname"), resultSet
+                                    .getLong("dueDate"), deserialize(resultSet.getBytes("parameters"))));
+                        }
+                    } finally {
+                        resultSet.close();
+                    }
+                } finally {
+                    statement.close();
+                }
+            } catch (final Exception e) {
+                transactionService.setRollbackOnly();
+                throw new SSchedulerException("Unable to load the timers until the bucket " + (bucket + 1), e);
+            } finally {
+                close(connection);
+                transactionService.complete();
+            }
+        } catch (final STransactionException e) {
+            throw new SSchedulerException(e);
+        }
+        synchronized (this) {
+            loadedBucket = bucket;
+            nextLoad = now + pollMillis;
+            for (final Timer timer : timers) {
+                final Timer loadedTimer = loadedTimers.get(timer.getKey());
+                if (loadedTimer == null || loadedTimer.dueDate != timer.dueDate) {
+                    add(timer);
+                }
+            }
+        }
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+            logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "Loaded " + timers.size() + " timers until the bucket " + (bucket + 1));
+        }
+    }
+
+    private synchronized void addIfInLoadedBuckets(final Timer timer) {
+        // the timers of the next buckets are read by the ticker when it reaches them
+        if (!stopped && getBucket(timer.dueDate) <= loadedBucket + 1) {
+            add(timer);
+        }
+    }
+
+    private void add(final Timer timer) {
+        loadedTimers.put(timer.getKey(), timer);
+        wheel.add(timer.dueDate, timer);
+    }
+
+    private void submit(final List<Timer> dueTimers) {
+        final Map<Long, List<Timer>> timersByTenant = new LinkedHashMap<Long, List<Timer>>();
+        for (final Timer timer : dueTimers) {
+            List<Timer> tenantTimers = timersByTenant.get(timer.tenantId);
+            if (tenantTimers == null) {
+                tenantTimers = new ArrayList<Timer>();
+                timersByTenant.put(timer.tenantId, tenantTimers);
+            }
+            tenantTimers.add(timer);
+        }
+        for (final Entry<Long, List<Timer>> entry : timersByTenant.entrySet()) {
+            final List<Timer> tenantTimers = entry.getValue();
+            for (int i = 0; i < tenantTimers.size(); i += batchSize) {
+                final long tenantId = entry.getKey();
+                final List<Timer> batch = tenantTimers.subList(i, Math.min(i + batchSize, tenantTimers.size()));
+                firingExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        fire(tenantId, batch);
+                    }
+
+                });
+            }
+        }
+    }
+
+    private void fire(final long tenantId, final List<Timer> timers) {
+        SSession session = null;
+        try {
+            session = createSession(tenantId);
+            sessionAccessor.setSessionInfo(session.getId(), session.getTenantId());
+            final long claimedUntil = System.currentTimeMillis() + claimMillis;
+            for (final Timer timer : claim(tenantId, timers, claimedUntil)) {
+                if (!execute(timer, claimedUntil)) {
+                    retry(timer, claimedUntil);
+                }
+            }
+        } catch (final Exception e) {
+            logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Unable to fire " + timers.size() + " timers of tenant " + tenantId + ": " + e.getMessage());
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, e);
+            }
+        } finally {
+            if (session != null) {
+                try {
+                    sessionAccessor.deleteSessionId();
+                    sessionService.deleteSession(session.getId());
+                } catch (final SSessionNotFoundException e) {
+                    logger.log(this.getClass(), TechnicalLogSeverity.ERROR, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim the rows of the given timers until the given date in one transaction
+     *
+     * @return the timers whose row was claimed by this transaction
+     */
+    private List<Timer> claim(final long tenantId, final List<Timer> timers, final long claimedUntil) throws Exception {
+        final List<Timer> claimed = new ArrayList<Timer>(timers.size());
+        final long now = System.currentTimeMillis();
+        Connection connection = null;
+        transactionService.begin();
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(CLAIM);
+            try {
+                for (final Timer timer : timers) {
+                    statement.setLong(1, claimedUntil);
+                    statement.setLong(2, tenantId);
+                    statement.setString(3, timer.name);
+                    statement.setLong(4, timer.dueDate);
+                    statement.setLong(5, now);
+                    if (statement.executeUpdate() > 0) {
+                        claimed.add(timer);
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (final Exception e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            close(connection);
+            transactionService.complete();
+        }
+        return claimed;
+    }
+
+    /**
+     * Execute the job of a claimed timer and delete its row, in the transaction of the job when it is wrapped in a transaction
+     *
+     * @return false if the job or the deletion of the row failed, the row is then still there
+     */
+    private boolean execute(final Timer timer, final long claimedUntil) {
+        final boolean wrapInTransaction;
+        final StatelessJob job;
+        try {
+            job = (StatelessJob) Class.forName(timer.jobClassName).newInstance();
+            job.setAttributes(timer.parameters);
+            wrapInTransaction = job.isWrappedInTransaction();
+        } catch (final Exception e) {
+            logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Unable to instantiate the job of the timer " + timer.name + ": " + e.getMessage());
+            return false;
+        }
+        try {
+            if (wrapInTransaction) {
+                transactionService.begin();
+                try {
+                    job.execute();
+                    deleteClaimed(timer, claimedUntil);
+                } catch (final Exception e) {
+                    transactionService.setRollbackOnly();
+                    throw e;
+                } finally {
+                    transactionService.complete();
+                }
+            } else {
+                job.execute();
+                transactionService.begin();
+                try {
+                    deleteClaimed(timer, claimedUntil);
+                } catch (final SQLException e) {
+                    transactionService.setRollbackOnly();
+                    throw e;
+                } finally {
+                    transactionService.complete();
+                }
+            }
+            return true;
+        } catch (final Exception e) {
+            logger.log(this.getClass(), TechnicalLogSeverity.ERROR, "Error executing the job of the timer " + timer.name + ", it is fired again at "
+                    + new Date(claimedUntil) + ": " + e.getMessage());
+            if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, e);
+            }
+            return false;
+        }
+    }
+
+    private void deleteClaimed(final Timer timer, final long claimedUntil) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE_CLAIMED);
+            try {
+                statement.setLong(1, timer.tenantId);
+                statement.setString(2, timer.name);
+                statement.setLong(3, claimedUntil);
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * Fire again a timer whose job failed once its claim expires, unless it was replaced in the meantime
+     */
+    private synchronized void retry(final Timer timer, final long claimedUntil) {
+        if (!stopped && !loadedTimers.containsKey(timer.getKey())) {
+            loadedTimers.put(timer.getKey(), timer);
+            wheel.add(claimedUntil, timer);
+        }
+    }
+
+    private SSession createSession(final long tenantId) throws Exception {
+        try {
+            transactionService.begin();
+            return sessionService.createSession(tenantId, "scheduler");
+        } catch (final Exception e) {
+            transactionService.setRollbackOnly();
+            throw e;
+        } finally {
+            transactionService.complete();
+        }
+    }
+
+    private long getBucket(final long date) {
+        return date / bucketMillis;
+    }
+
+    private static byte[] serialize(final Map<String, Serializable> parameters) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(parameters);
+        } finally {
+            oos.close();
+        }
+        return baos.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Serializable> deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        if (bytes == null) {
+            return new HashMap<String, Serializable>();
+        }
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (Map<String, Serializable>) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void close(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                // Can't do anything...
+            }
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
 import org.bonitasoft.engine.commons.ClassReflector;
+import org.bonitasoft.engine.commons.XMLCache;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.events.model.FireEventException;
 import org.bonitasoft.engine.events.model.SEvent;
@@ -150,6 +151,7 @@ public class JobWrapper implements StatelessJob {
             } catch (final Exception e) {
                 throw new JobExecutionException(e);
             } finally {
+                XMLCache.clearDocuments();
                 if (session != null) {
                     try {
                         sessionAccessor.deleteSessionId();
@@ -14,6 +14,7 @@
 package org.bonitasoft.engine.scheduler.impl;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -40,15 +41,18 @@ import org.bonitasoft.engine.queriablelogger.model.builder.SPersistenceLogBuilde
 import org.bonitasoft.engine.recorder.Recorder;
 import org.bonitasoft.engine.recorder.SRecorderException;
 import org.bonitasoft.engine.recorder.model.InsertRecord;
+import org.bonitasoft.engine.scheduler.CronTrigger;
 import org.bonitasoft.engine.scheduler.JobDescriptorBuilder;
 import org.bonitasoft.engine.scheduler.JobIdentifier;
 import org.bonitasoft.engine.scheduler.JobParameterBuilder;
+import org.bonitasoft.engine.scheduler.OneShotTrigger;
 import org.bonitasoft.engine.scheduler.SJobDescriptor;
 import org.bonitasoft.engine.scheduler.SJobParameter;
 import org.bonitasoft.engine.scheduler.SSchedulerException;
 import org.bonitasoft.engine.scheduler.SchedulerExecutor;
 import org.bonitasoft.engine.scheduler.SchedulerService;
 import org.bonitasoft.engine.scheduler.StatelessJob;
+import org.bonitasoft.engine.scheduler.TimerService;
 import org.bonitasoft.engine.scheduler.Trigger;
 import org.bonitasoft.engine.scheduler.builder.JobLogBuilder;
 import org.bonitasoft.engine.scheduler.builder.JobParameterLogBuilder;
@@ -104,6 +108,8 @@ public class SchedulerImpl implements SchedulerService {
 
     private final SessionService sessionService;
 
+    private final TimerService timerService;
+
     /**
      * Create a new instance of scheduler service. Synchronous
      * QueriableLoggerService must be used to avoid an infinite loop.
@@ -112,6 +118,19 @@ public class SchedulerImpl implements SchedulerService {
             final QueriableLoggerService queriableLogService, final TechnicalLoggerService logger, final EventService eventService, final Recorder recorder,
             final ReadPersistenceService readPersistenceService, final TransactionService transactionService, final SessionAccessor sessionAccessor,
             final SessionService sessionService, final JobTruster jobTruster) {
+        this(schedulerExecutor, builderAccessor, queriableLogService, logger, eventService, recorder, readPersistenceService, transactionService,
+                sessionAccessor, sessionService, jobTruster, null);
+    }
+
+    /**
+     * Create a new instance of scheduler service executing the jobs having a {@link OneShotTrigger} with the given {@link TimerService} instead of the
+     * {@link SchedulerExecutor}. Synchronous QueriableLoggerService must be used to avoid an infinite loop.
+     */
+    public SchedulerImpl(final SchedulerExecutor schedulerExecutor, final SchedulerBuilderAccessor builderAccessor,
+            final QueriableLoggerService queriableLogService, final TechnicalLoggerService logger, final EventService eventService, final Recorder recorder,
+            final ReadPersistenceService readPersistenceService, final TransactionService transactionService, final SessionAccessor sessionAccessor,
+            final SessionService sessionService, final JobTruster jobTruster, final TimerService timerService) {
+        this.timerService = timerService;
         this.builderAccessor = builderAccessor;
         this.schedulerExecutor = schedulerExecutor;
         this.queriableLogService = queriableLogService;
@@ -191,6 +210,10 @@ public class SchedulerImpl implements SchedulerService {
         } else if (jobDescriptor.getJobName() == null) {
             throw new SSchedulerException("The job name is null");
         }
+        if (isTimer(trigger)) {
+            scheduleTimer(jobDescriptor, parameters, trigger);
+            return;
+        }
         final SEventBuilder eventBuilder = eventService.getEventBuilder();
         final long tenantId = getTenantId();
         final SJobDescriptorImpl sJobDescriptorImpl = new SJobDescriptorImpl(jobDescriptor.getJobClassName(), jobDescriptor.getJobName(),
@@ -267,6 +290,23 @@ public class SchedulerImpl implements SchedulerService {
         }
     }
 
+    private boolean isTimer(final Trigger trigger) {
+        return timerService != null && trigger instanceof OneShotTrigger && !(trigger instanceof CronTrigger);
+    }
+
+    private void scheduleTimer(final SJobDescriptor jobDescriptor, final List<SJobParameter> parameters, final Trigger trigger) throws SSchedulerException {
+        final HashMap<String, Serializable> parameterMap = new HashMap<String, Serializable>();
+        if (parameters != null) {
+            for (final SJobParameter parameter : parameters) {
+                parameterMap.put(parameter.getKey(), parameter.getValue());
+            }
+        }
+        timerService.schedule(getTenantId(), jobDescriptor.getJobName(), jobDescriptor.getJobClassName(), trigger.getStartDate(), parameterMap);
+        if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
+            logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "schedule"));
+        }
+    }
+
     private long getTenantId() throws SSchedulerException {
         final long tenantId;
         try {
@@ -315,6 +355,9 @@ public class SchedulerImpl implements SchedulerService {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "start"));
         }
         schedulerExecutor.start();
+        if (timerService != null) {
+            timerService.start();
+        }
         eventService.fireEvent(schedulStarted);
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "start"));
@@ -326,6 +369,9 @@ public class SchedulerImpl implements SchedulerService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "shutdown"));
         }
+        if (timerService != null) {
+            timerService.stop();
+        }
         schedulerExecutor.shutdown();
         eventService.fireEvent(schedulStopped);
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
@@ -338,7 +384,17 @@ public class SchedulerImpl implements SchedulerService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "delete"));
         }
-        final boolean delete = schedulerExecutor.delete(jobName);
+        boolean delete = false;
+        if (timerService != null) {
+            try {
+                delete = timerService.cancel(sessionAccessor.getTenantId(), jobName);
+            } catch (final TenantIdNotSetException e) {
+                // timers are only scheduled in a tenant
+            }
+        }
+        if (!delete) {
+            delete = schedulerExecutor.delete(jobName);
+        }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "delete"));
         }
@@ -351,6 +407,9 @@ public class SchedulerImpl implements SchedulerService {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "deleteJobs"));
         }
         schedulerExecutor.deleteJobs();
+        if (timerService != null) {
+            timerService.cancelAll(getTenantId());
+        }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "deleteJobs"));
         }
@@ -361,7 +420,10 @@ public class SchedulerImpl implements SchedulerService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "getJobs"));
         }
-        final List<String> list = schedulerExecutor.getJobs();
+        final List<String> list = new ArrayList<String>(schedulerExecutor.getJobs());
+        if (timerService != null) {
+            list.addAll(timerService.getTimers(getTenantId()));
+        }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "getJobs"));
         }
@@ -373,7 +435,10 @@ public class SchedulerImpl implements SchedulerService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "getAllJobs"));
         }
-        final List<String> list = schedulerExecutor.getAllJobs();
+        final List<String> list = new ArrayList<String>(schedulerExecutor.getAllJobs());
+        if (timerService != null) {
+            list.addAll(timerService.getAllTimers());
+        }
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "getAllJobs"));
         }
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.scheduler.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: level 0 has one slot per tick, each slot of level n covers a whole turn of level n - 1. Adding an element and finding the due
+ * elements cost O(1) per element whatever the number of elements in the wheel: when a level turns, the slot of the level above is spread on the levels
+ * below.
+ * Not thread safe.
+ *
+ * @since 6.1
+ */
+final class TimingWheel<T> {
+
+    private static final class Entry<T> {
+
+        private final long expiration;
+
+        private final T element;
+
+        Entry(final long expiration, final T element) {
+            this.expiration = expiration;
+            this.element = element;
+        }
+
+    }
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    /**
+     * spans[n] is the time covered by one slot of level n
+     */
+    private final long[] spans;
+
+    private final List<List<Entry<T>>> slots;
+
+    private final List<T> expired = new ArrayList<T>();
+
+    private long currentTime;
+
+    private int size;
+
+    /**
+     * @param tickMillis
+     *            precision of the wheel: elements are returned at most one tick after they expired
+     * @param wheelSize
+     *            number of slots of each level
+     * @param levels
+     *            number of levels, the wheel covers tickMillis * wheelSize ^ levels milliseconds: elements expiring later are kept in the last level
+     * @param startTime
+     *            the current time
+     */
+    TimingWheel(final long tickMillis, final int wheelSize, final int levels, final long startTime) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        spans = new long[levels];
+        slots = new ArrayList<List<Entry<T>>>(levels * wheelSize);
+        long span = tickMillis;
+        for (int level = 0; level < levels; level++) {
+            spans[level] = span;
+            span *= wheelSize;
+            for (int i = 0; i < wheelSize; i++) {
+                slots.add(new ArrayList<Entry<T>>());
+            }
+        }
+        currentTime = startTime - startTime % tickMillis;
+    }
+
+    void add(final long expiration, final T element) {
+        size++;
+        place(new Entry<T>(expiration, element));
+    }
+
+    private void place(final Entry<T> entry) {
+        // work on the first tick at or after the expiration so that an element is never returned before its expiration
+        final long expirationTick = (entry.expiration + tickMillis - 1) / tickMillis;
+        final long delay = expirationTick - currentTime / tickMillis;
+        if (delay <= 0) {
+            expired.add(entry.element);
+            return;
+        }
+        int level = 0;
+        while (level < spans.length - 1 && delay >= spans[level + 1] / tickMillis) {
+            level++;
+        }
+        getSlot(level, expirationTick / (spans[level] / tickMillis)).add(entry);
+    }
+
+    private List<Entry<T>> getSlot(final int level, final long index) {
+        return slots.get(level * wheelSize + (int) (index % wheelSize));
+    }
+
+    /**
+     * Move the wheel up to the given time
+     *
+     * @return the elements that expired, in no particular order
+     */
+    List<T> advance(final long now) {
+        while (currentTime + tickMillis <= now) {
+            currentTime += tickMillis;
+            final long tick = currentTime / tickMillis;
+            // spread the slots of the upper levels that start now, from the top so that elements can go down several levels
+            int level = 1;
+            while (level < spans.length && tick % (spans[level] / tickMillis) == 0) {
+                level++;
+            }
+            for (level--; level > 0; level--) {
+                final List<Entry<T>> slot = getSlot(level, tick / (spans[level] / tickMillis));
+                final List<Entry<T>> toPlace = new ArrayList<Entry<T>>(slot);
+                slot.clear();
+                for (final Entry<T> entry : toPlace) {
+                    place(entry);
+                }
+            }
+            final List<Entry<T>> slot = getSlot(0, tick);
+            for (final Entry<T> entry : slot) {
+                expired.add(entry.element);
+            }
+            slot.clear();
+        }
+        final List<T> result = new ArrayList<T>(expired);
+        size -= result.size();
+        expired.clear();
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (final List<Entry<T>> slot : slots) {
+            slot.clear();
+        }
+        expired.clear();
+        size = 0;
+    }
+
+}
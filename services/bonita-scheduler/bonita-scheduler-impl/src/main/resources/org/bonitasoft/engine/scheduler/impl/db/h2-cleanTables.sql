@@ -1,3 +1,5 @@
 DELETE FROM job_param;
 
 DELETE FROM job_desc;
+
+DELETE FROM timer_event;
@@ -19,3 +19,15 @@ CREATE TABLE job_param (
 CREATE INDEX fk_job_param_jobId_idx ON job_param(jobDescriptorId ASC, tenantid ASC);
 CREATE INDEX fk_job_desc_Id_idx ON job_desc(id ASC, tenantid ASC);
 ALTER TABLE job_param ADD CONSTRAINT fk_job_param_jobid FOREIGN KEY (tenantid, jobDescriptorId) REFERENCES job_desc(tenantid, id);
+
+CREATE TABLE timer_event (
+  tenantid BIGINT NOT NULL,
+  name VARCHAR(100) NOT NULL,
+  jobclassname VARCHAR(100) NOT NULL,
+  dueDate BIGINT NOT NULL,
+  bucket BIGINT NOT NULL,
+  claimeduntil BIGINT,
+  parameters MEDIUMBLOB,
+  PRIMARY KEY (tenantid, name)
+) ENGINE = INNODB;
+CREATE INDEX idx_timer_event_bucket ON timer_event (bucket);
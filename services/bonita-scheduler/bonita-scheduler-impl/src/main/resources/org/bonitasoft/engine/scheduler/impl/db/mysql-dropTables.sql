@@ -1,2 +1,3 @@
 DROP TABLE job_param;
 DROP TABLE job_desc;
+DROP TABLE timer_event;
@@ -16,3 +16,15 @@ CREATE TABLE job_param (
   PRIMARY KEY (tenantid, id)
 );
 ALTER TABLE job_param ADD CONSTRAINT fk_job_param_jobid FOREIGN KEY (tenantid, jobDescriptorId) REFERENCES job_desc(tenantid, id);
+
+CREATE TABLE timer_event (
+  tenantid NUMBER(19, 0) NOT NULL,
+  name VARCHAR2(100) NOT NULL,
+  jobclassname VARCHAR2(100) NOT NULL,
+  dueDate NUMBER(19, 0) NOT NULL,
+  bucket NUMBER(19, 0) NOT NULL,
+  claimeduntil NUMBER(19, 0),
+  parameters BLOB,
+  PRIMARY KEY (tenantid, name)
+);
+CREATE INDEX idx_timer_event_bucket ON timer_event (bucket);
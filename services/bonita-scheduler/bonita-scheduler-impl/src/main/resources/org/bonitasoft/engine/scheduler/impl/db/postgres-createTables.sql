@@ -16,3 +16,15 @@ CREATE TABLE job_param (
   PRIMARY KEY (tenantid, id)
 );
 ALTER TABLE job_param ADD CONSTRAINT fk_job_param_jobid FOREIGN KEY (tenantid, jobDescriptorId) REFERENCES job_desc(tenantid, id);
+
+CREATE TABLE timer_event (
+  tenantid INT8 NOT NULL,
+  name VARCHAR(100) NOT NULL,
+  jobclassname VARCHAR(100) NOT NULL,
+  dueDate INT8 NOT NULL,
+  bucket INT8 NOT NULL,
+  claimeduntil INT8,
+  parameters BYTEA,
+  PRIMARY KEY (tenantid, name)
+);
+CREATE INDEX idx_timer_event_bucket ON timer_event (bucket);
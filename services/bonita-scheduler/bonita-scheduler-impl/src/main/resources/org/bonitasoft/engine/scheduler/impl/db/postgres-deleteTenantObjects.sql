@@ -1,2 +1,3 @@
 DELETE FROM job_param WHERE tenantid = ${tenantid};
 DELETE FROM job_desc WHERE tenantid = ${tenantid};
+DELETE FROM timer_event WHERE tenantid = ${tenantid};
@@ -3,3 +3,6 @@ GO
 
 DELETE FROM job_desc
 GO
+
+DELETE FROM timer_event
+GO
@@ -19,3 +19,17 @@ CREATE TABLE job_param (
 GO
 ALTER TABLE job_param ADD CONSTRAINT fk_job_param_jobid FOREIGN KEY (tenantid, jobDescriptorId) REFERENCES job_desc(tenantid, id)
 GO
+
+CREATE TABLE timer_event (
+  tenantid NUMERIC(19, 0) NOT NULL,
+  name NVARCHAR(100) NOT NULL,
+  jobclassname NVARCHAR(100) NOT NULL,
+  dueDate NUMERIC(19, 0) NOT NULL,
+  bucket NUMERIC(19, 0) NOT NULL,
+  claimeduntil NUMERIC(19, 0),
+  parameters VARBINARY(MAX),
+  PRIMARY KEY (tenantid, name)
+)
+GO
+CREATE INDEX idx_timer_event_bucket ON timer_event (bucket)
+GO
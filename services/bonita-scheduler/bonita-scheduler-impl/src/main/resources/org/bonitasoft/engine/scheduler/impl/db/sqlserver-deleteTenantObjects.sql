@@ -2,3 +2,5 @@ DELETE FROM job_param WHERE tenantid = ${tenantid}
 GO
 DELETE FROM job_desc WHERE tenantid = ${tenantid}
 GO
+DELETE FROM timer_event WHERE tenantid = ${tenantid}
+GO
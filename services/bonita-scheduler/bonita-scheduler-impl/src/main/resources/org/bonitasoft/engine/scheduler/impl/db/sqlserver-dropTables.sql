@@ -2,3 +2,5 @@ DROP TABLE job_param
 GO
 DROP TABLE job_desc
 GO
+DROP TABLE timer_event
+GO
@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.scheduler.JobExecutionException;
+import org.bonitasoft.engine.scheduler.StatelessJob;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JDBCTimerServiceTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private static final AtomicInteger executions = new AtomicInteger();
+
+    private static final AtomicInteger failures = new AtomicInteger();
+
+    public static class CountingJob implements StatelessJob {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String getName() {
+            return "CountingJob";
+        }
+
+        @Override
+        public String getDescription() {
+            return null;
+        }
+
+        @Override
+        public void execute() {
+            executions.incrementAndGet();
+        }
+
+        @Override
+        public void setAttributes(final Map<String, Serializable> attributes) {
+            // no attributes
+        }
+
+        @Override
+        public boolean isWrappedInTransaction() {
+            return true;
+        }
+
+    }
+
+    /**
+     * Fails once, then succeeds. Like the jobs of the BPMN timers it is not wrapped in a transaction.
+     */
+    public static class FailingOnceJob extends CountingJob {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute() {
+            if (failures.getAndIncrement() == 0) {
+                throw new IllegalStateException("failing once");
+            }
+            super.execute();
+        }
+
+        @Override
+        public boolean isWrappedInTransaction() {
+            return false;
+        }
+
+    }
+
+    private JdbcDataSource datasource;
+
+    private JDBCTimerService node1;
+
+    private JDBCTimerService node2;
+
+    @Before
+    public void setUp() throws Exception {
+        executions.set(0);
+        failures.set(0);
+        datasource = new JdbcDataSource();
+        datasource.setURL("jdbc:h2:mem:timer_event;DB_CLOSE_DELAY=-1");
+        final InputStream script = JDBCTimerServiceTest.class.getResourceAsStream("/org/bonitasoft/engine/scheduler/impl/db/h2-createTables.sql");
+        final String sql = new Scanner(script, "UTF-8").useDelimiter("\\A").next();
+        script.close();
+        for (final String statement : sql.split(";")) {
+            if (statement.trim().length() > 0) {
+                execute(statement);
+            }
+        }
+        node1 = newNode();
+        node2 = newNode();
+    }
+
+    private JDBCTimerService newNode() throws Exception {
+        final TransactionService transactionService = mock(TransactionService.class);
+        // no transaction: the timers are added to the wheel as soon as they are scheduled
+        doThrow(new STransactionNotFoundException()).when(transactionService).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        final SessionService sessionService = mock(SessionService.class);
+        final SSession session = mock(SSession.class);
+        when(sessionService.createSession(anyLong(), anyString())).thenReturn(session);
+        return new JDBCTimerService(datasource, transactionService, sessionService, mock(SessionAccessor.class), mock(TechnicalLoggerService.class), 10,
+                60000, 100, 1000, 100, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        node1.stop();
+        node2.stop();
+        execute("DROP ALL OBJECTS");
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int countRows() throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            final ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM timer_event");
+            resultSet.next();
+            final int count = resultSet.getInt(1);
+            statement.close();
+            return count;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static void waitForExecutions(final int expected) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (executions.get() < expected && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, executions.get());
+    }
+
+    private static void waitForFailures(final int expected) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (failures.get() < expected && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, failures.get());
+    }
+
+    private static Date inMillis(final long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+
+    @Test
+    public void dueTimerIsExecutedAndDeleted() throws Exception {
+        node1.start();
+        node1.schedule(1, "timer", CountingJob.class.getName(), inMillis(50), Collections.<String, Serializable> emptyMap());
+
+        waitForExecutions(1);
+        Thread.sleep(50);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void timerWhoseJobFailsIsKeptAndFiredAgainWhenItsClaimExpires() throws Exception {
+        node1.start();
+        node1.schedule(1, "timer", FailingOnceJob.class.getName(), inMillis(50), Collections.<String, Serializable> emptyMap());
+
+        waitForFailures(1);
+        Thread.sleep(50);
+        assertEquals(0, executions.get());
+        assertEquals(1, countRows());
+
+        // fired again once the claim of 1 second is elapsed
+        waitForExecutions(1);
+        Thread.sleep(50);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void timerScheduledByAnotherNodeInTheCurrentBucketIsFired() throws Exception {
+        node1.start();
+        // node2 is not started: only node1 can fire the timer, after reading the table again
+        node2.schedule(1, "timer", CountingJob.class.getName(), inMillis(50), Collections.<String, Serializable> emptyMap());
+
+        waitForExecutions(1);
+    }
+
+    @Test
+    public void timerIsFiredByOneNodeOnly() throws Exception {
+        node1.schedule(1, "timer", CountingJob.class.getName(), inMillis(200), Collections.<String, Serializable> emptyMap());
+        node1.start();
+        node2.start();
+
+        waitForExecutions(1);
+        Thread.sleep(300);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void cancelAllOnlyCancelsTheTimersOfTheTenant() throws Exception {
+        node1.start();
+        node1.schedule(1, "timer1", CountingJob.class.getName(), inMillis(300), Collections.<String, Serializable> emptyMap());
+        node1.schedule(2, "timer2", CountingJob.class.getName(), inMillis(300), Collections.<String, Serializable> emptyMap());
+
+        node1.cancelAll(1);
+
+        assertTrue(node1.getTimers(1).isEmpty());
+        assertEquals(Collections.singletonList("timer2"), node1.getTimers(2));
+        assertEquals(Collections.singletonList("timer2"), node1.getAllTimers());
+        waitForExecutions(1);
+        Thread.sleep(400);
+        assertEquals(1, executions.get());
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.bonitasoft.engine.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    public void elementIsReturnedAtTheFirstTickAfterItsExpiration() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(TICK, 8, 3, 1000);
+        wheel.add(1025, "a");
+
+        assertTrue(wheel.advance(1020).isEmpty());
+        assertEquals(Collections.singletonList("a"), wheel.advance(1030));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void expiredElementIsReturnedAtNextAdvance() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(TICK, 8, 3, 1000);
+        wheel.add(500, "a");
+
+        assertEquals(Collections.singletonList("a"), wheel.advance(1000));
+    }
+
+    @Test
+    public void elementsOfUpperLevelsAreCascaded() {
+        // levels cover 80 ms, 640 ms and 5120 ms
+        final TimingWheel<String> wheel = new TimingWheel<String>(TICK, 8, 3, 0);
+        wheel.add(75, "level0");
+        wheel.add(300, "level1");
+        wheel.add(3333, "level2");
+
+        assertEquals(Arrays.asList("level0"), wheel.advance(290));
+        assertEquals(Arrays.asList("level1"), wheel.advance(3330));
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("level2"), wheel.advance(3340));
+    }
+
+    @Test
+    public void elementsBeyondTheLastLevelAreKept() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(TICK, 8, 2, 0);
+        wheel.add(1000, "far");
+
+        assertTrue(wheel.advance(990).isEmpty());
+        assertEquals(Arrays.asList("far"), wheel.advance(1000));
+    }
+
+    @Test
+    public void elementsAreNeverReturnedEarlyNorLate() {
+        final TimingWheel<Long> wheel = new TimingWheel<Long>(TICK, 8, 3, 0);
+        final Random random = new Random(42);
+        final List<Long> expirations = new ArrayList<Long>();
+        for (int i = 0; i < 1000; i++) {
+            final long expiration = random.nextInt(20000);
+            expirations.add(expiration);
+            wheel.add(expiration, expiration);
+        }
+        final List<Long> returned = new ArrayList<Long>();
+        for (long now = 0; now <= 20000; now += TICK) {
+            for (final Long expiration : wheel.advance(now)) {
+                assertTrue(expiration + " returned at " + now, expiration <= now && now < expiration + TICK);
+                returned.add(expiration);
+            }
+        }
+        Collections.sort(expirations);
+        Collections.sort(returned);
+        assertEquals(expirations, returned);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void clearRemovesAllElements() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(TICK, 8, 3, 0);
+        wheel.add(50, "a");
+        wheel.add(5000, "b");
+        wheel.clear();
+
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(10000).isEmpty());
+    }
+
+}
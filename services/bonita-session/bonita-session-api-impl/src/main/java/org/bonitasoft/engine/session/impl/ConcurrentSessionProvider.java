@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
+
+/**
+ * {@link SessionProvider} keeping the sessions in memory, safe for concurrent use without locking.
+ * The sessions are also indexed by expiration date, so that {@link #cleanInvalidSessions()} only visits the expired sessions.
+ *
+ * @since 6.1
+ */
+public class ConcurrentSessionProvider implements SessionProvider {
+
+    /**
+     * A session and the expiration date it had when it was stored, ordered by expiration date
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final SSession session;
+
+        private final long expiration;
+
+        Entry(final SSession session) {
+            this.session = session;
+            expiration = session.getExpirationDate().getTime();
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            if (expiration != other.expiration) {
+                return expiration < other.expiration ? -1 : 1;
+            }
+            final long id = session.getId();
+            final long otherId = other.session.getId();
+            return id < otherId ? -1 : id == otherId ? 0 : 1;
+        }
+
+    }
+
+    private final ConcurrentMap<Long, Entry> sessions = new ConcurrentHashMap<Long, Entry>();
+
+    private final ConcurrentSkipListSet<Entry> expirations = new ConcurrentSkipListSet<Entry>();
+
+    @Override
+    public void addSession(final SSession session) throws SSessionAlreadyExistsException {
+        final Entry entry = new Entry(session);
+        if (sessions.putIfAbsent(session.getId(), entry) != null) {
+            throw new SSessionAlreadyExistsException("A session wih id \"" + session.getId() + "\" already exists");
+        }
+        expirations.add(entry);
+    }
+
+    @Override
+    public void removeSession(final long sessionId) throws SSessionNotFoundException {
+        final Entry entry = sessions.remove(sessionId);
+        if (entry == null) {
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+        expirations.remove(entry);
+    }
+
+    @Override
+    public SSession getSession(final long sessionId) throws SSessionNotFoundException {
+        final Entry entry = sessions.get(sessionId);
+        if (entry == null) {
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+        return entry.session;
+    }
+
+    @Override
+    public void updateSession(final SSession session) throws SSessionNotFoundException {
+        final long id = session.getId();
+        final Entry entry = new Entry(session);
+        Entry previous;
+        do {
+            previous = sessions.get(id);
+            if (previous == null) {
+                throw new SSessionNotFoundException("No session found with id \"" + id + "\"");
+            }
+        } while (!sessions.replace(id, previous, entry));
+        expirations.remove(previous);
+        expirations.add(entry);
+    }
+
+    @Override
+    public void cleanInvalidSessions() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Entry> iterator = expirations.iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.expiration > now) {
+                // the following ones expire even later
+                return;
+            }
+            iterator.remove();
+            // a session renewed in the meantime has a new entry and is kept
+            sessions.remove(entry.session.getId(), entry);
+        }
+    }
+
+    @Override
+    public void removeSessions() {
+        sessions.clear();
+        expirations.clear();
+    }
+
+    /**
+     * @return the number of sessions, valid or not
+     */
+    public int getNumberOfSessions() {
+        return sessions.size();
+    }
+
+}
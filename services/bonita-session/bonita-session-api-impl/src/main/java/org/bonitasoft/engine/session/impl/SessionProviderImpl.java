@@ -13,55 +13,37 @@
  **/
 package org.bonitasoft.engine.session.impl;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
 import org.bonitasoft.engine.session.SSessionNotFoundException;
 import org.bonitasoft.engine.session.SessionProvider;
 import org.bonitasoft.engine.session.model.SSession;
 
 /**
+ * Sessions shared by all the instances of the JVM, see {@link ConcurrentSessionProvider}.
+ * 
  * @author Elias Ricken de Medeiros
  * @author Matthieu Chaffotte
  */
 public final class SessionProviderImpl implements SessionProvider {
 
-    private static Map<Long, SSession> sessions;
-    static {
-        sessions = new HashMap<Long, SSession>();
-
-    }
+    private static final ConcurrentSessionProvider sessions = new ConcurrentSessionProvider();
 
     public SessionProviderImpl() {
     }
 
     @Override
-    public synchronized void addSession(final SSession session) throws SSessionAlreadyExistsException {
-        final long id = session.getId();
-        if (sessions.containsKey(id)) {
-            throw new SSessionAlreadyExistsException("A session wih id \"" + id + "\" already exists");
-        }
-        sessions.put(id, session);
+    public void addSession(final SSession session) throws SSessionAlreadyExistsException {
+        sessions.addSession(session);
     }
 
     @Override
     public void removeSession(final long sessionId) throws SSessionNotFoundException {
-        final SSession session = sessions.remove(sessionId);
-        if (session == null) {
-            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
-        }
+        sessions.removeSession(sessionId);
     }
 
     @Override
     public SSession getSession(final long sessionId) throws SSessionNotFoundException {
-        final SSession session = sessions.get(sessionId);
-        if (session == null) {
-            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
-        }
-        return session;
+        return sessions.getSession(sessionId);
     }
 
     /*
@@ -70,11 +52,7 @@ public final class SessionProviderImpl implements SessionProvider {
      */
     @Override
     public void updateSession(final SSession session) throws SSessionNotFoundException {
-        final long id = session.getId();
-        if (!sessions.containsKey(id)) {
-            throw new SSessionNotFoundException("No session found with id \"" + id + "\"");
-        }
-        sessions.put(id, session);
+        sessions.updateSession(session);
     }
 
     /*
@@ -82,16 +60,8 @@ public final class SessionProviderImpl implements SessionProvider {
      * @see org.bonitasoft.engine.session.impl.SessionProvider#cleanInvalidSessions()
      */
     @Override
-    public synchronized void cleanInvalidSessions() {
-        final List<Long> invalidSessionIds = new ArrayList<Long>();
-        for (final SSession session : sessions.values()) {
-            if (!session.isValid()) {
-                invalidSessionIds.add(session.getId());
-            }
-        }
-        for (final Long invalidSessionId : invalidSessionIds) {
-            sessions.remove(invalidSessionId);
-        }
+    public void cleanInvalidSessions() {
+        sessions.cleanInvalidSessions();
     }
 
     /*
@@ -99,8 +69,8 @@ public final class SessionProviderImpl implements SessionProvider {
      * @see org.bonitasoft.engine.session.impl.SessionProvider#removeSessions()
      */
     @Override
-    public synchronized void removeSessions() {
-        sessions.clear();
+    public void removeSessions() {
+        sessions.removeSessions();
     }
 
 }
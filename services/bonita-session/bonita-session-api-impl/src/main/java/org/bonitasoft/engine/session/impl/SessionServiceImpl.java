@@ -39,6 +39,8 @@ public class SessionServiceImpl implements SessionService {
 
     private long sessionDuration = DEFAULT_SESSION_DURATION;
 
+    private long renewGranularity = 0;
+
     private final SSessionBuilders sessionModelBuilder;
 
     private final SessionProvider sessionProvider;
@@ -160,8 +162,13 @@ public class SessionServiceImpl implements SessionService {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "renewSession"));
         }
         final SSession session = getSession(sessionId);
+        final long now = System.currentTimeMillis();
+        if (now - session.getLastRenewDate().getTime() < Math.min(renewGranularity, session.getDuration() / 2)) {
+            // renewed a short time ago: do not update the session provider on each call
+            return;
+        }
         try {
-            ClassReflector.invokeSetter(session, "setLastRenewDate", Date.class, new Date());
+            ClassReflector.invokeSetter(session, "setLastRenewDate", Date.class, new Date(now));
             sessionProvider.updateSession(session);
             if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
                 logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "renewSession"));
@@ -174,6 +181,16 @@ public class SessionServiceImpl implements SessionService {
         }
     }
 
+    /**
+     * @param renewGranularity
+     *            time in milliseconds during which {@link #renewSession(long)} does not renew again a session, 0 to renew it on each call. A session
+     *            then expires up to renewGranularity milliseconds earlier, and never before half of its duration.
+     * @since 6.1
+     */
+    public void setRenewGranularity(final long renewGranularity) {
+        this.renewGranularity = renewGranularity;
+    }
+
     @Override
     public void cleanInvalidSessions() {
         sessionProvider.cleanInvalidSessions();
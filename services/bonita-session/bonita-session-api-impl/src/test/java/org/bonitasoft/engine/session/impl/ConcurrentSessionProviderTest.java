@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.model.SSession;
+import org.junit.Test;
+
+public class ConcurrentSessionProviderTest {
+
+    private final ConcurrentSessionProvider provider = new ConcurrentSessionProvider();
+
+    private static SSession session(final long id, final long expiration) {
+        final SSession session = mock(SSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getExpirationDate()).thenReturn(new Date(expiration));
+        return session;
+    }
+
+    @Test
+    public void addedSessionIsReturned() throws Exception {
+        final SSession session = session(1, System.currentTimeMillis() + 60000);
+        provider.addSession(session);
+
+        assertSame(session, provider.getSession(1));
+    }
+
+    @Test(expected = SSessionAlreadyExistsException.class)
+    public void addingASessionTwiceFails() throws Exception {
+        provider.addSession(session(1, System.currentTimeMillis() + 60000));
+        provider.addSession(session(1, System.currentTimeMillis() + 60000));
+    }
+
+    @Test(expected = SSessionNotFoundException.class)
+    public void removedSessionIsNotFound() throws Exception {
+        provider.addSession(session(1, System.currentTimeMillis() + 60000));
+        provider.removeSession(1);
+
+        provider.getSession(1);
+    }
+
+    @Test(expected = SSessionNotFoundException.class)
+    public void updatingAnUnknownSessionFails() throws Exception {
+        provider.updateSession(session(1, System.currentTimeMillis() + 60000));
+    }
+
+    @Test
+    public void cleanInvalidSessionsOnlyRemovesExpiredSessions() throws Exception {
+        final long now = System.currentTimeMillis();
+        provider.addSession(session(1, now - 1000));
+        provider.addSession(session(2, now + 60000));
+        provider.addSession(session(3, now - 10));
+
+        provider.cleanInvalidSessions();
+
+        assertEquals(1, provider.getNumberOfSessions());
+        provider.getSession(2);
+    }
+
+    @Test
+    public void renewedSessionIsNotCleaned() throws Exception {
+        final long now = System.currentTimeMillis();
+        provider.addSession(session(1, now - 1000));
+        final SSession renewed = session(1, now + 60000);
+        provider.updateSession(renewed);
+
+        provider.cleanInvalidSessions();
+
+        assertSame(renewed, provider.getSession(1));
+    }
+
+}
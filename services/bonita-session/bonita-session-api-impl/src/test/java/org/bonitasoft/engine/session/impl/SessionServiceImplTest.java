@@ -13,14 +13,24 @@
  **/
 package org.bonitasoft.engine.session.impl;
 
+import java.util.Date;
+
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.platform.PlatformService;
+import org.bonitasoft.engine.session.SessionProvider;
 import org.bonitasoft.engine.session.impl.SessionServiceImpl;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.session.model.builder.SSessionBuilder;
 import org.bonitasoft.engine.session.model.builder.SSessionBuilders;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -32,6 +42,9 @@ import org.mockito.MockitoAnnotations;
  */
 public class SessionServiceImplTest {
 
+    @Mock
+    private SessionProvider sessionProvider;
+
     @Mock
     private SSessionBuilders sessionModelBuilder;
 
@@ -129,6 +142,22 @@ public class SessionServiceImplTest {
         // TODO : Not yet implemented
     }
 
+    @Test
+    public final void renewSessionDoesNotUpdateARecentlyRenewedSession() throws Exception {
+        final SSession session = mock(SSession.class);
+        when(session.getLastRenewDate()).thenReturn(new Date(System.currentTimeMillis() - 1000));
+        when(session.getDuration()).thenReturn(3600000L);
+        final SSessionBuilder sessionBuilder = mock(SSessionBuilder.class);
+        when(sessionModelBuilder.getSessionBuilder()).thenReturn(sessionBuilder);
+        when(sessionBuilder.copy(session)).thenReturn(session);
+        when(sessionProvider.getSession(1L)).thenReturn(session);
+        sessionServiceImpl.setRenewGranularity(60000);
+
+        sessionServiceImpl.renewSession(1L);
+
+        verify(sessionProvider, never()).updateSession(any(SSession.class));
+    }
+
     /**
      * Test method for {@link org.bonitasoft.engine.session.impl.SessionServiceImpl#cleanInvalidSessions()}.
      */
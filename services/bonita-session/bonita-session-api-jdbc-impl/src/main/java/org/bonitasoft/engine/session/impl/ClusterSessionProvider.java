@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
+
+/**
+ * {@link SessionProvider} shared by all the engine nodes using the same database: a session created on one node can be used on the others, and the
+ * sessions survive a restart.
+ * The sessions are serialized in the table cluster_session, indexed by expiration date so that {@link #cleanInvalidSessions()} only visits the expired
+ * sessions. Each node keeps the sessions it read in a local cache for cacheTimeToLive milliseconds: a session deleted on another node can still be used
+ * on this node during that time. A cached session that looks expired is read again, in case it was renewed on another node.
+ * The datasource must not be managed by the transaction manager (e.g. the one of the sequence manager) so that a session is visible to the other nodes
+ * as soon as it is created.
+ *
+ * @since 6.1
+ */
+public class ClusterSessionProvider implements SessionProvider {
+
+    private static final String INSERT = "INSERT INTO cluster_session (id, tenantid, expiration, content) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE = "UPDATE cluster_session SET expiration = ?, content = ? WHERE id = ?";
+
+    private static final String SELECT = "SELECT content FROM cluster_session WHERE id = ?";
+
+    private static final String DELETE = "DELETE FROM cluster_session WHERE id = ?";
+
+    private static final String DELETE_EXPIRED = "DELETE FROM cluster_session WHERE expiration <= ?";
+
+    private static final String DELETE_ALL = "DELETE FROM cluster_session";
+
+    private static final class CachedSession {
+
+        private final SSession session;
+
+        private final long cachedUntil;
+
+        CachedSession(final SSession session, final long cachedUntil) {
+            this.session = session;
+            this.cachedUntil = cachedUntil;
+        }
+
+    }
+
+    private final ConcurrentMap<Long, CachedSession> cache = new ConcurrentHashMap<Long, CachedSession>();
+
+    private final DataSource datasource;
+
+    private final TechnicalLoggerService logger;
+
+    private final long cacheTimeToLive;
+
+    /**
+     * @param cacheTimeToLive
+     *            time in milliseconds a session read from the database is used without reading it again, 0 to always read it
+     */
+    public ClusterSessionProvider(final TechnicalLoggerService logger, final DataSource datasource, final long cacheTimeToLive) {
+        this.logger = logger;
+        this.datasource = datasource;
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    @Override
+    public void addSession(final SSession session) throws SSessionAlreadyExistsException {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(INSERT);
+            try {
+                statement.setLong(1, session.getId());
+                statement.setLong(2, session.getTenantId());
+                statement.setLong(3, session.getExpirationDate().getTime());
+                statement.setBytes(4, serialize(session));
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            // class 23: integrity constraint violation
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                throw new SSessionAlreadyExistsException("A session wih id \"" + session.getId() + "\" already exists");
+            }
+            throw new SBonitaRuntimeException("Unable to store the session " + session.getId(), e);
+        } catch (final IOException e) {
+            throw new SBonitaRuntimeException("Unable to serialize the session " + session.getId(), e);
+        } finally {
+            close(connection);
+        }
+        cache(session);
+    }
+
+    @Override
+    public void removeSession(final long sessionId) throws SSessionNotFoundException {
+        cache.remove(sessionId);
+        final int deleted;
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE);
+            try {
+                statement.setLong(1, sessionId);
+                deleted = statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SBonitaRuntimeException("Unable to delete the session " + sessionId, e);
+        } finally {
+            close(connection);
+        }
+        if (deleted == 0) {
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+    }
+
+    @Override
+    public SSession getSession(final long sessionId) throws SSessionNotFoundException {
+        final long now = System.currentTimeMillis();
+        final CachedSession cached = cache.get(sessionId);
+        if (cached != null && cached.cachedUntil > now && cached.session.getExpirationDate().getTime() > now) {
+            return cached.session;
+        }
+        final SSession session = read(sessionId);
+        if (session == null) {
+            cache.remove(sessionId);
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+        cache(session);
+        return session;
+    }
+
+    private SSession read(final long sessionId) {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(SELECT);
+            try {
+                statement.setLong(1, sessionId);
+                final ResultSet resultSet = statement.executeQuery();
+                try {
+                    if (!resultSet.next()) {
+                        return null;
+                    }
+                    return deserialize(resultSet.getBytes("content"));
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SBonitaRuntimeException("Unable to read the session " + sessionId, e);
+        } catch (final IOException e) {
+            throw new SBonitaRuntimeException("Unable to deserialize the session " + sessionId, e);
+        } catch (final ClassNotFoundException e) {
+            throw new SBonitaRuntimeException("Unable to deserialize the session " + sessionId, e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public void updateSession(final SSession session) throws SSessionNotFoundException {
+        final int updated;
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(UPDATE);
+            try {
+                statement.setLong(1, session.getExpirationDate().getTime());
+                statement.setBytes(2, serialize(session));
+                statement.setLong(3, session.getId());
+                updated = statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SBonitaRuntimeException("Unable to update the session " + session.getId(), e);
+        } catch (final IOException e) {
+            throw new SBonitaRuntimeException("Unable to serialize the session " + session.getId(), e);
+        } finally {
+            close(connection);
+        }
+        if (updated == 0) {
+            cache.remove(session.getId());
+            throw new SSessionNotFoundException("No session found with id \"" + session.getId() + "\"");
+        }
+        cache(session);
+    }
+
+    @Override
+    public void cleanInvalidSessions() {
+        final long now = System.currentTimeMillis();
+        final Iterator<CachedSession> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedSession cached = iterator.next();
+            if (cached.cachedUntil <= now || cached.session.getExpirationDate().getTime() <= now) {
+                iterator.remove();
+            }
+        }
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE_EXPIRED);
+            try {
+                statement.setLong(1, now);
+                final int deleted = statement.executeUpdate();
+                if (logger.isLoggable(ClusterSessionProvider.class, TechnicalLogSeverity.DEBUG)) {
+                    logger.log(ClusterSessionProvider.class, TechnicalLogSeverity.DEBUG, "Deleted " + deleted + " expired sessions");
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            logger.log(ClusterSessionProvider.class, TechnicalLogSeverity.ERROR, "Unable to delete the expired sessions", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public void removeSessions() {
+        cache.clear();
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE_ALL);
+            try {
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new SBonitaRuntimeException("Unable to delete the sessions", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    private void cache(final SSession session) {
+        if (cacheTimeToLive > 0) {
+            cache.put(session.getId(), new CachedSession(session, System.currentTimeMillis() + cacheTimeToLive));
+        }
+    }
+
+    private static byte[] serialize(final SSession session) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(session);
+        } finally {
+            oos.close();
+        }
+        return baos.toByteArray();
+    }
+
+    private static SSession deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (SSession) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void close(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                // Can't do anything...
+            }
+        }
+    }
+
+}
@@ -0,0 +1 @@
+DELETE FROM cluster_session;
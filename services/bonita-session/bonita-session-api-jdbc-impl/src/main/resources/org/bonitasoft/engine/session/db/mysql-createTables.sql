@@ -0,0 +1,8 @@
+CREATE TABLE cluster_session (
+  id BIGINT NOT NULL,
+  tenantid BIGINT NOT NULL,
+  expiration BIGINT NOT NULL,
+  content MEDIUMBLOB NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE = INNODB;
+CREATE INDEX idx_cluster_session_exp ON cluster_session (expiration);
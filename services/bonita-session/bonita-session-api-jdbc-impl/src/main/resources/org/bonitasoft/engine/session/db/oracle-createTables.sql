@@ -0,0 +1,8 @@
+CREATE TABLE cluster_session (
+  id NUMBER(19, 0) NOT NULL,
+  tenantid NUMBER(19, 0) NOT NULL,
+  expiration NUMBER(19, 0) NOT NULL,
+  content BLOB NOT NULL,
+  PRIMARY KEY (id)
+);
+CREATE INDEX idx_cluster_session_exp ON cluster_session (expiration);
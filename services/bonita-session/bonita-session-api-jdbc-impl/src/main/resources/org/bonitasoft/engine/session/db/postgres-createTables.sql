@@ -0,0 +1,8 @@
+CREATE TABLE cluster_session (
+  id INT8 NOT NULL,
+  tenantid INT8 NOT NULL,
+  expiration INT8 NOT NULL,
+  content BYTEA NOT NULL,
+  PRIMARY KEY (id)
+);
+CREATE INDEX idx_cluster_session_exp ON cluster_session (expiration);
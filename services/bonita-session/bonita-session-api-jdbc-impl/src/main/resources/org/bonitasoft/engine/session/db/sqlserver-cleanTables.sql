@@ -0,0 +1,2 @@
+DELETE FROM cluster_session
+GO
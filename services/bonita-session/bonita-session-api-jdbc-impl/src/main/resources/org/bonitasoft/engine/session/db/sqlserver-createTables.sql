@@ -0,0 +1,10 @@
+CREATE TABLE cluster_session (
+  id NUMERIC(19, 0) NOT NULL,
+  tenantid NUMERIC(19, 0) NOT NULL,
+  expiration NUMERIC(19, 0) NOT NULL,
+  content VARBINARY(MAX) NOT NULL,
+  PRIMARY KEY (id)
+)
+GO
+CREATE INDEX idx_cluster_session_exp ON cluster_session (expiration)
+GO
@@ -0,0 +1,2 @@
+DROP TABLE cluster_session
+GO
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Scanner;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.session.model.impl.SSessionImpl;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterSessionProviderTest {
+
+    private JdbcDataSource datasource;
+
+    private ClusterSessionProvider node1;
+
+    private ClusterSessionProvider node2;
+
+    @Before
+    public void setUp() throws Exception {
+        datasource = new JdbcDataSource();
+        datasource.setURL("jdbc:h2:mem:cluster_session;DB_CLOSE_DELAY=-1");
+        final InputStream script = ClusterSessionProviderTest.class.getResourceAsStream("/org/bonitasoft/engine/session/db/h2-createTables.sql");
+        final String sql = new Scanner(script, "UTF-8").useDelimiter("\\A").next();
+        script.close();
+        for (final String statement : sql.split(";")) {
+            if (statement.trim().length() > 0) {
+                execute(statement);
+            }
+        }
+        node1 = new ClusterSessionProvider(mock(TechnicalLoggerService.class), datasource, 60000);
+        node2 = new ClusterSessionProvider(mock(TechnicalLoggerService.class), datasource, 60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("DROP TABLE cluster_session");
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static SSessionImpl session(final long id, final long lastRenewDate, final long duration) {
+        final SSessionImpl session = new SSessionImpl(id, 1, "john", "6.1.0", "BPM", 12);
+        session.setCreationDate(new Date(lastRenewDate));
+        session.setLastRenewDate(new Date(lastRenewDate));
+        session.setDuration(duration);
+        return session;
+    }
+
+    @Test
+    public void sessionCreatedOnANodeIsFoundOnTheOthers() throws Exception {
+        final SSessionImpl session = session(1, System.currentTimeMillis(), 60000);
+        node1.addSession(session);
+
+        final SSession read = node2.getSession(1);
+        assertEquals(session, read);
+    }
+
+    @Test(expected = SSessionAlreadyExistsException.class)
+    public void addingASessionTwiceFails() throws Exception {
+        node1.addSession(session(1, System.currentTimeMillis(), 60000));
+        node2.addSession(session(1, System.currentTimeMillis(), 60000));
+    }
+
+    @Test
+    public void expiredCachedSessionIsReadAgain() throws Exception {
+        final long now = System.currentTimeMillis();
+        node1.addSession(session(1, now - 2000, 1000));
+        node2.getSession(1);
+        final SSessionImpl renewed = session(1, now, 60000);
+        node1.updateSession(renewed);
+
+        assertEquals(renewed, node2.getSession(1));
+    }
+
+    @Test
+    public void cleanInvalidSessionsDeletesOnlyExpiredSessions() throws Exception {
+        final long now = System.currentTimeMillis();
+        node1.addSession(session(1, now - 2000, 1000));
+        node1.addSession(session(2, now, 60000));
+
+        node2.cleanInvalidSessions();
+
+        node2.getSession(2);
+        try {
+            node2.getSession(1);
+            fail("expired session must have been deleted");
+        } catch (final SSessionNotFoundException e) {
+            // ok
+        }
+    }
+
+    @Test(expected = SSessionNotFoundException.class)
+    public void removedSessionIsNotFound() throws Exception {
+        node1.addSession(session(1, System.currentTimeMillis(), 60000));
+        node2.removeSession(1);
+
+        node2.getSession(1);
+    }
+
+}
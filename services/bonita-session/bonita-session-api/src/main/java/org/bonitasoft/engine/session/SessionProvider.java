@@ -2,6 +2,11 @@ package org.bonitasoft.engine.session;
 
 import org.bonitasoft.engine.session.model.SSession;
 
+/**
+ * Store of the {@link SSession}s of the {@link SessionService}. It is called concurrently by all the threads of the engine and must be thread safe.
+ * The sessions can be kept in the memory of one node or in a store shared by several nodes, in which case a session created on one node can be used
+ * on the others.
+ */
 public interface SessionProvider {
 
     public abstract void updateSession(SSession session) throws SSessionNotFoundException;
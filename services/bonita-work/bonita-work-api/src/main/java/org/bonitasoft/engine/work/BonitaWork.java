@@ -37,15 +37,39 @@ public abstract class BonitaWork implements Runnable {
 
     private long tenantId;
 
+    private WorkDescriptorStore workDescriptorStore;
+
+    private String descriptorId;
+
     protected abstract void work() throws SBonitaException;
 
+    /**
+     * Describe this work so that it can be replayed after a crash of the engine.
+     * 
+     * @return the descriptor of this work or null if this work can't be replayed
+     */
+    public WorkDescriptor getDescriptor() {
+        return null;
+    }
+
+    /**
+     * Works having the same affinity key, e.g. the works of one process instance, can be executed in order by the same thread.
+     * 
+     * @return the affinity key of this work or -1 if it can be executed by any thread
+     */
+    public long getAffinityKey() {
+        return -1;
+    }
+
     @Override
     public void run() {
         SSession session = null;
+        boolean executed = false;
         try {
             session = createSession();// FIXME get the technical user of the tenant
             sessionAccessor.setSessionInfo(session.getId(), session.getTenantId());// FIXME do that in the session service?
             work();
+            executed = true;
         } catch (final SBonitaException e) {
             loggerService.log(getClass(), TechnicalLogSeverity.ERROR, "Error while executing work", e);
         } catch (final Throwable e) {
@@ -59,6 +83,30 @@ public abstract class BonitaWork implements Runnable {
                     loggerService.log(this.getClass(), TechnicalLogSeverity.ERROR, e);// FIXME
                 }
             }
+            if (executed) {
+                acknowledge();
+            } else if (descriptorId != null) {
+                loggerService.log(getClass(), TechnicalLogSeverity.WARNING, "The work " + descriptorId + " failed, it is kept in the store and will be replayed on restart");
+            }
+        }
+    }
+
+    private void acknowledge() {
+        if (workDescriptorStore == null || descriptorId == null) {
+            return;
+        }
+        try {
+            transactionService.begin();
+            try {
+                workDescriptorStore.acknowledge(tenantId, descriptorId);
+            } catch (final WorkStoreException e) {
+                transactionService.setRollbackOnly();
+                throw e;
+            } finally {
+                transactionService.complete();
+            }
+        } catch (final SBonitaException e) {
+            loggerService.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to acknowledge the work " + descriptorId + ", it will be replayed on restart", e);
         }
     }
 
@@ -95,4 +143,13 @@ public abstract class BonitaWork implements Runnable {
     public void setTransactionService(final TransactionService transactionService) {
         this.transactionService = transactionService;
     }
+
+    /**
+     * Set the store in which the descriptor of this work was saved: it is acknowledged once the work was executed successfully, a failed work keeps its
+     * descriptor so that it is replayed on restart
+     */
+    public void setStoredDescriptor(final WorkDescriptorStore workDescriptorStore, final String descriptorId) {
+        this.workDescriptorStore = workDescriptorStore;
+        this.descriptorId = descriptorId;
+    }
 }
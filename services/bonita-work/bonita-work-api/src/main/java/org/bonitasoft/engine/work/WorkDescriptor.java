@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializable description of a {@link BonitaWork}: it contains what is needed to rebuild the work after a restart of the engine.
+ *
+ * @see BonitaWork#getDescriptor()
+ * @see WorkDescriptorStore
+ */
+public class WorkDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private long tenantId;
+
+    private final String type;
+
+    private final Map<String, Serializable> parameters;
+
+    public WorkDescriptor(final String type) {
+        this(type, new HashMap<String, Serializable>());
+    }
+
+    public WorkDescriptor(final String type, final Map<String, Serializable> parameters) {
+        this.type = type;
+        this.parameters = parameters;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public long getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(final long tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Map<String, Serializable> getParameters() {
+        return parameters;
+    }
+
+    public Serializable getParameter(final String name) {
+        return parameters.get(name);
+    }
+
+    public WorkDescriptor addParameter(final String name, final Serializable value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkDescriptor [id=" + id + ", tenantId=" + tenantId + ", type=" + type + ", parameters=" + parameters + "]";
+    }
+
+}
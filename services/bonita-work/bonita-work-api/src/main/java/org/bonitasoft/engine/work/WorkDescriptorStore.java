@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Persistent backend of the {@link WorkService}.
+ * Descriptors of the works are stored in the transaction that registers them and are acknowledged once the work was executed: descriptors that remain in
+ * the store after a crash are the works that must be replayed.
+ */
+public interface WorkDescriptorStore {
+
+    /**
+     * Store the descriptors in the current transaction. An id is set on each descriptor.
+     *
+     * @param tenantId
+     *            the tenant of the works
+     * @param descriptors
+     *            the descriptors to store
+     * @throws WorkStoreException
+     */
+    void store(long tenantId, Collection<WorkDescriptor> descriptors) throws WorkStoreException;
+
+    /**
+     * Remove a descriptor from the store, it will not be replayed anymore.
+     *
+     * @param tenantId
+     *            the tenant of the work
+     * @param descriptorId
+     *            id of the descriptor
+     * @throws WorkStoreException
+     */
+    void acknowledge(long tenantId, String descriptorId) throws WorkStoreException;
+
+    /**
+     * @param tenantId
+     *            the tenant of the works
+     * @param fromIndex
+     *            index of the first descriptor to return
+     * @param maxResults
+     *            max number of descriptors to return
+     * @return descriptors of works that were registered but never acknowledged, ordered by registration time
+     * @throws WorkStoreException
+     */
+    List<WorkDescriptor> getUnacknowledgedWorks(long tenantId, int fromIndex, int maxResults) throws WorkStoreException;
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+/**
+ * Counters of the executor of a {@link WorkService} about the works that did not fit in its queue.
+ * 
+ * @since 6.1
+ */
+public interface WorkExecutorStatistics {
+
+    /**
+     * @return the number of works waiting in the queue of the executor
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the number of spilled works waiting to be moved to the queue
+     */
+    int getOverflowDepth();
+
+    /**
+     * @return the number of works rejected because the queue was full
+     */
+    long getRejectedCount();
+
+    /**
+     * @return the number of times a thread was blocked waiting for room in the queue
+     */
+    long getBlockedCount();
+
+    /**
+     * @return the number of works put in the overflow queue because the queue was full
+     */
+    long getSpilledCount();
+
+    /**
+     * @return the number of times new works were refused before their transaction was committed
+     */
+    long getPushedBackCount();
+
+}
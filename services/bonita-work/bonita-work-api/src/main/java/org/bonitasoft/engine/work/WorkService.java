@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.work;
 
+import java.util.List;
+
 /**
  * This service allows to trigger the execution of work asynchronously
  * Any runnable registered on the service will be launched in other thread at the end of the transaction.
@@ -33,4 +35,43 @@ public interface WorkService {
 
     void start(Long tenantId);
 
+    /**
+     * @return true if the descriptors of the registered works are persisted so that they survive a crash of the JVM
+     * @since 6.1
+     */
+    boolean isDurable();
+
+    /**
+     * Get descriptors of works that were registered in a committed transaction but were never executed.
+     * 
+     * @param tenantId
+     *            the tenant of the works
+     * @param fromIndex
+     *            index of the first descriptor to return
+     * @param maxResults
+     *            max number of descriptors to return
+     * @return the descriptors, an empty list if the service is not durable
+     * @throws WorkStoreException
+     * @since 6.1
+     */
+    List<WorkDescriptor> getUnacknowledgedWorks(long tenantId, int fromIndex, int maxResults) throws WorkStoreException;
+
+    /**
+     * Mark the work as handled: it will not be returned by {@link #getUnacknowledgedWorks(long, int, int)} anymore
+     * 
+     * @param tenantId
+     *            the tenant of the work
+     * @param descriptorId
+     *            id of the descriptor of the work
+     * @throws WorkStoreException
+     * @since 6.1
+     */
+    void acknowledge(long tenantId, String descriptorId) throws WorkStoreException;
+
+    /**
+     * @return the counters of the executor of the works, null if the executor does not count anything
+     * @since 6.1
+     */
+    WorkExecutorStatistics getExecutorStatistics();
+
 }
@@ -73,7 +73,13 @@ public abstract class AbstractWorkSynchronization implements BonitaTransactionSy
 
     @Override
     public void beforeCommit() {
-        // NOTHING
+        if (threadPoolWorkService.isDurable()) {
+            try {
+                threadPoolWorkService.storeWorks(tenantId, works);
+            } catch (final WorkStoreException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     @Override
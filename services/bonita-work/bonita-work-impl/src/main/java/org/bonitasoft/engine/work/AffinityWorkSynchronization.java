@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.TransactionService;
+
+/**
+ * Group the works of the transaction by affinity key and execute each group in sequence, on the lane of its affinity key when the executor is a
+ * {@link LaneExecutorService}.
+ */
+public class AffinityWorkSynchronization extends AbstractWorkSynchronization {
+
+    private final RunnableListener runnableListener;
+
+    public AffinityWorkSynchronization(final ExecutorWorkService runnableListener, final ExecutorService executorService,
+            final TechnicalLoggerService loggerService, final SessionAccessor sessionAccessor, final SessionService sessionService,
+            final TransactionService transactionService) {
+        super(runnableListener, executorService, loggerService, sessionAccessor, sessionService, transactionService);
+        this.runnableListener = runnableListener;
+    }
+
+    @Override
+    protected void executeRunnables(final Collection<BonitaWork> works) {
+        final Map<Long, List<BonitaWork>> worksByAffinityKey = new LinkedHashMap<Long, List<BonitaWork>>();
+        for (final BonitaWork work : works) {
+            List<BonitaWork> group = worksByAffinityKey.get(work.getAffinityKey());
+            if (group == null) {
+                group = new ArrayList<BonitaWork>();
+                worksByAffinityKey.put(work.getAffinityKey(), group);
+            }
+            group.add(work);
+        }
+        for (final Entry<Long, List<BonitaWork>> group : worksByAffinityKey.entrySet()) {
+            // execute and not submit: the affinity key would be hidden by the future wrapping the runnable
+            executorService.execute(new SequenceRunnableExecutor(group.getValue(), runnableListener, getTenantId(), group.getKey()));
+        }
+    }
+
+}
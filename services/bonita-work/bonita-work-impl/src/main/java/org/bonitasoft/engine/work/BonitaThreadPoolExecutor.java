@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ThreadPoolExecutor that handles a full queue using a {@link WorkQueueOverflowPolicy} and that counts what happens to the works that did not fit in the
+ * queue.
+ * Spilled works are moved back to the queue, in the order they were submitted, each time a worker takes a work from the queue or finishes one. While works
+ * are spilled, new works are spilled after them so that they do not overtake them.
+ * A worker submitting works to its own executor never waits for room in the queue nor sees its works rejected, whatever the policy: it could be waiting
+ * for itself. Its works are spilled instead.
+ */
+public class BonitaThreadPoolExecutor extends ThreadPoolExecutor implements WorkExecutorStatistics {
+
+    private final WorkQueueOverflowPolicy overflowPolicy;
+
+    private final BlockingDeque<Runnable> overflow = new LinkedBlockingDeque<Runnable>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    private final AtomicLong pushedBackCount = new AtomicLong();
+
+    private final ThreadLocal<Boolean> worker = new ThreadLocal<Boolean>();
+
+    public BonitaThreadPoolExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTimeSeconds, final BlockingQueue<Runnable> workQueue,
+            final ThreadFactory threadFactory, final WorkQueueOverflowPolicy overflowPolicy, final long blockTimeoutMillis) {
+        super(corePoolSize, maximumPoolSize, keepAliveTimeSeconds, TimeUnit.SECONDS, workQueue, threadFactory);
+        this.overflowPolicy = overflowPolicy;
+        setRejectedExecutionHandler(new OverflowRejectedExecutionHandler(blockTimeoutMillis));
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (!overflow.isEmpty()) {
+            // keep the submission order: spilled works go first
+            spill(command);
+            return;
+        }
+        super.execute(command);
+    }
+
+    @Override
+    protected void beforeExecute(final Thread thread, final Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+        worker.set(Boolean.TRUE);
+        // the worker just took a work from the queue: there is room for a spilled one
+        drainOverflow();
+    }
+
+    @Override
+    protected void afterExecute(final Runnable runnable, final Throwable throwable) {
+        super.afterExecute(runnable, throwable);
+        worker.remove();
+        drainOverflow();
+    }
+
+    private void spill(final Runnable task) {
+        spilledCount.incrementAndGet();
+        overflow.offerLast(task);
+        // workers may have taken works from the queue meanwhile
+        drainOverflow();
+    }
+
+    /**
+     * Move the spilled works to the queue while it has room. Synchronized so that a work polled from the overflow queue by a thread that finds the queue
+     * full is put back before another thread looks at the overflow queue.
+     */
+    private void drainOverflow() {
+        if (overflow.isEmpty()) {
+            return;
+        }
+        synchronized (overflow) {
+            Runnable spilled;
+            while ((spilled = overflow.pollFirst()) != null) {
+                if (!getQueue().offer(spilled)) {
+                    overflow.offerFirst(spilled);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if new works must be refused before the transaction that registers them is committed
+     */
+    public boolean acceptsNewWork() {
+        if (WorkQueueOverflowPolicy.PUSH_BACK != overflowPolicy) {
+            return true;
+        }
+        if (getQueue().remainingCapacity() == 0 || !overflow.isEmpty()) {
+            pushedBackCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public WorkQueueOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    @Override
+    public int getOverflowDepth() {
+        return overflow.size();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    @Override
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    @Override
+    public long getPushedBackCount() {
+        return pushedBackCount.get();
+    }
+
+    private final class OverflowRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final long blockTimeoutMillis;
+
+        public OverflowRejectedExecutionHandler(final long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+        }
+
+        @Override
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                reject(task, "the executor is shut down");
+            }
+            if (worker.get() != null) {
+                spill(task);
+                return;
+            }
+            switch (overflowPolicy) {
+                case BLOCK:
+                    blockedCount.incrementAndGet();
+                    try {
+                        if (!executor.getQueue().offer(task, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                            reject(task, "your work queue is still full after " + blockTimeoutMillis + "ms");
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        reject(task, "interrupted while waiting for room in the work queue");
+                    }
+                    break;
+                case SPILL:
+                case PUSH_BACK:
+                    spill(task);
+                    break;
+                default:
+                    reject(task, "your work queue is full");
+            }
+        }
+
+        private void reject(final Runnable task, final String reason) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Unable to run the task " + task + ": " + reason
+                    + "\n you might consider changing your configuration to scale more");
+        }
+
+    }
+
+}
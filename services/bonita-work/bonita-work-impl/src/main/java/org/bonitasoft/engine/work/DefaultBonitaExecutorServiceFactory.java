@@ -15,10 +15,6 @@ package org.bonitasoft.engine.work;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Use ThreadPoolExecutor as ExecutorService
@@ -27,38 +23,36 @@ import java.util.concurrent.TimeUnit;
  * - If the number of threads is less than the corePoolSize, create a new Thread to run a new task.
  * - If the number of threads is equal (or greater than) the corePoolSize, put the task into the queue.
  * - If the queue is full, and the number of threads is less than the maxPoolSize, create a new thread to run tasks in.
- * - If the queue is full, and the number of threads is greater than or equal to maxPoolSize, reject the task.
+ * - If the queue is full, and the number of threads is greater than or equal to maxPoolSize, apply the {@link WorkQueueOverflowPolicy}.
  * When the current number of threads are > than corePoolSize, they are kept idle during keepAliveTimeSeconds
  * 
  * @author Baptiste Mesta
  */
 public class DefaultBonitaExecutorServiceFactory implements BonitaExecutorServiceFactory {
 
-    private final ThreadPoolExecutor threadPoolExecutor;
+    private final BonitaThreadPoolExecutor threadPoolExecutor;
 
     public DefaultBonitaExecutorServiceFactory(final int corePoolSize, final int queueCapacity, final int maximumPoolSize, final long keepAliveTimeSeconds) {
+        this(corePoolSize, queueCapacity, maximumPoolSize, keepAliveTimeSeconds, WorkQueueOverflowPolicy.REJECT, 0);
+    }
+
+    /**
+     * @param overflowPolicy
+     *            what to do with works that do not fit in the queue
+     * @param blockTimeoutMillis
+     *            max time to wait for room in the queue when the policy is {@link WorkQueueOverflowPolicy#BLOCK}
+     */
+    public DefaultBonitaExecutorServiceFactory(final int corePoolSize, final int queueCapacity, final int maximumPoolSize, final long keepAliveTimeSeconds,
+            final WorkQueueOverflowPolicy overflowPolicy, final long blockTimeoutMillis) {
         final BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity);
-        final RejectedExecutionHandler handler = new QueueRejectedExecutionHandler();
         final WorkerThreadFactory threadFactory = new WorkerThreadFactory("Bonita-Worker");
-        threadPoolExecutor = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTimeSeconds, TimeUnit.SECONDS, workQueue, threadFactory, handler);
+        threadPoolExecutor = new BonitaThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTimeSeconds, workQueue, threadFactory, overflowPolicy,
+                blockTimeoutMillis);
     }
 
     @Override
-    public ThreadPoolExecutor createExecutorService() {
+    public BonitaThreadPoolExecutor createExecutorService() {
         return threadPoolExecutor;
     }
 
-    private final class QueueRejectedExecutionHandler implements RejectedExecutionHandler {
-
-        public QueueRejectedExecutionHandler() {
-        }
-
-        @Override
-        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
-            throw new RejectedExecutionException("Unable to run the task " + task
-                    + "\n your work queue is full you might consider changing your configuration to scale more");
-        }
-
-    }
-
 }
@@ -13,8 +13,12 @@
  **/
 package org.bonitasoft.engine.work;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -30,6 +34,8 @@ import org.bonitasoft.engine.transaction.TransactionService;
 
 /**
  * Execute works using an ExecutorService
+ * If a {@link WorkDescriptorStore} is given, descriptors of the works are stored when the transaction that registers them commits and are acknowledged
+ * once the works are executed: works that were not executed because of a crash can then be replayed.
  * 
  * @author Charles Souillard
  * @author Baptiste Mesta
@@ -44,6 +50,8 @@ public class ExecutorWorkService implements WorkService, RunnableListener {
 
     private final ThreadLocal<AbstractWorkSynchronization> synchronizations = new ThreadLocal<AbstractWorkSynchronization>();
 
+    private final ThreadLocal<NotifyingRunnable> executingRunnable = new ThreadLocal<NotifyingRunnable>();
+
     private final TechnicalLoggerService loggerService;
 
     private final SessionAccessor sessionAccessor;
@@ -54,23 +62,46 @@ public class ExecutorWorkService implements WorkService, RunnableListener {
 
     private final Set<Long> deactivated = new HashSet<Long>();
 
+    private final WorkDescriptorStore workDescriptorStore;
+
     public ExecutorWorkService(final TransactionService transactionService, final WorkSynchronizationFactory workSynchronizationFactory,
             final TechnicalLoggerService loggerService, final SessionAccessor sessionAccessor, final SessionService sessionService,
             final BonitaExecutorServiceFactory bonitaExecutorServiceFactory) {
+        this(transactionService, workSynchronizationFactory, loggerService, sessionAccessor, sessionService, bonitaExecutorServiceFactory, null);
+    }
+
+    public ExecutorWorkService(final TransactionService transactionService, final WorkSynchronizationFactory workSynchronizationFactory,
+            final TechnicalLoggerService loggerService, final SessionAccessor sessionAccessor, final SessionService sessionService,
+            final BonitaExecutorServiceFactory bonitaExecutorServiceFactory, final WorkDescriptorStore workDescriptorStore) {
         this.transactionService = transactionService;
         this.workSynchronizationFactory = workSynchronizationFactory;
         threadPoolExecutor = bonitaExecutorServiceFactory.createExecutorService();
         this.loggerService = loggerService;
         this.sessionAccessor = sessionAccessor;
         this.sessionService = sessionService;
+        this.workDescriptorStore = workDescriptorStore;
     }
 
     @Override
     public void registerWork(final BonitaWork work) throws WorkRegisterException {
+        // a work registered by a running work continues an execution already accepted: refusing it would stop the chain
+        if (executingRunnable.get() == null && !acceptsNewWork()) {
+            throw new WorkRegisterException("Unable to register the work " + work + ": the work queue is full, try again later");
+        }
         final AbstractWorkSynchronization synchro = getContinuationSynchronization();
         synchro.addWork(work);
     }
 
+    private boolean acceptsNewWork() {
+        if (threadPoolExecutor instanceof BonitaThreadPoolExecutor) {
+            return ((BonitaThreadPoolExecutor) threadPoolExecutor).acceptsNewWork();
+        }
+        if (threadPoolExecutor instanceof LaneExecutorService) {
+            return ((LaneExecutorService) threadPoolExecutor).acceptsNewWork();
+        }
+        return true;
+    }
+
     private synchronized AbstractWorkSynchronization getContinuationSynchronization() throws WorkRegisterException {
         AbstractWorkSynchronization synchro = synchronizations.get();
         if (synchro == null || synchro.isExecuted()) {
@@ -112,10 +143,12 @@ public class ExecutorWorkService implements WorkService, RunnableListener {
 
     @Override
     public void runnableStarted(final NotifyingRunnable runnable) {
+        executingRunnable.set(runnable);
     }
 
     @Override
     public void runnableDone(final NotifyingRunnable runnable) {
+        executingRunnable.remove();
         runnables.get(runnable.getTenantId()).remove(runnable);
     }
 
@@ -139,4 +172,55 @@ public class ExecutorWorkService implements WorkService, RunnableListener {
         return deactivated.contains(tenantId);
     }
 
+    @Override
+    public boolean isDurable() {
+        return workDescriptorStore != null;
+    }
+
+    /**
+     * Store descriptors of the works that can be replayed, must be called in the transaction that registered the works
+     */
+    void storeWorks(final long tenantId, final Collection<BonitaWork> works) throws WorkStoreException {
+        final List<WorkDescriptor> descriptors = new ArrayList<WorkDescriptor>(works.size());
+        final Map<WorkDescriptor, BonitaWork> worksByDescriptor = new HashMap<WorkDescriptor, BonitaWork>(works.size());
+        for (final BonitaWork work : works) {
+            final WorkDescriptor descriptor = work.getDescriptor();
+            if (descriptor != null) {
+                descriptor.setTenantId(tenantId);
+                descriptors.add(descriptor);
+                worksByDescriptor.put(descriptor, work);
+            }
+        }
+        if (descriptors.isEmpty()) {
+            return;
+        }
+        workDescriptorStore.store(tenantId, descriptors);
+        for (final WorkDescriptor descriptor : descriptors) {
+            worksByDescriptor.get(descriptor).setStoredDescriptor(workDescriptorStore, descriptor.getId());
+        }
+    }
+
+    @Override
+    public List<WorkDescriptor> getUnacknowledgedWorks(final long tenantId, final int fromIndex, final int maxResults) throws WorkStoreException {
+        if (!isDurable()) {
+            return Collections.emptyList();
+        }
+        return workDescriptorStore.getUnacknowledgedWorks(tenantId, fromIndex, maxResults);
+    }
+
+    @Override
+    public void acknowledge(final long tenantId, final String descriptorId) throws WorkStoreException {
+        if (isDurable()) {
+            workDescriptorStore.acknowledge(tenantId, descriptorId);
+        }
+    }
+
+    @Override
+    public WorkExecutorStatistics getExecutorStatistics() {
+        if (threadPoolExecutor instanceof WorkExecutorStatistics) {
+            return (WorkExecutorStatistics) threadPoolExecutor;
+        }
+        return null;
+    }
+
 }
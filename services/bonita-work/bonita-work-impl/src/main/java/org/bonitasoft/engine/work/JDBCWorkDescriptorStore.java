@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+/**
+ * Store work descriptors in the table work_descriptor using plain JDBC.
+ * The datasource must be the one managed by the transaction manager of the engine so that descriptors are written in the transaction that registers the
+ * works.
+ */
+public class JDBCWorkDescriptorStore implements WorkDescriptorStore {
+
+    private static final String INSERT = "INSERT INTO work_descriptor (tenantid, id, type, registrationDate, registrationIndex, parameters) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE = "DELETE FROM work_descriptor WHERE tenantid = ? AND id = ?";
+
+    private static final String SELECT_BY_TENANT = "SELECT id, type, parameters FROM work_descriptor WHERE tenantid = ? ORDER BY registrationDate, registrationIndex";
+
+    private final DataSource datasource;
+
+    public JDBCWorkDescriptorStore(final DataSource datasource) {
+        this.datasource = datasource;
+    }
+
+    @Override
+    public void store(final long tenantId, final Collection<WorkDescriptor> descriptors) throws WorkStoreException {
+        final long registrationDate = System.currentTimeMillis();
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(INSERT);
+            try {
+                int index = 0;
+                for (final WorkDescriptor descriptor : descriptors) {
+                    descriptor.setId(UUID.randomUUID().toString());
+                    descriptor.setTenantId(tenantId);
+                    statement.setLong(1, tenantId);
+                    statement.setString(2, descriptor.getId());
+                    statement.setString(3, descriptor.getType());
+                    statement.setLong(4, registrationDate);
+                    statement.setInt(5, index++);
+                    statement.setBytes(6, serialize(descriptor.getParameters()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new WorkStoreException("Unable to store the descriptors of works of tenant " + tenantId, e);
+        } catch (final IOException e) {
+            throw new WorkStoreException("Unable to serialize the parameters of works of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public void acknowledge(final long tenantId, final String descriptorId) throws WorkStoreException {
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(DELETE);
+            try {
+                statement.setLong(1, tenantId);
+                statement.setString(2, descriptorId);
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new WorkStoreException("Unable to acknowledge the work " + descriptorId + " of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public List<WorkDescriptor> getUnacknowledgedWorks(final long tenantId, final int fromIndex, final int maxResults) throws WorkStoreException {
+        final List<WorkDescriptor> descriptors = new ArrayList<WorkDescriptor>();
+        Connection connection = null;
+        try {
+            connection = datasource.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(SELECT_BY_TENANT);
+            try {
+                statement.setLong(1, tenantId);
+                statement.setMaxRows(fromIndex + maxResults);
+                final ResultSet resultSet = statement.executeQuery();
+                try {
+                    int index = 0;
+                    while (resultSet.next()) {
+                        if (index++ < fromIndex) {
+                            continue;
+                        }
+                        final WorkDescriptor descriptor = new WorkDescriptor(resultSet.getString("type"), deserialize(resultSet.getBytes("parameters")));
+                        descriptor.setId(resultSet.getString("id"));
+                        descriptor.setTenantId(tenantId);
+                        descriptors.add(descriptor);
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new WorkStoreException("Unable to read the descriptors of works of tenant " + tenantId, e);
+        } catch (final IOException e) {
+            throw new WorkStoreException("Unable to deserialize the parameters of works of tenant " + tenantId, e);
+        } catch (final ClassNotFoundException e) {
+            throw new WorkStoreException("Unable to deserialize the parameters of works of tenant " + tenantId, e);
+        } finally {
+            close(connection);
+        }
+        return descriptors;
+    }
+
+    private static byte[] serialize(final Map<String, Serializable> parameters) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(new HashMap<String, Serializable>(parameters));
+        } finally {
+            oos.close();
+        }
+        return baos.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Serializable> deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        if (bytes == null) {
+            return new HashMap<String, Serializable>();
+        }
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (Map<String, Serializable>) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void close(final Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                // Can't do anything...
+            }
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+/**
+ * Use a {@link LaneExecutorService} as ExecutorService: works having the same affinity key are executed in order by the same thread.
+ * Must be used with the {@link AffinityWorkSynchronizationFactory}.
+ */
+public class LaneBonitaExecutorServiceFactory implements BonitaExecutorServiceFactory {
+
+    private final LaneExecutorService executorService;
+
+    public LaneBonitaExecutorServiceFactory(final int numberOfLanes, final int laneQueueCapacity, final WorkQueueOverflowPolicy overflowPolicy,
+            final long blockTimeoutMillis) {
+        executorService = new LaneExecutorService(numberOfLanes, laneQueueCapacity, overflowPolicy, blockTimeoutMillis);
+    }
+
+    @Override
+    public LaneExecutorService createExecutorService() {
+        return executorService;
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ExecutorService made of single threaded lanes: runnables having the same affinity key (see {@link AffinityRunnable}) always go to the same lane and are
+ * therefore executed one after the other, in the order they were submitted. Runnables without affinity key are spread over the lanes.
+ * Works of a process instance executed this way do not compete with each other for the locks of the process instance.
+ * A lane submitting works to itself, e.g. the next works of the process instance it executes, never blocks on its own full queue: these works are kept in
+ * order after the queue, see {@link BonitaThreadPoolExecutor}.
+ */
+public class LaneExecutorService extends AbstractExecutorService implements WorkExecutorStatistics {
+
+    private final BonitaThreadPoolExecutor[] lanes;
+
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    /**
+     * @param numberOfLanes
+     *            number of lanes, i.e. number of threads
+     * @param laneQueueCapacity
+     *            capacity of the queue of each lane
+     * @param overflowPolicy
+     *            what to do with works that do not fit in the queue of their lane: {@link WorkQueueOverflowPolicy#REJECT} or
+     *            {@link WorkQueueOverflowPolicy#BLOCK}, works must not be spilled as they would no longer be executed in order
+     * @param blockTimeoutMillis
+     *            max time to wait for room in the queue when the policy is {@link WorkQueueOverflowPolicy#BLOCK}
+     */
+    public LaneExecutorService(final int numberOfLanes, final int laneQueueCapacity, final WorkQueueOverflowPolicy overflowPolicy,
+            final long blockTimeoutMillis) {
+        if (WorkQueueOverflowPolicy.REJECT != overflowPolicy && WorkQueueOverflowPolicy.BLOCK != overflowPolicy) {
+            throw new IllegalArgumentException("The lanes keep the order of the works only with the REJECT or BLOCK overflow policy, not with "
+                    + overflowPolicy);
+        }
+        final WorkerThreadFactory threadFactory = new WorkerThreadFactory("Bonita-Worker-Lane");
+        lanes = new BonitaThreadPoolExecutor[numberOfLanes];
+        for (int i = 0; i < numberOfLanes; i++) {
+            lanes[i] = new BonitaThreadPoolExecutor(1, 1, 0, new ArrayBlockingQueue<Runnable>(laneQueueCapacity), threadFactory, overflowPolicy,
+                    blockTimeoutMillis);
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        getLane(command).execute(command);
+    }
+
+    BonitaThreadPoolExecutor getLane(final Runnable command) {
+        long affinityKey = -1;
+        if (command instanceof AffinityRunnable) {
+            affinityKey = ((AffinityRunnable) command).getAffinityKey();
+        }
+        if (affinityKey < 0) {
+            return lanes[(nextLane.getAndIncrement() & Integer.MAX_VALUE) % lanes.length];
+        }
+        return lanes[(int) (affinityKey % lanes.length)];
+    }
+
+    /**
+     * @return false if one of the lanes refuses new works, see {@link BonitaThreadPoolExecutor#acceptsNewWork()}
+     */
+    public boolean acceptsNewWork() {
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            if (!lane.acceptsNewWork()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getNumberOfLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * @return number of works waiting in the queues of all lanes
+     */
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueueDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public int getOverflowDepth() {
+        int depth = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            depth += lane.getOverflowDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        long count = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            count += lane.getRejectedCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getBlockedCount() {
+        long count = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            count += lane.getBlockedCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getSpilledCount() {
+        long count = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            count += lane.getSpilledCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getPushedBackCount() {
+        long count = 0;
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            count += lane.getPushedBackCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void shutdown() {
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> notExecuted = new ArrayList<Runnable>();
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            notExecuted.addAll(lane.shutdownNow());
+        }
+        return notExecuted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            if (!lane.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            if (!lane.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final BonitaThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.work;
 
+import org.bonitasoft.engine.commons.XMLCache;
+
 /**
  * A runnable that notify a listener of it's state
  * 
@@ -33,8 +35,12 @@ public abstract class NotifyingRunnable implements Runnable {
     @Override
     public void run() {
         runnableListener.runnableStarted(this);
-        innerRun();
-        runnableListener.runnableDone(this);
+        try {
+            innerRun();
+        } finally {
+            XMLCache.clearDocuments();
+            runnableListener.runnableDone(this);
+        }
     }
 
     public abstract void innerRun();
@@ -19,15 +19,27 @@ import java.util.Collection;
  * @author Charles Souillard
  * @author Baptiste Mesta
  */
-public class SequenceRunnableExecutor extends NotifyingRunnable {
+public class SequenceRunnableExecutor extends NotifyingRunnable implements AffinityRunnable {
 
     private final Collection<BonitaWork> works;
 
+    private final long affinityKey;
+
     private boolean cancelled = false;
 
     public SequenceRunnableExecutor(final Collection<BonitaWork> works, final RunnableListener runnableListener, final long tenantId) {
+        this(works, runnableListener, tenantId, -1);
+    }
+
+    public SequenceRunnableExecutor(final Collection<BonitaWork> works, final RunnableListener runnableListener, final long tenantId, final long affinityKey) {
         super(runnableListener, tenantId);
         this.works = works;
+        this.affinityKey = affinityKey;
+    }
+
+    @Override
+    public long getAffinityKey() {
+        return affinityKey;
     }
 
     @Override
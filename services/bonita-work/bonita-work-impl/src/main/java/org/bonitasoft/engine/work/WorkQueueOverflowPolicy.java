@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+/**
+ * What the work executor does when its queue is full
+ */
+public enum WorkQueueOverflowPolicy {
+
+    /**
+     * Throw a RejectedExecutionException: works are lost
+     */
+    REJECT,
+
+    /**
+     * Block the thread that submits the works until there is room in the queue or until the timeout is reached, then reject the works
+     */
+    BLOCK,
+
+    /**
+     * Put the works in an unbounded overflow queue, they are moved to the work queue as soon as workers free some room
+     */
+    SPILL,
+
+    /**
+     * Refuse to register new works while the queue is full so that the caller's transaction fails before being committed. Works registered by a
+     * running work, e.g. the next steps of a process instance, are never refused: they are spilled like the works that are submitted anyway.
+     */
+    PUSH_BACK
+
+}
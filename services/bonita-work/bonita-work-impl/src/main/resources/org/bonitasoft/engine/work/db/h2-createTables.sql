@@ -0,0 +1,10 @@
+CREATE TABLE work_descriptor (
+  tenantid BIGINT NOT NULL,
+  id VARCHAR(36) NOT NULL,
+  type VARCHAR(50) NOT NULL,
+  registrationDate BIGINT NOT NULL,
+  registrationIndex INTEGER NOT NULL,
+  parameters LONGVARBINARY,
+  PRIMARY KEY (tenantid, id)
+);
+CREATE INDEX idx_work_descriptor_date ON work_descriptor (tenantid, registrationDate, registrationIndex);
@@ -0,0 +1 @@
+DELETE FROM work_descriptor;
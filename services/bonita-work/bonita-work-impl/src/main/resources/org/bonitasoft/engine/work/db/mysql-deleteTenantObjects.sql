@@ -0,0 +1 @@
+DELETE FROM work_descriptor WHERE tenantid = ${tenantid};
\ No newline at end of file
@@ -0,0 +1,10 @@
+CREATE TABLE work_descriptor (
+  tenantid NUMBER(19, 0) NOT NULL,
+  id VARCHAR2(36) NOT NULL,
+  type VARCHAR2(50) NOT NULL,
+  registrationDate NUMBER(19, 0) NOT NULL,
+  registrationIndex NUMBER(10, 0) NOT NULL,
+  parameters BLOB,
+  PRIMARY KEY (tenantid, id)
+);
+CREATE INDEX idx_work_descriptor_date ON work_descriptor (tenantid, registrationDate, registrationIndex);
@@ -0,0 +1 @@
+DROP TABLE work_descriptor cascade constraints purge;
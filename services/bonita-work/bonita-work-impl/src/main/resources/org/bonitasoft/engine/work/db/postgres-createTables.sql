@@ -0,0 +1,10 @@
+CREATE TABLE work_descriptor (
+  tenantid INT8 NOT NULL,
+  id VARCHAR(36) NOT NULL,
+  type VARCHAR(50) NOT NULL,
+  registrationDate INT8 NOT NULL,
+  registrationIndex INTEGER NOT NULL,
+  parameters BYTEA,
+  PRIMARY KEY (tenantid, id)
+);
+CREATE INDEX idx_work_descriptor_date ON work_descriptor (tenantid, registrationDate, registrationIndex);
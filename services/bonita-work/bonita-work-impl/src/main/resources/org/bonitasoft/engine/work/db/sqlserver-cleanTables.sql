@@ -0,0 +1,2 @@
+DELETE FROM work_descriptor
+GO
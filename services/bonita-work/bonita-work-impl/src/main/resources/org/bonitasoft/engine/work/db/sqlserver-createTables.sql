@@ -0,0 +1,12 @@
+CREATE TABLE work_descriptor (
+  tenantid NUMERIC(19, 0) NOT NULL,
+  id NVARCHAR(36) NOT NULL,
+  type NVARCHAR(50) NOT NULL,
+  registrationDate NUMERIC(19, 0) NOT NULL,
+  registrationIndex INTEGER NOT NULL,
+  parameters VARBINARY(MAX),
+  PRIMARY KEY (tenantid, id)
+)
+GO
+CREATE INDEX idx_work_descriptor_date ON work_descriptor (tenantid, registrationDate, registrationIndex)
+GO
@@ -0,0 +1,2 @@
+DELETE FROM work_descriptor WHERE tenantid = ${tenantid}
+GO
\ No newline at end of file
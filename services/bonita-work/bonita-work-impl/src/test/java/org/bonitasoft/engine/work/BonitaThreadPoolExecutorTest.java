@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BonitaThreadPoolExecutorTest {
+
+    private BonitaThreadPoolExecutor executor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private BonitaThreadPoolExecutor createExecutor(final WorkQueueOverflowPolicy policy) {
+        return new BonitaThreadPoolExecutor(1, 1, 60, new ArrayBlockingQueue<Runnable>(1), new WorkerThreadFactory("Test-Worker"), policy, 50);
+    }
+
+    private Runnable blockingTask() {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private Runnable countingTask(final CountDownLatch done) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectPolicyThrowsWhenQueueIsFull() {
+        executor = createExecutor(WorkQueueOverflowPolicy.REJECT);
+        executor.execute(blockingTask());
+        executor.execute(blockingTask());
+        try {
+            executor.execute(blockingTask());
+        } finally {
+            assertEquals(1, executor.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void blockPolicyRejectsAfterTimeout() {
+        executor = createExecutor(WorkQueueOverflowPolicy.BLOCK);
+        executor.execute(blockingTask());
+        executor.execute(blockingTask());
+        try {
+            executor.execute(blockingTask());
+        } catch (final RejectedExecutionException e) {
+            assertEquals(1, executor.getBlockedCount());
+            assertEquals(1, executor.getRejectedCount());
+            return;
+        }
+        throw new AssertionError("the task should have been rejected");
+    }
+
+    @Test
+    public void spillPolicyExecutesAllWorks() throws Exception {
+        executor = createExecutor(WorkQueueOverflowPolicy.SPILL);
+        final CountDownLatch done = new CountDownLatch(5);
+        executor.execute(blockingTask());
+        for (int i = 0; i < 5; i++) {
+            executor.execute(countingTask(done));
+        }
+        assertEquals(4, executor.getSpilledCount());
+        assertEquals(4, executor.getOverflowDepth());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getOverflowDepth());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    @Test
+    public void spilledWorksAreExecutedInSubmissionOrder() throws Exception {
+        executor = createExecutor(WorkQueueOverflowPolicy.SPILL);
+        final int numberOfWorks = 50;
+        final List<Integer> executionOrder = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(numberOfWorks);
+        executor.execute(blockingTask());
+        for (int i = 0; i < numberOfWorks; i++) {
+            final int index = i;
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    executionOrder.add(index);
+                    done.countDown();
+                }
+            });
+            if (i == 10) {
+                // let the works run while others are still being submitted
+                release.countDown();
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < numberOfWorks; i++) {
+            assertEquals(Integer.valueOf(i), executionOrder.get(i));
+        }
+        assertEquals(0, executor.getOverflowDepth());
+    }
+
+    @Test
+    public void pushBackPolicyRefusesNewWorksWhenQueueIsFull() throws Exception {
+        executor = createExecutor(WorkQueueOverflowPolicy.PUSH_BACK);
+        executor.execute(blockingTask());
+        assertTrue(executor.acceptsNewWork());
+        executor.execute(blockingTask());
+        assertFalse(executor.acceptsNewWork());
+        assertEquals(1, executor.getPushedBackCount());
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BonitaWorkTest {
+
+    private WorkDescriptorStore store;
+
+    @Before
+    public void setUp() {
+        store = mock(WorkDescriptorStore.class);
+    }
+
+    private BonitaWork prepare(final BonitaWork work) throws Exception {
+        final SSession session = mock(SSession.class);
+        when(session.getId()).thenReturn(12L);
+        when(session.getTenantId()).thenReturn(3L);
+        final SessionService sessionService = mock(SessionService.class);
+        when(sessionService.createSession(3, "scheduler")).thenReturn(session);
+        work.setTechnicalLogger(mock(TechnicalLoggerService.class));
+        work.setTransactionService(mock(TransactionService.class));
+        work.setSessionService(sessionService);
+        work.setSessionAccessor(mock(SessionAccessor.class));
+        work.setTenantId(3);
+        work.setStoredDescriptor(store, "id0");
+        return work;
+    }
+
+    @Test
+    public void acknowledgeASuccessfulWork() throws Exception {
+        prepare(new BonitaWork() {
+
+            @Override
+            protected void work() {
+            }
+        }).run();
+
+        verify(store).acknowledge(3, "id0");
+    }
+
+    @Test
+    public void keepTheDescriptorOfAFailedWork() throws Exception {
+        prepare(new BonitaWork() {
+
+            @Override
+            protected void work() throws SBonitaException {
+                throw new WorkStoreException("failure");
+            }
+        }).run();
+
+        verify(store, never()).acknowledge(3, "id0");
+    }
+
+    @Test
+    public void keepTheDescriptorOfAWorkFailingUnexpectedly() throws Exception {
+        prepare(new BonitaWork() {
+
+            @Override
+            protected void work() {
+                throw new IllegalStateException("failure");
+            }
+        }).run();
+
+        verify(store, never()).acknowledge(anyLong(), anyString());
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.session.SessionService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ExecutorWorkServiceTest {
+
+    private WorkDescriptorStore store;
+
+    private List<WorkDescriptor> stored;
+
+    private ExecutorWorkService workService;
+
+    @Before
+    public void setUp() throws Exception {
+        store = mock(WorkDescriptorStore.class);
+        stored = new ArrayList<WorkDescriptor>();
+        doAnswer(new Answer<Void>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                for (final WorkDescriptor descriptor : (Collection<WorkDescriptor>) invocation.getArguments()[1]) {
+                    descriptor.setId("id" + stored.size());
+                    stored.add(descriptor);
+                }
+                return null;
+            }
+        }).when(store).store(anyLong(), anyCollectionOf(WorkDescriptor.class));
+        workService = newWorkService(store);
+    }
+
+    private static ExecutorWorkService newWorkService(final WorkDescriptorStore store) {
+        final BonitaExecutorServiceFactory executorServiceFactory = mock(BonitaExecutorServiceFactory.class);
+        when(executorServiceFactory.createExecutorService()).thenReturn(mock(ExecutorService.class));
+        return new ExecutorWorkService(mock(TransactionService.class), mock(WorkSynchronizationFactory.class), mock(TechnicalLoggerService.class),
+                mock(SessionAccessor.class), mock(SessionService.class), executorServiceFactory, store);
+    }
+
+    private static BonitaWork work(final WorkDescriptor descriptor) {
+        final BonitaWork work = mock(BonitaWork.class);
+        when(work.getDescriptor()).thenReturn(descriptor);
+        return work;
+    }
+
+    @Test
+    public void storeOnlyWorksThatCanBeReplayed() throws Exception {
+        final BonitaWork replayable = work(new WorkDescriptor("A"));
+        final BonitaWork notReplayable = work(null);
+
+        workService.storeWorks(3, Arrays.asList(replayable, notReplayable));
+
+        assertEquals(1, stored.size());
+        assertEquals(3, stored.get(0).getTenantId());
+        verify(replayable).setStoredDescriptor(store, "id0");
+        verify(notReplayable, never()).setStoredDescriptor(any(WorkDescriptorStore.class), anyString());
+    }
+
+    @Test
+    public void doNotCallTheStoreWhenNoWorkCanBeReplayed() throws Exception {
+        workService.storeWorks(3, Arrays.asList(work(null)));
+
+        verify(store, never()).store(anyLong(), anyCollectionOf(WorkDescriptor.class));
+    }
+
+    @Test
+    public void isDurableOnlyWithAStore() {
+        assertTrue(workService.isDurable());
+        assertFalse(newWorkService(null).isDurable());
+    }
+
+    private static ExecutorWorkService newPushedBackWorkService(final AbstractWorkSynchronization synchronization) throws Exception {
+        final BonitaThreadPoolExecutor executor = mock(BonitaThreadPoolExecutor.class);
+        when(executor.acceptsNewWork()).thenReturn(false);
+        final BonitaExecutorServiceFactory executorServiceFactory = mock(BonitaExecutorServiceFactory.class);
+        when(executorServiceFactory.createExecutorService()).thenReturn(executor);
+        final TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.isTransactionActive()).thenReturn(true);
+        final WorkSynchronizationFactory workSynchronizationFactory = mock(WorkSynchronizationFactory.class);
+        when(
+                workSynchronizationFactory.getWorkSynchronization(any(ExecutorService.class), any(TechnicalLoggerService.class), any(SessionAccessor.class),
+                        any(SessionService.class), any(TransactionService.class), any(ExecutorWorkService.class))).thenReturn(synchronization);
+        return new ExecutorWorkService(transactionService, workSynchronizationFactory, mock(TechnicalLoggerService.class), mock(SessionAccessor.class),
+                mock(SessionService.class), executorServiceFactory, null);
+    }
+
+    @Test
+    public void pushBackWorksRegisteredByClients() throws Exception {
+        final AbstractWorkSynchronization synchronization = mock(AbstractWorkSynchronization.class);
+        final ExecutorWorkService pushedBackWorkService = newPushedBackWorkService(synchronization);
+        final BonitaWork work = work(null);
+
+        try {
+            pushedBackWorkService.registerWork(work);
+            fail("the work should have been pushed back");
+        } catch (final WorkRegisterException e) {
+            verify(synchronization, never()).addWork(work);
+        }
+    }
+
+    @Test
+    public void acceptWorksRegisteredByARunningWorkWhenPushingBack() throws Exception {
+        final AbstractWorkSynchronization synchronization = mock(AbstractWorkSynchronization.class);
+        final ExecutorWorkService pushedBackWorkService = newPushedBackWorkService(synchronization);
+        final NotifyingRunnable runnable = mock(NotifyingRunnable.class);
+        final BonitaWork work = work(null);
+
+        pushedBackWorkService.runnableRegistered(runnable);
+        pushedBackWorkService.runnableStarted(runnable);
+        try {
+            pushedBackWorkService.registerWork(work);
+        } finally {
+            pushedBackWorkService.runnableDone(runnable);
+        }
+
+        verify(synchronization).addWork(work);
+    }
+
+    @Test
+    public void acknowledgeInTheStore() throws Exception {
+        workService.acknowledge(3, "id0");
+
+        verify(store).acknowledge(3, "id0");
+    }
+
+}
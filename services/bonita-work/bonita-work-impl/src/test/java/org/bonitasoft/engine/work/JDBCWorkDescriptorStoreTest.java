@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JDBCWorkDescriptorStoreTest {
+
+    private JdbcDataSource datasource;
+
+    private JDBCWorkDescriptorStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        datasource = new JdbcDataSource();
+        datasource.setURL("jdbc:h2:mem:work_descriptor;DB_CLOSE_DELAY=-1");
+        final InputStream script = JDBCWorkDescriptorStoreTest.class.getResourceAsStream("/org/bonitasoft/engine/work/db/h2-createTables.sql");
+        final String sql = new Scanner(script, "UTF-8").useDelimiter("\\A").next();
+        script.close();
+        for (final String statement : sql.split(";")) {
+            if (statement.trim().length() > 0) {
+                execute(statement);
+            }
+        }
+        store = new JDBCWorkDescriptorStore(datasource);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("DROP TABLE work_descriptor");
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Connection connection = datasource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static WorkDescriptor descriptor(final String type, final long value) {
+        return new WorkDescriptor(type).addParameter("value", value);
+    }
+
+    @Test
+    public void storedWorksAreReadInRegistrationOrder() throws Exception {
+        final WorkDescriptor first = descriptor("A", 1);
+        final WorkDescriptor second = descriptor("B", 2);
+        final WorkDescriptor third = descriptor("A", 3);
+        store.store(1, Arrays.asList(first, second, third));
+
+        assertNotNull(first.getId());
+        final List<WorkDescriptor> works = store.getUnacknowledgedWorks(1, 0, 10);
+        assertEquals(3, works.size());
+        assertEquals(first.getId(), works.get(0).getId());
+        assertEquals("A", works.get(0).getType());
+        assertEquals(1L, works.get(0).getParameter("value"));
+        assertEquals(second.getId(), works.get(1).getId());
+        assertEquals("B", works.get(1).getType());
+        assertEquals(third.getId(), works.get(2).getId());
+        assertEquals(3L, works.get(2).getParameter("value"));
+    }
+
+    @Test
+    public void readPages() throws Exception {
+        store.store(1, Arrays.asList(descriptor("A", 1), descriptor("A", 2), descriptor("A", 3)));
+
+        final List<WorkDescriptor> firstPage = store.getUnacknowledgedWorks(1, 0, 2);
+        final List<WorkDescriptor> secondPage = store.getUnacknowledgedWorks(1, 2, 2);
+
+        assertEquals(2, firstPage.size());
+        assertEquals(1L, firstPage.get(0).getParameter("value"));
+        assertEquals(2L, firstPage.get(1).getParameter("value"));
+        assertEquals(1, secondPage.size());
+        assertEquals(3L, secondPage.get(0).getParameter("value"));
+    }
+
+    @Test
+    public void acknowledgedWorksAreNotReturned() throws Exception {
+        final WorkDescriptor first = descriptor("A", 1);
+        final WorkDescriptor second = descriptor("A", 2);
+        store.store(1, Arrays.asList(first, second));
+
+        store.acknowledge(1, first.getId());
+
+        final List<WorkDescriptor> works = store.getUnacknowledgedWorks(1, 0, 10);
+        assertEquals(1, works.size());
+        assertEquals(second.getId(), works.get(0).getId());
+    }
+
+    @Test
+    public void worksAreStoredPerTenant() throws Exception {
+        final WorkDescriptor work = descriptor("A", 1);
+        store.store(1, Arrays.asList(work));
+
+        store.acknowledge(2, work.getId());
+
+        assertTrue(store.getUnacknowledgedWorks(2, 0, 10).isEmpty());
+        assertEquals(1, store.getUnacknowledgedWorks(1, 0, 10).size());
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2013 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LaneExecutorServiceTest {
+
+    private final LaneExecutorService executor = new LaneExecutorService(4, 100, WorkQueueOverflowPolicy.REJECT, 0);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void runnablesWithSameKeyGoToSameLane() {
+        assertSame(executor.getLane(new KeyedRunnable(13, null)), executor.getLane(new KeyedRunnable(13, null)));
+        assertSame(executor.getLane(new KeyedRunnable(13, null)), executor.getLane(new KeyedRunnable(17, null)));
+    }
+
+    @Test
+    public void runnablesWithSameKeyAreExecutedInOrder() throws Exception {
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 50; i++) {
+            final int index = i;
+            executor.execute(new KeyedRunnable(7, new Runnable() {
+
+                @Override
+                public void run() {
+                    executed.add(index);
+                }
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(50, executed.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), executed.get(i));
+        }
+    }
+
+    @Test
+    public void laneSubmittingToItselfDoesNotBlockOnItsFullQueue() throws Exception {
+        final LaneExecutorService blockingExecutor = new LaneExecutorService(1, 1, WorkQueueOverflowPolicy.BLOCK, 100);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(5);
+        try {
+            blockingExecutor.execute(new KeyedRunnable(7, new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5; i++) {
+                        final int index = i;
+                        blockingExecutor.execute(new KeyedRunnable(7, new Runnable() {
+
+                            @Override
+                            public void run() {
+                                executed.add(index);
+                                done.countDown();
+                            }
+                        }));
+                    }
+                }
+            }));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            blockingExecutor.shutdownNow();
+        }
+        assertEquals(0, blockingExecutor.getRejectedCount());
+        assertEquals(0, blockingExecutor.getBlockedCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), executed.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lanesDoNotSpillWorks() {
+        new LaneExecutorService(1, 1, WorkQueueOverflowPolicy.SPILL, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lanesDoNotPushBackWorks() {
+        new LaneExecutorService(1, 1, WorkQueueOverflowPolicy.PUSH_BACK, 0);
+    }
+
+    private static class KeyedRunnable implements AffinityRunnable {
+
+        private final long affinityKey;
+
+        private final Runnable runnable;
+
+        KeyedRunnable(final long affinityKey, final Runnable runnable) {
+            this.affinityKey = affinityKey;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public long getAffinityKey() {
+            return affinityKey;
+        }
+
+    }
+
+}